@@ -2,8 +2,12 @@ package com.medals.libsdatagenerator.controller;
 
 import com.medals.libsdatagenerator.model.BaselineCorrectionParams;
 import com.medals.libsdatagenerator.model.InstrumentProfile;
+import com.medals.libsdatagenerator.model.PlasmaSearchParams;
 import com.medals.libsdatagenerator.model.PlasmaZone;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.ParameterSearch;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.WeightSolver;
 import com.medals.libsdatagenerator.service.InstrumentProfileService;
+import com.medals.libsdatagenerator.service.LIBSDataService;
 import com.medals.libsdatagenerator.util.CSVUtils;
 import com.medals.libsdatagenerator.util.CmdlineParserUtil;
 import org.apache.commons.cli.CommandLine;
@@ -40,6 +44,7 @@ public class InstrumentProfileController {
                         return;
                 }
 
+                boolean failed = false;
                 try {
                         // Get input parameters
                         String inputPath = cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_INPUT_SHORT);
@@ -65,6 +70,18 @@ public class InstrumentProfileController {
                                                         "10"));
                         BaselineCorrectionParams baselineCorrectionParams = new BaselineCorrectionParams(lambda, p,
                                         maxIterations);
+                        // Plasma parameter search settings
+                        int threads = Integer.parseInt(cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_THREADS_SHORT,
+                                        String.valueOf(Runtime.getRuntime().availableProcessors())));
+                        WeightSolver weightSolver = WeightSolver.fromOption(Integer.parseInt(
+                                        cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_WEIGHT_SOLVER_SHORT, "1")));
+                        ParameterSearch parameterSearch = ParameterSearch.fromOption(Integer.parseInt(
+                                        cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_PARAMETER_SEARCH_SHORT, "1")));
+                        int fetchBudget = Integer.parseInt(cmd.getOptionValue(
+                                        LIBSDataGenConstants.CMD_OPT_FETCH_BUDGET_SHORT,
+                                        String.valueOf(PlasmaSearchParams.DEFAULT_FETCH_BUDGET)));
+                        PlasmaSearchParams searchParams = new PlasmaSearchParams(parameterSearch, weightSolver,
+                                        fetchBudget, threads);
                         boolean debugMode = cmd.hasOption(LIBSDataGenConstants.CMD_OPT_DEBUG_MODE_SHORT);
 
                         // Validate input file exists
@@ -87,11 +104,17 @@ public class InstrumentProfileController {
                         System.out.printf("Baseline Correction: lambda=%.1f, p=%.4f, maxIter=%d%n", lambda, p,
                                         maxIterations);
                         System.out.println("Plasma Zones: " + plasmaZones);
+                        System.out.println("Parameter search: " + parameterSearch.getDescription()
+                                        + (parameterSearch == ParameterSearch.ADAPTIVE
+                                                        ? " (up to " + fetchBudget + " NIST fetches)" : ""));
+                        System.out.println("Zone weight solver: " + weightSolver.getDescription());
+                        System.out.println("Search threads: " + threads);
                         System.out.println();
 
                         InstrumentProfile profile = profileService.generateProfile(inputFilePath, delimiter,
                                         composition,
-                                        instrumentName, baselineCorrectionParams, plasmaZones, debugMode);
+                                        instrumentName, baselineCorrectionParams, plasmaZones, searchParams,
+                                        debugMode);
 
                         // Save profile
                         Path outputFilePath = Paths.get(outputPath);
@@ -129,6 +152,12 @@ public class InstrumentProfileController {
                         System.out.println("Unable to generate profile. Please check log for details.");
                         logger.log(Level.SEVERE, "Failed to generate instrument profile", e);
                         System.out.println("Error: " + e.getMessage());
+                        failed = true;
+                } finally {
+                        // The NIST browser session is reused across the calibration grid and closed once here
+                        LIBSDataService.getInstance().closeSessions();
+                }
+                if (failed) {
                         System.exit(1);
                 }
         }
@@ -4,16 +4,19 @@ import com.medals.libsdatagenerator.model.InstrumentProfile;
 import com.medals.libsdatagenerator.model.UserInputConfig;
 import com.medals.libsdatagenerator.model.matweb.MaterialGrade;
 import com.medals.libsdatagenerator.service.DatasetStatisticsService;
+import com.medals.libsdatagenerator.service.GenerationSession;
 import com.medals.libsdatagenerator.service.LIBSDataService;
 import com.medals.libsdatagenerator.util.CmdlineParserUtil;
 import com.medals.libsdatagenerator.util.CommonUtils;
 import com.medals.libsdatagenerator.util.InputCompositionProcessor;
+import com.medals.libsdatagenerator.util.RunJournal;
 import org.apache.commons.cli.CommandLine;
 
 import java.net.HttpURLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
@@ -32,6 +35,8 @@ public class LIBSDataController {
         LIBSDataService libsDataService = LIBSDataService.getInstance(); // Data interfacing class for NIST LIBS
         CommonUtils commonUtils = CommonUtils.getInstance(); // Instance for various utility functions
         InputCompositionProcessor compositionProcessor = InputCompositionProcessor.getInstance();
+        RunJournal runJournal = null;
+        GenerationSession generationSession = null;
 
         try {
             logger.info("Initialising LIBS Data extraction...");
@@ -42,7 +47,8 @@ public class LIBSDataController {
                 throw new Exception("NIST LIBS is not reachable.");
             }
 
-            CommandLine cmd = new CmdlineParserUtil().getTerminalArgHandler(args);
+            CmdlineParserUtil cmdlineParser = new CmdlineParserUtil();
+            CommandLine cmd = cmdlineParser.getTerminalArgHandler(args);
 
             if (cmd == null) {
                 logger.severe("Failed to parse command line arguments. Aborting.");
@@ -52,6 +58,37 @@ public class LIBSDataController {
            // Read and build user input configuration
             UserInputConfig userInputs = new UserInputConfig(cmd);
 
+            if (!userInputs.validateSuperposition) {
+                // Journal the run so that it can be resumed after an interruption
+                Path journalDir = Paths.get(CommonUtils.DATA_PATH, LIBSDataGenConstants.RUN_JOURNAL_DIR);
+                List<String> runArgs = new ArrayList<>(List.of(args));
+                if (userInputs.resumeRunId != null) {
+                    if (args.length > 2) {
+                        logger.warning("Options other than --resume are ignored. The interrupted run's options are used.");
+                    }
+                    runJournal = RunJournal.resume(journalDir, userInputs.resumeRunId);
+                    runArgs = runJournal.getArgs();
+                } else if (userInputs.seed == null) {
+                    // Fix the seed so that the sampled variations can be replayed on resume
+                    runArgs.add("-" + LIBSDataGenConstants.CMD_OPT_SEED_SHORT);
+                    runArgs.add(String.valueOf(new SecureRandom().nextLong()));
+                }
+                cmd = cmdlineParser.getTerminalArgHandler(runArgs.toArray(new String[0]));
+                if (cmd == null) {
+                    logger.severe("Failed to parse arguments of run " + userInputs.resumeRunId + ". Aborting.");
+                    return;
+                }
+                userInputs = new UserInputConfig(cmd);
+                if (runJournal == null) {
+                    runJournal = RunJournal.create(journalDir, RunJournal.newRunId(), runArgs);
+                }
+                // Flush the journal if the JVM is terminated (e.g. SIGTERM) part way through the run
+                Runtime.getRuntime().addShutdownHook(new Thread(runJournal::close));
+                System.out.println("Run ID: " + runJournal.getRunId() + " (resume with --resume "
+                        + runJournal.getRunId() + ")");
+                logger.info("Run journal: " + runJournal.getJournalPath());
+            }
+
             if (userInputs.seed != null) {
                 logger.info("Seed: " + userInputs.seed);
             } else {
@@ -85,7 +122,16 @@ public class LIBSDataController {
 
             // Note: The case where neither -s nor -c is provided is handled by CommonUtils.getTerminalArgHandler
 
-            libsDataService.generateDataset(materialGrades, userInputs, instrumentProfile);
+            // Browsers, caches and configuration of this run
+            generationSession = new GenerationSession(userInputs);
+
+            if (userInputs.validateSuperposition) {
+                // Compare superposed spectra against NIST instead of generating a dataset
+                libsDataService.validateSuperposition(generationSession, materialGrades, instrumentProfile);
+                return;
+            }
+
+            libsDataService.generateDataset(generationSession, materialGrades, instrumentProfile, runJournal);
 
             // After dataset generation, calculate statistics if requested
             if (userInputs.genStats) {
@@ -97,6 +143,15 @@ public class LIBSDataController {
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Exception occurred!", e);
             System.out.println("Could not process request. Please check logs for details or try again.");
+        } finally {
+            // Browser sessions are kept open across materials and closed once at the end of the run
+            if (generationSession != null) {
+                generationSession.close();
+            }
+            libsDataService.closeSessions();
+            if (runJournal != null) {
+                runJournal.close();
+            }
         }
 
     }
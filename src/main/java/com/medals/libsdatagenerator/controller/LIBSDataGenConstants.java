@@ -113,7 +113,62 @@ public class LIBSDataGenConstants {
     public static final String CMD_OPT_FORCE_FETCH_SHORT = "ff";
     public static final String CMD_OPT_FORCE_FETCH_LONG = "force-fetch";
     public static final String CMD_OPT_FORCE_FETCH_DESC = "Will force re-downloading of individual spectrum data " +
-            "for every composition even if data is available locally in the /data directory.";
+            "for every composition even if it is available in the local NIST spectrum cache. Freshly fetched spectra still " +
+            "refresh the cache.";
+    public static final String CMD_OPT_CACHE_DIR_SHORT = "cd";
+    public static final String CMD_OPT_CACHE_DIR_LONG = "cache-dir";
+    public static final String CMD_OPT_CACHE_DIR_DESC = "Directory for the persistent NIST spectrum cache. Can be " +
+            "shared between several concurrently running generator processes. Default: data/NIST LIBS/cache";
+    public static final String CMD_OPT_CACHE_SIZE_SHORT = "cs";
+    public static final String CMD_OPT_CACHE_SIZE_LONG = "cache-size";
+    public static final String CMD_OPT_CACHE_SIZE_DESC = "Size budget of the NIST spectrum cache in MB. Least recently " +
+            "used spectra are evicted once exceeded. Default: 2048";
+    public static final String DEFAULT_CACHE_SIZE_MB = "2048";
+    public static final String CMD_OPT_NIST_WORKERS_SHORT = "nw";
+    public static final String CMD_OPT_NIST_WORKERS_LONG = "nist-workers";
+    public static final String CMD_OPT_NIST_WORKERS_DESC = "Number of concurrent browser sessions used to fetch spectra " +
+            "from NIST LIBS. Compositions are spread across the sessions and written in their original order. Default: 1";
+    public static final String DEFAULT_NIST_WORKERS = "1";
+    public static final String CMD_OPT_NIST_RATE_SHORT = "nr";
+    public static final String CMD_OPT_NIST_RATE_LONG = "nist-rate";
+    public static final String CMD_OPT_NIST_RATE_DESC = "Maximum number of requests per second sent to NIST LIBS. " +
+            "Concurrency adapts below this ceiling (and the number of NIST workers) to NIST's latency and errors. " +
+            "Default: 2";
+    public static final String DEFAULT_NIST_RATE = "2";
+    public static final String CMD_OPT_PROCESSING_WORKERS_SHORT = "pw";
+    public static final String CMD_OPT_PROCESSING_WORKERS_LONG = "processing-workers";
+    public static final String CMD_OPT_PROCESSING_WORKERS_DESC = "Number of threads for each of the parse, resample " +
+            "and zone combination stages, which run concurrently with the NIST fetches. Default: number of CPU cores";
+    public static final String DEFAULT_PROCESSING_WORKERS = String.valueOf(Runtime.getRuntime().availableProcessors());
+    public static final String CMD_OPT_SUPERPOSITION_SHORT = "sp";
+    public static final String CMD_OPT_SUPERPOSITION_LONG = "superposition";
+    public static final String CMD_OPT_SUPERPOSITION_DESC = "Build every composition's spectrum locally as a " +
+            "concentration-weighted superposition of single-element basis spectra. Only one NIST fetch per element " +
+            "per plasma zone is made instead of one per composition per plasma zone.";
+    public static final String CMD_OPT_VALIDATE_SUPERPOSITION_SHORT = "vsp";
+    public static final String CMD_OPT_VALIDATE_SUPERPOSITION_LONG = "validate-superposition";
+    public static final String CMD_OPT_VALIDATE_SUPERPOSITION_DESC = "Compare superposed spectra against real NIST " +
+            "fetches for the input compositions and save an error report (RMSE, r^2) instead of generating a dataset.";
+    public static final String CMD_OPT_SPECIES_OUTPUT_SHORT = "so";
+    public static final String CMD_OPT_SPECIES_OUTPUT_LONG = "species-output";
+    public static final String CMD_OPT_SPECIES_OUTPUT_DESC = "Also save the species-resolved spectra (Fe I, Fe II, ...) " +
+            "of every composition to species_dataset.csv alongside the master dataset.";
+    public static final String CMD_OPT_OUTPUT_FORMAT_SHORT = "of";
+    public static final String CMD_OPT_OUTPUT_FORMAT_LONG = "output-format";
+    public static final String CMD_OPT_OUTPUT_FORMAT_DESC = "Format of the generated dataset. 1: master_dataset.csv " +
+            "(default), 2: NumPy .npy arrays in master_dataset_npy/, 3: NumPy master_dataset.npz archive";
+    public static final String CMD_OPT_NPY_DTYPE_SHORT = "dt";
+    public static final String CMD_OPT_NPY_DTYPE_LONG = "dtype";
+    public static final String CMD_OPT_NPY_DTYPE_DESC = "Floating point type of NumPy spectra. 1: float64 (default), " +
+            "2: float32";
+    public static final String CMD_OPT_RESUME_SHORT = "rs";
+    public static final String CMD_OPT_RESUME_LONG = "resume";
+    public static final String CMD_OPT_RESUME_DESC = "Resume an interrupted dataset generation run from its journal. " +
+            "Takes the run ID printed when the run started; all other options are taken from the original run.";
+    public static final String CMD_OPT_FETCH_ENGINE_SHORT = "fe";
+    public static final String CMD_OPT_FETCH_ENGINE_LONG = "fetch-engine";
+    public static final String CMD_OPT_FETCH_ENGINE_DESC = "Engine used to fetch spectra from NIST LIBS. 1: Direct HTTP " +
+            "request with headless browser fallback (default), 2: Headless browser only";
     public static final String CMD_OPT_SCALE_COATING_SHORT = "dsc";
     public static final String CMD_OPT_SCALE_COATING_LONG = "dont-scale-coating";
     public static final String CMD_OPT_SCALE_COATING_DESC = "Will scale down all other elements in the composition rather " +
@@ -204,6 +259,23 @@ public class LIBSDataGenConstants {
     public static final String CMD_OPT_BASELINE_ITER_SHORT = "bi";
     public static final String CMD_OPT_BASELINE_ITER_LONG = "max-iterations";
     public static final String CMD_OPT_BASELINE_ITER_DESC = "Baseline correction maximum iterations. Default: 10";
+    public static final String CMD_OPT_THREADS_SHORT = "t";
+    public static final String CMD_OPT_THREADS_LONG = "threads";
+    public static final String CMD_OPT_THREADS_DESC = "Number of threads for the plasma parameter grid search. " +
+            "Default: number of CPU cores";
+    public static final String CMD_OPT_WEIGHT_SOLVER_SHORT = "ws";
+    public static final String CMD_OPT_WEIGHT_SOLVER_LONG = "weight-solver";
+    public static final String CMD_OPT_WEIGHT_SOLVER_DESC = "Method used to find the plasma zone weights of every " +
+            "combination of zone parameters. 1: Grid of weights in steps of 0.05 (default), 2: Non-negative least squares fit";
+    public static final String CMD_OPT_PARAMETER_SEARCH_SHORT = "ps";
+    public static final String CMD_OPT_PARAMETER_SEARCH_LONG = "parameter-search";
+    public static final String CMD_OPT_PARAMETER_SEARCH_DESC = "Search over plasma temperature and electron density. " +
+            "1: Fixed grid of 7 Te x 6 Ne values (default), " +
+            "2: Adaptive search fetching NIST spectra only around the best fit so far, refined coarse to fine";
+    public static final String CMD_OPT_FETCH_BUDGET_SHORT = "fb";
+    public static final String CMD_OPT_FETCH_BUDGET_LONG = "fetch-budget";
+    public static final String CMD_OPT_FETCH_BUDGET_DESC = "Maximum number of NIST spectra fetched by the adaptive " +
+            "parameter search (-ps 2). Default: 30";
     public static final String CMD_OPT_HELP_SHORT = "h";
     public static final String CMD_OPT_HELP_LONG = "help";
     public static final String CMD_OPT_HELP_DESC = "Show this help message";
@@ -213,6 +285,7 @@ public class LIBSDataGenConstants {
      */
     public static final String NIST_LIBS_FORM_URL = "https://physics.nist.gov/PhysRefData/ASD/LIBS/libs-form.html";
     public static final String NIST_LIBS_DATA_DIR = "NIST LIBS";
+    public static final String NIST_LIBS_CACHE_DIR = "cache";
 
     // Form URL String Components
     public static final String NIST_LIBS_QUERY_URL_BASE = "https://physics.nist.gov/cgi-bin/ASD/lines1.pl";
@@ -234,6 +307,26 @@ public class LIBSDataGenConstants {
     public static final String NIST_LIBS_QUERY_PARAM_LIBS = "libs";
 
     public static final String NIST_LIBS_GET_CSV_BUTTON_HTML_TEXT = "ViewDataCSV";
+    // Value submitted by the "Download CSV" button. Sent as a query param by the HTTP fetch engine to get CSV output.
+    public static final String NIST_LIBS_GET_CSV_BUTTON_VALUE = "Download CSV";
+    public static final int NIST_LIBS_HTTP_TIMEOUT_SECONDS = 60;
+    // NIST request scheduler: endpoints, AIMD tuning and back-off after a throttling response
+    public static final String NIST_ENDPOINT_HTTP = "http";
+    public static final String NIST_ENDPOINT_BROWSER = "browser";
+    public static final double NIST_SCHEDULER_DECREASE_FACTOR = 0.5;
+    // Recent latency above this multiple of the long-run average counts as congestion
+    public static final double NIST_SCHEDULER_LATENCY_TOLERANCE = 2.0;
+    public static final double NIST_SCHEDULER_LONG_LATENCY_WEIGHT = 0.05;
+    public static final double NIST_SCHEDULER_SHORT_LATENCY_WEIGHT = 0.3;
+    public static final int NIST_SCHEDULER_WARMUP_REQUESTS = 5;
+    public static final long NIST_SCHEDULER_THROTTLE_BACKOFF_MILLIS = 5000;
+    // Circuit breaker pausing NIST fetches during outages (open period doubles after every failed trial fetch)
+    public static final int NIST_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+    public static final long NIST_CIRCUIT_BREAKER_OPEN_MILLIS = 30000;
+    public static final long NIST_CIRCUIT_BREAKER_MAX_OPEN_MILLIS = 600000;
+    // Deferred retries of compositions whose spectra could not be fetched (backoff doubles every round)
+    public static final int NIST_RETRY_ROUNDS = 3;
+    public static final long NIST_RETRY_BACKOFF_MILLIS = 10000;
 
     // HTML element selectors for recalculation form
     public static final String NIST_LIBS_RECALC_RESOLUTION_INPUT_NAME = "resolution";
@@ -268,6 +361,10 @@ public class LIBSDataGenConstants {
      * #### Instrument Profile Calibration Constants ####
      */
     public static final String CALIBRATION_DIR = "calibration";
+    // Adaptive plasma parameter search: points per axis of the coarse grid and smallest refinement steps
+    public static final int CALIBRATION_COARSE_GRID_POINTS = 3;
+    public static final double CALIBRATION_MIN_TE_STEP = 0.05;
+    public static final double CALIBRATION_MIN_LOG_NE_STEP = 0.05;
     public static final String CALIBRATION_REPORT_TEMPLATE_FILE = "calibration_report_template.ipynb";
     public static final String CALIBRATION_REPORT_OUTPUT_FILE = "calibration_report";
     public static final String INSTRUMENT_PROFILE_JSON_FILE = "instrument_profile.json";
@@ -285,6 +382,24 @@ public class LIBSDataGenConstants {
      * #### Miscellaneous Constants ####
      */
     public static final String MASTER_DATASET_FILENAME = "master_dataset.csv";
+    public static final String SUPERPOSITION_VALIDATION_FILENAME = "superposition_validation.csv";
+    public static final String SPECIES_DATASET_FILENAME = "species_dataset.csv";
+    public static final String NPY_DATASET_DIR = "master_dataset_npy";
+    public static final String NPZ_DATASET_FILENAME = "master_dataset.npz";
+    public static final String NPZ_STAGING_DIR = "master_dataset.npz.parts";
+    public static final String NPY_SPECTRA_FILENAME = "spectra.npy";
+    public static final String NPY_WAVELENGTHS_FILENAME = "wavelengths.npy";
+    public static final String NPY_COMPOSITIONS_FILENAME = "compositions.npy";
+    public static final String NPY_ELEMENTS_FILENAME = "elements.npy";
+    public static final String NPY_COMPOSITION_IDS_FILENAME = "composition_ids.npy";
+    public static final String NPY_EXTENSION = ".npy";
+    public static final int NPY_COMPOSITION_ID_WIDTH = 256;
+    public static final int NPY_CLASS_LABEL_WIDTH = 128;
+    public static final String RUN_JOURNAL_DIR = "runs";
+    public static final String RUN_JOURNAL_EXTENSION = ".journal";
+    // Resampling plans kept per (source grid, target grid) pair; one per NIST wavelength window in practice
+    public static final int RESAMPLING_PLAN_CACHE_SIZE = 32;
+    public static final String CSV_HEADER_SPECIES = "species";
     public static final String INPUT_COMPOSITION_STRING_REGEX = "^([A-Za-z]{1,2}-((100(\\.0{1,5})?|[0-9]{1,2}(\\.\\d{1,5})?)%?|[#]))(?:,([A-Za-z]{1,2}-((100(\\.0{1,5})?|[0-9]{1,2}(\\.\\d{1,5})?)%?|[#])))*$";
     public static final String COATED_SERIES_KEY_PATTERN = "([A-Za-z]+)-([0-9]+(?:\\.[0-9]+)?)\\.coated\\.(.*?)";
     public static final String DIRECT_ENTRY = "Direct-entry"; // Used to mark MatGUID series list entry via -c option
@@ -295,6 +410,7 @@ public class LIBSDataGenConstants {
     public static final String SPECTRAL_DATA_MAP_KEY_SPECTRA = "spectrum";
     public static final String SPECTRAL_DATA_MAP_KEY_COMPOSITIONS = "compositions";
     public static final String SPECTRAL_DATA_MAP_KEY_WAVELENGTHS = "wavelengths";
+    public static final String SPECTRAL_DATA_MAP_KEY_SPECIES = "species";
     public static final String MATERIALS_CATALOGUE_FILE_NAME = "materials_catalogue.properties";
     public static final String DATASET_STATISTICS_FILE_NAME = "dataset_stats.json";
 
@@ -0,0 +1,61 @@
+package com.medals.libsdatagenerator.model;
+
+import java.util.Map;
+
+/**
+ * One row of the generated dataset: the combined multi-zone spectrum of a composition on the instrument wavelength
+ * grid, its element percentages and class labels, and optionally its species-resolved spectra.
+ */
+public class DatasetRow {
+
+    private final String compositionId;
+    private final double[] spectrum;
+    // Element symbol -> percentage
+    private final Map<String, Double> composition;
+    // Class label column name -> label, in column order
+    private final Map<String, String> classLabels;
+    // Species (e.g. Fe I) -> intensities on the instrument grid; null if species output is off
+    private Map<String, double[]> species;
+
+    public DatasetRow(String compositionId, double[] spectrum, Map<String, Double> composition,
+                      Map<String, String> classLabels) {
+        this.compositionId = compositionId;
+        this.spectrum = spectrum;
+        this.composition = composition;
+        this.classLabels = classLabels;
+    }
+
+    public String getCompositionId() {
+        return compositionId;
+    }
+
+    /**
+     * @return Combined spectrum intensities (not copied)
+     */
+    public double[] getSpectrum() {
+        return spectrum;
+    }
+
+    /**
+     * @return True if the row holds no spectrum (e.g. a plasma zone could not be fetched)
+     */
+    public boolean isEmpty() {
+        return spectrum == null || spectrum.length == 0;
+    }
+
+    public Map<String, Double> getComposition() {
+        return composition;
+    }
+
+    public Map<String, String> getClassLabels() {
+        return classLabels;
+    }
+
+    public Map<String, double[]> getSpecies() {
+        return species;
+    }
+
+    public void setSpecies(Map<String, double[]> species) {
+        this.species = species;
+    }
+}
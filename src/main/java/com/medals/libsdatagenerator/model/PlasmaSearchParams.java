@@ -0,0 +1,75 @@
+package com.medals.libsdatagenerator.model;
+
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.ParameterSearch;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.WeightSolver;
+
+/**
+ * Settings of the plasma zone parameter search of instrument profile calibration.
+ */
+public class PlasmaSearchParams {
+
+    // Default parameters for the search
+    public static final int DEFAULT_FETCH_BUDGET = 30;
+
+    private ParameterSearch parameterSearch;
+    private WeightSolver weightSolver;
+    private int fetchBudget;
+    private int threads;
+
+    public PlasmaSearchParams() {
+        this(ParameterSearch.GRID, WeightSolver.GRID, DEFAULT_FETCH_BUDGET,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parameterSearch How the Te/Ne space is searched
+     * @param weightSolver    How the zone weights of every combination of zone parameters are found
+     * @param fetchBudget     Maximum number of NIST spectra fetched by the adaptive search
+     * @param threads         Number of threads combinations are scored on
+     */
+    public PlasmaSearchParams(ParameterSearch parameterSearch, WeightSolver weightSolver, int fetchBudget,
+                              int threads) {
+        if (fetchBudget < 1) {
+            throw new IllegalArgumentException("Fetch budget must be at least 1");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        }
+        this.parameterSearch = parameterSearch;
+        this.weightSolver = weightSolver;
+        this.fetchBudget = fetchBudget;
+        this.threads = threads;
+    }
+
+    public ParameterSearch getParameterSearch() {
+        return parameterSearch;
+    }
+
+    public void setParameterSearch(ParameterSearch parameterSearch) {
+        this.parameterSearch = parameterSearch;
+    }
+
+    public WeightSolver getWeightSolver() {
+        return weightSolver;
+    }
+
+    public void setWeightSolver(WeightSolver weightSolver) {
+        this.weightSolver = weightSolver;
+    }
+
+    public int getFetchBudget() {
+        return fetchBudget;
+    }
+
+    public void setFetchBudget(int fetchBudget) {
+        this.fetchBudget = fetchBudget;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+}
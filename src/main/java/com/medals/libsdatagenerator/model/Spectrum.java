@@ -1,6 +1,8 @@
 package com.medals.libsdatagenerator.model;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.logging.Logger;
 
@@ -9,6 +11,9 @@ public class Spectrum {
 
     double[] wavelengths;
     double[] intensities;
+    // Per-species intensities (e.g. "Fe I", "Fe II") aligned with wavelengths, in NIST CSV column order.
+    // The species columns add up to the total (Sum) intensities.
+    Map<String, double[]> speciesIntensities = new LinkedHashMap<>();
 
     public Spectrum() {}
 
@@ -17,6 +22,12 @@ public class Spectrum {
         this.intensities = intensities;
     }
 
+    public Spectrum(double[] wavelengths, double[] intensities, Map<String, double[]> speciesIntensities) {
+        this.wavelengths = wavelengths;
+        this.intensities = intensities;
+        this.speciesIntensities = new LinkedHashMap<>(speciesIntensities);
+    }
+
     public Spectrum(Map<Double, Double> waveMap) {
         // Ensuring waveMap is sorted
         TreeMap<Double, Double> sortedWaveMap = new TreeMap<>(waveMap);
@@ -47,4 +58,28 @@ public class Spectrum {
     public void setWavelengths(double[] wavelengths) {
         this.wavelengths = wavelengths;
     }
+
+    public Map<String, double[]> getSpeciesIntensities() {
+        return speciesIntensities;
+    }
+
+    /**
+     * @param species Species label as in the NIST CSV header, e.g. "Fe II"
+     * @return Intensities of the species aligned with the wavelengths, or null if the species is not present
+     */
+    public double[] getSpeciesIntensities(String species) {
+        return speciesIntensities.get(species);
+    }
+
+    public void setSpeciesIntensities(Map<String, double[]> speciesIntensities) {
+        this.speciesIntensities = new LinkedHashMap<>(speciesIntensities);
+    }
+
+    public Set<String> getSpecies() {
+        return speciesIntensities.keySet();
+    }
+
+    public boolean hasSpecies() {
+        return !speciesIntensities.isEmpty();
+    }
 }
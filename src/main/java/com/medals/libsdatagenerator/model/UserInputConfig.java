@@ -2,15 +2,20 @@ package com.medals.libsdatagenerator.model;
 
 import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
 import com.medals.libsdatagenerator.model.nist.NistUrlOptions.ClassLabelType;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.FetchEngine;
 import com.medals.libsdatagenerator.model.nist.NistUrlOptions.IntensityScale;
 import com.medals.libsdatagenerator.model.nist.NistUrlOptions.MaxIonCharge;
 import com.medals.libsdatagenerator.model.nist.NistUrlOptions.MinRelativeIntensity;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.NpyDtype;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.OutputFormat;
 import com.medals.libsdatagenerator.model.nist.NistUrlOptions.VariationMode;
 import com.medals.libsdatagenerator.model.nist.NistUrlOptions.WavelengthCondition;
 import com.medals.libsdatagenerator.model.nist.NistUrlOptions.WavelengthUnit;
 import com.medals.libsdatagenerator.util.CommonUtils;
 import org.apache.commons.cli.CommandLine;
 
+import java.nio.file.Paths;
+
 /**
  * A single, immutable configuration object that holds all user-provided parameters.
  * @author Siddharth Prince | 02:47
@@ -47,14 +52,29 @@ public class UserInputConfig {
     public MaxIonCharge maxIonCharge;
     public MinRelativeIntensity minRelativeIntensity;
     public IntensityScale intensityScale;
+    public FetchEngine fetchEngine;
 
     // --- File/Execution Parameters ---
     public String csvDirPath;
     public boolean appendMode;
     public boolean forceFetch;
+    public String cacheDirPath;
+    public long cacheMaxSizeMb;
+    public int nistWorkers;
+    public double nistRate;
+    public int processingWorkers;
+    public boolean superposition;
+    public boolean validateSuperposition;
+    public boolean speciesOutput;
+    public OutputFormat outputFormat;
+    public NpyDtype npyDtype;
+    public String resumeRunId;
     public boolean genStats;
     public boolean noInstrumentProfile;
     private static boolean debugMode;
+
+    public static final String DEFAULT_CACHE_DIR_PATH = Paths.get(CommonUtils.DATA_PATH,
+            LIBSDataGenConstants.NIST_LIBS_DATA_DIR, LIBSDataGenConstants.NIST_LIBS_CACHE_DIR).toString();
     
     /**
      * Default constructor for manual configuration.
@@ -86,10 +106,22 @@ public class UserInputConfig {
         this.maxIonCharge = MaxIonCharge.TWO_PLUS;
         this.minRelativeIntensity = MinRelativeIntensity.POINT_ZERO_ONE;
         this.intensityScale = IntensityScale.ENERGY_FLUX;
+        this.fetchEngine = FetchEngine.HTTP;
         
         this.csvDirPath = CommonUtils.DATA_PATH;
         this.appendMode = true;
         this.forceFetch = false;
+        this.cacheDirPath = DEFAULT_CACHE_DIR_PATH;
+        this.cacheMaxSizeMb = Long.parseLong(LIBSDataGenConstants.DEFAULT_CACHE_SIZE_MB);
+        this.nistWorkers = Integer.parseInt(LIBSDataGenConstants.DEFAULT_NIST_WORKERS);
+        this.nistRate = Double.parseDouble(LIBSDataGenConstants.DEFAULT_NIST_RATE);
+        this.processingWorkers = Integer.parseInt(LIBSDataGenConstants.DEFAULT_PROCESSING_WORKERS);
+        this.superposition = false;
+        this.validateSuperposition = false;
+        this.speciesOutput = false;
+        this.outputFormat = OutputFormat.CSV;
+        this.npyDtype = NpyDtype.FLOAT64;
+        this.resumeRunId = null;
         this.genStats = false;
         this.noInstrumentProfile = true;
         UserInputConfig.debugMode = false;
@@ -146,16 +178,104 @@ public class UserInputConfig {
         this.maxIonCharge = MaxIonCharge.fromOption(Integer.parseInt(cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_MAX_ION_CHARGE_SHORT, "2")));
         this.minRelativeIntensity = MinRelativeIntensity.fromOption(Integer.parseInt(cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_MIN_RELATIVE_INTENSITY_SHORT, "3")));
         this.intensityScale = IntensityScale.fromOption(Integer.parseInt(cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_INTENSITY_SCALE_SHORT, "1")));
+        this.fetchEngine = FetchEngine.fromOption(Integer.parseInt(cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_FETCH_ENGINE_SHORT, "1")));
 
         // File/Execution parameters
         this.csvDirPath = cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_OUTPUT_PATH_SHORT, CommonUtils.DATA_PATH);
         this.appendMode = !cmd.hasOption(LIBSDataGenConstants.CMD_OPT_NO_APPEND_MODE_SHORT);
         this.forceFetch = cmd.hasOption(LIBSDataGenConstants.CMD_OPT_FORCE_FETCH_SHORT);
+        this.cacheDirPath = cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_CACHE_DIR_SHORT, DEFAULT_CACHE_DIR_PATH);
+        try {
+            this.cacheMaxSizeMb = Long.parseLong(cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_CACHE_SIZE_SHORT, LIBSDataGenConstants.DEFAULT_CACHE_SIZE_MB));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cache size. Must be a valid integer number of MB.", e);
+        }
+        try {
+            this.nistWorkers = Integer.parseInt(cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_NIST_WORKERS_SHORT, LIBSDataGenConstants.DEFAULT_NIST_WORKERS));
+            if (this.nistWorkers < 1) {
+                throw new IllegalArgumentException("Invalid number of NIST workers. Must be a positive integer.");
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of NIST workers. Must be a positive integer.", e);
+        }
+        try {
+            this.nistRate = Double.parseDouble(cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_NIST_RATE_SHORT, LIBSDataGenConstants.DEFAULT_NIST_RATE));
+            if (!(this.nistRate > 0)) {
+                throw new IllegalArgumentException("Invalid NIST request rate. Must be a positive number of requests per second.");
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid NIST request rate. Must be a positive number of requests per second.", e);
+        }
+        try {
+            this.processingWorkers = Integer.parseInt(cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_PROCESSING_WORKERS_SHORT, LIBSDataGenConstants.DEFAULT_PROCESSING_WORKERS));
+            if (this.processingWorkers < 1) {
+                throw new IllegalArgumentException("Invalid number of processing workers. Must be a positive integer.");
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of processing workers. Must be a positive integer.", e);
+        }
+        this.superposition = cmd.hasOption(LIBSDataGenConstants.CMD_OPT_SUPERPOSITION_SHORT);
+        this.validateSuperposition = cmd.hasOption(LIBSDataGenConstants.CMD_OPT_VALIDATE_SUPERPOSITION_SHORT);
+        this.speciesOutput = cmd.hasOption(LIBSDataGenConstants.CMD_OPT_SPECIES_OUTPUT_SHORT);
+        this.outputFormat = OutputFormat.fromOption(Integer.parseInt(cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_OUTPUT_FORMAT_SHORT, "1")));
+        this.npyDtype = NpyDtype.fromOption(Integer.parseInt(cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_NPY_DTYPE_SHORT, "1")));
+        this.resumeRunId = cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_RESUME_SHORT);
         this.genStats = cmd.hasOption(LIBSDataGenConstants.CMD_OPT_GEN_STATS_SHORT);
         this.noInstrumentProfile = cmd.hasOption(LIBSDataGenConstants.CMD_OPT_NO_INSTRUMENT_PROFILE_SHORT);
         debugMode = cmd.hasOption(LIBSDataGenConstants.CMD_OPT_DEBUG_MODE_SHORT);
     }
 
+    /**
+     * Copy constructor. Used to give each concurrent NIST fetch its own mutable copy of the NIST API parameters
+     * (plasma temperature and electron density are overwritten per plasma zone).
+     */
+    public UserInputConfig(UserInputConfig other) {
+        this.compositionInput = other.compositionInput;
+        this.overviewGuid = other.overviewGuid;
+        this.isCompositionMode = other.isCompositionMode;
+        this.isSeriesMode = other.isSeriesMode;
+
+        this.performVariations = other.performVariations;
+        this.numSamples = other.numSamples;
+        this.variationMode = other.variationMode;
+        this.classLabelType = other.classLabelType;
+        this.classLabelTypeExplicitlySet = other.classLabelTypeExplicitlySet;
+        this.scaleCoating = other.scaleCoating;
+        this.seed = other.seed;
+        this.numDecimalPlaces = other.numDecimalPlaces;
+        this.varyBy = other.varyBy;
+        this.maxDelta = other.maxDelta;
+
+        this.minWavelength = other.minWavelength;
+        this.maxWavelength = other.maxWavelength;
+        this.resolution = other.resolution;
+        this.plasmaTemp = other.plasmaTemp;
+        this.electronDensity = other.electronDensity;
+        this.wavelengthUnit = other.wavelengthUnit;
+        this.wavelengthCondition = other.wavelengthCondition;
+        this.maxIonCharge = other.maxIonCharge;
+        this.minRelativeIntensity = other.minRelativeIntensity;
+        this.intensityScale = other.intensityScale;
+        this.fetchEngine = other.fetchEngine;
+
+        this.csvDirPath = other.csvDirPath;
+        this.appendMode = other.appendMode;
+        this.forceFetch = other.forceFetch;
+        this.cacheDirPath = other.cacheDirPath;
+        this.cacheMaxSizeMb = other.cacheMaxSizeMb;
+        this.nistWorkers = other.nistWorkers;
+        this.nistRate = other.nistRate;
+        this.processingWorkers = other.processingWorkers;
+        this.superposition = other.superposition;
+        this.validateSuperposition = other.validateSuperposition;
+        this.speciesOutput = other.speciesOutput;
+        this.outputFormat = other.outputFormat;
+        this.npyDtype = other.npyDtype;
+        this.resumeRunId = other.resumeRunId;
+        this.genStats = other.genStats;
+        this.noInstrumentProfile = other.noInstrumentProfile;
+    }
+
     public static boolean debugModeEnabled() {
         return debugMode;
     }
@@ -0,0 +1,107 @@
+package com.medals.libsdatagenerator.model.nist;
+
+import com.medals.libsdatagenerator.model.Element;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * State of the NIST LIBS recalculation form shown in a browser session: element percentages, plasma temperature,
+ * electron density and resolution. The set of elements is fixed by the server request that loaded the page; everything
+ * else can be changed through client-side recalculation.
+ */
+public class NistFormState {
+
+    // Element symbol -> percentage, in composition order
+    private final Map<String, Double> percentages;
+    private final double electronTemp;
+    private final double electronDensity;
+    // Null if the resolution shown on the page is unknown
+    private final String resolution;
+
+    /**
+     * @param composition     Element percentages
+     * @param electronTemp    Plasma temperature (eV)
+     * @param electronDensity Electron density (cm^-3)
+     * @param resolution      Resolution (null if unknown)
+     */
+    public NistFormState(List<Element> composition, double electronTemp, double electronDensity, String resolution) {
+        Map<String, Double> elementPercentages = new LinkedHashMap<>();
+        for (Element element : composition) {
+            elementPercentages.put(element.getSymbol(), element.getPercentageComposition());
+        }
+        this.percentages = Collections.unmodifiableMap(elementPercentages);
+        this.electronTemp = electronTemp;
+        this.electronDensity = electronDensity;
+        this.resolution = resolution;
+    }
+
+    /**
+     * @return True if both forms hold the same set of elements, i.e. one can be turned into the other by
+     * client-side recalculation
+     */
+    public boolean hasSameElements(NistFormState other) {
+        return other != null && percentages.keySet().equals(other.percentages.keySet());
+    }
+
+    /**
+     * @return Percentages of the target form that differ from this form, keyed by element symbol
+     */
+    public Map<String, Double> changedPercentages(NistFormState target) {
+        Map<String, Double> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> entry : target.percentages.entrySet()) {
+            if (!Objects.equals(percentages.get(entry.getKey()), entry.getValue())) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changed;
+    }
+
+    public Set<String> getElements() {
+        return percentages.keySet();
+    }
+
+    public Map<String, Double> getPercentages() {
+        return percentages;
+    }
+
+    public double getElectronTemp() {
+        return electronTemp;
+    }
+
+    public double getElectronDensity() {
+        return electronDensity;
+    }
+
+    public String getResolution() {
+        return resolution;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NistFormState other)) {
+            return false;
+        }
+        return Double.compare(electronTemp, other.electronTemp) == 0
+                && Double.compare(electronDensity, other.electronDensity) == 0
+                && percentages.equals(other.percentages)
+                && Objects.equals(resolution, other.resolution);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(percentages, electronTemp, electronDensity, resolution);
+    }
+
+    @Override
+    public String toString() {
+        return percentages + ", Te=" + electronTemp + " eV, Ne=" + electronDensity + " cm^-3, resolution=" + resolution;
+    }
+}
@@ -186,4 +186,118 @@ public class NistUrlOptions {
             return NistUrlOptions.fromOption(values(), option, COMPOSITION_PERCENTAGE);
         }
     }
+
+    public enum FetchEngine implements UserSelectable {
+        HTTP(1, "Direct HTTP request"), // Default - falls back to SELENIUM on failure
+        SELENIUM(2, "Headless browser");
+
+        private final int userOption;
+        private final String description;
+
+        FetchEngine(int userOption, String description) {
+            this.userOption = userOption;
+            this.description = description;
+        }
+
+        @Override
+        public int getUserOption() { return userOption; }
+
+        public String getDescription() { return description; }
+
+        public static FetchEngine fromOption(int option) {
+            return NistUrlOptions.fromOption(values(), option, HTTP);
+        }
+    }
+
+    public enum OutputFormat implements UserSelectable {
+        CSV(1, "CSV"), // Default
+        NPY(2, "NumPy .npy arrays"),
+        NPZ(3, "NumPy .npz archive");
+
+        private final int userOption;
+        private final String description;
+
+        OutputFormat(int userOption, String description) {
+            this.userOption = userOption;
+            this.description = description;
+        }
+
+        @Override
+        public int getUserOption() { return userOption; }
+
+        public String getDescription() { return description; }
+
+        public static OutputFormat fromOption(int option) {
+            return NistUrlOptions.fromOption(values(), option, CSV);
+        }
+    }
+
+    public enum NpyDtype implements UserSelectable {
+        FLOAT64(1, "<f8"), // Default
+        FLOAT32(2, "<f4");
+
+        private final int userOption;
+        private final String descr;
+
+        NpyDtype(int userOption, String descr) {
+            this.userOption = userOption;
+            this.descr = descr;
+        }
+
+        @Override
+        public int getUserOption() { return userOption; }
+
+        /**
+         * @return NumPy dtype descriptor
+         */
+        public String getDescr() { return descr; }
+
+        public static NpyDtype fromOption(int option) {
+            return NistUrlOptions.fromOption(values(), option, FLOAT64);
+        }
+    }
+
+    public enum WeightSolver implements UserSelectable {
+        GRID(1, "Grid of weights in steps of 0.05"), // Default
+        NNLS(2, "Non-negative least squares");
+
+        private final int userOption;
+        private final String description;
+
+        WeightSolver(int userOption, String description) {
+            this.userOption = userOption;
+            this.description = description;
+        }
+
+        @Override
+        public int getUserOption() { return userOption; }
+
+        public String getDescription() { return description; }
+
+        public static WeightSolver fromOption(int option) {
+            return NistUrlOptions.fromOption(values(), option, GRID);
+        }
+    }
+
+    public enum ParameterSearch implements UserSelectable {
+        GRID(1, "Fixed grid"), // Default
+        ADAPTIVE(2, "Adaptive coarse-to-fine search");
+
+        private final int userOption;
+        private final String description;
+
+        ParameterSearch(int userOption, String description) {
+            this.userOption = userOption;
+            this.description = description;
+        }
+
+        @Override
+        public int getUserOption() { return userOption; }
+
+        public String getDescription() { return description; }
+
+        public static ParameterSearch fromOption(int option) {
+            return NistUrlOptions.fromOption(values(), option, GRID);
+        }
+    }
 }
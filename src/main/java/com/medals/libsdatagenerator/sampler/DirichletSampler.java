@@ -21,7 +21,7 @@ public class DirichletSampler implements Sampler {
 
     private static DirichletSampler instance = null;
 
-    public static DirichletSampler getInstance() {
+    public static synchronized DirichletSampler getInstance() {
         if (instance == null) {
             instance = new DirichletSampler();
         }
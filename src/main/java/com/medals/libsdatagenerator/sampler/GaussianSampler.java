@@ -22,7 +22,7 @@ public class GaussianSampler implements Sampler {
 
     private static GaussianSampler instance = null;
 
-    public static GaussianSampler getInstance() {
+    public static synchronized GaussianSampler getInstance() {
         if (instance == null) {
             instance = new GaussianSampler();
         }
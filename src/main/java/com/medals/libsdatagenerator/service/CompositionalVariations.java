@@ -27,7 +27,7 @@ public class CompositionalVariations {
         commonUtils = new CommonUtils();
     }
 
-    public static CompositionalVariations getInstance() {
+    public static synchronized CompositionalVariations getInstance() {
         if (instance == null) {
             instance = new CompositionalVariations();
         }
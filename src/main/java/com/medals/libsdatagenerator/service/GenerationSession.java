@@ -0,0 +1,180 @@
+package com.medals.libsdatagenerator.service;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import com.medals.libsdatagenerator.model.InstrumentProfile;
+import com.medals.libsdatagenerator.model.UserInputConfig;
+import com.medals.libsdatagenerator.util.CircuitBreaker;
+import com.medals.libsdatagenerator.util.NistHttpClient;
+import com.medals.libsdatagenerator.util.NistRequestScheduler;
+import com.medals.libsdatagenerator.util.NistSession;
+import com.medals.libsdatagenerator.util.SeleniumSessionPool;
+import com.medals.libsdatagenerator.util.SpectrumCache;
+
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Everything one dataset generation (or calibration) run owns: a copy of its configuration, its NIST browser
+ * sessions with their form state, the HTTP client, the NIST request scheduler and circuit breaker, the spectrum cache
+ * and the basis spectra of superposition mode.
+ * <p>
+ * The services ({@link LIBSDataService}, {@link SuperpositionService}, the samplers) hold no run state of their own,
+ * so several sessions can run in the same JVM at once, each with its own browsers and configuration. Sampling is
+ * seeded from the session's configuration for every material, so it needs no shared random generator either.
+ * Resources are created on first use and released by {@link #close()}.
+ */
+public class GenerationSession implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(GenerationSession.class.getName());
+
+    private final UserInputConfig config;
+
+    private SeleniumSessionPool sessionPool = null;
+    private NistSession defaultSession = null;
+    private SpectrumCache spectrumCache = null;
+    private NistHttpClient nistHttpClient = null;
+    private NistRequestScheduler requestScheduler = null;
+    private CircuitBreaker circuitBreaker = null;
+
+    // Element symbol -> raw basis spectrum (100% of the element) per plasma zone, interpolated to the instrument grid
+    private final Map<String, double[][]> basisSpectra = new ConcurrentHashMap<>();
+    // Instrument profile the basis spectra were computed for (zones and wavelength grid)
+    private InstrumentProfile basisProfile = null;
+
+    private boolean closed = false;
+
+    /**
+     * @param config Configuration of the run. Copied, so later changes by the caller do not affect the session.
+     */
+    public GenerationSession(UserInputConfig config) {
+        this.config = new UserInputConfig(config);
+    }
+
+    public UserInputConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the session's pool of browser sessions, with one browser per NIST worker. The pool (and the NIST pages
+     * loaded in it) is kept across materials until the session is closed.
+     */
+    public synchronized SeleniumSessionPool getSessionPool() {
+        checkOpen();
+        if (sessionPool == null) {
+            sessionPool = new SeleniumSessionPool(config.nistWorkers);
+        }
+        return sessionPool;
+    }
+
+    /**
+     * Returns the browser session used by callers that fetch one spectrum at a time (e.g. instrument profile
+     * calibration).
+     */
+    public synchronized NistSession getDefaultSession() {
+        checkOpen();
+        if (defaultSession == null) {
+            defaultSession = new NistSession(0);
+        }
+        return defaultSession;
+    }
+
+    /**
+     * Returns the spectrum cache in the configured cache directory. The cache directory itself may be shared with
+     * other sessions and processes.
+     */
+    public synchronized SpectrumCache getSpectrumCache() {
+        checkOpen();
+        if (spectrumCache == null) {
+            spectrumCache = new SpectrumCache(Paths.get(config.cacheDirPath), config.cacheMaxSizeMb * 1024L * 1024L);
+        }
+        return spectrumCache;
+    }
+
+    /**
+     * Returns the HTTP client for the browserless fetch engine, with one connection per NIST worker.
+     */
+    public synchronized NistHttpClient getNistHttpClient() {
+        checkOpen();
+        if (nistHttpClient == null) {
+            nistHttpClient = new NistHttpClient(config.nistWorkers, getRequestScheduler());
+        }
+        return nistHttpClient;
+    }
+
+    /**
+     * Returns the scheduler all of the session's NIST requests (HTTP and browser) go through, limited to the
+     * configured request rate and at most one request per NIST worker.
+     */
+    public synchronized NistRequestScheduler getRequestScheduler() {
+        checkOpen();
+        if (requestScheduler == null) {
+            requestScheduler = new NistRequestScheduler(config.nistRate, config.nistWorkers);
+        }
+        return requestScheduler;
+    }
+
+    /**
+     * Returns the circuit breaker that pauses the session's spectrum fetches while NIST is down.
+     */
+    public synchronized CircuitBreaker getCircuitBreaker() {
+        checkOpen();
+        if (circuitBreaker == null) {
+            circuitBreaker = new CircuitBreaker("NIST", LIBSDataGenConstants.NIST_CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+                    LIBSDataGenConstants.NIST_CIRCUIT_BREAKER_OPEN_MILLIS,
+                    LIBSDataGenConstants.NIST_CIRCUIT_BREAKER_MAX_OPEN_MILLIS);
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * Returns the basis spectra fetched so far for the given instrument profile. Spectra fetched for a different
+     * profile are dropped, as they were interpolated onto its zones and wavelength grid.
+     */
+    synchronized Map<String, double[][]> getBasisSpectra(InstrumentProfile instrumentProfile) {
+        if (basisProfile != instrumentProfile) {
+            basisSpectra.clear();
+            basisProfile = instrumentProfile;
+        }
+        return basisSpectra;
+    }
+
+    /**
+     * Closes every browser opened by the session. The session cannot be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (sessionPool != null) {
+            sessionPool.close();
+            sessionPool = null;
+        }
+        if (defaultSession != null) {
+            defaultSession.quit();
+            defaultSession = null;
+        }
+        if (nistHttpClient != null) {
+            nistHttpClient.close();
+            nistHttpClient = null;
+        }
+        if (requestScheduler != null) {
+            for (NistRequestScheduler.EndpointStats stats : requestScheduler.getStats()) {
+                logger.info("NIST requests over " + stats);
+            }
+        }
+        if (circuitBreaker != null && circuitBreaker.getTrips() > 0) {
+            logger.info("NIST fetches were paused " + circuitBreaker.getTrips() + " time(s) during outages");
+        }
+        logger.fine("Generation session closed");
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Generation session is closed");
+        }
+    }
+}
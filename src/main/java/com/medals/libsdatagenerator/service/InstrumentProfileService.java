@@ -3,16 +3,23 @@ package com.medals.libsdatagenerator.service;
 import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
 import com.medals.libsdatagenerator.model.BaselineCorrectionParams;
 import com.medals.libsdatagenerator.model.InstrumentProfile;
+import com.medals.libsdatagenerator.model.PlasmaSearchParams;
 import com.medals.libsdatagenerator.model.PlasmaZone;
 import com.medals.libsdatagenerator.model.Spectrum;
 import com.medals.libsdatagenerator.model.UserInputConfig;
 import com.medals.libsdatagenerator.model.matweb.MaterialGrade;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.ParameterSearch;
 import com.medals.libsdatagenerator.model.nist.NistUrlOptions.WavelengthUnit;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.WeightSolver;
 import com.medals.libsdatagenerator.util.CommonUtils;
+import com.medals.libsdatagenerator.util.Compositions;
+import com.medals.libsdatagenerator.util.GramScorer;
+import com.medals.libsdatagenerator.util.IndexedCombinations;
 import com.medals.libsdatagenerator.util.InputCompositionProcessor;
 import com.medals.libsdatagenerator.util.NISTUtils;
+import com.medals.libsdatagenerator.util.NnlsSolver;
+import com.medals.libsdatagenerator.util.NonIncreasingSequences;
 import com.medals.libsdatagenerator.util.PythonUtils;
-import com.medals.libsdatagenerator.util.SeleniumUtils;
 import com.medals.libsdatagenerator.util.SpectrumUtils;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -24,15 +31,21 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,7 +62,15 @@ public class InstrumentProfileService {
 
     private static InstrumentProfileService instance = null;
 
-    public static InstrumentProfileService getInstance() {
+    // Te/Ne grid of the fixed grid search; its bounds are the bounds of the adaptive search
+    private static final double[] TE_VALUES = { 0.5, 0.8, 1.0, 1.2, 1.5, 1.7, 2.0 };
+    private static final double[] NE_EXPONENTS = { 15.0, 15.5, 16.0, 16.5, 17.0, 17.5 };
+    // Grid search tasks per thread; fewer, larger tasks prune more combinations without a full score
+    private static final int GRID_SEARCH_TASKS_PER_THREAD = 8;
+    // Weight grid of the grid weight solver: weights in steps of 1/20 = 0.05
+    private static final int WEIGHT_GRID_STEPS = 20;
+
+    public static synchronized InstrumentProfileService getInstance() {
         if (instance == null) {
             instance = new InstrumentProfileService();
         }
@@ -65,13 +86,14 @@ public class InstrumentProfileService {
      * @param instrumentName Optional name for the instrument
      * @param baselineParams Object containing lambda, p and maxIter values for baseline correction
      * @param plasmaZones Number of plasma zones to consider and combine when comparing fit of synthetic spectrum
+     * @param searchParams Settings of the plasma parameter search
      * @param debugMode Enable debug mode which shows browser actions in a browser window
      * @return Generated InstrumentProfile
      * @throws IOException if file cannot be read
      */
     public InstrumentProfile generateProfile(Path sampleCsvPath, String delimiter, String compositionString,
             String instrumentName, BaselineCorrectionParams baselineParams,
-            int plasmaZones, boolean debugMode) throws IOException {
+            int plasmaZones, PlasmaSearchParams searchParams, boolean debugMode) throws IOException {
 
         logger.info("Generating instrument profile from: " + sampleCsvPath);
         logger.info("Reference composition: " + compositionString);
@@ -118,7 +140,8 @@ public class InstrumentProfileService {
 
         // 6. Optimize plasma parameters
         logger.info("Starting " + plasmaZones + "-zone plasma parameter optimization...");
-        optimizePlasmaParameters(profile, processedMeasuredSpectrum, materialGrade, plasmaZones, debugMode);
+        optimizePlasmaParameters(profile, processedMeasuredSpectrum, materialGrade, plasmaZones, searchParams,
+                debugMode);
 
         // 7. Generate Jupyter Report
         if (PythonUtils.getInstance().setupPythonEnvironment()) {
@@ -398,23 +421,25 @@ public class InstrumentProfileService {
 
     /**
      * Optimizes the n-zone plasma parameters to best match measured spectrum.
-     * Uses a recursive Grid Search approach with Selenium-based spectrum
-     * generation.
+     * Zone spectra are fetched from NIST (Selenium/HTTP) as the search asks for them, either over a fixed Te/Ne grid
+     * or adaptively around the best fit so far.
      *
      * @param profile                   InstrumentProfile to update with optimized
      *                                  parameters
      * @param processedMeasuredSpectrum Average measured spectrum
      * @param composition               Material composition
      * @param plasmaZones               Number of plasma zones to combine
+     * @param searchParams              Settings of the parameter search
      * @param debugMode
      */
     private void optimizePlasmaParameters(InstrumentProfile profile, Spectrum processedMeasuredSpectrum,
-            MaterialGrade composition, int plasmaZones, boolean debugMode) {
+            MaterialGrade composition, int plasmaZones, PlasmaSearchParams searchParams, boolean debugMode) {
 
         double[] wavelengthGrid = processedMeasuredSpectrum.getWavelengths();
         double[] measuredIntensities = processedMeasuredSpectrum.getIntensities();
 
-        logger.info("Starting Grid Search optimization for " + plasmaZones + " plasma zones...");
+        logger.info("Starting " + searchParams.getParameterSearch().getDescription() + " optimization for "
+                + plasmaZones + " plasma zones...");
 
         // Configuration for fetching
         UserInputConfig config = new UserInputConfig();
@@ -423,10 +448,6 @@ public class InstrumentProfileService {
         config.resolution = "1000";
         UserInputConfig.setDebugMode(debugMode);
 
-        // Define Grid Search Space
-        double[] teValues = { 0.5, 0.8, 1.0, 1.2, 1.5, 1.7, 2.0 };
-        double[] neExponents = { 15.0, 15.5, 16.0, 16.5, 17.0, 17.5 };
-
         // Normalization for RMSE calculation
         double maxMeasuredIntensity = Arrays.stream(measuredIntensities).max().orElse(1.0);
         profile.setScaleFactor(maxMeasuredIntensity);
@@ -438,8 +459,6 @@ public class InstrumentProfileService {
         }
 
         SpectrumUtils spectrumUtils = new SpectrumUtils();
-        Map<String, double[]> spectrumCache = new HashMap<>();
-        PrintStream out = System.out;
 
         try {
             // Setup output directories
@@ -450,51 +469,33 @@ public class InstrumentProfileService {
             Path targetPath = calibDir.resolve("target_processed.csv");
             saveSpectrumToCsv(targetPath, wavelengthGrid, measuredIntensities);
 
-            // Pre-fetch all necessary spectra
-            logger.info("Starting grid search...");
-            int i = 0;
-            int gridSize = teValues.length * neExponents.length;
-            for (double te : teValues) {
-                for (double neExp : neExponents) {
-                    double ne = Math.pow(10, neExp);
-                    String key = String.format("%.2f_%.2e", te, ne);
-
-                    if (spectrumCache.containsKey(key))
-                        continue;
-
-                    logger.info("Fetching spectrum for " + key);
-                    String csvData = LIBSDataService.getInstance().fetchPlasmaZoneSpectrum(
-                            composition.getComposition(), config, te, ne, composition.getRemainderElementIdx());
-
-                    if (!csvData.equals(String.valueOf(java.net.HttpURLConnection.HTTP_NOT_FOUND))) {
-                        Map<Double, Double> waveMap = NISTUtils.parseNistCsv(csvData, WavelengthUnit.NANOMETER.getUnitString());
-                        double[] spectrum = spectrumUtils.interpolateSpectrum(waveMap, wavelengthGrid);
-                        // Store NON-NORMALIZED spectrum in cache for final combination
-                        spectrumCache.put(key, spectrum);
-                    }
-                    CommonUtils.printProgressBar(i + 1, gridSize, "spectra fetched from NIST LIBS db", out);
-                    i++;
+            // Spectra are fetched on first use and interpolated onto the measured wavelength grid
+            ZoneSpectra zoneSpectra = new ZoneSpectra((te, ne) -> {
+                logger.info("Fetching spectrum for " + ZoneSpectra.key(te, ne));
+                String csvData = LIBSDataService.getInstance().fetchPlasmaZoneSpectrum(
+                        composition.getComposition(), config, te, ne, composition.getRemainderElementIdx());
+                if (csvData.equals(String.valueOf(java.net.HttpURLConnection.HTTP_NOT_FOUND))) {
+                    return null;
                 }
-            }
-            CommonUtils.finishProgressBar(gridSize, out);
-
-            // normalize cached spectra for optimization comparison
-            Map<String, double[]> normalizedSpectrumCache = new HashMap<>();
-            i = 0;
-            for (Map.Entry<String, double[]> entry : spectrumCache.entrySet()) {
-                normalizedSpectrumCache.put(entry.getKey(), spectrumUtils.normaliseSpectrum(entry.getValue()));
-                CommonUtils.printProgressBar(i + 1, gridSize, "Spectra normalised", out);
-                i++;
-            }
-            CommonUtils.finishProgressBar(gridSize, out);
+                try {
+                    Spectrum nistSpectrum = NISTUtils.parseNistSpectrum(csvData,
+                            WavelengthUnit.NANOMETER.getUnitString(), false);
+                    return spectrumUtils.interpolateSpectrum(nistSpectrum.getWavelengths(),
+                            nistSpectrum.getIntensities(), wavelengthGrid);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, searchParams.getParameterSearch() == ParameterSearch.ADAPTIVE
+                    ? searchParams.getFetchBudget() : Integer.MAX_VALUE);
 
-            // Recursive Grid Search
-            OptimizationResult bestResult = findBestCombination(plasmaZones, teValues, neExponents,
-                    normalizedSpectrumCache, normalisedMeasuredSpectrum);
+            OptimizationResult bestResult = switch (searchParams.getParameterSearch()) {
+                case GRID -> searchGrid(plasmaZones, zoneSpectra, normalisedMeasuredSpectrum, searchParams);
+                case ADAPTIVE -> searchAdaptively(plasmaZones, zoneSpectra, normalisedMeasuredSpectrum, searchParams);
+            };
 
             // Update profile with best parameters
             List<PlasmaZone> zones = new ArrayList<>();
-            for (i = 0; i < bestResult.parameters.size(); i++) {
+            for (int i = 0; i < bestResult.parameters.size(); i++) {
                 ZoneParams params = bestResult.parameters.get(i);
                 double weight = bestResult.weights.get(i);
                 zones.add(new PlasmaZone(params.te, params.ne, weight));
@@ -505,18 +506,194 @@ public class InstrumentProfileService {
             profile.setRSquaredValue(bestResult.rSquared);
             profile.setScaleFactor(maxMeasuredIntensity);
 
-            logger.info("Optimization complete. Best RMSE: " + bestResult.rmse + ", R^2: " + bestResult.rSquared);
+            logger.info("Optimization complete after " + zoneSpectra.getFetchCount() + " NIST fetches. Best RMSE: "
+                    + bestResult.rmse + ", R^2: " + bestResult.rSquared);
 
             // Save Best Zones and Spectra to Single CSV
             Path zonesCsvPath = calibDir.resolve("best_zones.csv");
 
             // Saving normalized * maxMeasured to scale synthetic spectrum close to measured spectrum
-            saveZonesToCsv(zonesCsvPath, zones, wavelengthGrid, spectrumCache, maxMeasuredIntensity);
+            saveZonesToCsv(zonesCsvPath, zones, wavelengthGrid, zoneSpectra.raw, maxMeasuredIntensity);
 
         } catch (Exception e) {
-            logger.log(Level.SEVERE, "Grid search optimization failed", e);
-        } finally {
-            SeleniumUtils.getInstance().quitSelenium();
+            logger.log(Level.SEVERE, "Plasma parameter optimization failed", e);
+        }
+    }
+
+    /**
+     * Fetches the spectra of the whole fixed Te/Ne grid up front and searches all of its zone combinations.
+     */
+    OptimizationResult searchGrid(int numZones, ZoneSpectra zoneSpectra, double[] targetSpectrum,
+            PlasmaSearchParams searchParams) {
+        PrintStream out = System.out;
+        logger.info("Starting grid search...");
+        int i = 0;
+        int gridSize = TE_VALUES.length * NE_EXPONENTS.length;
+        for (double te : TE_VALUES) {
+            for (double neExp : NE_EXPONENTS) {
+                zoneSpectra.fetch(te, Math.pow(10, neExp));
+                CommonUtils.printProgressBar(i + 1, gridSize, "spectra fetched from NIST LIBS db", out);
+                i++;
+            }
+        }
+        CommonUtils.finishProgressBar(gridSize, out);
+
+        return findBestCombination(numZones, TE_VALUES, NE_EXPONENTS, zoneSpectra.normalised, targetSpectrum,
+                searchParams.getThreads(), searchParams.getWeightSolver());
+    }
+
+    /**
+     * Coarse-to-fine pattern search over continuous Te and log10(Ne) within the bounds of the fixed grid. Starts from
+     * a coarse grid, then repeatedly fetches the compass neighbours (Te +/- step, log Ne +/- step) of every zone of
+     * the best fit so far and searches all zone combinations of the spectra fetched. Steps are halved whenever a
+     * round does not lower the RMSE. The search ends once the steps are below their minimum or the fetch budget is
+     * spent. Spectra are memoised, so a point is never fetched twice.
+     */
+    OptimizationResult searchAdaptively(int numZones, ZoneSpectra zoneSpectra, double[] targetSpectrum,
+            PlasmaSearchParams searchParams) {
+        double teMin = TE_VALUES[0];
+        double teMax = TE_VALUES[TE_VALUES.length - 1];
+        double logNeMin = NE_EXPONENTS[0];
+        double logNeMax = NE_EXPONENTS[NE_EXPONENTS.length - 1];
+        int points = LIBSDataGenConstants.CALIBRATION_COARSE_GRID_POINTS;
+        double teStep = (teMax - teMin) / (points - 1);
+        double logNeStep = (logNeMax - logNeMin) / (points - 1);
+
+        logger.info("Starting adaptive search with a " + points + "x" + points + " coarse grid and a budget of "
+                + zoneSpectra.getFetchBudget() + " NIST fetches...");
+        for (int i = 0; i < points; i++) {
+            for (int j = 0; j < points; j++) {
+                fetchRounded(zoneSpectra, teMin + i * teStep, logNeMin + j * logNeStep, teMin, teMax, logNeMin,
+                        logNeMax);
+            }
+        }
+        OptimizationResult best = findBestCombination(numZones, zoneSpectra.getPoints(), zoneSpectra.normalised,
+                targetSpectrum, searchParams.getThreads(), searchParams.getWeightSolver());
+
+        teStep /= 2;
+        logNeStep /= 2;
+        while ((teStep >= LIBSDataGenConstants.CALIBRATION_MIN_TE_STEP
+                || logNeStep >= LIBSDataGenConstants.CALIBRATION_MIN_LOG_NE_STEP)
+                && zoneSpectra.hasBudget() && !best.parameters.isEmpty()) {
+            int fetched = 0;
+            for (ZoneParams zone : best.parameters) {
+                double logNe = Math.log10(zone.ne);
+                if (teStep >= LIBSDataGenConstants.CALIBRATION_MIN_TE_STEP) {
+                    for (double te : new double[] { zone.te - teStep, zone.te + teStep }) {
+                        fetched += fetchRounded(zoneSpectra, te, logNe, teMin, teMax, logNeMin, logNeMax) ? 1 : 0;
+                    }
+                }
+                if (logNeStep >= LIBSDataGenConstants.CALIBRATION_MIN_LOG_NE_STEP) {
+                    for (double ne : new double[] { logNe - logNeStep, logNe + logNeStep }) {
+                        fetched += fetchRounded(zoneSpectra, zone.te, ne, teMin, teMax, logNeMin, logNeMax) ? 1 : 0;
+                    }
+                }
+            }
+            OptimizationResult refined = fetched == 0 ? best
+                    : findBestCombination(numZones, zoneSpectra.getPoints(), zoneSpectra.normalised,
+                            targetSpectrum, searchParams.getThreads(), searchParams.getWeightSolver());
+            if (refined.rmse < best.rmse) {
+                best = refined;
+                logger.info("Adaptive search improved RMSE to " + best.rmse + " after "
+                        + zoneSpectra.getFetchCount() + " NIST fetches");
+            } else {
+                teStep /= 2;
+                logNeStep /= 2;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Fetches the spectrum at the given point, clamped to the search bounds and rounded to 0.01 eV and 0.01 in
+     * log10(Ne) so that nearby proposals share a spectrum.
+     *
+     * @return Whether a NIST fetch was made
+     */
+    private boolean fetchRounded(ZoneSpectra zoneSpectra, double te, double logNe, double teMin, double teMax,
+            double logNeMin, double logNeMax) {
+        double roundedTe = Math.round(Math.min(teMax, Math.max(teMin, te)) * 100.0) / 100.0;
+        double roundedLogNe = Math.round(Math.min(logNeMax, Math.max(logNeMin, logNe)) * 100.0) / 100.0;
+        return zoneSpectra.fetch(roundedTe, Math.pow(10, roundedLogNe));
+    }
+
+    /**
+     * Zone spectra of the reference composition on the measured wavelength grid, fetched on first use and memoised
+     * per Te/Ne point, up to a budget of NIST fetches.
+     */
+    static class ZoneSpectra {
+        private final BiFunction<Double, Double, double[]> fetcher;
+        private final int fetchBudget;
+        private final SpectrumUtils spectrumUtils = new SpectrumUtils();
+        // Key -> spectrum as fetched (for the zones CSV) and normalised (for scoring)
+        final Map<String, double[]> raw = new HashMap<>();
+        final Map<String, double[]> normalised = new HashMap<>();
+        // Every point requested, including failed fetches, so that they are not fetched again
+        private final Map<String, ZoneParams> requested = new HashMap<>();
+
+        /**
+         * @param fetcher     Fetches the spectrum for (Te, Ne); null if it cannot be fetched
+         * @param fetchBudget Maximum number of fetches
+         */
+        ZoneSpectra(BiFunction<Double, Double, double[]> fetcher, int fetchBudget) {
+            this.fetcher = fetcher;
+            this.fetchBudget = fetchBudget;
+        }
+
+        static String key(double te, double ne) {
+            return String.format("%.2f_%.2e", te, ne);
+        }
+
+        /**
+         * Fetches the spectrum at (Te, Ne) unless it was requested before or the budget is spent.
+         *
+         * @return Whether a fetch was made
+         */
+        boolean fetch(double te, double ne) {
+            String key = key(te, ne);
+            if (requested.containsKey(key) || !hasBudget()) {
+                return false;
+            }
+            requested.put(key, new ZoneParams(te, ne));
+            double[] spectrum;
+            try {
+                spectrum = fetcher.apply(te, ne);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to fetch spectrum for " + key, e);
+                spectrum = null;
+            }
+            if (spectrum != null) {
+                // Store NON-NORMALIZED spectrum for final combination
+                raw.put(key, spectrum);
+                normalised.put(key, spectrumUtils.normaliseSpectrum(spectrum));
+            }
+            return true;
+        }
+
+        boolean hasBudget() {
+            return requested.size() < fetchBudget;
+        }
+
+        int getFetchBudget() {
+            return fetchBudget;
+        }
+
+        int getFetchCount() {
+            return requested.size();
+        }
+
+        /**
+         * @return Points with a spectrum, ordered by Te and then Ne
+         */
+        List<ZoneParams> getPoints() {
+            List<ZoneParams> points = new ArrayList<>();
+            for (Map.Entry<String, ZoneParams> entry : requested.entrySet()) {
+                if (raw.containsKey(entry.getKey())) {
+                    points.add(entry.getValue());
+                }
+            }
+            points.sort(Comparator.<ZoneParams>comparingDouble(p -> p.te).thenComparingDouble(p -> p.ne));
+            return points;
         }
     }
 
@@ -531,7 +708,7 @@ public class InstrumentProfileService {
         }
     }
 
-    private static class ZoneParams {
+    static class ZoneParams {
         double te;
         double ne;
 
@@ -541,128 +718,315 @@ public class InstrumentProfileService {
         }
     }
 
-    private static class OptimizationResult {
+    static class OptimizationResult {
         List<ZoneParams> parameters = new ArrayList<>();
         List<Double> weights = new ArrayList<>();
         double rmse = Double.MAX_VALUE;
         double rSquared = Double.MIN_VALUE;
-    }
 
-    private OptimizationResult findBestCombination(int numZones, double[] teValues, double[] neExponents,
-            Map<String, double[]> normalizedCache, double[] targetSpectrum) {
+        /**
+         * Takes the candidate if it is strictly better in RMSE or R^2 without being worse in the other.
+         */
+        void offer(Candidate candidate) {
+            // Selection Criteria: Strictly better RMSE and R^2, or improvement in R^2
+            if (candidate.rmse < rmse && candidate.rSquared > rSquared) {
+                rmse = candidate.rmse;
+                rSquared = candidate.rSquared;
+                parameters = candidate.parameters;
+                weights = candidate.weights;
+            } else if (candidate.rmse == rmse && candidate.rSquared > rSquared) {
+                rSquared = candidate.rSquared;
+                parameters = candidate.parameters;
+                weights = candidate.weights;
+            } else if (candidate.rSquared == rSquared && candidate.rmse < rmse) {
+                rmse = candidate.rmse;
+                parameters = candidate.parameters;
+                weights = candidate.weights;
+            }
+        }
+    }
 
-        PrintStream out = System.out;
-        OptimizationResult bestResult = new OptimizationResult();
+    /**
+     * Scored (zone parameters, weights) combination of the grid search.
+     */
+    record Candidate(List<ZoneParams> parameters, List<Double> weights, double rmse, double rSquared) {
+        boolean weaklyDominates(Candidate other) {
+            return rmse <= other.rmse && rSquared >= other.rSquared;
+        }
+    }
 
-        out.println("Generating parameter and weight combinations for grid search...");
-        // Generate parameter combinations
-        List<List<ZoneParams>> allParamCombinations = new ArrayList<>();
-        generateParamCombinations(numZones, teValues, neExponents, new ArrayList<>(), allParamCombinations);
-
-        // Generate weight combinations (simplex steps of 0.1)
-        List<List<Double>> allWeightCombinations = new ArrayList<>();
-        generateWeightCombinations(numZones, 1.0, new ArrayList<>(), allWeightCombinations);
-
-        // Iterate and find best
-        int progress = 0;
-        int totalCombinations = allParamCombinations.size() * allWeightCombinations.size();
-        for (List<ZoneParams> params : allParamCombinations) {
-            for (List<Double> weights : allWeightCombinations) {
-                // Combine spectra
-                double[] combined = new double[targetSpectrum.length];
-                boolean possible = true;
-
-                for (int i = 0; i < numZones; i++) {
-                    ZoneParams p = params.get(i);
-                    String key = String.format("%.2f_%.2e", p.te, p.ne);
-                    double[] s = normalizedCache.get(key);
-                    if (s == null) {
-                        possible = false;
-                        break;
-                    }
-                    double w = weights.get(i);
-                    for (int j = 0; j < combined.length; j++) {
-                        combined[j] += s[j] * w;
-                    }
+    /**
+     * Candidates of a contiguous part of the grid, in grid order, that can still be selected by
+     * {@link OptimizationResult#offer}. A candidate is only selected if it beats the best result so far in RMSE or
+     * R^2 without being worse in the other, so it can never be selected once an earlier candidate is at least as
+     * good in both; such candidates are dropped. Parts are merged in grid order, and offering the survivors of the
+     * whole grid in order selects exactly what offering every candidate would.
+     */
+    static class CandidateFront {
+        final List<Candidate> survivors = new ArrayList<>();
+        // Survivors no later candidate is at least as good as in both criteria
+        private final List<Candidate> front = new ArrayList<>();
+
+        void offer(Candidate candidate) {
+            // NaN scores never compare better, so they are never selected
+            if (Double.isNaN(candidate.rmse()) || Double.isNaN(candidate.rSquared())) {
+                return;
+            }
+            for (Candidate earlier : front) {
+                if (earlier.weaklyDominates(candidate)) {
+                    return;
                 }
+            }
+            survivors.add(candidate);
+            front.removeIf(candidate::weaklyDominates);
+            front.add(candidate);
+        }
 
-                if (!possible)
-                    continue;
-
-                SpectrumUtils spectrumUtils = new SpectrumUtils();
-                // Normalize combined result for comparison against normalized target
-                double[] finalCombined = spectrumUtils.normaliseSpectrum(combined);
-
-                double rmse = spectrumUtils.calculateRMSE(targetSpectrum, finalCombined);
-                double rSquared = spectrumUtils.calculateSpectralSimilarity(targetSpectrum, finalCombined);
-
-                // Selection Criteria: Strictly better RMSE and R^2, or improvement in R^2
-                if (rmse < bestResult.rmse && rSquared > bestResult.rSquared) {
-                    bestResult.rmse = rmse;
-                    bestResult.rSquared = rSquared;
-                    bestResult.parameters = params;
-                    bestResult.weights = weights;
-                } else if (rmse == bestResult.rmse && rSquared > bestResult.rSquared) {
-                    bestResult.rSquared = rSquared;
-                    bestResult.parameters = params;
-                    bestResult.weights = weights;
-                } else if (rSquared == bestResult.rSquared && rmse < bestResult.rmse) {
-                    bestResult.rmse = rmse;
-                    bestResult.parameters = params;
-                    bestResult.weights = weights;
+        /**
+         * Whether a candidate would be dropped given only bounds on its scores, i.e. whether an earlier candidate is
+         * at least as good as both bounds.
+         *
+         * @param rmseLowerBound     At most the candidate's RMSE
+         * @param rSquaredUpperBound At least the candidate's R^2
+         */
+        boolean excludes(double rmseLowerBound, double rSquaredUpperBound) {
+            for (Candidate earlier : front) {
+                if (earlier.rmse() <= rmseLowerBound && earlier.rSquared() >= rSquaredUpperBound) {
+                    return true;
                 }
-                CommonUtils.printProgressBar(progress + 1, totalCombinations, "combinations processed", out);
-                progress++;
             }
+            return false;
         }
-        CommonUtils.finishProgressBar(totalCombinations, out);
 
-        return bestResult;
+        /**
+         * Appends the candidates of the part of the grid that follows this one.
+         */
+        CandidateFront append(CandidateFront later) {
+            for (Candidate candidate : later.survivors) {
+                offer(candidate);
+            }
+            return this;
+        }
     }
 
-    private void generateParamCombinations(int zonesLeft, double[] teValues, double[] neExponents,
-            List<ZoneParams> current, List<List<ZoneParams>> results) {
-        if (zonesLeft == 0) {
-            results.add(new ArrayList<>(current));
-            return;
+    /**
+     * Grid search over all zone parameter combinations. The zone weights of each parameter combination are either
+     * fitted by non-negative least squares or taken from a grid of weight combinations. The parameter combinations
+     * are split across a fork-join pool; every task scores its combinations and keeps the candidates that can still
+     * win (see {@link CandidateFront}), and the parts are merged in grid order. The result is the same as scoring
+     * every combination in order on a single thread, whatever the number of threads.
+     *
+     * @param threads      Number of threads to score combinations on
+     * @param weightSolver How the zone weights of a parameter combination are found
+     */
+    OptimizationResult findBestCombination(int numZones, double[] teValues, double[] neExponents,
+            Map<String, double[]> normalizedCache, double[] targetSpectrum, int threads, WeightSolver weightSolver) {
+        List<ZoneParams> points = new ArrayList<>();
+        for (double te : teValues) {
+            for (double neExp : neExponents) {
+                points.add(new ZoneParams(te, Math.pow(10, neExp)));
+            }
         }
+        return findBestCombination(numZones, points, normalizedCache, targetSpectrum, threads, weightSolver);
+    }
 
-        double lastTe = current.isEmpty() ? Double.MAX_VALUE : current.get(current.size() - 1).te;
+    /**
+     * Searches all zone combinations of the given Te/Ne points (see above). Combinations are enumerated lazily by
+     * index (see {@link IndexedCombinations}), so memory does not grow with the number of zones.
+     *
+     * @param points Te/Ne points, ordered by Te and then Ne
+     */
+    OptimizationResult findBestCombination(int numZones, List<ZoneParams> points,
+            Map<String, double[]> normalizedCache, double[] targetSpectrum, int threads, WeightSolver weightSolver) {
+
+        PrintStream out = System.out;
+
+        // Weight combinations (simplex steps of 0.05); the NNLS solver fits the weights instead
+        Compositions weightCombinations = weightSolver == WeightSolver.GRID
+                ? new Compositions(WEIGHT_GRID_STEPS, numZones) : null;
+        GridSearch gridSearch = new GridSearch(numZones, weightCombinations, points, normalizedCache, targetSpectrum,
+                out);
+        long paramCombinations = gridSearch.paramCombinations.size();
+        long totalCombinations = weightCombinations == null ? paramCombinations
+                : Math.multiplyExact(paramCombinations, weightCombinations.size());
+
+        logger.info("Scoring " + totalCombinations + " combinations on " + threads + " threads");
+        // Combinations within a task are pruned against the task's earlier candidates, so tasks are kept sizeable
+        long taskSize = Math.max(1, paramCombinations / ((long) threads * GRID_SEARCH_TASKS_PER_THREAD));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        CandidateFront front;
+        try {
+            front = pool.invoke(gridSearch.new Task(0, paramCombinations, taskSize));
+        } finally {
+            pool.shutdown();
+        }
+        CommonUtils.finishProgressBar(paramCombinations, out);
+        logger.info("Scored " + gridSearch.verified.get() + " of " + totalCombinations
+                + " combinations in full; the rest were ruled out from their Gram matrix bounds");
+
+        OptimizationResult bestResult = new OptimizationResult();
+        for (Candidate candidate : front.survivors) {
+            bestResult.offer(candidate);
+        }
+        return bestResult;
+    }
+
+    /**
+     * Scoring state shared by the grid search tasks. Parameter combinations are non-increasing Te sequences over the
+     * points with a spectrum, enumerated in the order of the points. Every combination is first scored from the Gram
+     * matrix of the zone spectra (see {@link GramScorer}); only combinations whose bounds leave a chance of entering
+     * the {@link CandidateFront} are combined and scored over the full spectrum.
+     */
+    private static class GridSearch {
+        private final IndexedCombinations paramCombinations;
+        // Null when weights are fitted by NNLS
+        private final IndexedCombinations weightCombinations;
+        // Points with a spectrum, and their spectra
+        private final List<ZoneParams> points = new ArrayList<>();
+        private final double[][] spectra;
+        private final GramScorer scorer;
+        private final double[] targetSpectrum;
+        private final PrintStream out;
+        private final AtomicLong progress = new AtomicLong();
+        final AtomicLong verified = new AtomicLong();
+
+        GridSearch(int numZones, IndexedCombinations weightCombinations, List<ZoneParams> allPoints,
+                Map<String, double[]> normalizedCache, double[] targetSpectrum, PrintStream out) {
+            this.weightCombinations = weightCombinations;
+            this.targetSpectrum = targetSpectrum;
+            this.out = out;
+
+            List<double[]> found = new ArrayList<>();
+            for (ZoneParams point : allPoints) {
+                double[] spectrum = normalizedCache.get(ZoneSpectra.key(point.te, point.ne));
+                if (spectrum != null) {
+                    points.add(point);
+                    found.add(spectrum);
+                }
+            }
+            spectra = found.toArray(new double[0][]);
+            scorer = new GramScorer(spectra, targetSpectrum);
 
-        for (double te : teValues) {
             // Constraint: Te must be <= previous Te (Hot to Cool ordering)
-            if (te > lastTe)
-                continue;
+            double[] te = new double[points.size()];
+            for (int i = 0; i < te.length; i++) {
+                te[i] = points.get(i).te;
+            }
+            paramCombinations = new NonIncreasingSequences(te, numZones);
+        }
 
-            for (double neExp : neExponents) {
-                double ne = Math.pow(10, neExp);
-                current.add(new ZoneParams(te, ne));
-                generateParamCombinations(zonesLeft - 1, teValues, neExponents, current, results);
-                current.remove(current.size() - 1);
+        /**
+         * Scores one parameter combination with its NNLS weights or with every weight combination.
+         */
+        private void score(int[] zones, double[] weights, int[] steps, SpectrumUtils spectrumUtils,
+                CandidateFront front) {
+            if (weightCombinations == null) {
+                fitWeights(zones, weights);
+                offer(zones, weights, spectrumUtils, front);
+            } else if (weightCombinations.size() > 0) {
+                weightCombinations.unrank(0, steps);
+                do {
+                    for (int i = 0; i < steps.length; i++) {
+                        weights[i] = steps[i] / (double) WEIGHT_GRID_STEPS;
+                    }
+                    offer(zones, weights, spectrumUtils, front);
+                } while (weightCombinations.next(steps));
             }
         }
-    }
 
-    private void generateWeightCombinations(int zonesLeft, double remainingWeight,
-            List<Double> current, List<List<Double>> results) {
-        if (zonesLeft == 1) {
-            // Last zone gets all remaining weight
-            // Rounding to avoid precision errors, though double precision usually suffices
-            // for step 0.1
-            double w = Math.round(remainingWeight * 100.0) / 100.0;
-            if (w < 0)
-                return; // Should not happen
-            List<Double> full = new ArrayList<>(current);
-            full.add(w);
-            results.add(full);
-            return;
-        }
-
-        // Step size 0.1, up to remaining weight
-        for (double w = 0.05; w <= remainingWeight - 0.05 * (zonesLeft - 1); w += 0.05) {
-            current.add(w);
-            generateWeightCombinations(zonesLeft - 1, remainingWeight - w, current, results);
-            current.remove(current.size() - 1);
+        /**
+         * Fits the zone weights by non-negative least squares against the target spectrum. The combined spectrum is
+         * normalised before scoring, so only the ratios of the weights matter; they are scaled to sum to 1.
+         */
+        private void fitWeights(int[] zones, double[] weights) {
+            double[] solved = NnlsSolver.solve(scorer.gram(zones), scorer.targetProducts(zones));
+            double sum = Arrays.stream(solved).sum();
+            for (int i = 0; i < solved.length; i++) {
+                // No positive combination fits: fall back to equal weights
+                weights[i] = sum > 0 ? solved[i] / sum : 1.0 / solved.length;
+            }
+        }
+
+        /**
+         * Offers the combination unless its Gram matrix bounds show an earlier candidate is at least as good.
+         */
+        private void offer(int[] zones, double[] weights, SpectrumUtils spectrumUtils, CandidateFront front) {
+            if (front.excludes(scorer.rmseLowerBound(zones, weights), scorer.rSquaredUpperBound(zones, weights))) {
+                return;
+            }
+            verified.incrementAndGet();
+            front.offer(scoreWeights(zones, weights, spectrumUtils));
+        }
+
+        private Candidate scoreWeights(int[] zones, double[] weights, SpectrumUtils spectrumUtils) {
+            // Combine spectra
+            double[] combined = new double[targetSpectrum.length];
+            List<ZoneParams> params = new ArrayList<>(zones.length);
+            List<Double> weightList = new ArrayList<>(zones.length);
+            for (int i = 0; i < zones.length; i++) {
+                double[] s = spectra[zones[i]];
+                double w = weights[i];
+                for (int j = 0; j < combined.length; j++) {
+                    combined[j] += s[j] * w;
+                }
+                params.add(points.get(zones[i]));
+                weightList.add(w);
+            }
+
+            // Normalize combined result for comparison against normalized target
+            double[] finalCombined = spectrumUtils.normaliseSpectrum(combined);
+
+            double rmse = spectrumUtils.calculateRMSE(targetSpectrum, finalCombined);
+            double rSquared = spectrumUtils.calculateSpectralSimilarity(targetSpectrum, finalCombined);
+            return new Candidate(params, weightList, rmse, rSquared);
+        }
+
+        /**
+         * Scores a range of parameter combinations, splitting it in halves down to ranges of at most the task size,
+         * which are scored in order.
+         */
+        private class Task extends RecursiveTask<CandidateFront> {
+            private final long from;
+            private final long to;
+            private final long taskSize;
+
+            Task(long from, long to, long taskSize) {
+                this.from = from;
+                this.to = to;
+                this.taskSize = taskSize;
+            }
+
+            @Override
+            protected CandidateFront compute() {
+                if (to - from <= taskSize) {
+                    CandidateFront front = new CandidateFront();
+                    if (from == to) {
+                        return front;
+                    }
+                    SpectrumUtils spectrumUtils = new SpectrumUtils();
+                    int numZones = paramCombinations.length();
+                    int[] zones = new int[numZones];
+                    double[] weights = new double[numZones];
+                    int[] steps = new int[numZones];
+                    paramCombinations.unrank(from, zones);
+                    for (long i = from; i < to; i++) {
+                        score(zones, weights, steps, spectrumUtils, front);
+                        paramCombinations.next(zones);
+                    }
+                    long processed = progress.addAndGet(to - from);
+                    synchronized (out) {
+                        CommonUtils.printProgressBar(processed, paramCombinations.size(),
+                                "parameter combinations processed", out);
+                    }
+                    return front;
+                }
+                long mid = (from + to) >>> 1;
+                Task first = new Task(from, mid, taskSize);
+                Task second = new Task(mid, to, taskSize);
+                second.fork();
+                CandidateFront front = first.compute();
+                return front.append(second.join());
+            }
         }
     }
 
@@ -695,7 +1059,9 @@ public class InstrumentProfileService {
 
                 if (rawSpectrum != null) {
                     // Normalize and then scale
-                    record.addAll(spectrumUtils.normaliseAndScaleSpectrum(rawSpectrum, scaleFactor));
+                    for (double intensity : spectrumUtils.normaliseAndScaleSpectrum(rawSpectrum, scaleFactor)) {
+                        record.add(intensity);
+                    }
                 } else {
                     // Should not happen if cache is hit, but fill zeros
                     for (int i = 0; i < wavelengthGrid.length; i++)
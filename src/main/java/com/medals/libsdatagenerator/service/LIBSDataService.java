@@ -1,41 +1,56 @@
 package com.medals.libsdatagenerator.service;
 
 import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import com.medals.libsdatagenerator.model.DatasetRow;
 import com.medals.libsdatagenerator.model.Element;
 import com.medals.libsdatagenerator.model.InstrumentProfile;
 import com.medals.libsdatagenerator.model.PlasmaZone;
+import com.medals.libsdatagenerator.model.Spectrum;
 import com.medals.libsdatagenerator.model.UserInputConfig;
 import com.medals.libsdatagenerator.model.matweb.MaterialGrade;
 import com.medals.libsdatagenerator.model.matweb.SeriesInput;
+import com.medals.libsdatagenerator.model.nist.NistFormState;
 import com.medals.libsdatagenerator.model.nist.NistUrlOptions;
 import com.medals.libsdatagenerator.model.nist.NistUrlOptions.ClassLabelType;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.OutputFormat;
 import com.medals.libsdatagenerator.util.CSVUtils;
+import com.medals.libsdatagenerator.util.CircuitBreaker;
 import com.medals.libsdatagenerator.util.CommonUtils;
+import com.medals.libsdatagenerator.util.CompositionNormaliser;
+import com.medals.libsdatagenerator.util.CsvDatasetSink;
+import com.medals.libsdatagenerator.util.DatasetSink;
 import com.medals.libsdatagenerator.util.InputCompositionProcessor;
 import com.medals.libsdatagenerator.util.NISTUtils;
+import com.medals.libsdatagenerator.util.NistHttpClient;
+import com.medals.libsdatagenerator.util.NistSession;
+import com.medals.libsdatagenerator.util.NpyDatasetSink;
+import com.medals.libsdatagenerator.util.RetryQueue;
+import com.medals.libsdatagenerator.util.RunJournal;
+import com.medals.libsdatagenerator.util.SeleniumSessionPool;
 import com.medals.libsdatagenerator.util.SeleniumUtils;
+import com.medals.libsdatagenerator.util.SpectrumCache;
 import com.medals.libsdatagenerator.util.SpectrumUtils;
+import com.medals.libsdatagenerator.util.StagedPipeline;
 import org.apache.commons.csv.CSVPrinter;
 import org.openqa.selenium.By;
-import org.openqa.selenium.TimeoutException;
-import org.openqa.selenium.WebElement;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -50,10 +65,13 @@ public class LIBSDataService {
 
     public static LIBSDataService instance = null;
     private final CommonUtils commonUtils = new CommonUtils();
-    private boolean firstComposition = true;
-    private boolean newVariation = true;
+    // Sessions of callers that do not manage their own, one per worker and cache setting (see closeSessions)
+    private final Map<DefaultSessionKey, GenerationSession> defaultGenerationSessions = new ConcurrentHashMap<>();
 
-    public static LIBSDataService getInstance() {
+    private record DefaultSessionKey(int nistWorkers, double nistRate, String cacheDirPath, long cacheMaxSizeMb) {
+    }
+
+    public static synchronized LIBSDataService getInstance() {
         if (instance == null) {
             instance = new LIBSDataService();
         }
@@ -135,6 +153,7 @@ public class LIBSDataService {
     
     /**
      * Composes NIST LIBS URL (query) for fetching spectrum data for given input
+     * using the shared default browser session.
      *
      * @param composition List of Elements in composition
      * @param config      User input configuration object containing all user input data
@@ -143,68 +162,93 @@ public class LIBSDataService {
      * @return csv content if successful; HTTP_NOT_FOUND (404) error status string if failure.
      */
     public String fetchLIBSData(List<Element> composition, UserInputConfig config, boolean quitDriver, int remainderElementIdx) {
-        SeleniumUtils seleniumUtils = SeleniumUtils.getInstance();
+        GenerationSession generationSession = getDefaultGenerationSession(config);
+        return fetchLIBSData(generationSession, generationSession.getDefaultSession(), composition, config, quitDriver,
+                remainderElementIdx);
+    }
+
+    /**
+     * Composes NIST LIBS URL (query) for fetching spectrum data for given input
+     *
+     * @param generationSession Run the fetch belongs to, providing the NIST request scheduler
+     * @param session     Browser session (WebDriver + NIST form state) to fetch with
+     * @param composition List of Elements in composition
+     * @param config      User input configuration object containing all user input data
+     * @param quitDriver  Whether to quit the Selenium driver after fetching (false to keep session alive)
+     * @param remainderElementIdx Index of element with largest % composition
+     * @return csv content if successful; HTTP_NOT_FOUND (404) error status string if failure.
+     */
+    public String fetchLIBSData(GenerationSession generationSession, NistSession session, List<Element> composition,
+                                UserInputConfig config, boolean quitDriver, int remainderElementIdx) {
+        return generationSession.getRequestScheduler().execute(LIBSDataGenConstants.NIST_ENDPOINT_BROWSER,
+                () -> fetchFromBrowser(session, composition, config, Double.parseDouble(config.plasmaTemp),
+                        Double.parseDouble(config.electronDensity), quitDriver, remainderElementIdx));
+    }
+
+    /**
+     * Fetches a spectrum on the session's NIST page. The page is only (re)loaded with a server request when the
+     * session has no page or the page holds a different set of elements; otherwise the composition, Te, Ne and
+     * resolution are applied to the loaded form and recalculated client-side. The browser itself stays open across
+     * compositions, materials and calibration grids until the session is closed.
+     *
+     * @return csv content if successful; HTTP_NOT_FOUND (404) error status string if failure.
+     */
+    private String fetchFromBrowser(NistSession session, List<Element> composition, UserInputConfig config,
+                                    double te, double ne, boolean quitDriver, int remainderElementIdx) {
+        SeleniumUtils seleniumUtils = session.getSeleniumUtils();
+        // Submit percentages that sum to exactly 100 so NIST does not reject the form with an alert
+        CompositionNormaliser.normalise(composition, remainderElementIdx, config.numDecimalPlaces);
+        NistFormState targetState = new NistFormState(composition, te, ne, config.resolution);
 
         try {
-            if (!seleniumUtils.isDriverOnline()) {
-                logger.warning("Driver not online - falling back to server request");
-                Map<String, String> queryParams = processLIBSQueryParams(composition, config);
+            NISTUtils nistUtils = session.getNistUtils();
+            NistFormState currentState = session.getFormState();
+            if (!seleniumUtils.isDriverOnline() || !targetState.hasSameElements(currentState)) {
+                // The element set is fixed by the server request, so a new set needs a fresh page load
+                session.setFormState(null);
+                UserInputConfig pageConfig = new UserInputConfig(config);
+                pageConfig.plasmaTemp = String.valueOf(te);
+                pageConfig.electronDensity = String.valueOf(ne);
+                Map<String, String> queryParams = processLIBSQueryParams(composition, pageConfig);
+                logger.info("Loading NIST LIBS form for elements " + targetState.getElements());
                 seleniumUtils.connectToWebsite(
                         commonUtils.getUrl(LIBSDataGenConstants.NIST_LIBS_QUERY_URL_BASE, queryParams)
                 );
+                seleniumUtils.waitForElementPresent(By.name(LIBSDataGenConstants.NIST_LIBS_RECALC_BUTTON_NAME));
+                // Resolution is not taken from the query, so it is always set through the form
+                currentState = new NistFormState(composition, te, ne, null);
             }
-            NISTUtils nistUtils = new NISTUtils(seleniumUtils);
-
-            // First composition: make initial server request and keep browser session alive
-            if (firstComposition) {
-                // Perform client-side recalculation with user's desired resolution
-                nistUtils.setCorrectResolution(config.resolution);
-                firstComposition = false;
-                logger.info("First composition fetched - browser session kept alive for variations");
-            } else { // Subsequent compositions: use client-side recalculation with existing browser session
-                // Update element percentages in the form
-                nistUtils.updateElementPercentages(composition);
-                logger.info("Variation fetched using client-side recalculation");
-            }
-
-            // Find and click the Recalculate button
-            WebElement recalcButton = seleniumUtils.waitForElementClickable(
-                    By.name(LIBSDataGenConstants.NIST_LIBS_RECALC_BUTTON_NAME)
-            );
-
-            recalcButton.click();
-            logger.info("Clicked Recalculate button for variation");
 
-            try {
-                // Wait for recalculation to complete
-                WebDriverWait wait = seleniumUtils.getWait(2);
-                wait.until(ExpectedConditions.alertIsPresent());
-
-                logger.info("Alert detected");
-                nistUtils.handleRecalculateAlert(composition, remainderElementIdx);
-
-            } catch (TimeoutException e) {
-                // No alert appeared within 2 seconds. Assume success.
-                logger.info("No alert detected, proceeding to download.");
+            if (nistUtils.applyFormState(currentState, targetState)) {
+                // Click Recalculate; returns as soon as NIST either raises an alert or reloads the page
+                String alertText = nistUtils.recalculate();
+                if (alertText != null) {
+                    // Should not happen for normalised compositions
+                    nistUtils.handleRecalculateAlert(alertText, composition, remainderElementIdx);
+                    targetState = new NistFormState(composition, te, ne, config.resolution);
+                } else {
+                    logger.info("No alert detected, proceeding to download.");
+                }
+                seleniumUtils.waitForElementPresent(By.name(LIBSDataGenConstants.NIST_LIBS_GET_CSV_BUTTON_HTML_TEXT));
+                logger.info("Recalculation completed");
             }
-
-            seleniumUtils.waitForElementPresent(By.name(LIBSDataGenConstants.NIST_LIBS_GET_CSV_BUTTON_HTML_TEXT));
-            logger.info("Recalculation completed");
+            session.setFormState(targetState);
 
             return nistUtils.downloadCsvData();
         } catch (Exception e) {
+            // Page state unknown after a failure; reload on the next fetch
+            session.setFormState(null);
             logger.log(Level.SEVERE, "Unable to fetch data from NIST LIBS website", e);
         } finally {
             if (quitDriver) {
-                seleniumUtils.quitSelenium();
+                session.quit();
             }
         }
         return String.valueOf(HttpURLConnection.HTTP_NOT_FOUND);
     }
-    
+
     /**
-     * Fetches spectrum for specific plasma parameters during calibration.
-     * Reuses existing Selenium session for performance.
+     * Fetches spectrum for specific plasma parameters using the browser session of the default generation session.
      *
      * @param composition Material composition
      * @param config      User configuration
@@ -214,302 +258,848 @@ public class LIBSDataService {
      */
     public String fetchPlasmaZoneSpectrum(List<Element> composition, UserInputConfig config,
                                           double te, double ne, int remainderElementIdx) {
-        SeleniumUtils seleniumUtils = SeleniumUtils.getInstance();
-        
+        GenerationSession generationSession = getDefaultGenerationSession(config);
+        return fetchPlasmaZoneSpectrum(generationSession, generationSession.getDefaultSession(), composition, config,
+                te, ne, remainderElementIdx);
+    }
+
+    /**
+     * Fetches spectrum for specific plasma parameters.
+     * Checks the persistent spectrum cache first (unless force fetch is set) and only falls back to NIST on a miss.
+     * With the HTTP fetch engine the query is sent directly to NIST and the browser session is only used if that fails.
+     * Both go through the generation session's request scheduler; cache hits do not. While the session's circuit
+     * breaker is open (NIST is down) the fetch waits until NIST is reachable again.
+     * Reuses existing Selenium session for performance.
+     *
+     * @param generationSession Run the fetch belongs to, providing the spectrum cache and HTTP client
+     * @param session     Browser session (WebDriver + NIST form state) to fetch with
+     * @param composition Material composition
+     * @param config      User configuration
+     * @param te          Plasma Temperature (eV)
+     * @param ne          Electron Density (cm^-3)
+     * @return CSV content string
+     */
+    public String fetchPlasmaZoneSpectrum(GenerationSession generationSession, NistSession session,
+                                          List<Element> composition, UserInputConfig config,
+                                          double te, double ne, int remainderElementIdx) {
+        // Submit percentages that sum to exactly 100 so NIST does not reject the form with an alert
+        CompositionNormaliser.normalise(composition, remainderElementIdx, config.numDecimalPlaces);
+        // Key is built before fetching as alert handling may adjust the remainder element of the composition
+        SpectrumCache cache = generationSession.getSpectrumCache();
+        String cacheKey = SpectrumCache.buildCacheKey(composition, config, te, ne);
+        if (!config.forceFetch) {
+            String cachedCsv = cache.get(cacheKey);
+            if (cachedCsv != null) {
+                logger.info("Spectrum cache hit for Te=" + te + " eV, Ne=" + ne + " cm^-3");
+                return cachedCsv;
+            }
+        }
+
+        CircuitBreaker circuitBreaker = generationSession.getCircuitBreaker();
+        long ticket;
         try {
-            // Ensure session is active (initial fetch should have been done)
-            if (!seleniumUtils.isDriverOnline() || newVariation) {
-                logger.info("Starting new session for calibration fetch");
-                // Do a full initial fetch to set up the page state
-                config.plasmaTemp = String.valueOf(te);
-                config.electronDensity = String.valueOf(ne);
-                // Reset first composition flag to ensure proper setup
-//                firstComposition = true;
-                newVariation = false;
-                boolean quitDriver = config.isCompositionMode && !config.performVariations;
-                return fetchLIBSData(composition, config, quitDriver, remainderElementIdx);
-            }
-            
-            NISTUtils nistUtils = new NISTUtils(seleniumUtils);
-            
-            // Use client-side update for Te/Ne
-            nistUtils.updatePlasmaParameters(te, ne);
-            
-            // Download results
-            return nistUtils.downloadCsvData();
-            
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Failed to fetch calibration spectrum", e);
+            ticket = circuitBreaker.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warning("Interrupted while waiting for NIST to become reachable");
             return String.valueOf(HttpURLConnection.HTTP_NOT_FOUND);
         }
+        String csvData = String.valueOf(HttpURLConnection.HTTP_NOT_FOUND);
+        try {
+            csvData = fetchPlasmaZoneSpectrumFromNist(generationSession, session, composition, config, te, ne,
+                    remainderElementIdx);
+        } finally {
+            if (csvData.equals(String.valueOf(HttpURLConnection.HTTP_NOT_FOUND))) {
+                circuitBreaker.recordFailure(ticket);
+            } else {
+                circuitBreaker.recordSuccess(ticket);
+            }
+        }
+        if (!csvData.equals(String.valueOf(HttpURLConnection.HTTP_NOT_FOUND))) {
+            cache.put(cacheKey, csvData);
+        }
+        return csvData;
     }
 
-    private void fetchAndProcessSpectra(Map<String, Object> fetchedSpectralData, List<List<Element>> compositions,
-                                        UserInputConfig config, MaterialGrade sourceMaterial, InstrumentProfile instrumentProfile) {
-        int compositionsProcessed = 0;
-        PrintStream out = System.out;
+    /**
+     * Fetches spectrum for specific plasma parameters from NIST, over HTTP first if that is the fetch engine and
+     * with the browser session otherwise or if HTTP fails.
+     *
+     * @return CSV content string; HTTP_NOT_FOUND (404) error status string if failure.
+     */
+    private String fetchPlasmaZoneSpectrumFromNist(GenerationSession generationSession, NistSession session,
+                                                   List<Element> composition, UserInputConfig config,
+                                                   double te, double ne, int remainderElementIdx) {
+        String csvData = String.valueOf(HttpURLConnection.HTTP_NOT_FOUND);
+        if (config.fetchEngine == NistUrlOptions.FetchEngine.HTTP) {
+            csvData = fetchPlasmaZoneSpectrumOverHttp(generationSession.getNistHttpClient(), composition, config, te, ne);
+            if (csvData.equals(String.valueOf(HttpURLConnection.HTTP_NOT_FOUND))) {
+                logger.warning("HTTP fetch failed for Te=" + te + " eV, Ne=" + ne + " cm^-3. Falling back to browser");
+            }
+        }
+        if (csvData.equals(String.valueOf(HttpURLConnection.HTTP_NOT_FOUND))) {
+            csvData = generationSession.getRequestScheduler().execute(LIBSDataGenConstants.NIST_ENDPOINT_BROWSER,
+                    () -> fetchFromBrowser(session, composition, config, te, ne, false, remainderElementIdx));
+        }
+        return csvData;
+    }
+
+    /**
+     * Fetches spectrum for specific plasma parameters with a direct HTTP request to the NIST LIBS query script.
+     *
+     * @return CSV content string; HTTP_NOT_FOUND (404) error status string if failure.
+     */
+    private String fetchPlasmaZoneSpectrumOverHttp(NistHttpClient nistHttpClient, List<Element> composition,
+                                                   UserInputConfig config, double te, double ne) {
+        // Work on a copy so the caller's plasma parameters are left untouched
+        UserInputConfig zoneConfig = new UserInputConfig(config);
+        zoneConfig.plasmaTemp = String.valueOf(te);
+        zoneConfig.electronDensity = String.valueOf(ne);
+        Map<String, String> queryParams = processLIBSQueryParams(composition, zoneConfig);
+        return nistHttpClient.fetchCsvData(queryParams);
+    }
+
+    /**
+     * Returns the generation session used by callers that do not pass one, creating it on first use. Callers with
+     * different worker or cache settings get separate sessions, so no caller closes a session another thread may be
+     * fetching with. Every session is kept (with its browsers) until {@link #closeSessions()} is called.
+     */
+    GenerationSession getDefaultGenerationSession(UserInputConfig config) {
+        DefaultSessionKey key = new DefaultSessionKey(config.nistWorkers, config.nistRate, config.cacheDirPath,
+                config.cacheMaxSizeMb);
+        return defaultGenerationSessions.computeIfAbsent(key, k -> new GenerationSession(config));
+    }
 
-        // Get selenium instance for reuse across variations
-        SeleniumUtils seleniumUtils = SeleniumUtils.getInstance();
-        SpectrumUtils spectrumUtils = new  SpectrumUtils();
+    /**
+     * Closes every NIST browser session opened through the default generation sessions. To be called once when the
+     * run (or daemon) ends. Sessions passed in by the caller are closed by the caller.
+     */
+    public void closeSessions() {
+        for (DefaultSessionKey key : List.copyOf(defaultGenerationSessions.keySet())) {
+            GenerationSession session = defaultGenerationSessions.remove(key);
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Superposes the spectra of all compositions of a material from single-element basis spectra and hands each row
+     * to the row writer in composition order.
+     */
+    private void superposeSpectra(GenerationSession generationSession, Consumer<DatasetRow> rowWriter,
+                                  List<List<Element>> compositions, UserInputConfig config,
+                                  MaterialGrade sourceMaterial, InstrumentProfile instrumentProfile) {
+        PrintStream out = System.out;
+        if (config.speciesOutput) {
+            logger.warning("Species-resolved output is not available in superposition mode. Only the master dataset is written.");
+        }
+        // Fetch one basis spectrum per element per zone and build every composition locally.
+        // Sessions stay open until the generation session is closed.
+        SuperpositionService superpositionService = SuperpositionService.getInstance();
         try {
-            List<PlasmaZone> plasmaZones = instrumentProfile.getZones();
-            // For each composition, fetch the CSV, parse it, store data
+            Map<String, double[][]> basisSpectra = superpositionService.getBasisSpectra(compositions, config,
+                    instrumentProfile, generationSession);
+            int compositionsProcessed = 0;
             for (List<Element> composition : compositions) {
-                // Store for each composition's *string ID* -> (wave -> intensity) & (element symbol -> percentage)
-                Map<String, Object> compWaveIntensityMap = new HashMap<>();
-
-                // Fetch CSV data from NIST
-                String csvData;
                 String compositionId = commonUtils.buildCompositionStringForFilename(composition);
+                double[] combinedSpectrum = superpositionService.superpose(composition, basisSpectra, instrumentProfile);
+                rowWriter.accept(buildSpectralRow(compositionId, composition, combinedSpectrum, config, sourceMaterial));
+                CommonUtils.printProgressBar(++compositionsProcessed, compositions.size(), "samples completed", out);
+            }
+            // Print newline after progress bar completion
+            CommonUtils.finishProgressBar(compositions.size(), out);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while processing compositions for NIST website", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while processing compositions for NIST website", e);
+        }
+    }
 
-                logger.info("Applying instrument profile to synthetic spectra for " + compositionId);
-                List<Double> combinedSpectrum = new ArrayList<>();
-
-                for (int i = 0; i < plasmaZones.size(); i++) {
-                    csvData = fetchPlasmaZoneSpectrum(composition, config, plasmaZones.get(i).getTe(),
-                            plasmaZones.get(i).getNe(), sourceMaterial.getRemainderElementIdx());
-                    // If fetch failed, skip
-                    if (csvData.equals(String.valueOf(HttpURLConnection.HTTP_NOT_FOUND))) {
-                        logger.severe("Failed to fetch data for composition " + compositionId + " and plasma zone "
-                                + plasmaZones.get(i).toJson());
-                        break; // Stop if fails for even 1 plasma zone as combination won't work
-                    }
-                    // Parse wave->intensity
-                    Map<Double, Double> waveMap;
-                    try {
-                        waveMap = NISTUtils.parseNistCsv(csvData, config.wavelengthUnit.getUnitString());
-                        // One-time check to add first instance of wavelengths if instrument profile not available
-                        if (instrumentProfile.getWavelengthGrid() == null) {
-                            double[] wavelengthGrid = waveMap.keySet()
-                                            .stream().mapToDouble(Double::doubleValue).toArray();
-                            instrumentProfile.setWavelengthGrid(wavelengthGrid);
-                        }
-                    } catch (Exception e) {
-                        logger.log(Level.SEVERE, "Error parsing CSV for " + compositionId, e);
-                        continue;
-                    }
-                    double[] interpolatedSpectrum = spectrumUtils.interpolateSpectrum(waveMap, instrumentProfile.getWavelengthGrid());
-                    List<Double> scaledSpectrum = spectrumUtils.normaliseAndScaleSpectrum(interpolatedSpectrum, instrumentProfile.getScaleFactor());
-                    // First time population of combined spectrum
-                    double weight = plasmaZones.get(i).getWeight();
-                    if (combinedSpectrum.isEmpty()) {
-                        for (Double intensity: scaledSpectrum) {
-                            combinedSpectrum.add(intensity * weight);
-                        }
-                    } else {
-                        for (int j = 0; j < combinedSpectrum.size(); j++) {
-                            combinedSpectrum.set(j, combinedSpectrum.get(j) + scaledSpectrum.get(j) * weight);
-                        }
-                    }
+    /**
+     * Fetches the spectra of every pending composition of every material from NIST and writes them to the dataset
+     * through a staged pipeline: sampling, fetch, parse, resample, zone combination and the dataset sink run
+     * concurrently, connected by bounded queues. Fetching is done by one worker per NIST session; the numeric stages
+     * use the processing workers. Rows reach the sink in the order compositions were generated in, so the dataset is
+     * the same as when compositions are processed one at a time.
+     * <p>
+     * Compositions with a plasma zone that could not be fetched or parsed are not written. They are queued and
+     * retried once all materials are done, in rounds with exponentially growing backoff, refetching only their
+     * missing zones; rows that succeed on retry are appended to the dataset. Compositions that fail every round are
+     * reported as permanent failures and are left uncommitted in the run journal, so a resumed run tries them again.
+     */
+    private void fetchAndProcessSpectra(GenerationSession generationSession, List<MaterialGrade> materialGrades,
+                                        UserInputConfig config, InstrumentProfile instrumentProfile,
+                                        RunJournal journal, DatasetSink sink) {
+        PrintStream out = System.out;
+        SpectrumUtils spectrumUtils = new SpectrumUtils();
+        // Pool of browser sessions for concurrent fetches. Sessions stay open until the generation session is closed.
+        SeleniumSessionPool sessionPool = generationSession.getSessionPool();
+        if (sessionPool.size() > 1) {
+            logger.info("Fetching compositions across " + sessionPool.size() + " NIST browser sessions");
+        }
 
-                    // To go to the next variation
-                    if (i + 1 == plasmaZones.size()) {
-                        newVariation = true;
-                    }
+        StagedPipeline<CompositionWork> pipeline = buildPipeline(generationSession, config, instrumentProfile,
+                spectrumUtils);
+        RetryQueue<CompositionWork> retryQueue = new RetryQueue<>(LIBSDataGenConstants.NIST_RETRY_ROUNDS,
+                LIBSDataGenConstants.NIST_RETRY_BACKOFF_MILLIS);
+
+        // Sampling: builds the variations of each material and emits the ones not committed to the journal yet
+        Consumer<Consumer<CompositionWork>> sampling = emit -> {
+            for (int materialIdx = 0; materialIdx < materialGrades.size(); materialIdx++) {
+                MaterialGrade materialGrade = materialGrades.get(materialIdx);
+                // Sampling is replayed from the recorded seed so that variation indices match the interrupted run
+                List<List<Element>> compositions = buildCompositions(materialGrade, config);
+                List<Integer> variationIndices = new ArrayList<>();
+                List<List<Element>> pending = getPendingCompositions(journal, materialIdx, compositions,
+                        variationIndices);
+                for (int i = 0; i < pending.size(); i++) {
+                    emit.accept(new CompositionWork(materialIdx, materialGrade, variationIndices.get(i), i,
+                            pending.size(), pending.get(i)));
                 }
-                compWaveIntensityMap.put(LIBSDataGenConstants.SPECTRAL_DATA_MAP_KEY_SPECTRA, combinedSpectrum);
+            }
+        };
 
-                // Also store element symbols + their percentages
-                Map<String, Double> elemMap = new HashMap<>();
-                for (Element elem : composition) {
-                    elemMap.put(elem.getSymbol(), elem.getPercentageComposition());
+        try {
+            pipeline.run(sampling, work -> {
+                if (work.pendingIdx == 0 && config.performVariations) {
+                    System.out.println("Fetching LIBS spectra from NIST for all variations of "
+                            + work.materialGrade.getMaterialName());
                 }
-                compWaveIntensityMap.put(LIBSDataGenConstants.SPECTRAL_DATA_MAP_KEY_COMPOSITIONS, elemMap);
-
-                // Add class label columns based on configuration
-                // If user explicitly specified a class type, only add that specific column
-                // Otherwise, add both material grade name and material type columns by default
-                if (config.classLabelTypeExplicitlySet) {
-                    // User explicitly selected a class type
-                    if (config.classLabelType != ClassLabelType.COMPOSITION_PERCENTAGE) {
-                        // Add only the specific class column requested
-                        String classLabelColumnName = getClassLabelColumnName(config.classLabelType);
-                        String classLabel = generateClassLabel(config.classLabelType, sourceMaterial);
-                        compWaveIntensityMap.put(classLabelColumnName, classLabel);
-                    }
-                    // For composition percentages (type 1), no additional class column is needed as the individual element columns serve as the class labels
+                if (work.failed) {
+                    retryQueue.add(work);
                 } else {
-                    // Default behavior: add both material columns
-                    String gradeLabel = generateClassLabel(ClassLabelType.MATERIAL_GRADE_NAME, sourceMaterial);
-                    String typeLabel = generateClassLabel(ClassLabelType.MATERIAL_TYPE, sourceMaterial);
-                    compWaveIntensityMap.put(LIBSDataGenConstants.CSV_HEADER_MATERIAL_GRADE_NAME, gradeLabel);
-                    compWaveIntensityMap.put(LIBSDataGenConstants.CSV_HEADER_MATERIAL_TYPE, typeLabel);
+                    writeRow(sink, journal, work, config, instrumentProfile);
                 }
-                fetchedSpectralData.put(compositionId, compWaveIntensityMap);
+                CommonUtils.printProgressBar(work.pendingIdx + 1, work.pendingCount, "samples completed", out);
+                if (work.pendingIdx + 1 == work.pendingCount) {
+                    // Print newline after progress bar completion
+                    CommonUtils.finishProgressBar(work.pendingCount, out);
+                    if (config.performVariations) {
+                        logger.info("Finished fetching LIBS spectra for all variations of " + work.materialGrade);
+                    } else {
+                        // This is the original non-variation path for -c
+                        logger.info("Finished fetching LIBS data for composition: " + work.materialGrade);
+                    }
+                }
+            });
+            if (retryQueue.size() > 0) {
+                System.out.println(retryQueue.size() + " composition(s) could not be fetched from NIST. Retrying...");
+            }
+            // Cached spectra that failed to parse must not be read from the cache again
+            UserInputConfig retryConfig = new UserInputConfig(config);
+            retryConfig.forceFetch = true;
+            StagedPipeline<CompositionWork> retryPipeline = buildPipeline(generationSession, retryConfig,
+                    instrumentProfile, spectrumUtils);
+            List<CompositionWork> permanentFailures = retryQueue.drain(failed -> {
+                List<CompositionWork> failedAgain = new ArrayList<>();
+                try {
+                    retryPipeline.run(failed::forEach, work -> {
+                        if (work.failed) {
+                            failedAgain.add(work);
+                        } else {
+                            logger.info("Fetched " + work.compositionId + " of " + work.materialGrade + " on retry");
+                            writeRow(sink, journal, work, config, instrumentProfile);
+                        }
+                    });
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Error while retrying compositions for NIST website", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while retrying compositions for NIST website", e);
+                }
+                return failedAgain;
+            });
+            reportPermanentFailures(permanentFailures, journal);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while processing compositions for NIST website", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while processing compositions for NIST website", e);
+        }
+    }
+
+    /**
+     * Builds the generation pipeline's stages: fetch (one worker per NIST session), then parse, resample and zone
+     * combination (processing workers).
+     */
+    private StagedPipeline<CompositionWork> buildPipeline(GenerationSession generationSession, UserInputConfig config,
+                                                          InstrumentProfile instrumentProfile,
+                                                          SpectrumUtils spectrumUtils) {
+        SeleniumSessionPool sessionPool = generationSession.getSessionPool();
+        return new StagedPipeline<CompositionWork>(2 * (sessionPool.size() + config.processingWorkers))
+                .stage("fetch", StagedPipeline.StageType.IO, sessionPool.size(), work -> {
+                    NistSession session = null;
+                    try {
+                        session = sessionPool.acquire();
+                        // Each composition gets its own config copy as plasma parameters are overwritten per zone
+                        return fetchZones(generationSession, session, work, new UserInputConfig(config),
+                                instrumentProfile);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for a NIST session", e);
+                    } finally {
+                        sessionPool.release(session);
+                    }
+                })
+                .stage("parse", StagedPipeline.StageType.CPU, config.processingWorkers,
+                        work -> parseZones(work, config, instrumentProfile))
+                .stage("resample", StagedPipeline.StageType.CPU, config.processingWorkers,
+                        work -> resampleZones(work, config, instrumentProfile, spectrumUtils))
+                .stage("combine", StagedPipeline.StageType.CPU, config.processingWorkers,
+                        work -> combineZones(work, config, instrumentProfile, spectrumUtils));
+    }
 
-                // Calculate progress
-                CommonUtils.printProgressBar(compositionsProcessed + 1, compositions.size(), "samples completed", out);
-                compositionsProcessed++;
+    /**
+     * Prints the number of compositions that could not be fetched even after retrying and logs which ones they were.
+     */
+    private void reportPermanentFailures(List<CompositionWork> permanentFailures, RunJournal journal) {
+        if (permanentFailures.isEmpty()) {
+            return;
+        }
+        for (CompositionWork work : permanentFailures) {
+            if (journal != null) {
+                journal.skip();
             }
+            logger.severe("Giving up on composition " + work.compositionId + " (variation " + work.variationIdx
+                    + ") of " + work.materialGrade + " after " + LIBSDataGenConstants.NIST_RETRY_ROUNDS + " retries");
+        }
+        System.out.println(permanentFailures.size() + " composition(s) could not be fetched from NIST and are "
+                + "missing from the dataset.");
+        if (journal != null) {
+            System.out.println("Resume the run with --resume " + journal.getRunId() + " to fetch them again.");
+        }
+    }
 
-            // Print newline after progress bar completion
-            CommonUtils.finishProgressBar(compositions.size(), out);
-        } catch (Exception e) {
-            throw new RuntimeException("Error while processing compositions for NIST website", e);
-        } finally {
-            // Clean up: close the browser session if it's still open
-            if (seleniumUtils.isDriverOnline()) {
-                seleniumUtils.quitSelenium();
-                logger.info("Browser session closed after processing all compositions");
+    /**
+     * Writes a row to the dataset and, once it is on disk, commits it to the run journal. Rows without a spectrum are
+     * not committed so that a resumed run fetches them again.
+     */
+    private void writeRow(DatasetSink sink, RunJournal journal, CompositionWork work, UserInputConfig config,
+                          InstrumentProfile instrumentProfile) {
+        writeRow(sink, journal, new RunJournal.Entry(work.materialIdx, work.materialGrade.getMaterialName(),
+                work.variationIdx, config.seed, work.row.getCompositionId()), work.row, instrumentProfile);
+    }
+
+    private void writeRow(DatasetSink sink, RunJournal journal, RunJournal.Entry entry, DatasetRow row,
+                          InstrumentProfile instrumentProfile) {
+        try {
+            sink.write(row, instrumentProfile.getWavelengthGrid());
+            if (journal != null && !row.isEmpty()) {
+                journal.commit(entry, sink.checkpoint());
+            } else if (journal != null) {
+                journal.skip();
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing dataset row for " + row.getCompositionId(), e);
         }
     }
 
-    public void generateDataset(List<MaterialGrade> materialGrades, UserInputConfig config, InstrumentProfile instrumentProfile) {
+    /**
+     * One composition on its way through the generation pipeline. Each stage fills in the fields of the next.
+     */
+    private static class CompositionWork {
+        final int materialIdx;
+        final MaterialGrade materialGrade;
+        final int variationIdx;
+        // Position among the pending compositions of the material, for progress reporting
+        final int pendingIdx;
+        final int pendingCount;
+        final List<Element> composition;
+        String compositionId;
+        // Per plasma zone. Parsed spectra are kept until every zone is there, so a retry only refetches missing zones.
+        String[] zoneCsv;
+        Spectrum[] zoneSpectra;
+        // A plasma zone could not be fetched or parsed
+        boolean failed;
+        double[][] zoneIntensities;
+        List<Map<String, double[]>> zoneSpecies;
+        DatasetRow row;
+
+        CompositionWork(int materialIdx, MaterialGrade materialGrade, int variationIdx, int pendingIdx,
+                        int pendingCount, List<Element> composition) {
+            this.materialIdx = materialIdx;
+            this.materialGrade = materialGrade;
+            this.variationIdx = variationIdx;
+            this.pendingIdx = pendingIdx;
+            this.pendingCount = pendingCount;
+            this.composition = composition;
+        }
+    }
 
-        // Initialise instrument profile with single default plasma zone if no config file present
-        if (instrumentProfile ==  null) {
-            instrumentProfile = new InstrumentProfile(null, null, null);
-                PlasmaZone defaultPlasmaZone = new PlasmaZone(Double.parseDouble(config.plasmaTemp),
-                        Double.parseDouble(config.electronDensity), 1.0);
-            instrumentProfile.setZones(new  ArrayList<>(List.of(defaultPlasmaZone)));
+    /**
+     * Fetches all plasma zone spectra for a single composition from NIST on the given session and combines them into
+     * one row of spectral data.
+     *
+     * @return Dataset row of the composition (with an empty spectrum if any plasma zone could not be fetched or parsed)
+     */
+    private DatasetRow processComposition(GenerationSession generationSession, NistSession session,
+                                          List<Element> composition, UserInputConfig config,
+                                          MaterialGrade sourceMaterial, InstrumentProfile instrumentProfile,
+                                          SpectrumUtils spectrumUtils) {
+        CompositionWork work = new CompositionWork(0, sourceMaterial, 0, 0, 1, composition);
+        fetchZones(generationSession, session, work, config, instrumentProfile);
+        parseZones(work, config, instrumentProfile);
+        resampleZones(work, config, instrumentProfile, spectrumUtils);
+        return combineZones(work, config, instrumentProfile, spectrumUtils).row;
+    }
+
+    /**
+     * Fetch stage: downloads the spectrum CSV of every plasma zone not parsed yet, stopping at the first zone that
+     * cannot be fetched as the combination won't work without it.
+     */
+    private CompositionWork fetchZones(GenerationSession generationSession, NistSession session, CompositionWork work,
+                                       UserInputConfig config, InstrumentProfile instrumentProfile) {
+        List<PlasmaZone> plasmaZones = instrumentProfile.getZones();
+        if (work.compositionId == null) {
+            work.compositionId = commonUtils.buildCompositionStringForFilename(work.composition);
+            work.zoneCsv = new String[plasmaZones.size()];
+            work.zoneSpectra = new Spectrum[plasmaZones.size()];
         }
 
-        Set<Double> allWavelengths = new TreeSet<>();
-        Map<String, Object> fetchedSpectralData = new HashMap<>();
-        fetchedSpectralData.put(LIBSDataGenConstants.SPECTRAL_DATA_MAP_KEY_WAVELENGTHS, allWavelengths); // Initialise wavelength TreeSet to be updated for each composition
+        for (int i = 0; i < plasmaZones.size(); i++) {
+            if (work.zoneSpectra[i] != null) {
+                continue;
+            }
+            String csvData = fetchPlasmaZoneSpectrum(generationSession, session, work.composition, config,
+                    plasmaZones.get(i).getTe(), plasmaZones.get(i).getNe(), work.materialGrade.getRemainderElementIdx());
+            // If fetch failed, skip
+            if (csvData.equals(String.valueOf(HttpURLConnection.HTTP_NOT_FOUND))) {
+                logger.severe("Failed to fetch data for composition " + work.compositionId + " and plasma zone "
+                        + plasmaZones.get(i).toJson());
+                break; // Stop if fails for even 1 plasma zone as combination won't work
+            }
+            work.zoneCsv[i] = csvData;
+        }
+        return work;
+    }
 
-        for (MaterialGrade materialGrade : materialGrades) {
-            if (config.performVariations) {
-                if (config.variationMode == NistUrlOptions.VariationMode.DIRICHLET) {
-                    if (materialGrade.getParentSeries().getOverviewGuid() == null) {
-                        System.out.println("Please provide an overview GUID to generate variations.");
-                        logger.severe("Overview GUID not present for Dirichlet sampling for "
-                                + commonUtils.buildCompositionString(materialGrade.getComposition()) + ". Skipping!");
-                        continue;
+    /**
+     * Parse stage: parses the wave->intensity columns (with per-species columns if species output is on) of every
+     * fetched zone. The first parsed spectrum provides the wavelength grid if the instrument profile has none.
+     */
+    private CompositionWork parseZones(CompositionWork work, UserInputConfig config,
+                                       InstrumentProfile instrumentProfile) {
+        for (int i = 0; i < work.zoneCsv.length; i++) {
+            if (work.zoneCsv[i] == null) {
+                continue;
+            }
+            try {
+                Spectrum nistSpectrum = NISTUtils.parseNistSpectrum(work.zoneCsv[i],
+                        config.wavelengthUnit.getUnitString(), config.speciesOutput);
+                // One-time check to add first instance of wavelengths if instrument profile not available
+                synchronized (instrumentProfile) {
+                    if (instrumentProfile.getWavelengthGrid() == null) {
+                        instrumentProfile.setWavelengthGrid(nistSpectrum.getWavelengths().clone());
                     }
                 }
+                work.zoneSpectra[i] = nistSpectrum;
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Error parsing CSV for " + work.compositionId + ". The zone will be fetched again.", e);
+            }
+            work.zoneCsv[i] = null; // No longer needed
+        }
+        return work;
+    }
 
-                List<List<Element>> compositions = CompositionalVariations.getInstance()
-                        .generateCompositionalVariations(materialGrade, config);
+    /**
+     * Resample stage: interpolates every parsed zone spectrum (and its species) onto the instrument wavelength grid.
+     * Marks the composition as failed if any zone is missing, keeping the parsed zones for a retry.
+     */
+    private CompositionWork resampleZones(CompositionWork work, UserInputConfig config,
+                                          InstrumentProfile instrumentProfile, SpectrumUtils spectrumUtils) {
+        work.failed = Arrays.asList(work.zoneSpectra).contains(null);
+        if (work.failed) {
+            return work;
+        }
+        double[] wavelengthGrid;
+        synchronized (instrumentProfile) {
+            wavelengthGrid = instrumentProfile.getWavelengthGrid();
+        }
+        work.zoneIntensities = new double[work.zoneSpectra.length][];
+        work.zoneSpecies = config.speciesOutput ? new ArrayList<>() : null;
+        for (int i = 0; i < work.zoneSpectra.length; i++) {
+            Spectrum nistSpectrum = work.zoneSpectra[i];
+            if (work.zoneSpecies != null) {
+                work.zoneSpecies.add(spectrumUtils.interpolateSpecies(nistSpectrum, wavelengthGrid));
+            }
+            work.zoneIntensities[i] = spectrumUtils.interpolateSpectrum(nistSpectrum.getWavelengths(),
+                    nistSpectrum.getIntensities(), wavelengthGrid);
+        }
+        work.zoneSpectra = null;
+        return work;
+    }
 
-                if (compositions != null && !compositions.isEmpty()) {
-                    // Apply coating to all variations of material if this is a coated series
-                    if (materialGrade.getParentSeries().isCoated()) {
-                        SeriesInput series = materialGrade.getParentSeries();
-                        compositions = InputCompositionProcessor.getInstance().applyCoating(compositions,
-                                series.getCoatingElement(), config.scaleCoating);
-                    }
-                    System.out.println("Fetching LIBS spectra from NIST for all variations of " + materialGrade.getMaterialName());
-                    fetchAndProcessSpectra(fetchedSpectralData, compositions, config, materialGrade, instrumentProfile);
-                    logger.info("Successfully fetched LIBS spectra for all variations of " + materialGrade);
+    /**
+     * Zone-combine stage: normalises, scales and weights every zone spectrum into the combined spectrum of the
+     * composition and assembles its dataset row. Failed compositions get a row without a spectrum.
+     */
+    private CompositionWork combineZones(CompositionWork work, UserInputConfig config,
+                                         InstrumentProfile instrumentProfile, SpectrumUtils spectrumUtils) {
+        if (work.failed) {
+            work.row = buildSpectralRow(work.compositionId, work.composition, null, config, work.materialGrade);
+            return work;
+        }
+        List<PlasmaZone> plasmaZones = instrumentProfile.getZones();
+        logger.info("Applying instrument profile to synthetic spectra for " + work.compositionId);
+        double[] combinedSpectrum = null;
+        // Species -> combined intensities, scaled the same way as the zone spectra so that species add up to the total
+        Map<String, double[]> combinedSpecies = config.speciesOutput ? new LinkedHashMap<>() : null;
+
+        for (int i = 0; i < work.zoneIntensities.length; i++) {
+            double[] zoneSpectrum = work.zoneIntensities[i];
+            if (combinedSpectrum == null) {
+                combinedSpectrum = new double[zoneSpectrum.length];
+            }
+            double weight = plasmaZones.get(i).getWeight();
+            if (combinedSpecies != null) {
+                addZoneSpecies(combinedSpecies, work.zoneSpecies.get(i), zoneSpectrum,
+                        instrumentProfile.getScaleFactor() * weight);
+            }
+            spectrumUtils.addNormalisedAndScaled(combinedSpectrum, zoneSpectrum, instrumentProfile.getScaleFactor(),
+                    weight);
+        }
+        work.zoneIntensities = null;
+        work.zoneSpecies = null;
+        work.row = buildSpectralRow(work.compositionId, work.composition, combinedSpectrum, config, work.materialGrade);
+        work.row.setSpecies(combinedSpecies);
+        return work;
+    }
+
+    /**
+     * Adds one plasma zone's species intensities to the combined species spectra. Species are normalised by the
+     * zone's total (Sum) maximum, like the total spectrum itself, so the combined species add up to the combined spectrum.
+     *
+     * @param combinedSpecies   Combined species intensities to add to
+     * @param zoneSpecies       Interpolated species intensities of the zone
+     * @param zoneSpectrum      Interpolated total intensities of the zone
+     * @param zoneScale         Instrument scale factor times zone weight
+     */
+    private void addZoneSpecies(Map<String, double[]> combinedSpecies, Map<String, double[]> zoneSpecies,
+                                double[] zoneSpectrum, double zoneScale) {
+        double max = Arrays.stream(zoneSpectrum).max().orElse(0.0);
+        if (max <= 0) {
+            return; // Zone spectrum normalises to zeros
+        }
+        double factor = zoneScale / max;
+        for (Map.Entry<String, double[]> entry : zoneSpecies.entrySet()) {
+            double[] combined = combinedSpecies.computeIfAbsent(entry.getKey(), k -> new double[zoneSpectrum.length]);
+            double[] intensities = entry.getValue();
+            for (int j = 0; j < combined.length; j++) {
+                combined[j] += intensities[j] * factor;
+            }
+        }
+    }
+
+    /**
+     * Assembles one row of spectral data: the combined spectrum, the element percentages and the class labels.
+     */
+    private DatasetRow buildSpectralRow(String compositionId, List<Element> composition, double[] combinedSpectrum,
+                                        UserInputConfig config, MaterialGrade sourceMaterial) {
+        // Element symbols + their percentages
+        Map<String, Double> elemMap = new HashMap<>();
+        for (Element elem : composition) {
+            elemMap.put(elem.getSymbol(), elem.getPercentageComposition());
+        }
+
+        Map<String, String> classLabels = new LinkedHashMap<>();
+        for (ClassLabelType classLabelType : getClassLabelTypes(config)) {
+            classLabels.put(getClassLabelColumnName(classLabelType), generateClassLabel(classLabelType, sourceMaterial));
+        }
+        return new DatasetRow(compositionId, combinedSpectrum, elemMap, classLabels);
+    }
+
+    /**
+     * Class labels written after the element columns of the master dataset.
+     * If user explicitly specified a class type, only that specific column is added. Otherwise, both material grade
+     * name and material type columns are added by default.
+     */
+    private List<ClassLabelType> getClassLabelTypes(UserInputConfig config) {
+        if (config.classLabelTypeExplicitlySet) {
+            // For composition percentages (type 1), no additional class column is needed as the individual element columns serve as the class labels
+            return config.classLabelType == ClassLabelType.COMPOSITION_PERCENTAGE
+                    ? List.of() : List.of(config.classLabelType);
+        }
+        // Default behavior: add both material columns
+        return List.of(ClassLabelType.MATERIAL_GRADE_NAME, ClassLabelType.MATERIAL_TYPE);
+    }
+
+    /**
+     * Opens the dataset sink that rows of this run are streamed to.
+     */
+    private DatasetSink openDatasetSink(UserInputConfig config, InstrumentProfile instrumentProfile) {
+        List<String> classLabelColumns = new ArrayList<>();
+        for (ClassLabelType classLabelType : getClassLabelTypes(config)) {
+            classLabelColumns.add(getClassLabelColumnName(classLabelType));
+        }
+        if (config.outputFormat == OutputFormat.CSV) {
+            return new CsvDatasetSink(Paths.get(config.csvDirPath), config.appendMode, classLabelColumns,
+                    config.speciesOutput, instrumentProfile.getWavelengthGrid());
+        }
+        return new NpyDatasetSink(Paths.get(config.csvDirPath), config.appendMode, classLabelColumns,
+                config.npyDtype.getDescr(), config.outputFormat == OutputFormat.NPZ);
+    }
+
+    public void generateDataset(List<MaterialGrade> materialGrades, UserInputConfig config, InstrumentProfile instrumentProfile) {
+        generateDataset(materialGrades, config, instrumentProfile, null);
+    }
+
+    /**
+     * Generates the dataset, committing every written row to the run journal. If the journal belongs to a resumed
+     * run, the dataset files are first rolled back to the last committed row and variations committed before the
+     * interruption are skipped.
+     *
+     * @param journal Run journal (null to generate without one)
+     */
+    public void generateDataset(List<MaterialGrade> materialGrades, UserInputConfig config, InstrumentProfile instrumentProfile,
+                                RunJournal journal) {
+        generateDataset(getDefaultGenerationSession(config), materialGrades, config, instrumentProfile, journal);
+    }
+
+    /**
+     * Generates the dataset with the browsers, caches and configuration of the given session. Several sessions can
+     * generate datasets concurrently.
+     *
+     * @param journal Run journal (null to generate without one)
+     */
+    public void generateDataset(GenerationSession session, List<MaterialGrade> materialGrades,
+                                InstrumentProfile instrumentProfile, RunJournal journal) {
+        generateDataset(session, materialGrades, session.getConfig(), instrumentProfile, journal);
+    }
+
+    private void generateDataset(GenerationSession session, List<MaterialGrade> materialGrades, UserInputConfig config,
+                                 InstrumentProfile instrumentProfile, RunJournal journal) {
+
+        // Initialise instrument profile with single default plasma zone if no config file present
+        if (instrumentProfile ==  null) {
+            instrumentProfile = createDefaultInstrumentProfile(config);
+        }
+        final InstrumentProfile profile = instrumentProfile;
+
+        // Rows are written in the order compositions were generated in, as soon as each one is complete
+        try {
+            if (journal != null && journal.hasCommittedOutput()) {
+                // Continue after the last committed row of the interrupted run
+                journal.rollBackOutput();
+                config.appendMode = true;
+            }
+            try (DatasetSink sink = openDatasetSink(config, profile)) {
+                if (journal != null) {
+                    journal.recordOutputStart(sink.checkpoint());
+                }
+                if (!config.superposition) {
+                    // Fetch, parse, resample and combine run as concurrent stages across all materials
+                    fetchAndProcessSpectra(session, materialGrades, config, profile, journal, sink);
                 } else {
-                    logger.warning("No compositions generated for input: " + materialGrade);
+                    superposeDataset(session, materialGrades, config, profile, journal, sink);
                 }
-            } else {
-                // This is the original non-variation path for -c
-                List<List<Element>> compositions = new ArrayList<>(); // Dummy list of list just to hold one composition for compatability
-                compositions.add(materialGrade.getComposition());
-                fetchAndProcessSpectra(fetchedSpectralData, compositions, config, materialGrade, instrumentProfile);
-                logger.info("Successfully fetched LIBS data for composition: " + materialGrade);
             }
+            // Unless rows were left out, the run is done and must not be resumed (and roll back later runs' rows)
+            if (journal != null) {
+                journal.finish();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.log(Level.SEVERE, "Error writing master dataset CSV", e);
         }
-        fetchedSpectralData.put(LIBSDataGenConstants.SPECTRAL_DATA_MAP_KEY_WAVELENGTHS, instrumentProfile.getWavelengthGrid());
-        writeSpectralDataToMasterCsv(fetchedSpectralData, config);
+    }
 
+    /**
+     * Superposes the spectra of every material's pending compositions from basis spectra and writes them to the sink.
+     */
+    private void superposeDataset(GenerationSession session, List<MaterialGrade> materialGrades,
+                                  UserInputConfig config, InstrumentProfile profile, RunJournal journal,
+                                  DatasetSink sink) {
+        for (int materialIdx = 0; materialIdx < materialGrades.size(); materialIdx++) {
+            MaterialGrade materialGrade = materialGrades.get(materialIdx);
+            // Sampling is replayed from the recorded seed so that variation indices match the interrupted run
+            List<List<Element>> compositions = buildCompositions(materialGrade, config);
+            List<Integer> variationIndices = new ArrayList<>();
+            List<List<Element>> pending = getPendingCompositions(journal, materialIdx, compositions,
+                    variationIndices);
+            if (pending.isEmpty()) {
+                continue;
+            }
+            int matIdx = materialIdx;
+            Iterator<Integer> variationIdx = variationIndices.iterator();
+            Consumer<DatasetRow> rowWriter = row -> writeRow(sink, journal, new RunJournal.Entry(matIdx,
+                    materialGrade.getMaterialName(), variationIdx.next(), config.seed, row.getCompositionId()),
+                    row, profile);
+            if (config.performVariations) {
+                System.out.println("Fetching LIBS spectra from NIST for all variations of " + materialGrade.getMaterialName());
+            }
+            superposeSpectra(session, rowWriter, pending, config, materialGrade, profile);
+            logger.info("Successfully superposed LIBS spectra for " + materialGrade);
+        }
     }
 
-    private void writeSpectralDataToMasterCsv(Map<String, Object> fetchedSpectralData, UserInputConfig config) {
+    /**
+     * Returns the compositions of a material that have not been committed to the run journal yet.
+     *
+     * @param variationIndices Filled with the variation index of each returned composition
+     */
+    private List<List<Element>> getPendingCompositions(RunJournal journal, int materialIdx,
+                                                       List<List<Element>> compositions, List<Integer> variationIndices) {
+        List<List<Element>> pending = new ArrayList<>();
+        for (int i = 0; i < compositions.size(); i++) {
+            RunJournal.Entry completed = journal != null ? journal.getCompleted(materialIdx, i) : null;
+            if (completed == null) {
+                pending.add(compositions.get(i));
+                variationIndices.add(i);
+                continue;
+            }
+            String compositionId = commonUtils.buildCompositionStringForFilename(compositions.get(i));
+            if (!completed.compositionId.equals(compositionId)) {
+                logger.warning("Replayed variation " + i + " of " + completed.materialName + " is " + compositionId
+                        + " but " + completed.compositionId + " was committed. Keeping the committed row.");
+            }
+        }
+        int skipped = compositions.size() - pending.size();
+        if (skipped > 0) {
+            logger.info("Skipping " + skipped + " of " + compositions.size() + " compositions already committed to run "
+                    + journal.getRunId());
+        }
+        return pending;
+    }
 
-        try {
-            // Create data/ path in tool home
-            Path dataDirPath = Paths.get(config.csvDirPath);
-            if (!Files.exists(dataDirPath)) {
-                Files.createDirectories(dataDirPath);
-            }
-
-            // Write a single "master CSV" with all results
-            // Get sorted wavelengths stored in fetchedSpectra from InstrumentProfile
-            double[] sortedWavelengths = (double[]) fetchedSpectralData.remove(LIBSDataGenConstants.SPECTRAL_DATA_MAP_KEY_WAVELENGTHS);
-            // Use STD_ELEMENT_LIST for header and row structure for elements
-            List<String> sortedSymbols = new ArrayList<>(Arrays.asList(LIBSDataGenConstants.STD_ELEMENT_LIST));
-            Collections.sort(sortedSymbols); // Ensure canonical order
-
-            // Build header
-            List<String> header = buildHeader(config, sortedWavelengths, sortedSymbols);
-
-            // Write out to "master.csv" inside savePath
-            Path masterCsvPath = Paths.get(config.csvDirPath, LIBSDataGenConstants.MASTER_DATASET_FILENAME);
-            // Ensure the 'header' List<String> is converted to String[] for getCsvPrinter
-
-            String[] headerArray = header.toArray(new String[0]);
-            try (CSVPrinter printer = CSVUtils.getCsvPrinter(masterCsvPath, config.appendMode, headerArray)) {
-                // If appending, and the file might have already existed and had data (and thus headers),
-                // CSVUtils.getCsvPrinter when appendMode=true opens without writing new headers.
-                // If not appending, or if appending and file is new, headers are written by CSVUtils.
-
-                // Each composition => one row
-                for (String compId : fetchedSpectralData.keySet()) {
-                    // Get the specific element maps for the row
-                    Map<String, Object> compSpectralData = (Map<String, Object>) fetchedSpectralData.get(compId);
-                    List<Double> spectrum = (ArrayList<Double>) compSpectralData.get(LIBSDataGenConstants.SPECTRAL_DATA_MAP_KEY_SPECTRA);
-                    Map<String, Double> elemMap = (Map<String, Double>) compSpectralData.get(LIBSDataGenConstants.SPECTRAL_DATA_MAP_KEY_COMPOSITIONS);
-                    String gradeLabel = (String) compSpectralData.get(LIBSDataGenConstants.CSV_HEADER_MATERIAL_GRADE_NAME);
-                    String typeLabel = (String) compSpectralData.get(LIBSDataGenConstants.CSV_HEADER_MATERIAL_TYPE);
-
-                    List<String> row = new ArrayList<>();
-                    row.add(compId);
-
-                    // Add intensity values of spectrum to row
-                    for (Double intensity : spectrum) {
-                        row.add(String.valueOf(intensity));
-                    }
+    /**
+     * Validates the basis spectrum superposition engine. For every input composition (or compositional variation)
+     * the spectrum is fetched from NIST and also superposed from single-element basis spectra. The error between the
+     * two is saved as a report in the output directory and summarised on the console.
+     */
+    public void validateSuperposition(List<MaterialGrade> materialGrades, UserInputConfig config, InstrumentProfile instrumentProfile) {
+        validateSuperposition(getDefaultGenerationSession(config), materialGrades, config, instrumentProfile);
+    }
 
-                    // For each element symbol FROM STD_ELEMENT_LIST, add the percentage
-                    for (String sym : sortedSymbols) {
-                        // Correctly gets 0 if element not in this specific compId's map
-                        Double pct = elemMap.getOrDefault(sym, 0.0);
-                        row.add(String.valueOf(pct));
-                    }
+    /**
+     * Validates superposition with the browsers, caches and configuration of the given session.
+     */
+    public void validateSuperposition(GenerationSession session, List<MaterialGrade> materialGrades,
+                                      InstrumentProfile instrumentProfile) {
+        validateSuperposition(session, materialGrades, session.getConfig(), instrumentProfile);
+    }
 
-                    if (gradeLabel != null) {
-                        row.add(gradeLabel);
-                    }
-                    if (typeLabel != null) {
-                        row.add(typeLabel);
-                    }
+    private void validateSuperposition(GenerationSession generationSession, List<MaterialGrade> materialGrades,
+                                       UserInputConfig config, InstrumentProfile instrumentProfile) {
+        final InstrumentProfile profile = instrumentProfile != null ? instrumentProfile : createDefaultInstrumentProfile(config);
+        SuperpositionService superpositionService = SuperpositionService.getInstance();
+        SpectrumUtils spectrumUtils = new SpectrumUtils();
+        List<SuperpositionService.ValidationResult> results = new ArrayList<>();
 
-                    printer.printRecord(row);
+        SeleniumSessionPool sessionPool = generationSession.getSessionPool();
+        try {
+            for (MaterialGrade materialGrade : materialGrades) {
+                List<List<Element>> compositions = buildCompositions(materialGrade, config);
+                if (compositions.isEmpty()) {
+                    continue;
                 }
+                System.out.println("Validating superposed spectra against NIST for " + materialGrade.getMaterialName());
+                Map<String, double[][]> basisSpectra = superpositionService.getBasisSpectra(compositions, config,
+                        profile, generationSession);
+                List<DatasetRow> fetchedCompositions = sessionPool.processInOrder(compositions,
+                        (session, composition) -> processComposition(generationSession, session, composition,
+                                new UserInputConfig(config), materialGrade, profile, spectrumUtils));
+
+                for (int i = 0; i < compositions.size(); i++) {
+                    String compositionId = fetchedCompositions.get(i).getCompositionId();
+                    double[] reference = fetchedCompositions.get(i).getSpectrum();
+                    if (fetchedCompositions.get(i).isEmpty()) {
+                        logger.warning("No NIST spectrum for " + compositionId + ". Skipping from validation.");
+                        continue;
+                    }
+                    // Superposed after the fetch so any remainder adjustment made for NIST is reflected
+                    double[] superposed = superpositionService.superpose(compositions.get(i), basisSpectra, profile);
+                    results.add(superpositionService.compare(compositionId, superposed, reference));
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while validating superposition against NIST", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while validating superposition against NIST", e);
+        }
+        writeSuperpositionValidationReport(results, config);
+    }
 
-                logger.info("Master dataset saved to: " + masterCsvPath.toAbsolutePath()); // Enhanced log
+    private void writeSuperpositionValidationReport(List<SuperpositionService.ValidationResult> results,
+                                                    UserInputConfig config) {
+        if (results.isEmpty()) {
+            System.out.println("No compositions could be validated. Please check logs for details.");
+            return;
+        }
 
-            } catch (IOException e) {
-                logger.log(Level.SEVERE, "Error writing master dataset CSV", e);
+        Path reportPath = Paths.get(config.csvDirPath, LIBSDataGenConstants.SUPERPOSITION_VALIDATION_FILENAME);
+        try {
+            Files.createDirectories(reportPath.getParent());
+            String[] header = {"composition", "rmse", "r_squared", "max_abs_error"};
+            try (CSVPrinter printer = CSVUtils.getCsvPrinter(reportPath, false, header)) {
+                for (SuperpositionService.ValidationResult result : results) {
+                    printer.printRecord(result.compositionId, result.rmse, result.rSquared, result.maxAbsError);
+                }
             }
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error writing master dataset CSV", e);
+            logger.info("Superposition validation report saved to: " + reportPath.toAbsolutePath());
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error writing superposition validation report", e);
         }
+
+        double meanRmse = results.stream().mapToDouble(r -> r.rmse).average().orElse(Double.NaN);
+        double maxRmse = results.stream().mapToDouble(r -> r.rmse).max().orElse(Double.NaN);
+        double meanRSquared = results.stream().mapToDouble(r -> r.rSquared).average().orElse(Double.NaN);
+        double minRSquared = results.stream().mapToDouble(r -> r.rSquared).min().orElse(Double.NaN);
+        System.out.println("Superposition validated on " + results.size() + " composition(s) (spectra normalised to [0, 1]):");
+        System.out.printf("  RMSE: mean %.6f, max %.6f%n", meanRmse, maxRmse);
+        System.out.printf("  r^2:  mean %.6f, min %.6f%n", meanRSquared, minRSquared);
+        System.out.println("Report saved to " + reportPath.toAbsolutePath());
     }
 
-    private List<String> buildHeader(UserInputConfig config, double[] sortedWavelengths, List<String> sortedSymbols) {
-        List<String> header = new ArrayList<>();
-        header.add("composition");
-        // Add wave columns
-        for (double w : sortedWavelengths) {
-            header.add(String.valueOf(w));
+    /**
+     * Instrument profile with a single plasma zone at the user's plasma parameters. Used when no instrument
+     * profile config is available.
+     */
+    private InstrumentProfile createDefaultInstrumentProfile(UserInputConfig config) {
+        InstrumentProfile instrumentProfile = new InstrumentProfile(null, null, null);
+        PlasmaZone defaultPlasmaZone = new PlasmaZone(Double.parseDouble(config.plasmaTemp),
+                Double.parseDouble(config.electronDensity), 1.0);
+        instrumentProfile.setZones(new  ArrayList<>(List.of(defaultPlasmaZone)));
+        return instrumentProfile;
+    }
+
+    /**
+     * Builds the compositions to fetch spectra for from a material grade: its compositional variations (with coating
+     * applied for coated series) or only the grade's own composition if variations are not requested.
+     *
+     * @return Compositions for the material grade; empty if none could be generated
+     */
+    private List<List<Element>> buildCompositions(MaterialGrade materialGrade, UserInputConfig config) {
+        if (!config.performVariations) {
+            List<List<Element>> compositions = new ArrayList<>(); // Dummy list of list just to hold one composition for compatability
+            compositions.add(materialGrade.getComposition());
+            return compositions;
         }
-        // Add element columns
-        header.addAll(sortedSymbols);
 
-        // Add class label columns based on configuration
-        // If user explicitly specified a class type, only add that specific column
-        // Otherwise, add both material grade name and material type columns by default
-        if (config.classLabelTypeExplicitlySet) {
-            // User explicitly selected a class type
-            if (config.classLabelType != ClassLabelType.COMPOSITION_PERCENTAGE) {
-                // Add only the specific class column requested
-                String classLabelColumnName = getClassLabelColumnName(config.classLabelType);
-                header.add(classLabelColumnName);
+        if (config.variationMode == NistUrlOptions.VariationMode.DIRICHLET) {
+            if (materialGrade.getParentSeries().getOverviewGuid() == null) {
+                System.out.println("Please provide an overview GUID to generate variations.");
+                logger.severe("Overview GUID not present for Dirichlet sampling for "
+                        + commonUtils.buildCompositionString(materialGrade.getComposition()) + ". Skipping!");
+                return new ArrayList<>();
             }
-            // For composition percentages (type 1), no additional class column is needed as the individual element columns serve as the class labels
-        } else {
-            // Default behavior: add both material columns
-            header.add(LIBSDataGenConstants.CSV_HEADER_MATERIAL_GRADE_NAME);
-            header.add(LIBSDataGenConstants.CSV_HEADER_MATERIAL_TYPE);
         }
-        return header;
+
+        List<List<Element>> compositions = CompositionalVariations.getInstance()
+                .generateCompositionalVariations(materialGrade, config);
+
+        if (compositions == null || compositions.isEmpty()) {
+            logger.warning("No compositions generated for input: " + materialGrade);
+            return new ArrayList<>();
+        }
+        // Apply coating to all variations of material if this is a coated series
+        if (materialGrade.getParentSeries().isCoated()) {
+            SeriesInput series = materialGrade.getParentSeries();
+            compositions = InputCompositionProcessor.getInstance().applyCoating(compositions,
+                    series.getCoatingElement(), config.scaleCoating);
+        }
+        return compositions;
     }
 
     /**
@@ -31,7 +31,7 @@ public class MatwebDataService {
     private String[] datasheetAttributes;
     private boolean botCircumvention = false;
 
-    public static MatwebDataService getInstance() {
+    public static synchronized MatwebDataService getInstance() {
         if (instance == null) {
             instance = new MatwebDataService();
         }
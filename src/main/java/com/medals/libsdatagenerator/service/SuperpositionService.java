@@ -0,0 +1,222 @@
+package com.medals.libsdatagenerator.service;
+
+import com.medals.libsdatagenerator.model.Element;
+import com.medals.libsdatagenerator.model.InstrumentProfile;
+import com.medals.libsdatagenerator.model.PlasmaZone;
+import com.medals.libsdatagenerator.model.Spectrum;
+import com.medals.libsdatagenerator.model.UserInputConfig;
+import com.medals.libsdatagenerator.util.NISTUtils;
+import com.medals.libsdatagenerator.util.NistSession;
+import com.medals.libsdatagenerator.util.SpectrumUtils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Builds synthetic spectra as a concentration-weighted superposition of single-element basis spectra.
+ * For a fixed plasma temperature and electron density, the NIST LIBS "Sum" column is a sum over species whose line
+ * intensities scale with each element's share of the composition. One basis spectrum per element per plasma zone is
+ * therefore enough to build every compositional variation of a grade locally, without a NIST round-trip per variation.
+ */
+public class SuperpositionService {
+
+    private static final Logger logger = Logger.getLogger(SuperpositionService.class.getName());
+
+    public static SuperpositionService instance = null;
+
+    private final SpectrumUtils spectrumUtils = new SpectrumUtils();
+
+    public static synchronized SuperpositionService getInstance() {
+        if (instance == null) {
+            instance = new SuperpositionService();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the basis spectra for all elements present in the given compositions. Missing basis spectra are fetched
+     * from NIST once (concurrently across the session's browser pool) and kept in the generation session for the rest
+     * of the run.
+     *
+     * @param compositions      Compositions that will be superposed
+     * @param config            User configuration
+     * @param instrumentProfile Instrument profile holding the plasma zones and wavelength grid
+     * @param generationSession Run holding the basis spectra and the browser session pool used for the fetches
+     * @return Element symbol mapped to its basis spectrum for each plasma zone
+     */
+    public Map<String, double[][]> getBasisSpectra(List<List<Element>> compositions, UserInputConfig config,
+                                                   InstrumentProfile instrumentProfile,
+                                                   GenerationSession generationSession)
+            throws InterruptedException, ExecutionException {
+        Map<String, double[][]> basisSpectra = generationSession.getBasisSpectra(instrumentProfile);
+        // One material at a time per session, so an element is never fetched twice
+        synchronized (basisSpectra) {
+            fetchMissingBasisSpectra(basisSpectra, compositions, config, instrumentProfile, generationSession);
+        }
+        return basisSpectra;
+    }
+
+    private void fetchMissingBasisSpectra(Map<String, double[][]> basisSpectra, List<List<Element>> compositions,
+                                          UserInputConfig config, InstrumentProfile instrumentProfile,
+                                          GenerationSession generationSession)
+            throws InterruptedException, ExecutionException {
+
+        // Unique elements (first occurrence order) that have no basis spectrum yet
+        Map<String, Element> missingElements = new LinkedHashMap<>();
+        for (List<Element> composition : compositions) {
+            for (Element element : composition) {
+                if (element.getPercentageComposition() > 0 && !basisSpectra.containsKey(element.getSymbol())) {
+                    missingElements.putIfAbsent(element.getSymbol(), element);
+                }
+            }
+        }
+
+        if (!missingElements.isEmpty()) {
+            logger.info("Fetching basis spectra for " + missingElements.size() + " element(s): " + missingElements.keySet());
+            List<Element> elementsToFetch = new ArrayList<>(missingElements.values());
+            List<double[][]> fetched = generationSession.getSessionPool().processInOrder(elementsToFetch,
+                    (session, element) -> fetchBasisSpectrum(generationSession, session, element, config,
+                            instrumentProfile));
+            for (int i = 0; i < elementsToFetch.size(); i++) {
+                basisSpectra.put(elementsToFetch.get(i).getSymbol(), fetched.get(i));
+            }
+        }
+    }
+
+    /**
+     * Fetches the spectrum of a single element at 100% for every plasma zone.
+     */
+    private double[][] fetchBasisSpectrum(GenerationSession generationSession, NistSession session, Element element,
+                                          UserInputConfig config, InstrumentProfile instrumentProfile) {
+        List<PlasmaZone> plasmaZones = instrumentProfile.getZones();
+        List<Element> pureElement = List.of(new Element(element.getName(), element.getSymbol(), 100.0, null, null, null));
+        UserInputConfig elementConfig = new UserInputConfig(config);
+        double[][] zoneSpectra = new double[plasmaZones.size()][];
+
+        try {
+            for (int i = 0; i < plasmaZones.size(); i++) {
+                PlasmaZone zone = plasmaZones.get(i);
+                String csvData = LIBSDataService.getInstance().fetchPlasmaZoneSpectrum(generationSession, session,
+                        pureElement, elementConfig, zone.getTe(), zone.getNe(), 0);
+                if (csvData.equals(String.valueOf(HttpURLConnection.HTTP_NOT_FOUND))) {
+                    throw new IllegalStateException("Unable to fetch basis spectrum for " + element.getSymbol()
+                            + " and plasma zone " + zone.toJson());
+                }
+                Spectrum spectrum = NISTUtils.parseNistSpectrum(csvData, config.wavelengthUnit.getUnitString(), false);
+                double[] wavelengthGrid;
+                synchronized (instrumentProfile) {
+                    // One-time check to add first instance of wavelengths if instrument profile not available
+                    if (instrumentProfile.getWavelengthGrid() == null) {
+                        instrumentProfile.setWavelengthGrid(spectrum.getWavelengths().clone());
+                    }
+                    wavelengthGrid = instrumentProfile.getWavelengthGrid();
+                }
+                zoneSpectra[i] = spectrumUtils.interpolateSpectrum(spectrum.getWavelengths(), spectrum.getIntensities(),
+                        wavelengthGrid);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Error parsing basis spectrum for " + element.getSymbol(), e);
+        }
+        logger.info("Basis spectrum fetched for " + element.getSymbol());
+        return zoneSpectra;
+    }
+
+    /**
+     * Builds the combined multi-zone spectrum of a composition from basis spectra. Mirrors the per-zone processing of
+     * fetched spectra: each zone's spectrum is normalised and scaled by the instrument scale factor before the zones
+     * are combined with their weights.
+     *
+     * @param composition       Composition to build the spectrum for
+     * @param basisSpectra      Basis spectra from {@link #getBasisSpectra}
+     * @param instrumentProfile Instrument profile holding the plasma zones and scale factor
+     * @return Combined spectrum on the instrument wavelength grid (empty for an empty composition)
+     */
+    public double[] superpose(List<Element> composition, Map<String, double[][]> basisSpectra,
+                                  InstrumentProfile instrumentProfile) {
+        List<PlasmaZone> plasmaZones = instrumentProfile.getZones();
+        double[] combinedSpectrum = null;
+        // Reused by every zone
+        double[] zoneSpectrum = null;
+
+        for (int i = 0; i < plasmaZones.size(); i++) {
+            boolean emptyZone = true;
+            for (Element element : composition) {
+                double fraction = element.getPercentageComposition() / 100.0;
+                if (fraction <= 0) {
+                    continue;
+                }
+                double[][] basis = basisSpectra.get(element.getSymbol());
+                if (basis == null) {
+                    throw new IllegalArgumentException("No basis spectrum for element " + element.getSymbol());
+                }
+                if (zoneSpectrum == null) {
+                    zoneSpectrum = new double[basis[i].length];
+                    combinedSpectrum = new double[basis[i].length];
+                } else if (emptyZone) {
+                    Arrays.fill(zoneSpectrum, 0.0);
+                }
+                emptyZone = false;
+                for (int j = 0; j < zoneSpectrum.length; j++) {
+                    zoneSpectrum[j] += fraction * basis[i][j];
+                }
+            }
+            if (emptyZone) {
+                break; // Empty composition
+            }
+
+            spectrumUtils.addNormalisedAndScaled(combinedSpectrum, zoneSpectrum, instrumentProfile.getScaleFactor(),
+                    plasmaZones.get(i).getWeight());
+        }
+        return combinedSpectrum == null ? new double[0] : combinedSpectrum;
+    }
+
+    /**
+     * Compares a superposed spectrum against the spectrum fetched from NIST for the same composition.
+     * Both spectra are normalised to [0, 1] first so that the error is independent of the instrument scale factor.
+     *
+     * @param compositionId Composition identifier used in the report
+     * @param superposed    Spectrum built by {@link #superpose}
+     * @param reference     Spectrum fetched from NIST
+     * @return RMSE, r^2 and maximum absolute error between the two spectra
+     */
+    public ValidationResult compare(String compositionId, double[] superposed, double[] reference) {
+        double[] superposedSpectrum = spectrumUtils.normaliseSpectrum(superposed);
+        double[] referenceSpectrum = spectrumUtils.normaliseSpectrum(reference);
+
+        double rmse = spectrumUtils.calculateRMSE(superposedSpectrum, referenceSpectrum);
+        double rSquared = superposedSpectrum.length > 1 && superposedSpectrum.length == referenceSpectrum.length
+                ? spectrumUtils.calculateSpectralSimilarity(superposedSpectrum, referenceSpectrum) : Double.NaN;
+        double maxAbsError = Double.NaN;
+        if (superposedSpectrum.length == referenceSpectrum.length) {
+            maxAbsError = 0;
+            for (int i = 0; i < superposedSpectrum.length; i++) {
+                maxAbsError = Math.max(maxAbsError, Math.abs(superposedSpectrum[i] - referenceSpectrum[i]));
+            }
+        }
+        return new ValidationResult(compositionId, rmse, rSquared, maxAbsError);
+    }
+
+    /**
+     * Error between a superposed spectrum and the real NIST spectrum of one composition.
+     */
+    public static class ValidationResult {
+        public final String compositionId;
+        public final double rmse;
+        public final double rSquared;
+        public final double maxAbsError;
+
+        public ValidationResult(String compositionId, double rmse, double rSquared, double maxAbsError) {
+            this.compositionId = compositionId;
+            this.rmse = rmse;
+            this.rSquared = rSquared;
+            this.maxAbsError = maxAbsError;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.medals.libsdatagenerator.util;
+
+import java.util.logging.Logger;
+
+/**
+ * Circuit breaker for NIST fetches. After a run of consecutive failures NIST is assumed to be down and the breaker
+ * opens: every fetch waits instead of failing, which stalls the generation pipeline rather than burning through the
+ * sample list. Once the open period is over a single trial fetch is let through. If it succeeds the breaker closes;
+ * if it fails the breaker opens again for twice as long, up to a maximum.
+ * <p>
+ * Every admitted fetch gets a ticket from {@link #acquire()} and reports its outcome with it. Failures of fetches
+ * admitted before the breaker last opened are stale: they are part of the outage that opened it and are ignored, so
+ * a late failure cannot reopen the breaker while the trial is still in flight or count against it once it closes.
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        // Open period over, one trial fetch in flight
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long baseOpenMillis;
+    private final long maxOpenMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openMillis;
+    private long openUntilNanos;
+    private boolean trialInFlight = false;
+    private int trips = 0;
+    private long nextTicket = 1;
+    // Tickets below this were issued before the breaker last opened
+    private long openedAtTicket = 0;
+    private long trialTicket = 0;
+
+    /**
+     * @param name             Name used in log messages
+     * @param failureThreshold Consecutive failures that open the breaker
+     * @param openMillis       First open period
+     * @param maxOpenMillis    Longest open period after repeated failed trials
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openMillis, long maxOpenMillis) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be at least 1");
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.baseOpenMillis = openMillis;
+        this.maxOpenMillis = Math.max(openMillis, maxOpenMillis);
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Waits until a fetch may be sent: immediately while the breaker is closed, otherwise until the open period is
+     * over and this caller gets the trial fetch or another caller's trial has closed the breaker. Every successful
+     * call has to be followed by {@link #recordSuccess(long)} or {@link #recordFailure(long)}.
+     *
+     * @return Ticket to report the fetch's outcome with
+     */
+    public synchronized long acquire() throws InterruptedException {
+        while (true) {
+            if (state == State.CLOSED) {
+                return nextTicket++;
+            }
+            long remainingNanos = openUntilNanos - System.nanoTime();
+            if (state == State.OPEN && remainingNanos <= 0) {
+                state = State.HALF_OPEN;
+                trialInFlight = false;
+            }
+            if (state == State.HALF_OPEN && !trialInFlight) {
+                trialInFlight = true;
+                trialTicket = nextTicket++;
+                logger.info("Sending trial request to check whether " + name + " is back");
+                return trialTicket;
+            }
+            if (state == State.OPEN) {
+                wait(Math.max(1, remainingNanos / 1_000_000));
+            } else {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * @param ticket Ticket the fetch was admitted with
+     */
+    public synchronized void recordSuccess(long ticket) {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            logger.info(name + " is reachable again. Resuming requests");
+            state = State.CLOSED;
+            openMillis = baseOpenMillis;
+            trialInFlight = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * @param ticket Ticket the fetch was admitted with
+     */
+    public synchronized void recordFailure(long ticket) {
+        if (ticket < openedAtTicket) {
+            // Admitted before the breaker last opened: already accounted for
+            return;
+        }
+        switch (state) {
+            case CLOSED -> {
+                consecutiveFailures++;
+                if (consecutiveFailures >= failureThreshold) {
+                    open();
+                }
+            }
+            case HALF_OPEN -> {
+                if (ticket == trialTicket) {
+                    // Trial failed: stay away for longer
+                    openMillis = Math.min(maxOpenMillis, openMillis * 2);
+                    open();
+                }
+            }
+            case OPEN -> {
+                // No fetches are admitted while open
+            }
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        trialInFlight = false;
+        openedAtTicket = nextTicket;
+        trips++;
+        openUntilNanos = System.nanoTime() + openMillis * 1_000_000;
+        logger.warning(name + " failed " + Math.max(1, consecutiveFailures) + " times in a row. Pausing requests for "
+                + openMillis / 1000.0 + " s");
+        consecutiveFailures = 0;
+        notifyAll();
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return Number of times the breaker has opened
+     */
+    public synchronized int getTrips() {
+        return trips;
+    }
+}
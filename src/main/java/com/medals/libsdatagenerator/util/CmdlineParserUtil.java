@@ -121,6 +121,78 @@ public class CmdlineParserUtil {
                 false,
                 LIBSDataGenConstants.CMD_OPT_FORCE_FETCH_DESC);
 
+        // Spectrum cache directory
+        options.addOption(LIBSDataGenConstants.CMD_OPT_CACHE_DIR_SHORT,
+                LIBSDataGenConstants.CMD_OPT_CACHE_DIR_LONG,
+                true,
+                LIBSDataGenConstants.CMD_OPT_CACHE_DIR_DESC);
+
+        // Spectrum cache size budget
+        options.addOption(LIBSDataGenConstants.CMD_OPT_CACHE_SIZE_SHORT,
+                LIBSDataGenConstants.CMD_OPT_CACHE_SIZE_LONG,
+                true,
+                LIBSDataGenConstants.CMD_OPT_CACHE_SIZE_DESC);
+
+        // Number of concurrent NIST browser sessions
+        options.addOption(LIBSDataGenConstants.CMD_OPT_NIST_WORKERS_SHORT,
+                LIBSDataGenConstants.CMD_OPT_NIST_WORKERS_LONG,
+                true,
+                LIBSDataGenConstants.CMD_OPT_NIST_WORKERS_DESC);
+
+        // NIST request rate ceiling
+        options.addOption(LIBSDataGenConstants.CMD_OPT_NIST_RATE_SHORT,
+                LIBSDataGenConstants.CMD_OPT_NIST_RATE_LONG,
+                true,
+                LIBSDataGenConstants.CMD_OPT_NIST_RATE_DESC);
+
+        // Number of threads per spectrum processing stage
+        options.addOption(LIBSDataGenConstants.CMD_OPT_PROCESSING_WORKERS_SHORT,
+                LIBSDataGenConstants.CMD_OPT_PROCESSING_WORKERS_LONG,
+                true,
+                LIBSDataGenConstants.CMD_OPT_PROCESSING_WORKERS_DESC);
+
+        // Basis spectrum superposition mode
+        options.addOption(LIBSDataGenConstants.CMD_OPT_SUPERPOSITION_SHORT,
+                LIBSDataGenConstants.CMD_OPT_SUPERPOSITION_LONG,
+                false,
+                LIBSDataGenConstants.CMD_OPT_SUPERPOSITION_DESC);
+
+        // Superposition validation
+        options.addOption(LIBSDataGenConstants.CMD_OPT_VALIDATE_SUPERPOSITION_SHORT,
+                LIBSDataGenConstants.CMD_OPT_VALIDATE_SUPERPOSITION_LONG,
+                false,
+                LIBSDataGenConstants.CMD_OPT_VALIDATE_SUPERPOSITION_DESC);
+
+        // Species-resolved output
+        options.addOption(LIBSDataGenConstants.CMD_OPT_SPECIES_OUTPUT_SHORT,
+                LIBSDataGenConstants.CMD_OPT_SPECIES_OUTPUT_LONG,
+                false,
+                LIBSDataGenConstants.CMD_OPT_SPECIES_OUTPUT_DESC);
+
+        // Dataset output format
+        options.addOption(LIBSDataGenConstants.CMD_OPT_OUTPUT_FORMAT_SHORT,
+                LIBSDataGenConstants.CMD_OPT_OUTPUT_FORMAT_LONG,
+                true,
+                LIBSDataGenConstants.CMD_OPT_OUTPUT_FORMAT_DESC);
+
+        // NumPy spectra dtype
+        options.addOption(LIBSDataGenConstants.CMD_OPT_NPY_DTYPE_SHORT,
+                LIBSDataGenConstants.CMD_OPT_NPY_DTYPE_LONG,
+                true,
+                LIBSDataGenConstants.CMD_OPT_NPY_DTYPE_DESC);
+
+        // Resume interrupted run
+        options.addOption(LIBSDataGenConstants.CMD_OPT_RESUME_SHORT,
+                LIBSDataGenConstants.CMD_OPT_RESUME_LONG,
+                true,
+                LIBSDataGenConstants.CMD_OPT_RESUME_DESC);
+
+        // NIST fetch engine
+        options.addOption(LIBSDataGenConstants.CMD_OPT_FETCH_ENGINE_SHORT,
+                LIBSDataGenConstants.CMD_OPT_FETCH_ENGINE_LONG,
+                true,
+                LIBSDataGenConstants.CMD_OPT_FETCH_ENGINE_DESC);
+
         // Scale coating
         options.addOption(LIBSDataGenConstants.CMD_OPT_SCALE_COATING_SHORT,
                 LIBSDataGenConstants.CMD_OPT_SCALE_COATING_LONG,
@@ -204,6 +276,11 @@ public class CmdlineParserUtil {
             }
             CommandLine cmd = parser.parse(options, args);
 
+            if (cmd.hasOption(LIBSDataGenConstants.CMD_OPT_RESUME_SHORT)) {
+                // Input options are restored from the run journal
+                return cmd;
+            }
+
             boolean hasComposition = cmd.hasOption(LIBSDataGenConstants.CMD_OPT_COMPOSITION_SHORT);
             boolean hasSeries = cmd.hasOption(LIBSDataGenConstants.CMD_OPT_SERIES_SHORT);
 
@@ -338,6 +415,34 @@ public class CmdlineParserUtil {
         maxIter.setRequired(false);
         options.addOption(maxIter);
 
+        // Grid search threads (optional | default: number of CPU cores)
+        Option threads = new Option(LIBSDataGenConstants.CMD_OPT_THREADS_SHORT,
+                LIBSDataGenConstants.CMD_OPT_THREADS_LONG,
+                true, LIBSDataGenConstants.CMD_OPT_THREADS_DESC);
+        threads.setRequired(false);
+        options.addOption(threads);
+
+        // Zone weight solver (optional | default: 1 - NNLS)
+        Option weightSolver = new Option(LIBSDataGenConstants.CMD_OPT_WEIGHT_SOLVER_SHORT,
+                LIBSDataGenConstants.CMD_OPT_WEIGHT_SOLVER_LONG,
+                true, LIBSDataGenConstants.CMD_OPT_WEIGHT_SOLVER_DESC);
+        weightSolver.setRequired(false);
+        options.addOption(weightSolver);
+
+        // Te/Ne parameter search (optional | default: 1 - adaptive)
+        Option parameterSearch = new Option(LIBSDataGenConstants.CMD_OPT_PARAMETER_SEARCH_SHORT,
+                LIBSDataGenConstants.CMD_OPT_PARAMETER_SEARCH_LONG,
+                true, LIBSDataGenConstants.CMD_OPT_PARAMETER_SEARCH_DESC);
+        parameterSearch.setRequired(false);
+        options.addOption(parameterSearch);
+
+        // NIST fetch budget of the adaptive search (optional | default: 30)
+        Option fetchBudget = new Option(LIBSDataGenConstants.CMD_OPT_FETCH_BUDGET_SHORT,
+                LIBSDataGenConstants.CMD_OPT_FETCH_BUDGET_LONG,
+                true, LIBSDataGenConstants.CMD_OPT_FETCH_BUDGET_DESC);
+        fetchBudget.setRequired(false);
+        options.addOption(fetchBudget);
+
         // Activate debug mode
         options.addOption(LIBSDataGenConstants.CMD_OPT_DEBUG_MODE_SHORT,
                 LIBSDataGenConstants.CMD_OPT_DEBUG_MODE_LONG,
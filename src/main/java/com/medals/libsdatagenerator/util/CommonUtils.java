@@ -45,7 +45,7 @@ public class CommonUtils {
 
     public static CommonUtils instance = null;
 
-    public static CommonUtils getInstance() {
+    public static synchronized CommonUtils getInstance() {
         if (instance == null) {
             instance = new CommonUtils();
         }
@@ -254,12 +254,12 @@ public class CommonUtils {
      * @param out The PrintStream to output to (typically System.out)
      * @param progressBarWidth The width of the progress bar in characters (default: 50)
      */
-    public static void printProgressBar(int current, int total, String message, PrintStream out, int progressBarWidth) {
+    public static void printProgressBar(long current, long total, String message, PrintStream out, int progressBarWidth) {
         if (total <= 1) {
             return; // Don't show progress bar for single items
         }
         
-        int progress = (BigInteger.valueOf((long) current * progressBarWidth).divide(BigInteger.valueOf(total))).intValue();
+        int progress = (BigInteger.valueOf(current).multiply(BigInteger.valueOf(progressBarWidth)).divide(BigInteger.valueOf(total))).intValue();
         String bar = "=".repeat(progress) + ">" + " ".repeat(progressBarWidth - progress);
         out.printf("\r[%s] %d/%d %s", bar, current, total, message);
     }
@@ -272,7 +272,7 @@ public class CommonUtils {
      * @param message The message to display (e.g., "materials processed", "samples completed")
      * @param out The PrintStream to output to (typically System.out)
      */
-    public static void printProgressBar(int current, int total, String message, PrintStream out) {
+    public static void printProgressBar(long current, long total, String message, PrintStream out) {
         printProgressBar(current, total, message, out, 50);
     }
 
@@ -283,7 +283,7 @@ public class CommonUtils {
      * @param total The total number of items (used to determine if progress bar was shown)
      * @param out The PrintStream to output to (typically System.out)
      */
-    public static void finishProgressBar(int total, PrintStream out) {
+    public static void finishProgressBar(long total, PrintStream out) {
         if (total > 1) {
             out.println();
         }
@@ -0,0 +1,132 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.model.Element;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Normalises compositions so that the element percentages submitted to NIST sum to exactly 100 at the configured
+ * number of decimal places. NIST rejects compositions that do not add up to 100 with an alert and a second
+ * recalculation; normalising beforehand means that alert is not raised in the first place.
+ */
+public class CompositionNormaliser {
+
+    private static final Logger logger = Logger.getLogger(CompositionNormaliser.class.getName());
+
+    private CompositionNormaliser() {
+    }
+
+    /**
+     * Normalises the composition in place. Percentages are counted in integer units of the last decimal place:
+     * every element other than the remainder element is rounded to that unit and the remainder element takes the
+     * balance, so the units add up to exactly 100%. If the other elements alone exceed 100%, the total is shared
+     * between them by largest-remainder rounding and the remainder element is set to zero.
+     *
+     * @param composition         Composition to normalise (updated in place)
+     * @param remainderElementIdx Index of the remainder (balance) element; the largest element is used if out of range
+     * @param numDecimalPlaces    Number of decimal places percentages are submitted with (capped at the elements' own)
+     * @return True if any percentage was changed
+     */
+    public static boolean normalise(List<Element> composition, int remainderElementIdx, int numDecimalPlaces) {
+        if (composition == null || composition.isEmpty()) {
+            return false;
+        }
+        if (remainderElementIdx < 0 || remainderElementIdx >= composition.size()) {
+            remainderElementIdx = largestElementIdx(composition);
+        }
+
+        // Elements round their percentages themselves, so never normalise finer than they can hold
+        for (Element element : composition) {
+            numDecimalPlaces = Math.min(numDecimalPlaces, element.numberDecimalPlaces);
+        }
+
+        long total = BigDecimal.valueOf(100).movePointRight(numDecimalPlaces).longValueExact();
+        long[] units = new long[composition.size()];
+        long otherUnits = 0;
+        for (int i = 0; i < composition.size(); i++) {
+            if (i != remainderElementIdx) {
+                units[i] = toUnits(composition.get(i).getPercentageComposition(), numDecimalPlaces);
+                otherUnits += units[i];
+            }
+        }
+
+        if (otherUnits <= total) {
+            units[remainderElementIdx] = total - otherUnits;
+        } else {
+            logger.warning("Elements other than the remainder element exceed 100%. Rescaling composition.");
+            apportionLargestRemainder(composition, remainderElementIdx, units, total);
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < composition.size(); i++) {
+            Element element = composition.get(i);
+            double percentage = BigDecimal.valueOf(units[i], numDecimalPlaces).doubleValue();
+            if (element.getPercentageComposition() == null || element.getPercentageComposition() != percentage) {
+                element.setPercentageComposition(percentage);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Shares the total units between the non-remainder elements in proportion to their percentages. Each element
+     * gets the floor of its exact share and the units left over go to the elements with the largest fractional parts.
+     */
+    private static void apportionLargestRemainder(List<Element> composition, int remainderElementIdx, long[] units,
+                                                  long total) {
+        double sum = 0;
+        for (int i = 0; i < composition.size(); i++) {
+            if (i != remainderElementIdx) {
+                sum += Math.max(0.0, nullToZero(composition.get(i).getPercentageComposition()));
+            }
+        }
+
+        double[] fractions = new double[composition.size()];
+        List<Integer> indices = new ArrayList<>();
+        long assigned = 0;
+        for (int i = 0; i < composition.size(); i++) {
+            if (i == remainderElementIdx) {
+                units[i] = 0;
+                continue;
+            }
+            double share = Math.max(0.0, nullToZero(composition.get(i).getPercentageComposition())) / sum * total;
+            units[i] = (long) Math.floor(share);
+            fractions[i] = share - units[i];
+            assigned += units[i];
+            indices.add(i);
+        }
+
+        // Ties go to the element listed first
+        indices.sort(Comparator.comparingDouble((Integer i) -> fractions[i]).reversed());
+        for (int k = 0; assigned < total; k = (k + 1) % indices.size()) {
+            units[indices.get(k)]++;
+            assigned++;
+        }
+    }
+
+    private static long toUnits(Double percentage, int numDecimalPlaces) {
+        return BigDecimal.valueOf(nullToZero(percentage)).movePointRight(numDecimalPlaces)
+                .setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    private static double nullToZero(Double value) {
+        return value == null ? 0.0 : value;
+    }
+
+    private static int largestElementIdx(List<Element> composition) {
+        int largest = 0;
+        for (int i = 1; i < composition.size(); i++) {
+            if (nullToZero(composition.get(i).getPercentageComposition())
+                    > nullToZero(composition.get(largest).getPercentageComposition())) {
+                largest = i;
+            }
+        }
+        return largest;
+    }
+}
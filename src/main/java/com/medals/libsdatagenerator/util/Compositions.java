@@ -0,0 +1,95 @@
+package com.medals.libsdatagenerator.util;
+
+/**
+ * Ways of splitting a whole number of steps into a fixed number of positive parts, e.g. zone weights in steps of
+ * 0.05 that sum to 1. Compositions are enumerated lexicographically, the last part taking what is left; the index of
+ * a composition is computed from binomial coefficients, so nothing is stored.
+ */
+public class Compositions implements IndexedCombinations {
+
+    private final int total;
+    private final int parts;
+    private final long size;
+
+    /**
+     * @param total Number of steps to split
+     * @param parts Number of parts, each at least one step
+     */
+    public Compositions(int total, int parts) {
+        if (parts < 1) {
+            throw new IllegalArgumentException("Number of parts must be at least 1");
+        }
+        this.total = total;
+        this.parts = parts;
+        this.size = count(total, parts);
+    }
+
+    /**
+     * @return Compositions of the given steps into the given number of positive parts
+     */
+    private static long count(int steps, int parts) {
+        if (parts == 0) {
+            return steps == 0 ? 1 : 0;
+        }
+        if (steps < parts) {
+            return 0;
+        }
+        // C(steps - 1, parts - 1)
+        long result = 1;
+        int k = Math.min(parts - 1, steps - parts);
+        for (int i = 1; i <= k; i++) {
+            result = Math.multiplyExact(result, steps - parts + (parts - 1 - k) + i) / i;
+        }
+        return result;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public int length() {
+        return parts;
+    }
+
+    @Override
+    public void unrank(long index, int[] combination) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size + " compositions");
+        }
+        int remaining = total;
+        for (int position = 0; position < parts - 1; position++) {
+            int partsLeft = parts - position - 1;
+            int part = 1;
+            long block = count(remaining - part, partsLeft);
+            while (index >= block) {
+                index -= block;
+                part++;
+                block = count(remaining - part, partsLeft);
+            }
+            combination[position] = part;
+            remaining -= part;
+        }
+        combination[parts - 1] = remaining;
+    }
+
+    @Override
+    public boolean next(int[] combination) {
+        int tail = combination[parts - 1];
+        for (int position = parts - 2; position >= 0; position--) {
+            int partsAfter = parts - 1 - position;
+            // One step moves into this part if the parts after it keep at least one each
+            if (tail - 1 >= partsAfter) {
+                combination[position]++;
+                for (int later = position + 1; later < parts - 1; later++) {
+                    combination[later] = 1;
+                }
+                combination[parts - 1] = tail - 1 - (partsAfter - 1);
+                return true;
+            }
+            tail += combination[position];
+        }
+        return false;
+    }
+}
@@ -0,0 +1,161 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import com.medals.libsdatagenerator.model.DatasetRow;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Streams dataset rows to master_dataset.csv (and optionally species_dataset.csv) as they are completed. Each row is
+ * flushed to disk straight away, so memory use does not grow with the size of the dataset and an interrupted run
+ * keeps every row written so far.
+ * The header is written with the first row, once the instrument wavelength grid is known.
+ */
+public class CsvDatasetSink implements DatasetSink {
+
+    private static final Logger logger = Logger.getLogger(CsvDatasetSink.class.getName());
+
+    private final Path masterCsvPath;
+    private final Path speciesCsvPath;
+    private final boolean appendMode;
+    private final List<String> classLabelColumns;
+    private final List<String> sortedSymbols;
+
+    private CSVPrinter masterPrinter = null;
+    private CSVPrinter speciesPrinter = null;
+    private double[] wavelengths;
+    private long rowsWritten = 0;
+
+    /**
+     * @param csvDirPath        Output directory
+     * @param appendMode        True to append to existing dataset files
+     * @param classLabelColumns Class label columns after the element columns
+     * @param speciesOutput     True to also write species-resolved spectra to species_dataset.csv
+     * @param wavelengths       Instrument wavelength grid if already known (null otherwise)
+     */
+    public CsvDatasetSink(Path csvDirPath, boolean appendMode, List<String> classLabelColumns, boolean speciesOutput,
+                          double[] wavelengths) {
+        this.masterCsvPath = csvDirPath.resolve(LIBSDataGenConstants.MASTER_DATASET_FILENAME);
+        this.speciesCsvPath = speciesOutput ? csvDirPath.resolve(LIBSDataGenConstants.SPECIES_DATASET_FILENAME) : null;
+        this.appendMode = appendMode;
+        this.classLabelColumns = classLabelColumns;
+        this.wavelengths = wavelengths;
+
+        // Use STD_ELEMENT_LIST for header and row structure for elements
+        List<String> symbols = new ArrayList<>(Arrays.asList(LIBSDataGenConstants.STD_ELEMENT_LIST));
+        Collections.sort(symbols); // Ensure canonical order
+        this.sortedSymbols = symbols;
+    }
+
+    @Override
+    public void write(DatasetRow row, double[] wavelengths) throws IOException {
+        if (row.isEmpty()) {
+            logger.warning("No spectrum for " + row.getCompositionId() + ". Row not written to dataset.");
+            return;
+        }
+        if (masterPrinter == null) {
+            this.wavelengths = wavelengths;
+            open();
+        }
+
+        List<String> record = new ArrayList<>(1 + row.getSpectrum().length + sortedSymbols.size() + classLabelColumns.size());
+        record.add(row.getCompositionId());
+        // Add intensity values of spectrum to row
+        for (double intensity : row.getSpectrum()) {
+            record.add(String.valueOf(intensity));
+        }
+        // For each element symbol FROM STD_ELEMENT_LIST, add the percentage (0 if element not in this composition)
+        for (String sym : sortedSymbols) {
+            record.add(String.valueOf(row.getComposition().getOrDefault(sym, 0.0)));
+        }
+        for (String column : classLabelColumns) {
+            record.add(row.getClassLabels().get(column));
+        }
+        masterPrinter.printRecord(record);
+        masterPrinter.flush();
+
+        if (speciesPrinter != null && row.getSpecies() != null) {
+            for (Map.Entry<String, double[]> speciesEntry : row.getSpecies().entrySet()) {
+                List<String> speciesRecord = new ArrayList<>(2 + speciesEntry.getValue().length);
+                speciesRecord.add(row.getCompositionId());
+                speciesRecord.add(speciesEntry.getKey());
+                for (double intensity : speciesEntry.getValue()) {
+                    speciesRecord.add(String.valueOf(intensity));
+                }
+                speciesPrinter.printRecord(speciesRecord);
+            }
+            speciesPrinter.flush();
+        }
+        rowsWritten++;
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(masterCsvPath.getParent());
+        List<String> header = new ArrayList<>();
+        header.add("composition");
+        // Add wave columns
+        for (double w : wavelengths) {
+            header.add(String.valueOf(w));
+        }
+        // Add element and class label columns
+        header.addAll(sortedSymbols);
+        header.addAll(classLabelColumns);
+        masterPrinter = CSVUtils.getCsvPrinter(masterCsvPath, appendMode, header.toArray(new String[0]));
+
+        if (speciesCsvPath != null) {
+            List<String> speciesHeader = new ArrayList<>();
+            speciesHeader.add("composition");
+            speciesHeader.add(LIBSDataGenConstants.CSV_HEADER_SPECIES);
+            for (double w : wavelengths) {
+                speciesHeader.add(String.valueOf(w));
+            }
+            speciesPrinter = CSVUtils.getCsvPrinter(speciesCsvPath, appendMode, speciesHeader.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Before the first row is written this is only known in append mode, as the files are otherwise replaced.
+     */
+    @Override
+    public Map<Path, Long> checkpoint() throws IOException {
+        if (masterPrinter == null && !appendMode) {
+            return Map.of();
+        }
+        Map<Path, Long> lengths = new LinkedHashMap<>();
+        lengths.put(masterCsvPath, Files.exists(masterCsvPath) ? Files.size(masterCsvPath) : 0L);
+        if (speciesCsvPath != null) {
+            lengths.put(speciesCsvPath, Files.exists(speciesCsvPath) ? Files.size(speciesCsvPath) : 0L);
+        }
+        return lengths;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (masterPrinter == null && wavelengths != null) {
+            open(); // No rows; still leave a dataset with its header
+        }
+        if (masterPrinter != null) {
+            masterPrinter.close();
+            logger.info("Master dataset saved to: " + masterCsvPath.toAbsolutePath() + " (" + rowsWritten + " rows)");
+        }
+        if (speciesPrinter != null) {
+            speciesPrinter.close();
+            logger.info("Species dataset saved to: " + speciesCsvPath.toAbsolutePath());
+        }
+    }
+}
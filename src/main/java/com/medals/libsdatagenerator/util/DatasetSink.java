@@ -0,0 +1,39 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.model.DatasetRow;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Destination for generated dataset rows. Rows are handed over one at a time, in dataset order, as soon as each
+ * composition is complete, so a sink never needs the whole dataset in memory.
+ */
+public interface DatasetSink extends AutoCloseable {
+
+    /**
+     * Writes one dataset row.
+     *
+     * @param row         Completed row
+     * @param wavelengths Instrument wavelength grid the row's spectrum is sampled on
+     */
+    void write(DatasetRow row, double[] wavelengths) throws IOException;
+
+    /**
+     * Returns the length of each output file up to and including the last written row. Truncating the files to these
+     * lengths rolls the dataset back to that row (see {@link RunJournal}).
+     *
+     * @return Output file -> length in bytes. Empty if the sink cannot be rolled back or its starting point is not
+     * known yet.
+     */
+    default Map<Path, Long> checkpoint() throws IOException {
+        return Map.of();
+    }
+
+    /**
+     * Finishes the dataset. Called once after the last row.
+     */
+    @Override
+    void close() throws IOException;
+}
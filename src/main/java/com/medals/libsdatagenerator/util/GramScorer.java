@@ -0,0 +1,185 @@
+package com.medals.libsdatagenerator.util;
+
+/**
+ * Scores weighted combinations of a fixed set of spectra against a target without touching the spectra again. All
+ * inner products between the spectra and with the target (raw and mean-centred) are computed once, after which the
+ * R^2 of any combination, and bounds on the RMSE of its max-normalised sum, take O(zones^2).
+ * <p>
+ * R^2 does not depend on the scale of the combination, so it follows exactly from the centred inner products. The
+ * RMSE does: the combination is divided by its maximum, which depends on the combination. It is bounded from the
+ * per-spectrum maxima and minima, and the RMSE is minimised over that range to give a lower bound. Both values are
+ * widened by a small tolerance for rounding, so a candidate ruled out with them is ruled out for its exact scores.
+ */
+public class GramScorer {
+
+    // Relative tolerance covering rounding in the expanded sums
+    private static final double TOLERANCE = 1e-9;
+
+    private final int length;
+    // s_i . s_j and s_i . t
+    private final double[][] gram;
+    private final double[] targetProducts;
+    // Same, for the spectra and target minus their means
+    private final double[][] centredGram;
+    private final double[] centredTargetProducts;
+    private final double[] maxima;
+    private final double[] minima;
+    private final double targetSquares;
+    private final double targetVariance;
+
+    /**
+     * @param spectra Spectra to combine, all of the target's length
+     * @param target  Spectrum the combinations are scored against
+     */
+    public GramScorer(double[][] spectra, double[] target) {
+        int k = spectra.length;
+        length = target.length;
+        gram = new double[k][k];
+        targetProducts = new double[k];
+        centredGram = new double[k][k];
+        centredTargetProducts = new double[k];
+        maxima = new double[k];
+        minima = new double[k];
+
+        double[] centredTarget = centre(target);
+        targetSquares = dot(target, target);
+        targetVariance = dot(centredTarget, centredTarget);
+
+        double[][] centred = new double[k][];
+        for (int i = 0; i < k; i++) {
+            if (spectra[i].length != length) {
+                throw new IllegalArgumentException("Spectrum " + i + " has " + spectra[i].length
+                        + " points but the target has " + length);
+            }
+            centred[i] = centre(spectra[i]);
+            maxima[i] = Double.NEGATIVE_INFINITY;
+            minima[i] = Double.POSITIVE_INFINITY;
+            for (double value : spectra[i]) {
+                maxima[i] = Math.max(maxima[i], value);
+                minima[i] = Math.min(minima[i], value);
+            }
+            targetProducts[i] = dot(spectra[i], target);
+            centredTargetProducts[i] = dot(centred[i], centredTarget);
+            for (int j = 0; j <= i; j++) {
+                gram[i][j] = dot(spectra[i], spectra[j]);
+                gram[j][i] = gram[i][j];
+                centredGram[i][j] = dot(centred[i], centred[j]);
+                centredGram[j][i] = centredGram[i][j];
+            }
+        }
+    }
+
+    /**
+     * @param zones Indices of the spectra combined
+     * @return Gram matrix of the given spectra, in the given order
+     */
+    public double[][] gram(int[] zones) {
+        double[][] sub = new double[zones.length][zones.length];
+        for (int i = 0; i < zones.length; i++) {
+            for (int j = 0; j < zones.length; j++) {
+                sub[i][j] = gram[zones[i]][zones[j]];
+            }
+        }
+        return sub;
+    }
+
+    /**
+     * @param zones Indices of the spectra combined
+     * @return Inner products of the given spectra with the target
+     */
+    public double[] targetProducts(int[] zones) {
+        double[] sub = new double[zones.length];
+        for (int i = 0; i < zones.length; i++) {
+            sub[i] = targetProducts[zones[i]];
+        }
+        return sub;
+    }
+
+    /**
+     * @param zones   Indices of the spectra combined
+     * @param weights Weight of each spectrum
+     * @return Squared Pearson correlation of the combination with the target; NaN if either is constant
+     */
+    public double rSquared(int[] zones, double[] weights) {
+        double covariance = 0.0;
+        double variance = 0.0;
+        for (int i = 0; i < zones.length; i++) {
+            covariance += weights[i] * centredTargetProducts[zones[i]];
+            for (int j = 0; j < zones.length; j++) {
+                variance += weights[i] * weights[j] * centredGram[zones[i]][zones[j]];
+            }
+        }
+        if (variance <= 0 || targetVariance <= 0) {
+            return Double.NaN;
+        }
+        return covariance * covariance / (variance * targetVariance);
+    }
+
+    /**
+     * @return R^2 of the combination plus the rounding tolerance; no exact R^2 is above it
+     */
+    public double rSquaredUpperBound(int[] zones, double[] weights) {
+        return rSquared(zones, weights) + TOLERANCE;
+    }
+
+    /**
+     * Lower bound on the RMSE between the target and the combination divided by its maximum, for non-negative
+     * weights. The maximum lies between the largest single weighted maximum (plus the others' weighted minima) and
+     * the sum of the weighted maxima; the RMSE is minimised over that range of scales.
+     *
+     * @return Lower bound on the RMSE; 0 if the maximum cannot be bounded away from zero
+     */
+    public double rmseLowerBound(int[] zones, double[] weights) {
+        double minimumsSum = 0.0;
+        double upper = 0.0;
+        for (int i = 0; i < zones.length; i++) {
+            minimumsSum += weights[i] * minima[zones[i]];
+            upper += weights[i] * maxima[zones[i]];
+        }
+        double lower = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < zones.length; i++) {
+            lower = Math.max(lower, minimumsSum + weights[i] * (maxima[zones[i]] - minima[zones[i]]));
+        }
+        if (!(lower > 0)) {
+            return 0.0;
+        }
+
+        // Squared error for scale x = 1 / maximum: t.t - 2 x (w . s.t) + x^2 (w G w)
+        double linear = 0.0;
+        double quadratic = 0.0;
+        for (int i = 0; i < zones.length; i++) {
+            linear += weights[i] * targetProducts[zones[i]];
+            for (int j = 0; j < zones.length; j++) {
+                quadratic += weights[i] * weights[j] * gram[zones[i]][zones[j]];
+            }
+        }
+        double minScale = 1.0 / upper;
+        double maxScale = 1.0 / lower;
+        double scale = quadratic > 0 ? linear / quadratic : (linear > 0 ? maxScale : minScale);
+        scale = Math.min(maxScale, Math.max(minScale, scale));
+        double squaredError = targetSquares - 2 * scale * linear + scale * scale * quadratic;
+        double rounding = TOLERANCE * (targetSquares + 2 * scale * Math.abs(linear) + scale * scale * quadratic);
+        return Math.sqrt(Math.max(0.0, squaredError - rounding) / length);
+    }
+
+    private static double[] centre(double[] values) {
+        double mean = 0.0;
+        for (double value : values) {
+            mean += value;
+        }
+        mean /= values.length;
+        double[] centred = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            centred[i] = values[i] - mean;
+        }
+        return centred;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,34 @@
+package com.medals.libsdatagenerator.util;
+
+/**
+ * Combinations of fixed length enumerated in a fixed order and addressable by their index in it, so that any range of
+ * them can be visited without materialising the others. Combinations are int arrays owned by the caller:
+ * {@link #unrank} positions one at an index and {@link #next} steps it forward in place.
+ */
+public interface IndexedCombinations {
+
+    /**
+     * @return Number of combinations
+     */
+    long size();
+
+    /**
+     * @return Length of every combination
+     */
+    int length();
+
+    /**
+     * Writes the combination at the given index into the array.
+     *
+     * @param index       Index from 0 to size() - 1
+     * @param combination Array of length() entries
+     */
+    void unrank(long index, int[] combination);
+
+    /**
+     * Replaces the combination with the one following it.
+     *
+     * @return False if it was the last combination, which leaves it unchanged
+     */
+    boolean next(int[] combination);
+}
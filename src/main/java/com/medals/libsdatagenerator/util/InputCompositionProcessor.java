@@ -32,7 +32,7 @@ public class InputCompositionProcessor {
 
     private static InputCompositionProcessor instance = null;
 
-    public static InputCompositionProcessor getInstance() {
+    public static synchronized InputCompositionProcessor getInstance() {
         if (instance == null) {
             instance = new InputCompositionProcessor();
         }
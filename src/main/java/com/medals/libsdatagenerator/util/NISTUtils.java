@@ -2,18 +2,23 @@ package com.medals.libsdatagenerator.util;
 
 import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
 import com.medals.libsdatagenerator.model.Element;
+import com.medals.libsdatagenerator.model.Spectrum;
+import com.medals.libsdatagenerator.model.nist.NistFormState;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
-import org.openqa.selenium.Alert;
 import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 
 import java.io.IOException;
 import java.io.StringReader;
 import java.net.HttpURLConnection;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -24,6 +29,85 @@ public class NISTUtils {
 
     private static final Logger LOGGER = Logger.getLogger(NISTUtils.class.getName());
 
+    // Submits the CSV button's form with fetch() and returns the <pre> text of the response (or null on failure).
+    // arguments[0]: name of the CSV button, last argument: async callback injected by WebDriver
+    private static final String FETCH_CSV_SCRIPT =
+            "var callback = arguments[arguments.length - 1];" +
+            "var button = document.getElementsByName(arguments[0])[0];" +
+            "if (!button || !button.form) { callback(null); return; }" +
+            "var form = button.form;" +
+            "var data = new URLSearchParams(new FormData(form));" +
+            "data.append(button.name, button.value);" +
+            "var url = new URL(form.getAttribute('action') || window.location.href, window.location.href);" +
+            "var init = {method: (form.method || 'get').toUpperCase(), credentials: 'include'};" +
+            "if (init.method === 'GET') { url.search = data.toString(); } else { init.body = data; }" +
+            "fetch(url.toString(), init)" +
+            "  .then(function (response) { return response.ok ? response.text() : null; })" +
+            "  .then(function (text) {" +
+            "    if (text === null) { callback(null); return; }" +
+            "    var pre = new DOMParser().parseFromString(text, 'text/html').querySelector('pre');" +
+            "    callback(pre ? pre.textContent : text);" +
+            "  })" +
+            "  .catch(function () { callback(null); });";
+
+    // Sets the recalculation form in one round-trip and returns the resulting state.
+    // arguments[0]: element symbol -> percentage, arguments[1]: input name -> value, arguments[2]: recalc button name.
+    // Percentage inputs (perc<N>) preceding the recalc button are paired with their element label (elem<N>).
+    private static final String APPLY_FORM_STATE_SCRIPT =
+            "var percentages = arguments[0] || {};" +
+            "var fields = arguments[1] || {};" +
+            "var recalc = document.getElementsByName(arguments[2])[0];" +
+            "var state = {};" +
+            "function setValue(input, value) {" +
+            "  if (input.value === value) { return; }" +
+            "  input.value = value;" +
+            "  input.dispatchEvent(new Event('input', {bubbles: true}));" +
+            "  input.dispatchEvent(new Event('change', {bubbles: true}));" +
+            "}" +
+            "var inputs = document.querySelectorAll(\"input[id^='perc']\");" +
+            "for (var i = 0; i < inputs.length; i++) {" +
+            "  var input = inputs[i];" +
+            "  if (recalc && !(input.compareDocumentPosition(recalc) & Node.DOCUMENT_POSITION_FOLLOWING)) { continue; }" +
+            "  var label = document.getElementById('elem' + input.id.substring(4));" +
+            "  if (!label) { continue; }" +
+            "  var symbol = label.textContent.trim();" +
+            "  if (Object.prototype.hasOwnProperty.call(percentages, symbol)) { setValue(input, percentages[symbol]); }" +
+            "  state[symbol] = input.value;" +
+            "}" +
+            "for (var name in fields) {" +
+            "  var field = document.getElementsByName(name)[0];" +
+            "  if (!field) { continue; }" +
+            "  setValue(field, fields[name]);" +
+            "  state[name] = field.value;" +
+            "}" +
+            "return state;";
+
+    // Clicks the recalc button and resolves with {alert: message} if NIST rejects the form, {reloaded: true} once the
+    // page starts unloading for the recalculated one, or null after arguments[1] ms. alert() and confirm() are
+    // replaced for the click so the message is handed back instead of opening a dialog (confirm answers cancel).
+    // arguments[0]: recalc button name, last argument: async callback injected by WebDriver
+    private static final String RECALCULATE_SCRIPT =
+            "var callback = arguments[arguments.length - 1];" +
+            "var button = document.getElementsByName(arguments[0])[0];" +
+            "if (!button) { callback(null); return; }" +
+            "var originalAlert = window.alert, originalConfirm = window.confirm;" +
+            "var done = false, timer;" +
+            "function finish(result) {" +
+            "  if (done) { return; }" +
+            "  done = true;" +
+            "  clearTimeout(timer);" +
+            "  window.alert = originalAlert;" +
+            "  window.confirm = originalConfirm;" +
+            "  callback(result);" +
+            "}" +
+            "window.alert = function (message) { finish({alert: String(message)}); };" +
+            "window.confirm = function (message) { finish({alert: String(message)}); return false; };" +
+            "window.addEventListener('pagehide', function () { finish({reloaded: true}); }, {once: true});" +
+            "timer = setTimeout(function () { finish(null); }, arguments[1]);" +
+            "button.click();";
+
+    private static final long RECALC_TIMEOUT_MILLIS = 30_000;
+
     private final SeleniumUtils seleniumUtils;
 
     public NISTUtils(SeleniumUtils seleniumUtils) {
@@ -31,27 +115,15 @@ public class NISTUtils {
     }
 
     /**
-     * Updates the resolution field in the recalculation form and clicks recalculate button
+     * Updates the resolution field in the recalculation form
      * @param expectedResolution desired resolution value
      */
     public void setCorrectResolution(String expectedResolution) {
         LOGGER.info("Performing client-side recalculation with resolution: " + expectedResolution);
 
         // Wait for the resolution input field to be present
-        WebElement resolutionInput = seleniumUtils.waitForElementPresent(
-                By.name(LIBSDataGenConstants.NIST_LIBS_RECALC_RESOLUTION_INPUT_NAME)
-        );
-
-        // Clear existing value and enter new resolution if there is mismatch
-        String currentResolution = String.valueOf(resolutionInput.getDomAttribute("value"));
-        if  (!currentResolution.equals(expectedResolution)) {
-            resolutionInput.clear();
-            resolutionInput.sendKeys(expectedResolution);
-            LOGGER.info("Updated resolution field from " + currentResolution + " to: " + expectedResolution);
-        } else {
-            LOGGER.info("Resolution already correct: " + currentResolution);
-        }
-
+        seleniumUtils.waitForElementPresent(By.name(LIBSDataGenConstants.NIST_LIBS_RECALC_RESOLUTION_INPUT_NAME));
+        applyFormState(null, null, null, expectedResolution);
     }
 
     /**
@@ -60,32 +132,7 @@ public class NISTUtils {
      */
     public void updateElementPercentages(List<Element> elements) {
         LOGGER.info("Updating element percentages in recalculation form");
-
-        // Create a map of element symbol to percentage for easy lookup
-        Map<String, Double> elementPercentageMap = new HashMap<>();
-        for (Element elem : elements) {
-            elementPercentageMap.put(elem.getSymbol(), elem.getPercentageComposition());
-        }
-
-        List<WebElement> elementInputLabels = seleniumUtils.getDriver().findElements(
-                By.xpath(LIBSDataGenConstants.NIST_LIBS_RECALC_ELEMENT_INPUT_LABELS_XPATH)
-        );
-        List<WebElement> elementInputFields = seleniumUtils.getDriver().findElements(
-                By.xpath(LIBSDataGenConstants.NIST_LIBS_RECALC_ELEMENT_INPUT_FIELDS_XPATH)
-        );
-
-        // Update each percentage field based on matching element
-        for (int i = 0; i < elementInputFields.size(); i++) {
-            String elementSymbol = elementInputLabels.get(i).getText(); // Get the text from within the label element i.e., the Symbol
-
-            if (elementPercentageMap.containsKey(elementSymbol)) {
-                WebElement percentInput = elementInputFields.get(i);
-                percentInput.clear();
-                percentInput.sendKeys(String.valueOf(elementPercentageMap.get(elementSymbol)));
-                LOGGER.fine("Updated " + elementSymbol + " to " + elementPercentageMap.get(elementSymbol) + "%");
-            }
-        }
-
+        applyFormState(elements, null, null, null);
         LOGGER.info("Element percentages updated");
     }
 
@@ -96,21 +143,8 @@ public class NISTUtils {
      */
     public void updatePlasmaParameters(double electronTemp, double electronDensity) {
         LOGGER.info("Updating plasma parameters: Te=" + electronTemp + " eV, Ne=" + electronDensity + " cm^-3");
-        
-        // Update Plasma Temperature
-        WebElement tempInput = seleniumUtils.waitForElementPresent(
-                By.name(LIBSDataGenConstants.NIST_LIBS_RECALC_TEMP_INPUT_NAME)
-        );
-        tempInput.clear();
-        tempInput.sendKeys(String.valueOf(electronTemp));
-        
-        // Update Electron Density
-        WebElement edenInput = seleniumUtils.waitForElementPresent(
-                By.name(LIBSDataGenConstants.NIST_LIBS_RECALC_EDEN_INPUT_NAME)
-        );
-        edenInput.clear();
-        edenInput.sendKeys(String.valueOf(electronDensity));
-        
+        applyFormState(null, String.valueOf(electronTemp), String.valueOf(electronDensity), null);
+
         // Click Recalculate
         WebElement recalcButton = seleniumUtils.waitForElementClickable(
                 By.name(LIBSDataGenConstants.NIST_LIBS_RECALC_BUTTON_NAME)
@@ -122,12 +156,159 @@ public class NISTUtils {
         seleniumUtils.waitForElementPresent(By.name(LIBSDataGenConstants.NIST_LIBS_GET_CSV_BUTTON_HTML_TEXT));
     }
 
-    public void handleRecalculateAlert(List<Element> composition, int remainderElementIdx) {
+    /**
+     * Sets element percentages, Te, Ne and resolution in the recalculation form with a single script call.
+     * Values are only changed for non-null arguments; input and change events are fired for every changed field so
+     * that NIST's form scripts see the update. The resulting form state is read back and compared to the request.
+     * @param elements list of elements with their percentages (null to leave percentages unchanged)
+     * @param electronTemp Plasma temperature (eV) (null to leave unchanged)
+     * @param electronDensity Electron density (cm^-3) (null to leave unchanged)
+     * @param resolution Resolution (null to leave unchanged)
+     * @return Resulting form state: element symbol or input name mapped to its value after the update
+     */
+    public Map<String, String> applyFormState(List<Element> elements, String electronTemp, String electronDensity,
+                                              String resolution) {
+        Map<String, String> percentages = new LinkedHashMap<>();
+        if (elements != null) {
+            for (Element elem : elements) {
+                percentages.put(elem.getSymbol(), String.valueOf(elem.getPercentageComposition()));
+            }
+        }
+        return sendFormState(percentages, electronTemp, electronDensity, resolution);
+    }
+
+    /**
+     * Changes the recalculation form from its current state to the target state, sending only the fields that differ.
+     * @param current Form state currently shown on the page
+     * @param target Form state to apply (must hold the same elements as the current state)
+     * @return True if any field was changed, i.e. the page needs a recalculation to show the target state
+     */
+    public boolean applyFormState(NistFormState current, NistFormState target) {
+        Map<String, String> percentages = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> entry : current.changedPercentages(target).entrySet()) {
+            percentages.put(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        String electronTemp = current.getElectronTemp() != target.getElectronTemp()
+                ? String.valueOf(target.getElectronTemp()) : null;
+        String electronDensity = current.getElectronDensity() != target.getElectronDensity()
+                ? String.valueOf(target.getElectronDensity()) : null;
+        String resolution = target.getResolution() != null && !target.getResolution().equals(current.getResolution())
+                ? target.getResolution() : null;
+
+        if (percentages.isEmpty() && electronTemp == null && electronDensity == null && resolution == null) {
+            return false;
+        }
+        LOGGER.info("Updating recalculation form to " + target);
+        sendFormState(percentages, electronTemp, electronDensity, resolution);
+        return true;
+    }
+
+    private Map<String, String> sendFormState(Map<String, String> percentages, String electronTemp,
+                                               String electronDensity, String resolution) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        if (electronTemp != null) {
+            fields.put(LIBSDataGenConstants.NIST_LIBS_RECALC_TEMP_INPUT_NAME, electronTemp);
+        }
+        if (electronDensity != null) {
+            fields.put(LIBSDataGenConstants.NIST_LIBS_RECALC_EDEN_INPUT_NAME, electronDensity);
+        }
+        if (resolution != null) {
+            fields.put(LIBSDataGenConstants.NIST_LIBS_RECALC_RESOLUTION_INPUT_NAME, resolution);
+        }
+
+        JavascriptExecutor js = (JavascriptExecutor) seleniumUtils.getDriver();
+        Object result = js.executeScript(APPLY_FORM_STATE_SCRIPT, percentages, fields,
+                LIBSDataGenConstants.NIST_LIBS_RECALC_BUTTON_NAME);
+
+        Map<String, String> formState = new LinkedHashMap<>();
+        if (result instanceof Map<?, ?> resultMap) {
+            for (Map.Entry<?, ?> entry : resultMap.entrySet()) {
+                formState.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+            }
+        }
+
+        Map<String, String> requested = new LinkedHashMap<>(percentages);
+        requested.putAll(fields);
+        List<String> mismatches = findFormStateMismatches(requested, formState);
+        if (!mismatches.isEmpty()) {
+            LOGGER.warning("Recalculation form not updated as requested: " + mismatches);
+        }
+        LOGGER.fine("Recalculation form state: " + formState);
+        return formState;
+    }
+
+    /**
+     * Compares requested form values with the form state read back from the page.
+     * Numeric values are compared by value so that e.g. "1.0" and "1" match.
+     * @return Description of every requested field missing from the form or holding a different value
+     */
+    static List<String> findFormStateMismatches(Map<String, String> requested, Map<String, String> formState) {
+        List<String> mismatches = new ArrayList<>();
+        for (Map.Entry<String, String> entry : requested.entrySet()) {
+            String actual = formState.get(entry.getKey());
+            if (actual == null) {
+                mismatches.add(entry.getKey() + " not found");
+            } else if (!sameFormValue(entry.getValue(), actual)) {
+                mismatches.add(entry.getKey() + "=" + actual + " (expected " + entry.getValue() + ")");
+            }
+        }
+        return mismatches;
+    }
+
+    private static boolean sameFormValue(String expected, String actual) {
+        if (expected.equals(actual)) {
+            return true;
+        }
+        try {
+            return Double.parseDouble(expected) == Double.parseDouble(actual.trim());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Clicks Recalculate and waits until NIST either rejects the form with an alert or starts loading the
+     * recalculated page, whichever happens first. Both are picked up by event hooks inside the page (alert/confirm
+     * and pagehide), so the call returns as soon as either happens instead of on the next poll.
+     * @return Message of the alert NIST raised (to pass to {@link #handleRecalculateAlert}), or null if the page reloaded
+     */
+    public String recalculate() {
+        seleniumUtils.waitForElementClickable(By.name(LIBSDataGenConstants.NIST_LIBS_RECALC_BUTTON_NAME));
+        JavascriptExecutor js = (JavascriptExecutor) seleniumUtils.getDriver();
+        Object result;
+        try {
+            result = js.executeAsyncScript(RECALCULATE_SCRIPT, LIBSDataGenConstants.NIST_LIBS_RECALC_BUTTON_NAME,
+                    RECALC_TIMEOUT_MILLIS);
+        } catch (ScriptTimeoutException e) {
+            throw new TimeoutException("Timed out waiting for NIST to recalculate", e);
+        } catch (WebDriverException e) {
+            // The page unloaded before the reload event's result was returned
+            if (SeleniumUtils.isNavigationError(e)) {
+                LOGGER.info("Clicked Recalculate button");
+                return null;
+            }
+            throw e;
+        }
+        LOGGER.info("Clicked Recalculate button");
+        if (!(result instanceof Map<?, ?> outcome)) {
+            throw new TimeoutException("NIST neither raised an alert nor reloaded within "
+                    + RECALC_TIMEOUT_MILLIS / 1000 + " s of recalculating");
+        }
+        Object alertText = outcome.get("alert");
+        if (alertText != null) {
+            LOGGER.info("Alert detected");
+            return alertText.toString();
+        }
+        return null;
+    }
+
+    /**
+     * Corrects the remainder element of the composition by the amount NIST reported in its alert and recalculates.
+     * @param alertText Alert message returned by {@link #recalculate()}
+     */
+    public void handleRecalculateAlert(String alertText, List<Element> composition, int remainderElementIdx) {
         try {
-            Alert alert = seleniumUtils.getDriver().switchTo().alert();
-            String alertText = alert.getText();
             LOGGER.warning("Alert text: " + alertText); // Example: ...Current value: 100.001
-            alert.accept();
 
             String[] parts = alertText.split("Current value: ");
             if (parts.length < 2) {
@@ -152,7 +333,6 @@ public class NISTUtils {
             if (!labelSpan.getText().trim().equals(newRemainderElement.getSymbol())) {
                 LOGGER.warning("Mismatch! DOM last element is " + labelSpan.getText()
                         + " but Java remainder is " + newRemainderElement.getSymbol());
-                // TODO: reset or find the correct input field here -> but might not be relevant when getting rid of zero value elements with interpolation added
             }
 
             JavascriptExecutor js = (JavascriptExecutor) seleniumUtils.getDriver();
@@ -160,72 +340,33 @@ public class NISTUtils {
 
             LOGGER.info("Checked last input value: " + liveValue);
 
-            // TODO: Remove when interpolation is incorporated and zero-value elements are eliminated
-            // Check if it's non-zero (or equal to the delta) and reset
-//            try {
-//                double value = Double.parseDouble(liveValue);
-//
-//                // If the value is not 0 (meaning NIST JS autofilled it), reset it
-//                if (Math.abs(value) > 0) {
-//                    LOGGER.info("NIST autofill detected in last element (" + value + "). Resetting to 0.");
-//
-//                    // Clear and set to 0
-//                    lastInput.clear();
-//                    lastInput.sendKeys("0");
-//
-//                    // Double check update with JS to ensure the event triggered
-//                    js.executeScript("arguments[0].value = '0';", lastInput);
-//                }
-//            } catch (NumberFormatException e) {
-//                LOGGER.warning("Could not parse input value: " + liveValue);
-//            }
-
-            // Pass only element with updated value and recalculate
-//            List<Element> updatedElements = new ArrayList<>();
-//            updatedElements.add(newRemainderElement);
-//            updateElementPercentages(updatedElements);
-
             // Click recalculate button again
-            WebElement recalcButton = seleniumUtils.waitForElementClickable(
-                    By.name(LIBSDataGenConstants.NIST_LIBS_RECALC_BUTTON_NAME)
-            );
-            recalcButton.click();
-            LOGGER.info("Clicked Recalculate button for variation after fixing composition.");
+            if (recalculate() != null) {
+                LOGGER.warning("NIST raised another alert after fixing composition.");
+            }
+            LOGGER.info("Recalculated variation after fixing composition.");
 
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Exception occurred when trying to handle alert box event.", e);
         }
     }
 
+    /**
+     * Downloads the CSV of the spectrum on the loaded NIST LIBS page without leaving it. The CSV button's form is
+     * submitted with fetch() inside the page (same session cookies and form values as a click) and the {@code <pre>}
+     * block is extracted from the response in a single async script call, so no second window is opened or switched to.
+     * @return csv content if successful; HTTP_NOT_FOUND (404) error status string if failure.
+     */
     public String downloadCsvData() {
         String csvData = String.valueOf(HttpURLConnection.HTTP_NOT_FOUND);
         try {
-            WebElement csvButton = seleniumUtils.getDriver()
-                    .findElement(By.name(LIBSDataGenConstants.NIST_LIBS_GET_CSV_BUTTON_HTML_TEXT));
-            csvButton.click();
-
-            // Switch to the new tab/window
-            String originalWindow = seleniumUtils.getDriver().getWindowHandle();
-            for (String windowHandle : seleniumUtils.getDriver().getWindowHandles()) {
-                if (!windowHandle.equals(originalWindow)) {
-                    seleniumUtils.getDriver().switchTo().window(windowHandle);
-                    break;
-                }
+            JavascriptExecutor js = (JavascriptExecutor) seleniumUtils.getDriver();
+            Object result = js.executeAsyncScript(FETCH_CSV_SCRIPT, LIBSDataGenConstants.NIST_LIBS_GET_CSV_BUTTON_HTML_TEXT);
+            if (result instanceof String content && NistHttpClient.isSpectrumCsv(content.strip())) {
+                csvData = content.strip();
+            } else {
+                LOGGER.warning("In-page CSV request did not return spectrum data: " + result);
             }
-
-            // Grab the CSV content (<pre> block in the page source)
-            csvData = seleniumUtils.getDriver().findElement(By.tagName("pre")).getText();
-
-            // Saving to CSV file
-//            LOGGER.info("Saving fetched LIBS data to: " + csvFilePath.toAbsolutePath()); // New log
-//            Files.write(csvFilePath, csvData.getBytes());
-            // System.out.println("Saved: " + filename);
-//            LOGGER.info("Saved: " + csvFilePath); // Existing log, kept for consistency with potential existing log parsing
-
-            // Close the CSV tab
-            seleniumUtils.getDriver().close();
-            // Switch back to the original window
-            seleniumUtils.getDriver().switchTo().window(originalWindow);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unable to fetch data from loaded NIST LIBS page", e);
         }
@@ -237,7 +378,9 @@ public class NISTUtils {
      * @param csvData Downloaded csv of NIST spectrum
      * @param wavelengthUnit Wavelength unit for spectrum
      * @return a map: (wavelength -> intensity).
+     * @deprecated Boxes every value; use {@link #parseNistSpectrum(String, String, boolean)}
      */
+    @Deprecated
     public static Map<Double, Double> parseNistCsv(String csvData, String wavelengthUnit) throws IOException {
         Map<Double, Double> waveMap = new TreeMap<>();
 
@@ -259,4 +402,28 @@ public class NISTUtils {
         return waveMap;
     }
 
+    /**
+     * Parse in-memory CSV from NIST keeping the per-species columns (e.g. "Fe I", "Fe II") alongside the "Sum" column.
+     * Rows are sorted by wavelength; a later duplicate wavelength replaces an earlier one (as with {@link #parseNistCsv}).
+     * Empty species cells are read as zero intensity.
+     * @param csvData Downloaded csv of NIST spectrum
+     * @param wavelengthUnit Wavelength unit for spectrum
+     * @return Spectrum with wavelengths, Sum intensities and one intensity block per species
+     */
+    public static Spectrum parseNistSpectrum(String csvData, String wavelengthUnit) throws IOException {
+        return parseNistSpectrum(csvData, wavelengthUnit, true);
+    }
+
+    /**
+     * Parse in-memory CSV from NIST into primitive arrays with {@link NistCsvParser}.
+     * @param csvData Downloaded csv of NIST spectrum
+     * @param wavelengthUnit Wavelength unit for spectrum
+     * @param keepSpecies True to keep the per-species columns, false to skip them
+     * @return Spectrum with wavelengths, Sum intensities and (if kept) one intensity block per species
+     */
+    public static Spectrum parseNistSpectrum(String csvData, String wavelengthUnit, boolean keepSpecies)
+            throws IOException {
+        return NistCsvParser.parse(csvData, wavelengthUnit, keepSpecies);
+    }
+
 }
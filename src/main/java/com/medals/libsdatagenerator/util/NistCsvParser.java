@@ -0,0 +1,360 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.model.Spectrum;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Single pass parser for the spectrum CSV returned by NIST LIBS. Column indices are resolved from the header once,
+ * then every row is scanned in place and its numbers are parsed straight from the characters of the CSV into
+ * primitive column arrays, pre-sized from the number of lines. No per-row Strings, records or boxed values are
+ * created.
+ * <p>
+ * Behaves like the commons-csv based parser it replaces: blank lines are skipped, a row whose wavelength or Sum cell
+ * is missing or not a number is logged and skipped, empty species cells read as zero, and rows are sorted by
+ * wavelength with a later duplicate wavelength replacing an earlier one.
+ */
+public final class NistCsvParser {
+
+    private static final Logger logger = Logger.getLogger(NistCsvParser.class.getName());
+
+    private static final int IGNORED = -1;
+    private static final int WAVELENGTH = -2;
+    private static final int SUM = -3;
+    // Powers of ten up to the largest that is exact as a double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // Any 15 digit mantissa is exact as a double
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final CharSequence csv;
+    private int pos = 0;
+    // Content of the last field read, without enclosing quotes
+    private int fieldStart;
+    private int fieldEnd;
+    private boolean fieldQuoted;
+
+    private NistCsvParser(CharSequence csv) {
+        this.csv = csv;
+    }
+
+    /**
+     * @param csvData        Downloaded csv of NIST spectrum
+     * @param wavelengthUnit Wavelength unit for spectrum
+     * @param keepSpecies    True to keep the per-species columns, false to read only the wavelength and Sum columns
+     * @return Spectrum with wavelengths, Sum intensities and (if kept) one intensity block per species
+     * @throws IOException If the header has no wavelength or Sum column
+     */
+    public static Spectrum parse(CharSequence csvData, String wavelengthUnit, boolean keepSpecies) throws IOException {
+        return new NistCsvParser(csvData).parse("Wavelength (" + wavelengthUnit + ")", keepSpecies);
+    }
+
+    private Spectrum parse(String wavelengthColumn, boolean keepSpecies) throws IOException {
+        List<String> header = readHeader();
+        int sumIdx = header.indexOf("Sum");
+        if (sumIdx < 0) {
+            sumIdx = header.indexOf("Sum(calc)");
+        }
+        int wavelengthIdx = header.indexOf(wavelengthColumn);
+        if (wavelengthIdx < 0 || sumIdx < 0) {
+            throw new IOException("NIST CSV header " + header + " has no '" + wavelengthColumn + "' or Sum column");
+        }
+
+        // Role of every column: wavelength, sum, index of the species block or ignored
+        int[] roles = new int[header.size()];
+        List<String> speciesColumns = new ArrayList<>();
+        for (int col = 0; col < roles.length; col++) {
+            if (col == wavelengthIdx) {
+                roles[col] = WAVELENGTH;
+            } else if (col == sumIdx) {
+                roles[col] = SUM;
+            } else if (keepSpecies && !header.get(col).isBlank()) {
+                roles[col] = speciesColumns.size();
+                speciesColumns.add(header.get(col).trim());
+            } else {
+                roles[col] = IGNORED;
+            }
+        }
+
+        // Column of every species block
+        int[] speciesColumnIdx = new int[speciesColumns.size()];
+        for (int col = 0; col < roles.length; col++) {
+            if (roles[col] >= 0) {
+                speciesColumnIdx[roles[col]] = col;
+            }
+        }
+
+        int capacity = countLines(pos);
+        double[] wavelengths = new double[capacity];
+        double[] sums = new double[capacity];
+        double[][] species = new double[speciesColumns.size()][capacity];
+
+        int rows = 0;
+        boolean sorted = true;
+        while (pos < csv.length()) {
+            int lineStart = pos;
+            boolean hasWavelength = false;
+            boolean hasSum = false;
+            boolean valid = true;
+            boolean lastField = false;
+            int col = 0;
+            for (; !lastField; col++) {
+                lastField = nextField();
+                int role = col < roles.length ? roles[col] : IGNORED;
+                if (role == IGNORED || !valid) {
+                    continue;
+                }
+                trimField();
+                try {
+                    if (role == WAVELENGTH) {
+                        wavelengths[rows] = parseDouble(csv, fieldStart, fieldEnd);
+                        hasWavelength = true;
+                    } else if (role == SUM) {
+                        sums[rows] = parseDouble(csv, fieldStart, fieldEnd);
+                        hasSum = true;
+                    } else {
+                        species[role][rows] = fieldStart == fieldEnd ? 0.0 : parseDouble(csv, fieldStart, fieldEnd);
+                    }
+                } catch (NumberFormatException e) {
+                    valid = false;
+                }
+            }
+            if (col == 1 && fieldStart == fieldEnd && !fieldQuoted) {
+                continue; // Blank line
+            }
+            if (!valid || !hasWavelength || !hasSum) {
+                logger.warning("Error parsing downloaded NIST CSV record: "
+                        + csv.subSequence(lineStart, Math.min(pos, csv.length())).toString().strip());
+                continue;
+            }
+            // Species cells missing from a short row read as zero
+            for (int s = 0; s < species.length; s++) {
+                if (speciesColumnIdx[s] >= col) {
+                    species[s][rows] = 0.0;
+                }
+            }
+            if (rows > 0 && !(wavelengths[rows] > wavelengths[rows - 1])) {
+                sorted = false;
+            }
+            rows++;
+        }
+
+        if (!sorted) {
+            return sortedSpectrum(wavelengths, sums, species, speciesColumns, rows);
+        }
+        Map<String, double[]> speciesIntensities = new LinkedHashMap<>();
+        for (int s = 0; s < species.length; s++) {
+            speciesIntensities.put(speciesColumns.get(s), trim(species[s], rows));
+        }
+        return new Spectrum(trim(wavelengths, rows), trim(sums, rows), speciesIntensities);
+    }
+
+    private static double[] trim(double[] column, int rows) {
+        return column.length == rows ? column : Arrays.copyOf(column, rows);
+    }
+
+    /**
+     * Sorts rows by wavelength, keeping the last of any rows with the same wavelength. NIST already returns rows in
+     * order, so this is only a fallback.
+     */
+    private static Spectrum sortedSpectrum(double[] wavelengths, double[] sums, double[][] species,
+                                           List<String> speciesColumns, int rows) {
+        Integer[] order = new Integer[rows];
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+        }
+        // Stable, so equal wavelengths stay in input order
+        Arrays.sort(order, Comparator.comparingDouble(i -> wavelengths[i]));
+
+        int unique = 0;
+        int[] kept = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            if (unique > 0 && Double.compare(wavelengths[kept[unique - 1]], wavelengths[order[i]]) == 0) {
+                kept[unique - 1] = order[i];
+            } else {
+                kept[unique++] = order[i];
+            }
+        }
+
+        double[] sortedWavelengths = new double[unique];
+        double[] sortedSums = new double[unique];
+        double[][] sortedSpecies = new double[species.length][unique];
+        for (int i = 0; i < unique; i++) {
+            sortedWavelengths[i] = wavelengths[kept[i]];
+            sortedSums[i] = sums[kept[i]];
+            for (int s = 0; s < species.length; s++) {
+                sortedSpecies[s][i] = species[s][kept[i]];
+            }
+        }
+        Map<String, double[]> speciesIntensities = new LinkedHashMap<>();
+        for (int s = 0; s < species.length; s++) {
+            speciesIntensities.put(speciesColumns.get(s), sortedSpecies[s]);
+        }
+        return new Spectrum(sortedWavelengths, sortedSums, speciesIntensities);
+    }
+
+    private List<String> readHeader() {
+        List<String> header = new ArrayList<>();
+        boolean lastField;
+        do {
+            lastField = nextField();
+            String name = csv.subSequence(fieldStart, fieldEnd).toString();
+            header.add(fieldQuoted ? name.replace("\"\"", "\"") : name);
+        } while (!lastField);
+        return header;
+    }
+
+    /**
+     * Reads the field at the current position and moves past its separator.
+     *
+     * @return True if the field was the last of its record
+     */
+    private boolean nextField() {
+        int length = csv.length();
+        fieldQuoted = pos < length && csv.charAt(pos) == '"';
+        if (fieldQuoted) {
+            fieldStart = ++pos;
+            while (pos < length) {
+                if (csv.charAt(pos) == '"') {
+                    if (pos + 1 < length && csv.charAt(pos + 1) == '"') {
+                        pos += 2; // Escaped quote
+                        continue;
+                    }
+                    break;
+                }
+                pos++;
+            }
+            fieldEnd = pos;
+            // Skip the closing quote and anything up to the separator
+            while (pos < length && csv.charAt(pos) != ',' && csv.charAt(pos) != '\n') {
+                pos++;
+            }
+        } else {
+            fieldStart = pos;
+            while (pos < length && csv.charAt(pos) != ',' && csv.charAt(pos) != '\n') {
+                pos++;
+            }
+            fieldEnd = pos;
+            if (fieldEnd > fieldStart && csv.charAt(fieldEnd - 1) == '\r') {
+                fieldEnd--;
+            }
+        }
+        if (pos >= length) {
+            return true;
+        }
+        return csv.charAt(pos++) == '\n';
+    }
+
+    private void trimField() {
+        while (fieldStart < fieldEnd && Character.isWhitespace(csv.charAt(fieldStart))) {
+            fieldStart++;
+        }
+        while (fieldEnd > fieldStart && Character.isWhitespace(csv.charAt(fieldEnd - 1))) {
+            fieldEnd--;
+        }
+    }
+
+    /**
+     * @return Upper bound on the number of data rows after the given position
+     */
+    private int countLines(int from) {
+        int length = csv.length();
+        int lines = 0;
+        for (int i = from; i < length; i++) {
+            if (csv.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        // Last line without a line break
+        return from < length && csv.charAt(length - 1) != '\n' ? lines + 1 : lines;
+    }
+
+    /**
+     * Parses a decimal number from a range of characters. Numbers with at most 15 significant digits and a decimal
+     * exponent within +-22, which covers NIST output, are converted with one exact multiplication or division and
+     * so are correctly rounded, exactly as {@link Double#parseDouble}. Anything else is handed to
+     * {@link Double#parseDouble}.
+     *
+     * @throws NumberFormatException If the range is not a number
+     */
+    static double parseDouble(CharSequence chars, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+            negative = chars.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = chars.charAt(i);
+            if (c >= '0' && c <= '9') {
+                anyDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    if (++digits > MAX_EXACT_DIGITS) {
+                        return slowParse(chars, start, end);
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+                if (fraction) {
+                    exponent--;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (!anyDigit) {
+            return slowParse(chars, start, end);
+        }
+        if (i < end && (chars.charAt(i) == 'e' || chars.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+                negativeExponent = chars.charAt(i) == '-';
+                i++;
+            }
+            int explicitExponent = 0;
+            int exponentStart = i;
+            for (; i < end && chars.charAt(i) >= '0' && chars.charAt(i) <= '9' && i - exponentStart < 4; i++) {
+                explicitExponent = explicitExponent * 10 + (chars.charAt(i) - '0');
+            }
+            if (i == exponentStart) {
+                return slowParse(chars, start, end);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end) {
+            return slowParse(chars, start, end);
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return slowParse(chars, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double slowParse(CharSequence chars, int start, int end) {
+        return Double.parseDouble(chars.subSequence(start, end).toString());
+    }
+}
@@ -0,0 +1,193 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Browserless fetch engine for NIST LIBS spectra. Issues the lines1.pl query built by
+ * {@code LIBSDataService.processLIBSQueryParams} directly over HTTP with the "Download CSV" parameter set and
+ * extracts the CSV payload from the response, skipping Chrome start-up, DOM waits and window switching entirely.
+ */
+public class NistHttpClient implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(NistHttpClient.class.getName());
+
+    private static final Pattern PRE_BLOCK_PATTERN = Pattern.compile("<pre[^>]*>(.*?)</pre>",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern HTML_TAG_PATTERN = Pattern.compile("<[^>]+>");
+    private static final String NOT_FOUND = String.valueOf(HttpURLConnection.HTTP_NOT_FOUND);
+    // Not defined by HttpStatus or HttpURLConnection
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final String queryUrlBase;
+    private final CloseableHttpClient httpClient;
+    // Rate and concurrency limit for the requests (null to send them unscheduled)
+    private final NistRequestScheduler scheduler;
+
+    /**
+     * @param queryUrlBase   Base URL of the NIST LIBS query script (lines1.pl). Overridable to test against a stand-in server.
+     * @param maxConnections Maximum number of concurrent connections (should match the number of NIST workers)
+     * @param timeoutSeconds Connect and read timeout in seconds
+     * @param scheduler      Scheduler every request has to pass (null for none)
+     */
+    public NistHttpClient(String queryUrlBase, int maxConnections, int timeoutSeconds, NistRequestScheduler scheduler) {
+        this.queryUrlBase = queryUrlBase;
+        this.scheduler = scheduler;
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(Math.max(1, maxConnections));
+        connectionManager.setDefaultMaxPerRoute(Math.max(1, maxConnections));
+
+        int timeoutMillis = timeoutSeconds * 1000;
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeoutMillis)
+                .setConnectionRequestTimeout(timeoutMillis)
+                .setSocketTimeout(timeoutMillis)
+                .build();
+
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setUserAgent("Chrome/120.0.0.0")
+                .build();
+    }
+
+    public NistHttpClient(String queryUrlBase, int maxConnections, int timeoutSeconds) {
+        this(queryUrlBase, maxConnections, timeoutSeconds, null);
+    }
+
+    public NistHttpClient(int maxConnections, NistRequestScheduler scheduler) {
+        this(LIBSDataGenConstants.NIST_LIBS_QUERY_URL_BASE, maxConnections, LIBSDataGenConstants.NIST_LIBS_HTTP_TIMEOUT_SECONDS,
+                scheduler);
+    }
+
+    public NistHttpClient(int maxConnections) {
+        this(maxConnections, null);
+    }
+
+    /**
+     * Fetches the spectrum CSV for the given NIST LIBS query params.
+     *
+     * @param queryParams Query params as built by {@code LIBSDataService.processLIBSQueryParams}
+     * @return csv content if successful; HTTP_NOT_FOUND (404) error status string if failure.
+     */
+    public String fetchCsvData(Map<String, String> queryParams) {
+        Map<String, String> csvQueryParams = new LinkedHashMap<>(queryParams);
+        csvQueryParams.put(LIBSDataGenConstants.NIST_LIBS_GET_CSV_BUTTON_HTML_TEXT,
+                LIBSDataGenConstants.NIST_LIBS_GET_CSV_BUTTON_VALUE);
+
+        NistRequestScheduler.Permit permit = null;
+        NistRequestScheduler.Outcome outcome = NistRequestScheduler.Outcome.FAILURE;
+        try {
+            if (scheduler != null) {
+                permit = scheduler.acquire(LIBSDataGenConstants.NIST_ENDPOINT_HTTP);
+            }
+            String url = CommonUtils.getInstance().getUrl(queryUrlBase, csvQueryParams);
+            HttpGet request = new HttpGet(url);
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                int statusCode = response.getStatusLine().getStatusCode();
+                String body = response.getEntity() != null
+                        ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+                if (statusCode != HttpStatus.SC_OK) {
+                    logger.warning("NIST LIBS query returned HTTP " + statusCode);
+                    if (isThrottlingStatus(statusCode)) {
+                        outcome = NistRequestScheduler.Outcome.THROTTLED;
+                    }
+                    return NOT_FOUND;
+                }
+
+                String csvData = extractCsvData(body);
+                if (!isSpectrumCsv(csvData)) {
+                    logger.warning("NIST LIBS response did not contain spectrum CSV data");
+                    return NOT_FOUND;
+                }
+                outcome = NistRequestScheduler.Outcome.SUCCESS;
+                return csvData;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warning("Interrupted while waiting to send a request to NIST LIBS");
+        } catch (SocketTimeoutException | ConnectTimeoutException e) {
+            // An overloaded server stops answering before it starts rejecting
+            outcome = NistRequestScheduler.Outcome.THROTTLED;
+            logger.log(Level.SEVERE, "NIST LIBS request timed out", e);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Unable to fetch data from NIST LIBS over HTTP", e);
+        } finally {
+            if (permit != null) {
+                permit.complete(outcome);
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Checks whether a response status means that NIST is overloaded or rate limiting us.
+     */
+    static boolean isThrottlingStatus(int statusCode) {
+        return statusCode == HTTP_TOO_MANY_REQUESTS || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE
+                || statusCode == HttpStatus.SC_BAD_GATEWAY || statusCode == HttpStatus.SC_GATEWAY_TIMEOUT;
+    }
+
+    /**
+     * Extracts the CSV payload from a NIST response. The CSV view wraps the data in a {@code <pre>} block;
+     * a plain text response is returned as is.
+     */
+    static String extractCsvData(String body) {
+        Matcher matcher = PRE_BLOCK_PATTERN.matcher(body);
+        if (matcher.find()) {
+            String preContent = HTML_TAG_PATTERN.matcher(matcher.group(1)).replaceAll("");
+            return unescapeHtml(preContent).strip();
+        }
+        return body.strip();
+    }
+
+    /**
+     * Checks that the payload looks like a NIST spectrum CSV (wavelength and sum columns in the header).
+     */
+    static boolean isSpectrumCsv(String csvData) {
+        if (csvData == null || csvData.isBlank()) {
+            return false;
+        }
+        int headerEnd = csvData.indexOf('\n');
+        String header = headerEnd < 0 ? csvData : csvData.substring(0, headerEnd);
+        return headerEnd > 0 && header.startsWith("Wavelength") && header.contains("Sum");
+    }
+
+    private static String unescapeHtml(String text) {
+        return text.replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&quot;", "\"")
+                .replace("&#39;", "'")
+                .replace("&nbsp;", " ")
+                .replace("&amp;", "&");
+    }
+
+    @Override
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to close NIST HTTP client", e);
+        }
+    }
+}
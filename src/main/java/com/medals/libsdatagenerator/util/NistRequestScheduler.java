@@ -0,0 +1,304 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Gate in front of all requests to NIST. Every request takes a token from a bucket refilled at the configured rate
+ * (the politeness ceiling for the NIST host) and a slot from the concurrency limit of its endpoint (HTTP query
+ * script or browser).
+ * <p>
+ * Concurrency limits adapt AIMD-style: each successful request raises the limit by 1/limit (about one slot per round
+ * of requests) up to the number of NIST workers, while an error, a throttling response or latency well above the
+ * endpoint's long-run average halves it (at most once per average request duration). A throttling response also
+ * pauses all requests for a back-off period. The scheduler thereby settles just below the concurrency at which NIST
+ * starts to slow down or reject requests instead of running into its throttling.
+ */
+public class NistRequestScheduler {
+
+    private static final Logger logger = Logger.getLogger(NistRequestScheduler.class.getName());
+    private static final String NOT_FOUND = String.valueOf(HttpURLConnection.HTTP_NOT_FOUND);
+
+    /**
+     * Result of a request as seen by the scheduler.
+     */
+    public enum Outcome {
+        SUCCESS,
+        // Request failed for another reason (unreadable response, browser error)
+        FAILURE,
+        // NIST signalled overload (HTTP 429/503, gateway errors) or the request timed out
+        THROTTLED
+    }
+
+    /**
+     * Snapshot of one endpoint's counters.
+     *
+     * @param meanLatencyMillis Long-run average latency of successful requests (NaN before the first one)
+     * @param concurrencyLimit  Current adaptive concurrency limit
+     */
+    public record EndpointStats(String endpoint, long requests, long failures, long throttled,
+                                double meanLatencyMillis, double concurrencyLimit) {
+        @Override
+        public String toString() {
+            return String.format("%s: %d requests, %d failed, %d throttled, mean latency %.0f ms, concurrency limit %.2f",
+                    endpoint, requests, failures, throttled, meanLatencyMillis, concurrencyLimit);
+        }
+    }
+
+    private final double ratePerSecond;
+    private final int maxConcurrency;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    // Token bucket shared by all endpoints, as they all go to the same host
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+
+    /**
+     * @param ratePerSecond  Maximum sustained request rate
+     * @param maxConcurrency Ceiling of every endpoint's concurrency limit
+     */
+    public NistRequestScheduler(double ratePerSecond, int maxConcurrency) {
+        if (!(ratePerSecond > 0)) {
+            throw new IllegalArgumentException("Request rate must be positive");
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Maximum concurrency must be at least 1");
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.maxConcurrency = maxConcurrency;
+        // Allow a burst of one request per worker
+        this.tokens = getBurst();
+        this.lastRefillNanos = System.nanoTime();
+        this.pausedUntilNanos = lastRefillNanos;
+    }
+
+    /**
+     * Waits until the endpoint has a free slot and the rate limit allows another request.
+     *
+     * @return Permit to complete once the request has finished
+     */
+    public Permit acquire(String endpoint) throws InterruptedException {
+        Endpoint state = endpoints.computeIfAbsent(endpoint, Endpoint::new);
+        // Slot first, so that requests blocked on the concurrency limit do not use up tokens
+        state.enter();
+        try {
+            acquireToken();
+        } catch (InterruptedException e) {
+            state.leave();
+            throw e;
+        }
+        return new Permit(state, System.nanoTime());
+    }
+
+    /**
+     * Runs a request that follows the NIST fetch convention of returning HTTP_NOT_FOUND (404) on failure.
+     *
+     * @return The request's result; HTTP_NOT_FOUND (404) error status string if interrupted while waiting
+     */
+    public String execute(String endpoint, Supplier<String> request) {
+        Permit permit;
+        try {
+            permit = acquire(endpoint);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warning("Interrupted while waiting to send a request to NIST");
+            return NOT_FOUND;
+        }
+        String result = null;
+        try {
+            result = request.get();
+            return result;
+        } finally {
+            permit.complete(result == null || result.equals(NOT_FOUND) ? Outcome.FAILURE : Outcome.SUCCESS);
+        }
+    }
+
+    private void acquireToken() throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                tokens = Math.min(getBurst(), tokens + (now - lastRefillNanos) * ratePerSecond / 1e9);
+                lastRefillNanos = now;
+                if (now - pausedUntilNanos >= 0 && tokens >= 1.0) {
+                    tokens -= 1.0;
+                    return;
+                }
+                waitNanos = Math.max(pausedUntilNanos - now, (long) ((1.0 - tokens) / ratePerSecond * 1e9));
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1));
+        }
+    }
+
+    private synchronized void pause(long nanos) {
+        long until = System.nanoTime() + nanos;
+        if (until - pausedUntilNanos > 0) {
+            pausedUntilNanos = until;
+            // Restart slowly after the pause instead of with a full burst
+            tokens = Math.min(tokens, 0.0);
+        }
+    }
+
+    private double getBurst() {
+        return Math.max(1, maxConcurrency);
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return Counters of the endpoint (zero requests if it has not been used)
+     */
+    public EndpointStats getStats(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, Endpoint::new).snapshot();
+    }
+
+    /**
+     * @return Counters of every endpoint used so far
+     */
+    public List<EndpointStats> getStats() {
+        List<EndpointStats> stats = new ArrayList<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            stats.add(endpoint.snapshot());
+        }
+        return stats;
+    }
+
+    /**
+     * Handle on a request admitted by the scheduler. Completing it frees the endpoint slot and feeds the outcome and
+     * latency into the endpoint's adaptive limit.
+     */
+    public final class Permit {
+        private final Endpoint endpoint;
+        private final long startNanos;
+        private boolean completed = false;
+
+        private Permit(Endpoint endpoint, long startNanos) {
+            this.endpoint = endpoint;
+            this.startNanos = startNanos;
+        }
+
+        public void complete(Outcome outcome) {
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                completed = true;
+            }
+            endpoint.record(outcome, System.nanoTime() - startNanos);
+            if (outcome == Outcome.THROTTLED) {
+                logger.warning("NIST throttled a " + endpoint.name + " request. Pausing requests for "
+                        + LIBSDataGenConstants.NIST_SCHEDULER_THROTTLE_BACKOFF_MILLIS + " ms");
+                pause(TimeUnit.MILLISECONDS.toNanos(LIBSDataGenConstants.NIST_SCHEDULER_THROTTLE_BACKOFF_MILLIS));
+            }
+            endpoint.leave();
+        }
+    }
+
+    /**
+     * Adaptive concurrency limit and counters of one endpoint.
+     */
+    private final class Endpoint {
+        private final String name;
+        private double limit = 1.0;
+        private int inFlight = 0;
+        private long requests = 0;
+        private long failures = 0;
+        private long throttled = 0;
+        // Long-run and recent latency averages of successful requests (ns)
+        private double longLatency = Double.NaN;
+        private double shortLatency = Double.NaN;
+        private long successes = 0;
+        private long lastDecreaseNanos;
+
+        Endpoint(String name) {
+            this.name = name;
+            // Long enough ago that the first error always counts
+            this.lastDecreaseNanos = System.nanoTime() - Long.MAX_VALUE / 2;
+        }
+
+        synchronized void enter() throws InterruptedException {
+            while (inFlight >= (int) limit) {
+                wait();
+            }
+            inFlight++;
+        }
+
+        synchronized void leave() {
+            inFlight--;
+            notifyAll();
+        }
+
+        synchronized void record(Outcome outcome, long latencyNanos) {
+            requests++;
+            switch (outcome) {
+                case SUCCESS -> {
+                    successes++;
+                    updateLatency(latencyNanos);
+                    // Recent requests much slower than usual: NIST is queueing them
+                    if (successes > LIBSDataGenConstants.NIST_SCHEDULER_WARMUP_REQUESTS
+                            && shortLatency > LIBSDataGenConstants.NIST_SCHEDULER_LATENCY_TOLERANCE * longLatency) {
+                        decrease();
+                    } else {
+                        limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+                    }
+                }
+                case FAILURE -> {
+                    failures++;
+                    decrease();
+                }
+                case THROTTLED -> {
+                    throttled++;
+                    decrease();
+                }
+            }
+            notifyAll();
+        }
+
+        private void updateLatency(long latencyNanos) {
+            if (Double.isNaN(longLatency)) {
+                longLatency = latencyNanos;
+                shortLatency = latencyNanos;
+                return;
+            }
+            longLatency += LIBSDataGenConstants.NIST_SCHEDULER_LONG_LATENCY_WEIGHT * (latencyNanos - longLatency);
+            shortLatency += LIBSDataGenConstants.NIST_SCHEDULER_SHORT_LATENCY_WEIGHT * (latencyNanos - shortLatency);
+        }
+
+        /**
+         * Multiplicative decrease, at most once per average request duration so that the requests already in flight
+         * when the limit was cut do not cut it again.
+         */
+        private void decrease() {
+            long now = System.nanoTime();
+            double window = Double.isNaN(longLatency) ? 0 : longLatency;
+            if (now - lastDecreaseNanos < window) {
+                return;
+            }
+            double previous = limit;
+            limit = Math.max(1.0, limit * LIBSDataGenConstants.NIST_SCHEDULER_DECREASE_FACTOR);
+            lastDecreaseNanos = now;
+            if ((int) limit < (int) previous) {
+                logger.info("Reduced " + name + " concurrency limit to " + (int) limit);
+            }
+        }
+
+        synchronized EndpointStats snapshot() {
+            return new EndpointStats(name, requests, failures, throttled, longLatency / 1e6, limit);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.model.nist.NistFormState;
+
+/**
+ * A single NIST LIBS browser session: one WebDriver with its own NIST form state.
+ * The NIST LIBS page is stateful (the recalculation form holds the last composition and plasma parameters),
+ * so every concurrent fetch needs its own session and its own record of the form state.
+ */
+public class NistSession {
+
+    private final int id;
+    private final SeleniumUtils seleniumUtils;
+    private final NISTUtils nistUtils;
+
+    // Form state shown on this session's page (null if no NIST page is loaded)
+    private NistFormState formState = null;
+
+    public NistSession(int id, SeleniumUtils seleniumUtils) {
+        this.id = id;
+        this.seleniumUtils = seleniumUtils;
+        this.nistUtils = new NISTUtils(seleniumUtils);
+    }
+
+    public NistSession(int id) {
+        this(id, new SeleniumUtils());
+    }
+
+    /**
+     * Closes the browser and resets the form state so that the next fetch starts with a fresh page load.
+     */
+    public void quit() {
+        seleniumUtils.quitSelenium();
+        formState = null;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public SeleniumUtils getSeleniumUtils() {
+        return seleniumUtils;
+    }
+
+    public NISTUtils getNistUtils() {
+        return nistUtils;
+    }
+
+    public NistFormState getFormState() {
+        return formState;
+    }
+
+    public void setFormState(NistFormState formState) {
+        this.formState = formState;
+    }
+}
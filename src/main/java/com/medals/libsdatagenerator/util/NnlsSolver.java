@@ -0,0 +1,136 @@
+package com.medals.libsdatagenerator.util;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.interfaces.linsol.LinearSolverDense;
+
+/**
+ * Non-negative least squares: finds w >= 0 minimising ||A w - t||^2 with the Lawson-Hanson active set method. The
+ * problem is given by its normal equations, the Gram matrix G = A^T A and the right-hand side b = A^T t, which for
+ * the few columns of a plasma zone fit (one per zone, one row per wavelength) makes every iteration independent of
+ * the spectrum length.
+ * <p>
+ * Least squares subproblems are solved with a pseudo-inverse, so columns that are identical (e.g. two zones with the
+ * same plasma parameters) or linearly dependent do not break the solver.
+ */
+public final class NnlsSolver {
+
+    // Relative tolerance for gradient and weight comparisons
+    private static final double TOLERANCE = 1e-12;
+
+    private NnlsSolver() {
+    }
+
+    /**
+     * @param gram Gram matrix A^T A (k x k, symmetric positive semi-definite)
+     * @param rhs  A^T t (length k)
+     * @return Non-negative weights (length k); all zero if no positive combination of the columns reduces the error
+     */
+    public static double[] solve(double[][] gram, double[] rhs) {
+        int k = rhs.length;
+        if (gram.length != k) {
+            throw new IllegalArgumentException("Gram matrix is " + gram.length + "x" + gram.length
+                    + " but right-hand side has " + k + " entries");
+        }
+        double scale = 0.0;
+        for (int i = 0; i < k; i++) {
+            scale = Math.max(scale, Math.abs(gram[i][i]));
+            scale = Math.max(scale, Math.abs(rhs[i]));
+        }
+        double tolerance = TOLERANCE * Math.max(scale, Double.MIN_NORMAL) * k;
+
+        double[] w = new double[k];
+        boolean[] passive = new boolean[k];
+        double[] gradient = new double[k];
+        // Each outer iteration adds one column; the inner loop only ever removes columns
+        for (int iteration = 0; iteration < 3 * k; iteration++) {
+            negativeGradient(gram, rhs, w, gradient);
+            int next = -1;
+            for (int j = 0; j < k; j++) {
+                if (!passive[j] && gradient[j] > tolerance && (next < 0 || gradient[j] > gradient[next])) {
+                    next = j;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            passive[next] = true;
+
+            while (true) {
+                double[] z = solvePassive(gram, rhs, passive);
+                double alpha = Double.POSITIVE_INFINITY;
+                int blocking = -1;
+                for (int i = 0; i < k; i++) {
+                    if (passive[i] && z[i] <= tolerance) {
+                        double step = w[i] > z[i] ? w[i] / (w[i] - z[i]) : 0.0;
+                        if (step < alpha) {
+                            alpha = step;
+                            blocking = i;
+                        }
+                    }
+                }
+                if (blocking < 0) {
+                    w = z;
+                    break;
+                }
+                // Move towards the unconstrained solution until the first weight hits zero, and drop those
+                for (int i = 0; i < k; i++) {
+                    if (passive[i]) {
+                        w[i] += alpha * (z[i] - w[i]);
+                        if (i == blocking || w[i] <= tolerance) {
+                            w[i] = 0.0;
+                            passive[i] = false;
+                        }
+                    }
+                }
+            }
+        }
+        return w;
+    }
+
+    private static void negativeGradient(double[][] gram, double[] rhs, double[] w, double[] gradient) {
+        for (int i = 0; i < rhs.length; i++) {
+            double sum = rhs[i];
+            for (int j = 0; j < rhs.length; j++) {
+                sum -= gram[i][j] * w[j];
+            }
+            gradient[i] = sum;
+        }
+    }
+
+    /**
+     * Solves the least squares problem restricted to the passive columns; other weights are zero.
+     */
+    private static double[] solvePassive(double[][] gram, double[] rhs, boolean[] passive) {
+        int k = rhs.length;
+        int[] index = new int[k];
+        int n = 0;
+        for (int i = 0; i < k; i++) {
+            if (passive[i]) {
+                index[n++] = i;
+            }
+        }
+        if (n == 0) {
+            return new double[k];
+        }
+        DMatrixRMaj g = new DMatrixRMaj(n, n);
+        DMatrixRMaj b = new DMatrixRMaj(n, 1);
+        for (int r = 0; r < n; r++) {
+            b.set(r, 0, rhs[index[r]]);
+            for (int c = 0; c < n; c++) {
+                g.set(r, c, gram[index[r]][index[c]]);
+            }
+        }
+        LinearSolverDense<DMatrixRMaj> solver = LinearSolverFactory_DDRM.pseudoInverse(true);
+        DMatrixRMaj x = new DMatrixRMaj(n, 1);
+        if (!solver.setA(g)) {
+            return new double[k];
+        }
+        solver.solve(b, x);
+        double[] z = new double[k];
+        for (int r = 0; r < n; r++) {
+            z[index[r]] = x.get(r, 0);
+        }
+        return z;
+    }
+}
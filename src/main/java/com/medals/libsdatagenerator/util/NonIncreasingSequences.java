@@ -0,0 +1,107 @@
+package com.medals.libsdatagenerator.util;
+
+import java.util.Arrays;
+
+/**
+ * Sequences of indices into a list of keys in which every key is no greater than the one before it, e.g. plasma
+ * zones ordered from hot to cool. Sequences are enumerated lexicographically by index; only a table of the number of
+ * completions of each prefix is kept, so memory grows with length x keys rather than with the number of sequences.
+ */
+public class NonIncreasingSequences implements IndexedCombinations {
+
+    private final double[] keys;
+    private final int length;
+    // completions[z][p]: sequences of z more indices that may follow index p
+    private final long[][] completions;
+    private final long size;
+
+    /**
+     * @param keys   Key of every index
+     * @param length Length of the sequences
+     */
+    public NonIncreasingSequences(double[] keys, int length) {
+        if (length < 1) {
+            throw new IllegalArgumentException("Sequence length must be at least 1");
+        }
+        this.keys = keys.clone();
+        this.length = length;
+        int n = keys.length;
+        completions = new long[length][n];
+        Arrays.fill(completions[0], 1);
+        for (int z = 1; z < length; z++) {
+            for (int p = 0; p < n; p++) {
+                long count = 0;
+                for (int q = 0; q < n; q++) {
+                    if (keys[q] <= keys[p]) {
+                        count = Math.addExact(count, completions[z - 1][q]);
+                    }
+                }
+                completions[z][p] = count;
+            }
+        }
+        long total = 0;
+        for (int q = 0; q < n; q++) {
+            total = Math.addExact(total, completions[length - 1][q]);
+        }
+        size = total;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public void unrank(long index, int[] combination) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size + " sequences");
+        }
+        double limit = Double.POSITIVE_INFINITY;
+        for (int position = 0; position < length; position++) {
+            long[] counts = completions[length - 1 - position];
+            for (int q = 0; q < keys.length; q++) {
+                if (keys[q] > limit) {
+                    continue;
+                }
+                if (index < counts[q]) {
+                    combination[position] = q;
+                    limit = keys[q];
+                    break;
+                }
+                index -= counts[q];
+            }
+        }
+    }
+
+    @Override
+    public boolean next(int[] combination) {
+        for (int position = length - 1; position >= 0; position--) {
+            double limit = position == 0 ? Double.POSITIVE_INFINITY : keys[combination[position - 1]];
+            int q = nextAllowed(combination[position] + 1, limit);
+            if (q < 0) {
+                continue;
+            }
+            combination[position] = q;
+            // Every index may follow itself, so the first allowed one always exists
+            for (int later = position + 1; later < length; later++) {
+                combination[later] = nextAllowed(0, keys[combination[later - 1]]);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private int nextAllowed(int from, double limit) {
+        for (int q = from; q < keys.length; q++) {
+            if (keys[q] <= limit) {
+                return q;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,285 @@
+package com.medals.libsdatagenerator.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes a NumPy .npy array (format version 1.0) one row at a time along its first axis. The header is a fixed size
+ * and is rewritten with the current row count after every flush, so the file can be loaded (or memory-mapped) with
+ * np.load at any point, including after an interrupted run. Supported dtypes are little-endian float64 ({@code <f8}),
+ * float32 ({@code <f4}) and fixed-width unicode strings ({@code <U<n>}).
+ */
+public class NpyArrayWriter implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(NpyArrayWriter.class.getName());
+
+    public static final String DTYPE_FLOAT64 = "<f8";
+    public static final String DTYPE_FLOAT32 = "<f4";
+    private static final byte[] MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0};
+    // Magic, version and header length field
+    private static final int PREAMBLE_LENGTH = MAGIC.length + 2;
+    // Room for the largest possible shape, and a multiple of 64 as recommended by the format spec
+    private static final int DATA_OFFSET = 128;
+    private static final Charset UTF_32LE = Charset.forName("UTF-32LE");
+    private static final Pattern DESCR_PATTERN = Pattern.compile("'descr':\\s*'([^']+)'");
+    private static final Pattern SHAPE_PATTERN = Pattern.compile("'shape':\\s*\\(([^)]*)\\)");
+
+    private final Path path;
+    private final String descr;
+    private final long[] rowShape;
+    private final int itemSize;
+    private final int rowBytes;
+    private final int dataOffset;
+    private final FileChannel channel;
+    private final ByteBuffer rowBuffer;
+    private long rows;
+
+    /**
+     * @param path     Path of the .npy file
+     * @param descr    NumPy dtype descriptor ({@code <f8}, {@code <f4} or {@code <U<n>})
+     * @param rowShape Shape of one row, i.e. every axis but the first (empty for a 1-d array)
+     * @param append   True to keep the rows of an existing file (which must have the same dtype and row shape)
+     */
+    public NpyArrayWriter(Path path, String descr, long[] rowShape, boolean append) throws IOException {
+        this.path = path;
+        this.descr = descr;
+        this.rowShape = rowShape.clone();
+        this.itemSize = itemSize(descr);
+        long elementsPerRow = 1;
+        for (long dim : rowShape) {
+            elementsPerRow *= dim;
+        }
+        this.rowBytes = Math.toIntExact(elementsPerRow * itemSize);
+        this.rowBuffer = ByteBuffer.allocate(rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+
+        boolean existing = append && Files.exists(path) && Files.size(path) > 0;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (existing) {
+            this.dataOffset = readExistingHeader();
+            // Drop a partly written last row
+            this.rows = rowBytes == 0 ? 0 : (channel.size() - dataOffset) / rowBytes;
+            channel.truncate(dataOffset + rows * rowBytes);
+        } else {
+            channel.truncate(0);
+            this.dataOffset = DATA_OFFSET;
+            this.rows = 0;
+            writeHeader();
+        }
+    }
+
+    private int readExistingHeader() throws IOException {
+        ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(preamble, 0);
+        preamble.flip();
+        byte[] magic = new byte[6];
+        preamble.get(magic);
+        if (preamble.remaining() < 4 || !Arrays.equals(magic, Arrays.copyOf(MAGIC, 6)) || preamble.get() != 1) {
+            throw new IOException(path + " is not a version 1.0 .npy file");
+        }
+        preamble.get(); // Minor version
+        int headerLength = Short.toUnsignedInt(preamble.getShort());
+        ByteBuffer header = ByteBuffer.allocate(headerLength);
+        channel.read(header, PREAMBLE_LENGTH);
+        String headerText = new String(header.array(), StandardCharsets.US_ASCII);
+
+        Matcher descrMatcher = DESCR_PATTERN.matcher(headerText);
+        Matcher shapeMatcher = SHAPE_PATTERN.matcher(headerText);
+        if (!descrMatcher.find() || !shapeMatcher.find()) {
+            throw new IOException("Unreadable .npy header in " + path);
+        }
+        String[] dims = shapeMatcher.group(1).split(",");
+        long[] existingRowShape = Arrays.stream(dims).skip(1).map(String::trim).filter(d -> !d.isEmpty())
+                .mapToLong(Long::parseLong).toArray();
+        if (!descrMatcher.group(1).equals(descr) || !Arrays.equals(existingRowShape, rowShape)) {
+            throw new IOException("Cannot append to " + path + ": it holds " + descrMatcher.group(1) + " rows of shape "
+                    + Arrays.toString(existingRowShape) + ", not " + descr + " rows of shape " + Arrays.toString(rowShape));
+        }
+        return PREAMBLE_LENGTH + headerLength;
+    }
+
+    private void writeHeader() throws IOException {
+        StringBuilder shape = new StringBuilder("(").append(rows).append(',');
+        for (int i = 0; i < rowShape.length; i++) {
+            shape.append(i == 0 ? " " : ", ").append(rowShape[i]);
+        }
+        shape.append(')');
+        String dict = "{'descr': '" + descr + "', 'fortran_order': False, 'shape': " + shape + ", }";
+        int headerLength = dataOffset - PREAMBLE_LENGTH;
+        if (dict.length() + 1 > headerLength) {
+            throw new IOException(".npy header of " + path + " does not fit in " + headerLength + " bytes");
+        }
+        // Space padded and terminated by a newline
+        String header = dict + " ".repeat(headerLength - dict.length() - 1) + "\n";
+
+        ByteBuffer buffer = ByteBuffer.allocate(dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC);
+        buffer.putShort((short) headerLength);
+        buffer.put(header.getBytes(StandardCharsets.US_ASCII));
+        buffer.flip();
+        channel.write(buffer, 0);
+    }
+
+    /**
+     * Appends one numeric row, converting to float32 if that is the array's dtype.
+     */
+    public void writeRow(double[] values) throws IOException {
+        if ((long) values.length * itemSize != rowBytes) {
+            throw new IllegalArgumentException("Row of " + values.length + " values does not match row shape "
+                    + Arrays.toString(rowShape) + " of " + path);
+        }
+        rowBuffer.clear();
+        if (DTYPE_FLOAT32.equals(descr)) {
+            for (double value : values) {
+                rowBuffer.putFloat((float) value);
+            }
+        } else if (DTYPE_FLOAT64.equals(descr)) {
+            for (double value : values) {
+                rowBuffer.putDouble(value);
+            }
+        } else {
+            throw new IllegalStateException(path + " holds " + descr + ", not floating point values");
+        }
+        writeRowBuffer();
+    }
+
+    /**
+     * Appends one string to a 1-d fixed-width unicode array. Strings longer than the width are truncated.
+     */
+    public void writeString(String value) throws IOException {
+        int width = itemSize / 4;
+        String stored = value == null ? "" : value;
+        if (stored.codePointCount(0, stored.length()) > width) {
+            logger.warning("'" + stored + "' truncated to " + width + " characters in " + path.getFileName());
+            stored = stored.substring(0, stored.offsetByCodePoints(0, width));
+        }
+        rowBuffer.clear();
+        rowBuffer.put(stored.getBytes(UTF_32LE));
+        while (rowBuffer.hasRemaining()) {
+            rowBuffer.put((byte) 0);
+        }
+        writeRowBuffer();
+    }
+
+    private void writeRowBuffer() throws IOException {
+        rowBuffer.flip();
+        long position = dataOffset + rows * rowBytes;
+        while (rowBuffer.hasRemaining()) {
+            position += channel.write(rowBuffer, position);
+        }
+        rows++;
+    }
+
+    /**
+     * Drops rows beyond the given count, e.g. to line up arrays after an interruption.
+     */
+    public void truncateRows(long rowCount) throws IOException {
+        if (rowCount < rows) {
+            rows = rowCount;
+            channel.truncate(dataOffset + rows * rowBytes);
+        }
+    }
+
+    /**
+     * Updates the header with the current row count.
+     */
+    public void flush() throws IOException {
+        writeHeader();
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return Length of the file in bytes
+     */
+    public long length() {
+        return dataOffset + rows * rowBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            flush();
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    /**
+     * @return Size in bytes of one item of the dtype
+     */
+    static int itemSize(String descr) {
+        return switch (descr) {
+            case DTYPE_FLOAT64 -> 8;
+            case DTYPE_FLOAT32 -> 4;
+            default -> {
+                if (descr.startsWith("<U")) {
+                    yield 4 * Integer.parseInt(descr.substring(2));
+                }
+                throw new IllegalArgumentException("Unsupported .npy dtype: " + descr);
+            }
+        };
+    }
+
+    /**
+     * @return Unicode string dtype wide enough for the given number of characters
+     */
+    public static String unicodeDtype(int width) {
+        return "<U" + width;
+    }
+
+    /**
+     * Writes a complete 1-d float64 array.
+     */
+    public static void write(Path path, double[] values) throws IOException {
+        try (NpyArrayWriter writer = new NpyArrayWriter(path, DTYPE_FLOAT64, new long[0], false)) {
+            for (double value : values) {
+                writer.writeRow(new double[]{value});
+            }
+        }
+    }
+
+    /**
+     * Writes a complete 1-d unicode string array, as wide as its longest string.
+     */
+    public static void write(Path path, List<String> values) throws IOException {
+        int width = Math.max(1, values.stream().mapToInt(v -> v.codePointCount(0, v.length())).max().orElse(1));
+        try (NpyArrayWriter writer = new NpyArrayWriter(path, unicodeDtype(width), new long[0], false)) {
+            for (String value : values) {
+                writer.writeString(value);
+            }
+        }
+    }
+
+    /**
+     * Reads a 1-d float64 array written by {@link #write(Path, double[])}.
+     */
+    public static double[] readDoubles(Path path) throws IOException {
+        try (NpyArrayWriter reader = new NpyArrayWriter(path, DTYPE_FLOAT64, new long[0], true)) {
+            ByteBuffer data = ByteBuffer.allocate(Math.toIntExact(reader.rows * 8)).order(ByteOrder.LITTLE_ENDIAN);
+            reader.channel.read(data, reader.dataOffset);
+            data.flip();
+            double[] values = new double[Math.toIntExact(reader.rows)];
+            data.asDoubleBuffer().get(values);
+            return values;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import com.medals.libsdatagenerator.model.DatasetRow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams dataset rows to NumPy arrays, one .npy file per array:
+ * <ul>
+ *     <li>spectra.npy: (rows, wavelengths) float64 or float32 intensities</li>
+ *     <li>wavelengths.npy: (wavelengths,) float64 instrument wavelength grid</li>
+ *     <li>compositions.npy: (rows, elements) float64 percentages, columns in STD_ELEMENT_LIST order</li>
+ *     <li>elements.npy: (elements,) element symbols of the composition columns</li>
+ *     <li>composition_ids.npy and one array per class label column: (rows,) fixed-width strings</li>
+ * </ul>
+ * Row arrays grow by one row per written composition, so the dataset is never held in memory, and every header is
+ * kept up to date so the arrays can be memory-mapped with {@code np.load(path, mmap_mode='r')} even mid-run.
+ * In archive mode the arrays are staged in a directory and bundled into an uncompressed master_dataset.npz when the
+ * sink is closed. When appending, the arrays of an existing archive are unpacked into the staging directory first, so
+ * the new archive holds the earlier rows as well.
+ */
+public class NpyDatasetSink implements DatasetSink {
+
+    private static final Logger logger = Logger.getLogger(NpyDatasetSink.class.getName());
+
+    private final Path arrayDirPath;
+    private final Path archivePath;
+    private final boolean appendMode;
+    private final List<String> classLabelColumns;
+    private final String spectraDtype;
+
+    private NpyArrayWriter spectraWriter = null;
+    private NpyArrayWriter compositionsWriter;
+    private NpyArrayWriter compositionIdsWriter;
+    private final Map<String, NpyArrayWriter> classLabelWriters = new LinkedHashMap<>();
+    // Reused for every row
+    private final double[] compositionRow = new double[LIBSDataGenConstants.STD_ELEMENT_LIST.length];
+    private boolean speciesWarningLogged = false;
+
+    /**
+     * @param outputDirPath     Output directory
+     * @param appendMode        True to append to existing arrays (or to the arrays staged by an interrupted run)
+     * @param classLabelColumns Class label columns, each written to its own array
+     * @param spectraDtype      NumPy dtype of the spectra ({@link NpyArrayWriter#DTYPE_FLOAT64} or
+     *                          {@link NpyArrayWriter#DTYPE_FLOAT32})
+     * @param archive           True to bundle the arrays into master_dataset.npz on close
+     */
+    public NpyDatasetSink(Path outputDirPath, boolean appendMode, List<String> classLabelColumns, String spectraDtype,
+                          boolean archive) {
+        this.archivePath = archive ? outputDirPath.resolve(LIBSDataGenConstants.NPZ_DATASET_FILENAME) : null;
+        this.arrayDirPath = archive
+                ? outputDirPath.resolve(LIBSDataGenConstants.NPZ_STAGING_DIR)
+                : outputDirPath.resolve(LIBSDataGenConstants.NPY_DATASET_DIR);
+        this.appendMode = appendMode;
+        this.classLabelColumns = classLabelColumns;
+        this.spectraDtype = spectraDtype;
+    }
+
+    @Override
+    public void write(DatasetRow row, double[] wavelengths) throws IOException {
+        if (row.isEmpty()) {
+            logger.warning("No spectrum for " + row.getCompositionId() + ". Row not written to dataset.");
+            return;
+        }
+        if (spectraWriter == null) {
+            open(wavelengths);
+        }
+        if (row.getSpecies() != null && !speciesWarningLogged) {
+            logger.warning("Species-resolved spectra are only written in CSV format. Skipping species in NumPy output.");
+            speciesWarningLogged = true;
+        }
+
+        for (int i = 0; i < compositionRow.length; i++) {
+            compositionRow[i] = row.getComposition().getOrDefault(LIBSDataGenConstants.STD_ELEMENT_LIST[i], 0.0);
+        }
+        spectraWriter.writeRow(row.getSpectrum());
+        compositionsWriter.writeRow(compositionRow);
+        compositionIdsWriter.writeString(row.getCompositionId());
+        for (Map.Entry<String, NpyArrayWriter> entry : classLabelWriters.entrySet()) {
+            entry.getValue().writeString(row.getClassLabels().get(entry.getKey()));
+        }
+        for (NpyArrayWriter writer : getRowWriters()) {
+            writer.flush();
+        }
+    }
+
+    private void open(double[] wavelengths) throws IOException {
+        if (Files.exists(arrayDirPath) && !appendMode) {
+            backup(arrayDirPath);
+        }
+        stageArchive();
+        Files.createDirectories(arrayDirPath);
+
+        Path wavelengthsPath = arrayDirPath.resolve(LIBSDataGenConstants.NPY_WAVELENGTHS_FILENAME);
+        Path spectraPath = arrayDirPath.resolve(LIBSDataGenConstants.NPY_SPECTRA_FILENAME);
+        if (Files.exists(spectraPath) && Files.exists(wavelengthsPath)
+                && !Arrays.equals(NpyArrayWriter.readDoubles(wavelengthsPath), wavelengths)) {
+            throw new IOException("Cannot append to " + arrayDirPath + ": its wavelength grid differs from the "
+                    + "instrument wavelength grid of this run");
+        }
+        NpyArrayWriter.write(wavelengthsPath, wavelengths);
+        NpyArrayWriter.write(arrayDirPath.resolve(LIBSDataGenConstants.NPY_ELEMENTS_FILENAME),
+                Arrays.asList(LIBSDataGenConstants.STD_ELEMENT_LIST));
+
+        spectraWriter = new NpyArrayWriter(spectraPath, spectraDtype, new long[]{wavelengths.length}, true);
+        compositionsWriter = new NpyArrayWriter(arrayDirPath.resolve(LIBSDataGenConstants.NPY_COMPOSITIONS_FILENAME),
+                NpyArrayWriter.DTYPE_FLOAT64, new long[]{LIBSDataGenConstants.STD_ELEMENT_LIST.length}, true);
+        compositionIdsWriter = new NpyArrayWriter(arrayDirPath.resolve(LIBSDataGenConstants.NPY_COMPOSITION_IDS_FILENAME),
+                NpyArrayWriter.unicodeDtype(LIBSDataGenConstants.NPY_COMPOSITION_ID_WIDTH), new long[0], true);
+        for (String column : classLabelColumns) {
+            classLabelWriters.put(column, new NpyArrayWriter(arrayDirPath.resolve(column + LIBSDataGenConstants.NPY_EXTENSION),
+                    NpyArrayWriter.unicodeDtype(LIBSDataGenConstants.NPY_CLASS_LABEL_WIDTH), new long[0], true));
+        }
+
+        // Line the arrays up if an interruption left some of them a row ahead
+        long rows = getRowWriters().stream().mapToLong(NpyArrayWriter::getRows).min().orElse(0);
+        for (NpyArrayWriter writer : getRowWriters()) {
+            writer.truncateRows(rows);
+            writer.flush();
+        }
+        if (rows > 0) {
+            logger.info("Appending to " + rows + " existing rows in " + arrayDirPath);
+        }
+    }
+
+    private List<NpyArrayWriter> getRowWriters() {
+        List<NpyArrayWriter> writers = new ArrayList<>();
+        writers.add(spectraWriter);
+        writers.add(compositionsWriter);
+        writers.add(compositionIdsWriter);
+        writers.addAll(classLabelWriters.values());
+        return writers;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Before the first row is written this is only known in append mode, as the arrays are otherwise replaced.
+     */
+    @Override
+    public Map<Path, Long> checkpoint() throws IOException {
+        Map<Path, Long> lengths = new LinkedHashMap<>();
+        if (spectraWriter != null) {
+            for (NpyArrayWriter writer : getRowWriters()) {
+                lengths.put(writer.getPath(), writer.length());
+            }
+        } else if (appendMode) {
+            stageArchive();
+            List<Path> paths = new ArrayList<>(List.of(
+                    arrayDirPath.resolve(LIBSDataGenConstants.NPY_SPECTRA_FILENAME),
+                    arrayDirPath.resolve(LIBSDataGenConstants.NPY_COMPOSITIONS_FILENAME),
+                    arrayDirPath.resolve(LIBSDataGenConstants.NPY_COMPOSITION_IDS_FILENAME)));
+            for (String column : classLabelColumns) {
+                paths.add(arrayDirPath.resolve(column + LIBSDataGenConstants.NPY_EXTENSION));
+            }
+            for (Path path : paths) {
+                lengths.put(path, Files.exists(path) ? Files.size(path) : 0L);
+            }
+        }
+        return lengths;
+    }
+
+    /**
+     * In archive append mode, unpacks the arrays of the existing archive into the staging directory unless arrays are
+     * already staged (by an interrupted run, which unpacked the archive itself).
+     */
+    private void stageArchive() throws IOException {
+        if (archivePath == null || !appendMode || !Files.exists(archivePath)) {
+            return;
+        }
+        Path stagedSpectra = arrayDirPath.resolve(LIBSDataGenConstants.NPY_SPECTRA_FILENAME);
+        if (Files.exists(stagedSpectra) && Files.size(stagedSpectra) > 0) {
+            return;
+        }
+        Files.createDirectories(arrayDirPath);
+        try (ZipFile zip = new ZipFile(archivePath.toFile())) {
+            for (ZipEntry entry : zip.stream().toList()) {
+                String name = Path.of(entry.getName()).getFileName().toString();
+                if (entry.isDirectory() || !name.endsWith(LIBSDataGenConstants.NPY_EXTENSION)) {
+                    continue;
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    Files.copy(in, arrayDirPath.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        logger.info("Appending to the arrays of " + archivePath);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spectraWriter == null) {
+            return;
+        }
+        long rows = spectraWriter.getRows();
+        for (NpyArrayWriter writer : getRowWriters()) {
+            writer.close();
+        }
+        if (archivePath == null) {
+            logger.info("NumPy dataset saved to: " + arrayDirPath.toAbsolutePath() + " (" + rows + " rows)");
+            return;
+        }
+        writeArchive();
+        logger.info("NumPy dataset saved to: " + archivePath.toAbsolutePath() + " (" + rows + " rows)");
+    }
+
+    /**
+     * Bundles the staged arrays into an uncompressed .npz archive and removes the staging directory.
+     */
+    private void writeArchive() throws IOException {
+        List<Path> arrays = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(arrayDirPath, "*" + LIBSDataGenConstants.NPY_EXTENSION)) {
+            stream.forEach(arrays::add);
+        }
+        arrays.sort(Comparator.comparing(Path::toString));
+
+        Path tempArchivePath = archivePath.resolveSibling(archivePath.getFileName() + ".tmp");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(tempArchivePath))) {
+            for (Path array : arrays) {
+                // Stored entries need their CRC up front; storing keeps np.load from inflating the spectra
+                ZipEntry entry = new ZipEntry(array.getFileName().toString());
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(Files.size(array));
+                entry.setCompressedSize(Files.size(array));
+                entry.setCrc(crc32(array));
+                zip.putNextEntry(entry);
+                Files.copy(array, zip);
+                zip.closeEntry();
+            }
+        }
+        // When appending, the new archive holds every row of the old one
+        if (Files.exists(archivePath) && !appendMode) {
+            backup(archivePath);
+        }
+        Files.move(tempArchivePath, archivePath, StandardCopyOption.ATOMIC_MOVE);
+
+        try (Stream<Path> staged = Files.list(arrayDirPath)) {
+            for (Path path : staged.toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(arrayDirPath);
+    }
+
+    private static long crc32(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Moves an existing dataset out of the way by adding a timestamp to its name, like CSVUtils does for CSVs.
+     */
+    private static void backup(Path path) throws IOException {
+        String timestamp = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+        String name = path.getFileName().toString();
+        int extensionIdx = name.lastIndexOf('.');
+        String backupName = extensionIdx > 0
+                ? name.substring(0, extensionIdx) + "_" + timestamp + name.substring(extensionIdx)
+                : name + "_" + timestamp;
+        Files.move(path, path.resolveSibling(backupName), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
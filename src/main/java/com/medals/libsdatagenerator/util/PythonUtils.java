@@ -27,7 +27,7 @@ public class PythonUtils {
             "jupyter", "nbconvert", "pandas", "matplotlib", "numpy"
     );
 
-    public static PythonUtils getInstance() {
+    public static synchronized PythonUtils getInstance() {
         if (instance == null) {
             instance = new PythonUtils();
         }
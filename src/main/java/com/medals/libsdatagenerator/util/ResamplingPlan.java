@@ -0,0 +1,167 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+import org.apache.commons.math3.exception.util.LocalizedFormats;
+import org.apache.commons.math3.util.MathArrays;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Linear interpolation from a source wavelength grid onto a target wavelength grid, reduced to one index pair and
+ * weight per target point. NIST returns the same wavelength grid for a given window and resolution and the instrument
+ * grid does not change during a run, so a plan is computed once and then applied to every zone and species spectrum
+ * as a single pass over the target grid.
+ * <p>
+ * Plans are immutable and shared between threads through a small LRU cache keyed by the contents of both grids.
+ * Target points outside the source grid take the first or last source intensity (numpy.interp default).
+ */
+public final class ResamplingPlan {
+
+    private static final Map<GridKey, ResamplingPlan> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<GridKey, ResamplingPlan> eldest) {
+            return size() > LIBSDataGenConstants.RESAMPLING_PLAN_CACHE_SIZE;
+        }
+    };
+
+    private final int sourceLength;
+    // Source index of the lower neighbour of each target point; the upper neighbour is the next index
+    private final int[] lowerIndex;
+    // Weight of the upper neighbour; the lower neighbour gets 1 - weight
+    private final double[] upperWeight;
+
+    private ResamplingPlan(double[] sourceGrid, double[] targetGrid) {
+        if (sourceGrid.length < 2) {
+            throw new NumberIsTooSmallException(LocalizedFormats.NUMBER_OF_POINTS, sourceGrid.length, 2, true);
+        }
+        MathArrays.checkOrder(sourceGrid);
+
+        this.sourceLength = sourceGrid.length;
+        this.lowerIndex = new int[targetGrid.length];
+        this.upperWeight = new double[targetGrid.length];
+        int last = sourceGrid.length - 1;
+
+        // Index of the segment [sourceGrid[k], sourceGrid[k + 1]] holding the current target point
+        int k = 0;
+        for (int i = 0; i < targetGrid.length; i++) {
+            double x = targetGrid[i];
+            if (x <= sourceGrid[0]) {
+                lowerIndex[i] = 0;
+                upperWeight[i] = 0.0;
+            } else if (x >= sourceGrid[last]) {
+                lowerIndex[i] = last - 1;
+                upperWeight[i] = 1.0;
+            } else {
+                if (x < sourceGrid[k]) {
+                    // Out of order target point
+                    int idx = Arrays.binarySearch(sourceGrid, x);
+                    k = Math.min(idx >= 0 ? idx : -idx - 2, last - 1);
+                }
+                while (k < last - 1 && x >= sourceGrid[k + 1]) {
+                    k++;
+                }
+                lowerIndex[i] = k;
+                upperWeight[i] = (x - sourceGrid[k]) / (sourceGrid[k + 1] - sourceGrid[k]);
+            }
+        }
+    }
+
+    /**
+     * Returns the plan for resampling from the source grid onto the target grid, computing it on first use.
+     *
+     * @param sourceGrid Strictly increasing wavelengths of the spectra to resample
+     * @param targetGrid Wavelengths to resample onto
+     * @return Cached plan for the pair of grids
+     * @throws org.apache.commons.math3.exception.NonMonotonicSequenceException if the source grid is not strictly increasing
+     */
+    public static ResamplingPlan of(double[] sourceGrid, double[] targetGrid) {
+        GridKey key = new GridKey(sourceGrid, targetGrid);
+        synchronized (cache) {
+            ResamplingPlan plan = cache.get(key);
+            if (plan == null) {
+                plan = new ResamplingPlan(sourceGrid, targetGrid);
+                // Copies so that later changes to the caller's arrays cannot corrupt the key
+                cache.put(new GridKey(sourceGrid.clone(), targetGrid.clone()), plan);
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * Resamples one spectrum into a caller-owned buffer without allocating.
+     *
+     * @param intensities Intensities on the source grid
+     * @param resampled   Output buffer, at least as long as the target grid
+     * @return The output buffer
+     */
+    public double[] apply(double[] intensities, double[] resampled) {
+        if (intensities.length != sourceLength) {
+            throw new DimensionMismatchException(intensities.length, sourceLength);
+        }
+        for (int i = 0; i < lowerIndex.length; i++) {
+            int lower = lowerIndex[i];
+            double weight = upperWeight[i];
+            resampled[i] = (1.0 - weight) * intensities[lower] + weight * intensities[lower + 1];
+        }
+        return resampled;
+    }
+
+    /**
+     * Resamples one spectrum into a new array.
+     */
+    public double[] apply(double[] intensities) {
+        return apply(intensities, new double[lowerIndex.length]);
+    }
+
+    public int getTargetLength() {
+        return lowerIndex.length;
+    }
+
+    static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    static int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Cache key comparing grids by content. The hash is computed once per lookup.
+     */
+    private static final class GridKey {
+        private final double[] sourceGrid;
+        private final double[] targetGrid;
+        private final int hash;
+
+        GridKey(double[] sourceGrid, double[] targetGrid) {
+            this.sourceGrid = sourceGrid;
+            this.targetGrid = targetGrid;
+            this.hash = 31 * Arrays.hashCode(sourceGrid) + Arrays.hashCode(targetGrid);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof GridKey other)) {
+                return false;
+            }
+            return hash == other.hash && Arrays.equals(sourceGrid, other.sourceGrid)
+                    && Arrays.equals(targetGrid, other.targetGrid);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.medals.libsdatagenerator.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+/**
+ * Deferred retries for work that failed because of NIST. Failed items are collected while the run goes on and
+ * retried in rounds once it is done, waiting twice as long before every round. Items that still fail after the last
+ * round are permanent failures.
+ *
+ * @param <T> Failed work item
+ */
+public class RetryQueue<T> {
+
+    private static final Logger logger = Logger.getLogger(RetryQueue.class.getName());
+
+    private final int maxRounds;
+    private final long baseBackoffMillis;
+    private final List<T> items = new ArrayList<>();
+
+    /**
+     * @param maxRounds         Number of retry rounds
+     * @param baseBackoffMillis Wait before the first round; doubled for every further round
+     */
+    public RetryQueue(int maxRounds, long baseBackoffMillis) {
+        if (maxRounds < 0) {
+            throw new IllegalArgumentException("Number of retry rounds cannot be negative");
+        }
+        this.maxRounds = maxRounds;
+        this.baseBackoffMillis = baseBackoffMillis;
+    }
+
+    public synchronized void add(T item) {
+        items.add(item);
+    }
+
+    public synchronized int size() {
+        return items.size();
+    }
+
+    /**
+     * Retries the queued items in rounds until none fail or the rounds are used up, and empties the queue.
+     *
+     * @param round Retries the given items (in the order they failed) and returns the ones that failed again
+     * @return Items that failed in every round
+     */
+    public List<T> drain(UnaryOperator<List<T>> round) throws InterruptedException {
+        List<T> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(items);
+            items.clear();
+        }
+        for (int i = 0; i < maxRounds && !pending.isEmpty(); i++) {
+            long backoffMillis = getBackoffMillis(i);
+            logger.info("Retrying " + pending.size() + " failed item(s) in " + backoffMillis / 1000.0 + " s (round "
+                    + (i + 1) + " of " + maxRounds + ")");
+            Thread.sleep(backoffMillis);
+            pending = new ArrayList<>(round.apply(pending));
+        }
+        return pending;
+    }
+
+    /**
+     * @return Wait before the given (zero-based) round
+     */
+    long getBackoffMillis(int round) {
+        return baseBackoffMillis << Math.min(round, 30);
+    }
+}
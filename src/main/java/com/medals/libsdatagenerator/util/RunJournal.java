@@ -0,0 +1,454 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only journal of a dataset generation run, so that a run interrupted by a browser, network or JVM failure can
+ * be resumed without fetching finished compositions again.
+ * The journal holds the run's command line arguments (with the sampler seed fixed so variations can be replayed) and,
+ * for every row committed to the dataset, its material and variation index, seed and composition ID along with the
+ * length of each dataset file after the row was written. On resume the dataset files are truncated back to the last
+ * committed row, which removes any row that was only partly written when the run died. The rollback is refused if
+ * another journalled run has written to a dataset file since this run's last commit, as it would delete that run's
+ * rows. A run that completed is marked finished and cannot be resumed.
+ * Each record is one CSV line, flushed as soon as it is appended. A torn last line is ignored when the journal is read.
+ */
+public class RunJournal implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(RunJournal.class.getName());
+
+    static final String RECORD_ARGS = "args";
+    static final String RECORD_OUTPUT = "output";
+    static final String RECORD_DONE = "done";
+    static final String RECORD_FINISHED = "finished";
+
+    // Time of the last run ID handed out by this process
+    private static final AtomicLong lastRunIdMillis = new AtomicLong();
+
+    private final String runId;
+    private final Path journalPath;
+    private final List<String> args;
+    // "materialIdx:variationIdx" -> committed entry
+    private final Map<String, Entry> completed = new HashMap<>();
+    // Dataset file -> length after the last committed row (null until the dataset's starting point is recorded)
+    private Map<Path, Long> committedLengths = null;
+    private boolean finished = false;
+    // Rows of this session that were left out of the dataset and have to be fetched again on resume
+    private int skipped = 0;
+    // Last modification of the journal before it was resumed, i.e. when the run stopped
+    private FileTime stoppedAt = null;
+    private CSVPrinter printer;
+
+    /**
+     * A row committed to the dataset.
+     */
+    public static class Entry {
+        public final int materialIdx;
+        public final String materialName;
+        public final int variationIdx;
+        public final Long seed;
+        public final String compositionId;
+
+        public Entry(int materialIdx, String materialName, int variationIdx, Long seed, String compositionId) {
+            this.materialIdx = materialIdx;
+            this.materialName = materialName;
+            this.variationIdx = variationIdx;
+            this.seed = seed;
+            this.compositionId = compositionId;
+        }
+    }
+
+    private RunJournal(String runId, Path journalPath, List<String> args) {
+        this.runId = runId;
+        this.journalPath = journalPath;
+        this.args = Collections.unmodifiableList(new ArrayList<>(args));
+    }
+
+    /**
+     * @return New run ID from the current time to the millisecond and the process ID, e.g. 20261017-150512-042-8121.
+     * IDs handed out by the same process are at least a millisecond apart, so they never repeat.
+     */
+    public static String newRunId() {
+        long millis = lastRunIdMillis.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+        return new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(millis)) + "-"
+                + ProcessHandle.current().pid();
+    }
+
+    public static Path getJournalPath(Path journalDir, String runId) {
+        return journalDir.resolve(runId + LIBSDataGenConstants.RUN_JOURNAL_EXTENSION);
+    }
+
+    /**
+     * Starts the journal of a new run.
+     *
+     * @param journalDir Directory holding run journals
+     * @param runId      ID of the new run
+     * @param args       Command line arguments of the run
+     */
+    public static RunJournal create(Path journalDir, String runId, List<String> args) throws IOException {
+        Path journalPath = getJournalPath(journalDir, runId);
+        Files.createDirectories(journalDir);
+        try {
+            // Fails atomically if another run created it first
+            Files.createFile(journalPath);
+        } catch (FileAlreadyExistsException e) {
+            throw new IOException("Run journal already exists: " + journalPath, e);
+        }
+        RunJournal journal = new RunJournal(runId, journalPath, args);
+        journal.openForAppend();
+        List<String> record = new ArrayList<>();
+        record.add(RECORD_ARGS);
+        record.addAll(args);
+        journal.append(record);
+        return journal;
+    }
+
+    /**
+     * Reopens the journal of an interrupted run. Further records are appended to the same journal.
+     *
+     * @param journalDir Directory holding run journals
+     * @param runId      ID of the run to resume
+     * @throws IOException If the journal is missing or unreadable, or the run has finished
+     */
+    public static RunJournal resume(Path journalDir, String runId) throws IOException {
+        Path journalPath = getJournalPath(journalDir, runId);
+        if (!Files.exists(journalPath)) {
+            throw new NoSuchFileException(journalPath.toString(), null, "No journal found for run " + runId);
+        }
+        FileTime stoppedAt = Files.getLastModifiedTime(journalPath);
+        String content = Files.readString(journalPath, StandardCharsets.UTF_8);
+        // Anything after the last line break is a record torn by the interruption
+        int lastLineBreak = content.lastIndexOf('\n');
+        String completeRecords = lastLineBreak < 0 ? "" : content.substring(0, lastLineBreak + 1);
+
+        RunJournal journal = parse(runId, journalPath, completeRecords);
+        if (journal == null) {
+            throw new IOException("Run journal " + journalPath + " does not start with the run arguments");
+        }
+        if (journal.finished) {
+            throw new IOException("Run " + runId + " has finished. Only interrupted runs can be resumed.");
+        }
+        journal.stoppedAt = stoppedAt;
+        // Drop the torn record so that new records start on a fresh line
+        if (completeRecords.length() < content.length()) {
+            truncate(journalPath, completeRecords.getBytes(StandardCharsets.UTF_8).length);
+        }
+        journal.openForAppend();
+        logger.info("Resuming run " + runId + " with " + journal.completed.size() + " committed rows");
+        return journal;
+    }
+
+    /**
+     * Reads the complete records of a journal.
+     *
+     * @return Journal (not open for appending), or null if it does not start with the run arguments
+     */
+    private static RunJournal parse(String runId, Path journalPath, String records) throws IOException {
+        RunJournal journal = null;
+        try (CSVParser parser = CSVFormat.DEFAULT.parse(new StringReader(records))) {
+            for (CSVRecord record : parser) {
+                List<String> values = record.toList();
+                if (values.isEmpty()) {
+                    continue;
+                }
+                String type = values.get(0);
+                if (journal == null) {
+                    if (!RECORD_ARGS.equals(type)) {
+                        break;
+                    }
+                    journal = new RunJournal(runId, journalPath, values.subList(1, values.size()));
+                } else if (RECORD_OUTPUT.equals(type)) {
+                    journal.committedLengths = parseLengths(values, 1);
+                } else if (RECORD_DONE.equals(type)) {
+                    Entry entry = new Entry(Integer.parseInt(values.get(1)), values.get(2),
+                            Integer.parseInt(values.get(3)), values.get(4).isEmpty() ? null : Long.parseLong(values.get(4)),
+                            values.get(5));
+                    journal.completed.put(key(entry.materialIdx, entry.variationIdx), entry);
+                    Map<Path, Long> lengths = parseLengths(values, 6);
+                    if (!lengths.isEmpty()) {
+                        journal.committedLengths = lengths;
+                    }
+                } else if (RECORD_FINISHED.equals(type)) {
+                    journal.finished = true;
+                }
+            }
+        }
+        return journal;
+    }
+
+    private static Map<Path, Long> parseLengths(List<String> values, int from) {
+        Map<Path, Long> lengths = new LinkedHashMap<>();
+        for (int i = from; i + 1 < values.size(); i += 2) {
+            lengths.put(Paths.get(values.get(i)), Long.parseLong(values.get(i + 1)));
+        }
+        return lengths;
+    }
+
+    private static String key(int materialIdx, int variationIdx) {
+        return materialIdx + ":" + variationIdx;
+    }
+
+    private void openForAppend() throws IOException {
+        printer = new CSVPrinter(Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), CSVFormat.DEFAULT);
+    }
+
+    private void append(List<String> record) throws IOException {
+        printer.printRecord(record);
+        printer.flush();
+    }
+
+    /**
+     * @return True if rows have been committed to the dataset files, which then have to be rolled back to
+     * {@link #getCommittedLengths()} and appended to
+     */
+    public synchronized boolean hasCommittedOutput() {
+        return committedLengths != null;
+    }
+
+    /**
+     * Records where the run's rows start in each dataset file, unless this has already been recorded.
+     *
+     * @param lengths Dataset file lengths before the first row (see {@link DatasetSink#checkpoint()})
+     */
+    public synchronized void recordOutputStart(Map<Path, Long> lengths) throws IOException {
+        if (committedLengths != null || lengths.isEmpty() || printer == null) {
+            return;
+        }
+        List<String> record = new ArrayList<>();
+        record.add(RECORD_OUTPUT);
+        addLengths(record, lengths);
+        append(record);
+        committedLengths = new LinkedHashMap<>(lengths);
+    }
+
+    /**
+     * Truncates every dataset file back to its length after the last committed row, removing rows that were written
+     * but not committed before the run was interrupted. Nothing is truncated if another run's journal, written to
+     * after this run stopped, shows it appended to one of the files beyond that length.
+     *
+     * @throws IOException If another run has written to the dataset files since this run's last commit
+     */
+    public synchronized void rollBackOutput() throws IOException {
+        if (committedLengths == null) {
+            return;
+        }
+        for (Map.Entry<Path, Long> entry : committedLengths.entrySet()) {
+            Path path = entry.getKey();
+            if (Files.exists(path) && Files.size(path) > entry.getValue()) {
+                List<String> laterRuns = findLaterWriters(path, entry.getValue());
+                if (!laterRuns.isEmpty()) {
+                    throw new IOException(path + " has been written to by run(s) " + String.join(", ", laterRuns)
+                            + " since run " + runId + " last committed a row. Rolling it back would delete their "
+                            + "rows, so run " + runId + " cannot be resumed. Start a new run instead.");
+                }
+            }
+        }
+        for (Map.Entry<Path, Long> entry : committedLengths.entrySet()) {
+            Path path = entry.getKey();
+            long length = Files.exists(path) ? Files.size(path) : 0L;
+            if (length > entry.getValue()) {
+                truncate(path, entry.getValue());
+                logger.info("Removed " + (length - entry.getValue()) + " uncommitted bytes from " + path);
+            } else if (length < entry.getValue()) {
+                logger.warning(path + " is shorter than when run " + runId + " last committed a row. "
+                        + "Rows may be missing from the dataset.");
+            }
+        }
+    }
+
+    /**
+     * @return IDs of the other runs whose journals were written to after this run stopped and that record the dataset
+     * file longer than the given length, i.e. that wrote rows after this run's last committed one
+     */
+    private List<String> findLaterWriters(Path path, long length) throws IOException {
+        Path dataset = path.toAbsolutePath().normalize();
+        List<String> runs = new ArrayList<>();
+        Path journalDir = journalPath.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> journals = Files.newDirectoryStream(journalDir,
+                "*" + LIBSDataGenConstants.RUN_JOURNAL_EXTENSION)) {
+            for (Path other : journals) {
+                if (Files.isSameFile(other, journalPath)
+                        || (stoppedAt != null && Files.getLastModifiedTime(other).compareTo(stoppedAt) < 0)) {
+                    continue;
+                }
+                String name = other.getFileName().toString();
+                String otherRunId = name.substring(0, name.length() - LIBSDataGenConstants.RUN_JOURNAL_EXTENSION.length());
+                if (recordsLongerThan(other, dataset, length)) {
+                    runs.add(otherRunId);
+                }
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * @return True if any record of the journal has the dataset file longer than the given length
+     */
+    private static boolean recordsLongerThan(Path journal, Path dataset, long length) throws IOException {
+        String content = Files.readString(journal, StandardCharsets.UTF_8);
+        // The other run may be appending to its journal right now
+        String completeRecords = content.substring(0, content.lastIndexOf('\n') + 1);
+        try (CSVParser parser = CSVFormat.DEFAULT.parse(new StringReader(completeRecords))) {
+            for (CSVRecord record : parser) {
+                List<String> values = record.toList();
+                if (values.isEmpty()) {
+                    continue;
+                }
+                int from = RECORD_OUTPUT.equals(values.get(0)) ? 1 : RECORD_DONE.equals(values.get(0)) ? 6 : -1;
+                if (from < 0) {
+                    continue;
+                }
+                for (Map.Entry<Path, Long> entry : parseLengths(values, from).entrySet()) {
+                    if (entry.getValue() > length && entry.getKey().toAbsolutePath().normalize().equals(dataset)) {
+                        return true;
+                    }
+                }
+            }
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "Could not read all of run journal " + journal, e);
+        }
+        return false;
+    }
+
+    private static void truncate(Path path, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+
+    /**
+     * Commits a row written to the dataset.
+     *
+     * @param entry   Row that was written
+     * @param lengths Dataset file lengths after the row was written (see {@link DatasetSink#checkpoint()})
+     */
+    public synchronized void commit(Entry entry, Map<Path, Long> lengths) throws IOException {
+        if (printer == null) {
+            logger.warning("Run journal " + runId + " is closed. Row " + entry.compositionId + " not committed.");
+            return;
+        }
+        List<String> record = new ArrayList<>();
+        record.add(RECORD_DONE);
+        record.add(String.valueOf(entry.materialIdx));
+        record.add(entry.materialName);
+        record.add(String.valueOf(entry.variationIdx));
+        record.add(entry.seed == null ? "" : String.valueOf(entry.seed));
+        record.add(entry.compositionId);
+        addLengths(record, lengths);
+        append(record);
+        completed.put(key(entry.materialIdx, entry.variationIdx), entry);
+        if (!lengths.isEmpty()) {
+            committedLengths = new LinkedHashMap<>(lengths);
+        }
+    }
+
+    /**
+     * Notes a row that was left out of the dataset (e.g. its spectrum could not be fetched), which keeps the run
+     * resumable.
+     */
+    public synchronized void skip() {
+        skipped++;
+    }
+
+    /**
+     * Marks the run as finished so that it cannot be resumed, unless rows were skipped. The journal is kept, as it
+     * tells interrupted runs sharing the dataset files which rows belong to this run.
+     */
+    public synchronized void finish() throws IOException {
+        if (printer == null || finished) {
+            return;
+        }
+        if (skipped > 0) {
+            logger.info("Run " + runId + " left " + skipped + " row(s) out of the dataset and can be resumed");
+            return;
+        }
+        append(List.of(RECORD_FINISHED));
+        finished = true;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    private static void addLengths(List<String> record, Map<Path, Long> lengths) {
+        for (Map.Entry<Path, Long> entry : lengths.entrySet()) {
+            record.add(entry.getKey().toAbsolutePath().toString());
+            record.add(String.valueOf(entry.getValue()));
+        }
+    }
+
+    /**
+     * @return Committed entry for the variation, or null if it has not been committed
+     */
+    public synchronized Entry getCompleted(int materialIdx, int variationIdx) {
+        return completed.get(key(materialIdx, variationIdx));
+    }
+
+    public synchronized int getCompletedCount() {
+        return completed.size();
+    }
+
+    public synchronized Map<Path, Long> getCommittedLengths() {
+        return committedLengths == null ? Map.of() : Collections.unmodifiableMap(committedLengths);
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public Path getJournalPath() {
+        return journalPath;
+    }
+
+    /**
+     * @return Command line arguments of the run
+     */
+    public List<String> getArgs() {
+        return args;
+    }
+
+    /**
+     * Flushes and closes the journal. Safe to call more than once, e.g. from a shutdown hook.
+     */
+    @Override
+    public synchronized void close() {
+        if (printer == null) {
+            return;
+        }
+        try {
+            printer.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error closing run journal " + journalPath, e);
+        }
+        printer = null;
+    }
+}
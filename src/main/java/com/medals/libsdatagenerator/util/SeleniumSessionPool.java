@@ -0,0 +1,147 @@
+package com.medals.libsdatagenerator.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Fixed-size pool of NIST browser sessions. Each session owns its own Chrome WebDriver and NIST form state so that
+ * compositions can be fetched concurrently. Fetches are bound by browser round-trip latency rather than CPU, so
+ * throughput scales close to linearly with the pool size (within the limits of what NIST will serve).
+ */
+public class SeleniumSessionPool implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(SeleniumSessionPool.class.getName());
+
+    private final List<NistSession> sessions = new ArrayList<>();
+    private final BlockingQueue<NistSession> idleSessions;
+
+    /**
+     * @param size Number of browser sessions. Drivers are started lazily on each session's first fetch.
+     */
+    public SeleniumSessionPool(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Session pool size must be at least 1");
+        }
+        idleSessions = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            NistSession session = new NistSession(i);
+            sessions.add(session);
+            idleSessions.add(session);
+        }
+    }
+
+    /**
+     * Takes an idle session from the pool, waiting until one is released if all are busy.
+     */
+    public NistSession acquire() throws InterruptedException {
+        return idleSessions.take();
+    }
+
+    /**
+     * Returns a session to the pool so that it can be reused (with its browser still warm) by the next task.
+     */
+    public void release(NistSession session) {
+        if (session != null) {
+            idleSessions.offer(session);
+        }
+    }
+
+    /**
+     * Runs the task for every item concurrently across the pool's sessions and returns the results in the same
+     * order as the input items, regardless of the order in which the fetches complete.
+     *
+     * @param items Work items (e.g. compositions)
+     * @param task  Task to run for an item on a borrowed session
+     * @return Task results in input order
+     * @throws ExecutionException if any task throws
+     */
+    public <T, R> List<R> processInOrder(List<T> items, BiFunction<NistSession, T, R> task)
+            throws InterruptedException, ExecutionException {
+        List<R> results = new ArrayList<>(items.size());
+        processInOrder(items, task, results::add);
+        return results;
+    }
+
+    /**
+     * Runs the task for every item concurrently across the pool's sessions and hands each result to the consumer in
+     * input order as soon as it and all earlier results are complete. At most {@link #getWindowSize()} tasks are
+     * queued or running at once, so the number of results held in memory is bounded by the window rather than by
+     * the number of items.
+     *
+     * @param items    Work items (e.g. compositions)
+     * @param task     Task to run for an item on a borrowed session
+     * @param consumer Receives results in input order, on the calling thread
+     * @throws ExecutionException if any task throws
+     */
+    public <T, R> void processInOrder(List<T> items, BiFunction<NistSession, T, R> task, Consumer<R> consumer)
+            throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(size(), Math.max(1, items.size())));
+        try {
+            Deque<Future<R>> inFlight = new ArrayDeque<>(getWindowSize());
+            Iterator<T> pending = items.iterator();
+            while (pending.hasNext() && inFlight.size() < getWindowSize()) {
+                inFlight.add(submit(executor, task, pending.next()));
+            }
+            // Consume in submission order, topping up the window after each completed item
+            while (!inFlight.isEmpty()) {
+                R result = inFlight.poll().get();
+                if (pending.hasNext()) {
+                    inFlight.add(submit(executor, task, pending.next()));
+                }
+                consumer.accept(result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T, R> Future<R> submit(ExecutorService executor, BiFunction<NistSession, T, R> task, T item) {
+        return executor.submit(() -> {
+            NistSession session = acquire();
+            try {
+                return task.apply(session, item);
+            } finally {
+                release(session);
+            }
+        });
+    }
+
+    /**
+     * @return Maximum number of tasks in flight during {@link #processInOrder(List, BiFunction, Consumer)}. Twice the
+     * pool size, so every session stays busy while the head of the queue is waiting on a slow fetch.
+     */
+    public int getWindowSize() {
+        return 2 * size();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public List<NistSession> getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Closes every browser session in the pool.
+     */
+    @Override
+    public void close() {
+        for (NistSession session : sessions) {
+            session.quit();
+        }
+        logger.info("Closed " + sessions.size() + " NIST browser session(s)");
+    }
+}
@@ -2,8 +2,17 @@ package com.medals.libsdatagenerator.util;
 
 import com.medals.libsdatagenerator.model.UserInputConfig;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.UnexpectedAlertBehaviour;
+import org.openqa.selenium.UnhandledAlertException;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
@@ -14,7 +23,10 @@ import org.openqa.selenium.support.ui.WebDriverWait;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LongSummaryStatistics;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +42,31 @@ public class SeleniumUtils {
     private ChromeOptions options;
     private boolean isDriverOnline = false;
     private static final int DEFAULT_WAIT_TIMEOUT_SECONDS = 30;
+    private static final int DEFAULT_SCRIPT_TIMEOUT_SECONDS = 60;
+    private static final long DEFAULT_WAIT_POLL_MILLIS = 50;
+
+    // Resolves with the first element matching arguments[0] (enabled and visible if arguments[1]) as soon as it is in
+    // the DOM, or with null after arguments[2] ms. Last argument: async callback injected by WebDriver.
+    private static final String WAIT_FOR_ELEMENT_SCRIPT =
+            "var selector = arguments[0], clickable = arguments[1], timeoutMillis = arguments[2];" +
+            "var callback = arguments[arguments.length - 1];" +
+            "function ready() {" +
+            "  var el = document.querySelector(selector);" +
+            "  if (el && clickable && (el.disabled || !el.getClientRects().length)) { return null; }" +
+            "  return el;" +
+            "}" +
+            "var found = ready();" +
+            "if (found) { callback(found); return; }" +
+            "var timer;" +
+            "var observer = new MutationObserver(function () {" +
+            "  var el = ready();" +
+            "  if (el) { observer.disconnect(); clearTimeout(timer); callback(el); }" +
+            "});" +
+            "observer.observe(document, {childList: true, subtree: true, attributes: true});" +
+            "timer = setTimeout(function () { observer.disconnect(); callback(null); }, timeoutMillis);";
+
+    // Locator -> observed wait latencies (ms)
+    private final Map<String, LongSummaryStatistics> waitLatencies = new ConcurrentHashMap<>();
 
     public SeleniumUtils() {
         options = new ChromeOptions();
@@ -51,7 +88,7 @@ public class SeleniumUtils {
         options.setCapability(CapabilityType.UNHANDLED_PROMPT_BEHAVIOUR, UnexpectedAlertBehaviour.IGNORE);
     }
 
-    public static SeleniumUtils getInstance() {
+    public static synchronized SeleniumUtils getInstance() {
         if (instance == null) {
             instance = new SeleniumUtils();
         }
@@ -66,6 +103,8 @@ public class SeleniumUtils {
         Map<String, Object> params = new HashMap<>();
         params.put("source", "Object.defineProperty(navigator, 'webdriver', { get: () => undefined })");
         driver.executeCdpCommand("Page.addScriptToEvaluateOnNewDocument", params);
+        // Async scripts (e.g. in-page CSV download) wait on a NIST response
+        driver.manage().timeouts().scriptTimeout(Duration.ofSeconds(DEFAULT_SCRIPT_TIMEOUT_SECONDS));
 //        driver.get(LIBSDataGenConstants.SELENIUM_WEB_DRIVER);
         isDriverOnline = true;
     }
@@ -75,6 +114,7 @@ public class SeleniumUtils {
      */
     public void quitSelenium() {
         if (isDriverOnline && driver != null) {
+            logWaitLatencies();
             driver.quit();
             isDriverOnline = false;
         }
@@ -129,6 +169,16 @@ public class SeleniumUtils {
     public WebDriverWait getWait(int timeoutSeconds) {
         return new WebDriverWait(getDriver(), Duration.ofSeconds(timeoutSeconds));
     }
+
+    /**
+     * Creates a WebDriverWait instance with custom timeout and polling interval
+     * @param timeoutSeconds timeout in seconds
+     * @param pollMillis polling interval in milliseconds
+     * @return WebDriverWait instance
+     */
+    public WebDriverWait getWait(int timeoutSeconds, long pollMillis) {
+        return new WebDriverWait(getDriver(), Duration.ofSeconds(timeoutSeconds), Duration.ofMillis(pollMillis));
+    }
     
     /**
      * Waits for an element to be present and clickable
@@ -136,7 +186,18 @@ public class SeleniumUtils {
      * @return the WebElement once it's clickable
      */
     public WebElement waitForElementClickable(By by) {
-        return getWait().until(ExpectedConditions.elementToBeClickable(by));
+        return waitForElementClickable(by, DEFAULT_WAIT_TIMEOUT_SECONDS, DEFAULT_WAIT_POLL_MILLIS);
+    }
+
+    /**
+     * Waits for an element to be present and clickable
+     * @param by locator for the element
+     * @param timeoutSeconds timeout in seconds
+     * @param pollMillis retry interval in milliseconds (e.g. while a new page is loading)
+     * @return the WebElement once it's clickable
+     */
+    public WebElement waitForElementClickable(By by, int timeoutSeconds, long pollMillis) {
+        return waitForElement(by, true, timeoutSeconds, pollMillis);
     }
     
     /**
@@ -145,7 +206,128 @@ public class SeleniumUtils {
      * @return the WebElement once it's present
      */
     public WebElement waitForElementPresent(By by) {
-        return getWait().until(ExpectedConditions.presenceOfElementLocated(by));
+        return waitForElementPresent(by, DEFAULT_WAIT_TIMEOUT_SECONDS, DEFAULT_WAIT_POLL_MILLIS);
+    }
+
+    /**
+     * Waits for an element to be present
+     * @param by locator for the element
+     * @param timeoutSeconds timeout in seconds
+     * @param pollMillis retry interval in milliseconds (e.g. while a new page is loading)
+     * @return the WebElement once it's present
+     */
+    public WebElement waitForElementPresent(By by, int timeoutSeconds, long pollMillis) {
+        return waitForElement(by, false, timeoutSeconds, pollMillis);
+    }
+
+    /**
+     * Waits for an element with a MutationObserver inside the page, so the wait resolves as soon as the element is
+     * added to (or enabled in) the DOM instead of on the next poll. The script is re-run on the new document if the
+     * page navigates while waiting. Locators without a CSS equivalent (e.g. XPath) fall back to polling.
+     * The observed latency is recorded per locator (see {@link #getWaitLatencies()}).
+     */
+    private WebElement waitForElement(By by, boolean clickable, int timeoutSeconds, long pollMillis) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        String cssSelector = toCssSelector(by);
+        WebElement element;
+
+        if (cssSelector == null) {
+            element = getWait(timeoutSeconds, pollMillis).until(clickable
+                    ? ExpectedConditions.elementToBeClickable(by)
+                    : ExpectedConditions.presenceOfElementLocated(by));
+        } else {
+            element = null;
+            JavascriptExecutor js = (JavascriptExecutor) getDriver();
+            while (element == null) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    throw new TimeoutException("Timed out after " + timeoutSeconds + " s waiting for " + by);
+                }
+                try {
+                    Object result = js.executeAsyncScript(WAIT_FOR_ELEMENT_SCRIPT, cssSelector, clickable,
+                            Math.min(remainingMillis, TimeUnit.SECONDS.toMillis(DEFAULT_SCRIPT_TIMEOUT_SECONDS) - 1000));
+                    if (result instanceof WebElement found) {
+                        element = found;
+                    }
+                } catch (WebDriverException e) {
+                    // Lost sessions, closed windows, crashed tabs and alerts fail the wait straight away
+                    if (!isNavigationError(e)) {
+                        throw e;
+                    }
+                    // Document replaced while waiting (e.g. form submission). Retry on the new page.
+                    logger.fine("Wait for " + by + " interrupted, retrying: " + e.getClass().getSimpleName());
+                    sleep(pollMillis);
+                }
+            }
+        }
+
+        recordWaitLatency(by.toString(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return element;
+    }
+
+    /**
+     * @return True if the error comes from the page navigating away while a script was waiting on it (unloaded
+     * document, script context gone, stale element), after which the wait can be retried on the new page
+     */
+    static boolean isNavigationError(WebDriverException e) {
+        if (e instanceof JavascriptException || e instanceof StaleElementReferenceException
+                || e instanceof ScriptTimeoutException) {
+            return true;
+        }
+        if (e instanceof UnhandledAlertException || e instanceof NoSuchSessionException
+                || e instanceof NoSuchWindowException) {
+            return false;
+        }
+        // Some driver versions report these as plain "unknown error"
+        String message = e.getRawMessage();
+        return message != null && (message.contains("document unloaded") || message.contains("Cannot find context"));
+    }
+
+    /**
+     * Converts a locator to an equivalent CSS selector, based on its locator strategy.
+     * @return CSS selector, or null if the locator has no CSS equivalent
+     */
+    static String toCssSelector(By by) {
+        if (!(by instanceof By.Remotable remotable)) {
+            return null;
+        }
+        By.Remotable.Parameters parameters = remotable.getRemoteParameters();
+        String value = String.valueOf(parameters.value());
+        return switch (parameters.using()) {
+            case "name" -> "[name=\"" + value.replace("\"", "\\\"") + "\"]";
+            case "id" -> "[id=\"" + value.replace("\"", "\\\"") + "\"]";
+            case "tag name", "css selector" -> value;
+            default -> null;
+        };
+    }
+
+    void recordWaitLatency(String locator, long latencyMillis) {
+        waitLatencies.computeIfAbsent(locator, k -> new LongSummaryStatistics()).accept(latencyMillis);
+    }
+
+    /**
+     * @return Observed wait latencies (ms) per locator since the driver was started
+     */
+    public Map<String, LongSummaryStatistics> getWaitLatencies() {
+        return waitLatencies;
+    }
+
+    private void logWaitLatencies() {
+        for (Map.Entry<String, LongSummaryStatistics> entry : waitLatencies.entrySet()) {
+            LongSummaryStatistics stats = entry.getValue();
+            logger.info(String.format("Wait latency for %s: n=%d, mean=%.1f ms, max=%d ms",
+                    entry.getKey(), stats.getCount(), stats.getAverage(), stats.getMax()));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebDriverException("Interrupted while waiting", e);
+        }
     }
 
 }
@@ -0,0 +1,273 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.model.Element;
+import com.medals.libsdatagenerator.model.UserInputConfig;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent, content-addressed on-disk cache for NIST LIBS spectrum CSV payloads.
+ * Each entry is keyed by a SHA-256 hash of the full NIST query (composition, plasma parameters and all
+ * spectrum settings) so a re-run of the same composition and plasma zone never goes back to NIST.
+ * Entries are evicted least-recently-used first once the cache grows beyond its size budget. Writes are
+ * atomic (temp file + rename) and eviction is guarded by a file lock, so several generator processes can
+ * safely share one cache directory.
+ */
+public class SpectrumCache {
+
+    private static final Logger logger = Logger.getLogger(SpectrumCache.class.getName());
+
+    // Bump when the key layout or stored payload format changes so stale entries are never reused
+    private static final String CACHE_FORMAT_VERSION = "v1";
+    private static final String ENTRY_SUFFIX = ".csv";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String LOCK_FILE_NAME = ".cache.lock";
+    // Evict down to this fraction of the budget so that eviction does not run on every write
+    private static final double EVICTION_TARGET_RATIO = 0.9;
+
+    private final Path cacheDir;
+    private final long maxSizeBytes;
+    private final AtomicLong approxSizeBytes = new AtomicLong(-1);
+
+    /**
+     * @param cacheDir     Directory to store cache entries in (created if missing)
+     * @param maxSizeBytes Size budget in bytes. A value <= 0 disables eviction.
+     */
+    public SpectrumCache(Path cacheDir, long maxSizeBytes) {
+        this.cacheDir = cacheDir;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Builds the canonical cache key for a NIST LIBS query. Element order does not affect the key and
+     * numeric values are normalised so that e.g. "200" and "200.0" resolve to the same entry.
+     *
+     * @param composition Composition the spectrum is fetched for
+     * @param config      User input configuration holding the NIST spectrum settings
+     * @param te          Plasma temperature (eV)
+     * @param ne          Electron density (cm^-3)
+     * @return Hex encoded SHA-256 of the canonical query string
+     */
+    public static String buildCacheKey(List<Element> composition, UserInputConfig config, double te, double ne) {
+        List<Element> sortedComposition = new ArrayList<>(composition);
+        sortedComposition.sort(Comparator.comparing(Element::getSymbol));
+
+        StringBuilder query = new StringBuilder(CACHE_FORMAT_VERSION);
+        query.append("|composition=");
+        for (Element element : sortedComposition) {
+            query.append(element.getSymbol()).append(':')
+                    .append(canonicalNumber(String.valueOf(element.getPercentageComposition()))).append(';');
+        }
+        query.append("|te=").append(canonicalNumber(String.valueOf(te)))
+                .append("|ne=").append(canonicalNumber(String.valueOf(ne)))
+                .append("|low_w=").append(canonicalNumber(config.minWavelength))
+                .append("|upp_w=").append(canonicalNumber(config.maxWavelength))
+                .append("|resolution=").append(canonicalNumber(config.resolution))
+                .append("|unit=").append(config.wavelengthUnit.getUrlParam())
+                .append("|show_av=").append(config.wavelengthCondition.getUrlParam())
+                .append("|maxcharge=").append(config.maxIonCharge.getUrlParam())
+                .append("|min_rel_int=").append(config.minRelativeIntensity.getUrlParam())
+                .append("|int_scale=").append(config.intensityScale.getUrlParam());
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(query.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory on every Java platform
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Normalises numeric query values to a plain, trailing-zero free representation.
+     * Falls back to the trimmed raw value if it is not numeric.
+     */
+    private static String canonicalNumber(String value) {
+        if (value == null) {
+            return "";
+        }
+        try {
+            return new BigDecimal(value.trim()).stripTrailingZeros().toPlainString();
+        } catch (NumberFormatException e) {
+            return value.trim();
+        }
+    }
+
+    /**
+     * Looks up a cached spectrum. A hit refreshes the entry's last-modified time to keep LRU order.
+     *
+     * @param key Cache key from {@link #buildCacheKey}
+     * @return Cached CSV payload, or null on a miss
+     */
+    public String get(String key) {
+        Path entryPath = cacheDir.resolve(key + ENTRY_SUFFIX);
+        try {
+            String csvData = Files.readString(entryPath, StandardCharsets.UTF_8);
+            if (csvData.isBlank()) {
+                return null;
+            }
+            try {
+                Files.setLastModifiedTime(entryPath, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                // Entry may have been evicted by another process in the meantime. The read still succeeded.
+                logger.fine("Unable to refresh access time for cache entry " + key);
+            }
+            return csvData;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to read spectrum cache entry " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a spectrum in the cache. The payload is written to a temp file first and atomically moved
+     * into place so that concurrent readers never see a partially written entry.
+     *
+     * @param key     Cache key from {@link #buildCacheKey}
+     * @param csvData CSV payload downloaded from NIST
+     */
+    public void put(String key, String csvData) {
+        if (csvData == null || csvData.isBlank()) {
+            return;
+        }
+        try {
+            Files.createDirectories(cacheDir);
+            Path entryPath = cacheDir.resolve(key + ENTRY_SUFFIX);
+            // Size of the entry this write replaces (e.g. on --force-fetch), which no longer counts
+            long replacedSize = sizeIfExists(entryPath);
+            Path tempPath = Files.createTempFile(cacheDir, key, TEMP_SUFFIX);
+            try {
+                Files.writeString(tempPath, csvData, StandardCharsets.UTF_8);
+                try {
+                    Files.move(tempPath, entryPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempPath, entryPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+
+            if (maxSizeBytes > 0) {
+                long currentSize;
+                if (approxSizeBytes.get() < 0) {
+                    // First write of this instance: the scan already includes the new entry
+                    currentSize = scanCacheSize();
+                    approxSizeBytes.set(currentSize);
+                } else {
+                    currentSize = approxSizeBytes.addAndGet(Files.size(entryPath) - replacedSize);
+                }
+                if (currentSize > maxSizeBytes) {
+                    evict();
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write spectrum cache entry " + key, e);
+        }
+    }
+
+    /**
+     * Removes least-recently-used entries until the cache is back under its size budget.
+     * Runs under an exclusive file lock so that processes sharing the directory do not evict concurrently.
+     */
+    void evict() throws IOException {
+        Files.createDirectories(cacheDir);
+        try (FileChannel lockChannel = FileChannel.open(cacheDir.resolve(LOCK_FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = lockChannel.lock()) {
+
+            List<CacheEntry> entries = listEntries();
+            long totalSize = entries.stream().mapToLong(CacheEntry::size).sum();
+            long targetSize = (long) (maxSizeBytes * EVICTION_TARGET_RATIO);
+            if (totalSize <= maxSizeBytes) {
+                approxSizeBytes.set(totalSize);
+                return;
+            }
+
+            entries.sort(Comparator.comparing(CacheEntry::lastAccessed));
+            int evicted = 0;
+            for (CacheEntry entry : entries) {
+                if (totalSize <= targetSize) {
+                    break;
+                }
+                if (Files.deleteIfExists(entry.path())) {
+                    evicted++;
+                }
+                totalSize -= entry.size();
+            }
+            approxSizeBytes.set(totalSize);
+            logger.info("Evicted " + evicted + " spectrum cache entries. Cache size now " + totalSize + " bytes");
+        }
+    }
+
+    private static long sizeIfExists(Path path) throws IOException {
+        try {
+            return Files.size(path);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return Size of the cache as tracked by this instance since its last scan; -1 before the first write
+     */
+    long getApproxSizeBytes() {
+        return approxSizeBytes.get();
+    }
+
+    private long scanCacheSize() throws IOException {
+        return listEntries().stream().mapToLong(CacheEntry::size).sum();
+    }
+
+    private List<CacheEntry> listEntries() throws IOException {
+        List<CacheEntry> entries = new ArrayList<>();
+        if (!Files.isDirectory(cacheDir)) {
+            return entries;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, "*" + ENTRY_SUFFIX)) {
+            for (Path path : stream) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    entries.add(new CacheEntry(path, attributes.size(), attributes.lastModifiedTime()));
+                } catch (NoSuchFileException e) {
+                    // Evicted by another process while listing
+                }
+            }
+        }
+        return entries;
+    }
+
+    public Path getCacheDir() {
+        return cacheDir;
+    }
+
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    private record CacheEntry(Path path, long size, FileTime lastAccessed) {}
+}
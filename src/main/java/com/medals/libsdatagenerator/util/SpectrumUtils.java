@@ -1,12 +1,10 @@
 package com.medals.libsdatagenerator.util;
 
 import com.medals.libsdatagenerator.model.Spectrum;
-import org.apache.commons.math3.analysis.interpolation.LinearInterpolator;
-import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
 import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -48,44 +46,100 @@ public class SpectrumUtils {
      * @return Array of intensities aligned to the target wavelength grid.
      */
     public double[] interpolateSpectrum(Map<Double, Double> waveMap, double[] targetGrid) {
-        logger.info("Interpolating to target wavelength grid...");
-
         Spectrum spectrum = new Spectrum(waveMap);
-        double[] originalGrid = spectrum.getWavelengths();
-        double[] originalIntensities = spectrum.getIntensities();
-        LinearInterpolator interpolator = new LinearInterpolator();
-        PolynomialSplineFunction interpolationFunction = interpolator.interpolate(originalGrid, originalIntensities);
-
-        double[] aligned = new double[targetGrid.length];
-        double minX = originalGrid[0];
-        double maxX = originalGrid[originalGrid.length - 1];
-        double firstY = originalIntensities[0];
-        double lastY = originalIntensities[originalIntensities.length - 1];
-
-        // 2. Evaluate for every point in the new grid
-        for (int i = 0; i < targetGrid.length; i++) {
-            double x = targetGrid[i];
-
-            if (x < minX) {
-                // numpy.interp default: fill with the first value
-                aligned[i] = firstY;
-            } else if (x > maxX) {
-                // numpy.interp default: fill with the last value
-                aligned[i] = lastY;
-            } else {
-                // Standard interpolation
-                aligned[i] = interpolationFunction.value(x);
-            }
+        return interpolateSpectrum(spectrum.getWavelengths(), spectrum.getIntensities(), targetGrid);
+    }
+
+    /**
+     * Performs linear interpolation on a spectrum
+     * @param originalGrid Sorted wavelengths of the spectrum to interpolate on
+     * @param originalIntensities Intensities aligned with originalGrid
+     * @param targetGrid List of target wavelength arrays
+     * @return Array of intensities aligned to the target wavelength grid.
+     */
+    public double[] interpolateSpectrum(double[] originalGrid, double[] originalIntensities, double[] targetGrid) {
+        return interpolateSpectrum(originalGrid, originalIntensities, targetGrid, new double[targetGrid.length]);
+    }
+
+    /**
+     * Performs linear interpolation on a spectrum into a caller-owned buffer, so that a buffer can be reused across
+     * plasma zones and compositions without allocating. The index pairs and weights come from the cached
+     * {@link ResamplingPlan} of the two grids.
+     * @param originalGrid Sorted wavelengths of the spectrum to interpolate on
+     * @param originalIntensities Intensities aligned with originalGrid
+     * @param targetGrid List of target wavelength arrays
+     * @param aligned Output buffer, at least as long as targetGrid
+     * @return The output buffer, holding the intensities aligned to the target wavelength grid.
+     */
+    public double[] interpolateSpectrum(double[] originalGrid, double[] originalIntensities, double[] targetGrid,
+                                        double[] aligned) {
+        logger.fine("Interpolating to target wavelength grid...");
+        return ResamplingPlan.of(originalGrid, targetGrid).apply(originalIntensities, aligned);
+    }
+
+    /**
+     * Interpolates every species column of a spectrum onto the target wavelength grid.
+     * As interpolation is linear, the interpolated species still add up to the interpolated total intensity.
+     * @param spectrum Spectrum with per-species intensities
+     * @param targetGrid Target wavelength grid
+     * @return Species mapped to intensities aligned to the target wavelength grid
+     */
+    public Map<String, double[]> interpolateSpecies(Spectrum spectrum, double[] targetGrid) {
+        logger.info("Interpolating " + spectrum.getSpecies().size() + " species to target wavelength grid...");
+        // All species share the wavelength column, and so the plan
+        ResamplingPlan plan = ResamplingPlan.of(spectrum.getWavelengths(), targetGrid);
+        Map<String, double[]> interpolatedSpecies = new LinkedHashMap<>();
+        for (Map.Entry<String, double[]> entry : spectrum.getSpeciesIntensities().entrySet()) {
+            interpolatedSpecies.put(entry.getKey(), plan.apply(entry.getValue()));
         }
-        return aligned;
+        return interpolatedSpecies;
     }
 
-    public List<Double> normaliseAndScaleSpectrum(double[] spectrum, double scaleFactor) {
-        List<Double> scaledSpectrum = new ArrayList<>();
-        for (double val : normaliseSpectrum(spectrum)) {
-            scaledSpectrum.add(val * scaleFactor);
+    /**
+     * Normalises a spectrum to [0, 1] and multiplies it by the scale factor.
+     *
+     * @param spectrum    Input intensity array (left unchanged)
+     * @param scaleFactor Instrument scale factor
+     * @return New array of scaled intensities
+     */
+    public double[] normaliseAndScaleSpectrum(double[] spectrum, double scaleFactor) {
+        double[] scaled = new double[spectrum.length];
+        addNormalisedAndScaled(scaled, spectrum, scaleFactor, 1.0);
+        return scaled;
+    }
+
+    /**
+     * Fused normalise, scale and weighted-combine kernel: adds {@code spectrum / max(spectrum) * scaleFactor * weight}
+     * to the combined spectrum in place. Used to build multi-zone spectra without allocating per zone.
+     * A spectrum with no positive values normalises to zeros and leaves the combined spectrum unchanged.
+     *
+     * @param combined    Combined spectrum to add to
+     * @param spectrum    Zone spectrum, as long as the combined spectrum (left unchanged)
+     * @param scaleFactor Instrument scale factor
+     * @param weight      Zone weight
+     */
+    public void addNormalisedAndScaled(double[] combined, double[] spectrum, double scaleFactor, double weight) {
+        double max = max(spectrum);
+        if (max <= 0) {
+            return;
+        }
+        for (int i = 0; i < combined.length; i++) {
+            combined[i] += spectrum[i] / max * scaleFactor * weight;
+        }
+    }
+
+    /**
+     * @return Largest value of the spectrum, or 0 if it is empty
+     */
+    private static double max(double[] spectrum) {
+        if (spectrum.length == 0) {
+            return 0.0;
+        }
+        double max = spectrum[0];
+        for (int i = 1; i < spectrum.length; i++) {
+            max = Math.max(max, spectrum[i]);
         }
-        return scaledSpectrum;
+        return max;
     }
 
     public double[] combineSpectra(double[] spectrum1, double[] spectrum2, double weight) {
@@ -109,7 +163,7 @@ public class SpectrumUtils {
             return new double[0];
         }
 
-        double max = Arrays.stream(spectrum).max().orElse(0.0);
+        double max = max(spectrum);
         if (max <= 0) {
             logger.fine("Spectrum has no positive values, returning zeros");
             return new double[spectrum.length]; // Returns array of zeros
@@ -0,0 +1,283 @@
+package com.medals.libsdatagenerator.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+/**
+ * Producer-consumer pipeline of stages connected by bounded queues. A source emits work items, each stage applies its
+ * task to every item with its own number of workers, and a sink receives the items in the order they were emitted.
+ * <p>
+ * Stages run concurrently, so e.g. NIST fetches of later items overlap with the numeric processing of earlier ones.
+ * I/O stages run on virtual threads, as their workers spend most of their time waiting. CPU stages run on their own
+ * fixed pool of platform threads, one per worker, as each worker is a long-lived loop that blocks on the stage's
+ * queues between items. A full queue blocks the stage feeding it (back-pressure), and the
+ * number of items between source and sink is capped by a window, which also bounds the items held back for ordered
+ * reassembly.
+ * <p>
+ * The first exception thrown by the source or a stage cancels the run and is rethrown from {@link #run}.
+ *
+ * @param <T> Work item, passed from stage to stage
+ */
+public class StagedPipeline<T> {
+
+    private static final Logger logger = Logger.getLogger(StagedPipeline.class.getName());
+
+    // How often blocked workers check whether the run was cancelled
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    /**
+     * Kind of work a stage does, which decides the threads it runs on.
+     */
+    public enum StageType {
+        // Waits on the network or a browser: virtual threads
+        IO,
+        // Numeric work: platform threads
+        CPU
+    }
+
+    private record Stage<T>(String name, StageType type, int parallelism, UnaryOperator<T> task) {
+    }
+
+    private record Sequenced<T>(long sequence, T item) {
+    }
+
+    // Marks the end of the stream in a queue
+    private static final Sequenced<?> END = new Sequenced<>(-1, null);
+
+    private final int window;
+    private final List<Stage<T>> stages = new ArrayList<>();
+
+    /**
+     * @param window Maximum number of items between the source and the sink
+     */
+    public StagedPipeline(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Pipeline window must be at least 1");
+        }
+        this.window = window;
+    }
+
+    /**
+     * Appends a stage.
+     *
+     * @param name        Stage name, used in logs and thread names
+     * @param type        Whether the stage is I/O or CPU bound
+     * @param parallelism Number of items the stage processes at once
+     * @param task        Task applied to every item; returns the item handed to the next stage
+     * @return This pipeline
+     */
+    public StagedPipeline<T> stage(String name, StageType type, int parallelism, UnaryOperator<T> task) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism of stage " + name + " must be at least 1");
+        }
+        stages.add(new Stage<>(name, type, parallelism, task));
+        return this;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Runs the pipeline until the source has emitted its last item and the sink has received it.
+     *
+     * @param source Emits every work item to the given consumer, in order, then returns. Runs on its own thread and
+     *               blocks while the window is full.
+     * @param sink   Receives every processed item in emission order, on the calling thread
+     * @throws ExecutionException if the source or a stage throws
+     */
+    public void run(Consumer<Consumer<T>> source, Consumer<T> sink) throws InterruptedException, ExecutionException {
+        new Run(source).drainInto(sink);
+    }
+
+    /**
+     * State of one run of the pipeline.
+     */
+    private class Run {
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private volatile boolean cancelled = false;
+        private final Semaphore permits = new Semaphore(window);
+        // queues.get(i) feeds stage i; the last queue feeds the sink
+        private final List<BlockingQueue<Sequenced<T>>> queues = new ArrayList<>();
+        private final List<ExecutorService> executors = new ArrayList<>();
+
+        Run(Consumer<Consumer<T>> source) {
+            for (Stage<T> stage : stages) {
+                // Enough room to keep every worker of the stage busy
+                queues.add(new ArrayBlockingQueue<>(Math.max(2, 2 * stage.parallelism())));
+            }
+            queues.add(new ArrayBlockingQueue<>(window));
+
+            for (int i = 0; i < stages.size(); i++) {
+                startStage(i);
+            }
+            Thread.ofVirtual().name("pipeline-source").start(() -> emitAll(source));
+        }
+
+        private void emitAll(Consumer<Consumer<T>> source) {
+            long[] sequence = {0};
+            try {
+                source.accept(item -> {
+                    try {
+                        acquirePermit();
+                        put(queues.get(0), new Sequenced<>(sequence[0]++, item));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException("Interrupted while emitting pipeline item");
+                    }
+                });
+                put(queues.get(0), end());
+            } catch (CancellationException e) {
+                // Run already failed
+            } catch (Throwable t) {
+                fail(new ExecutionException("Pipeline source failed", t));
+            }
+        }
+
+        private void startStage(int stageIdx) {
+            Stage<T> stage = stages.get(stageIdx);
+            ExecutorService executor = stage.type() == StageType.IO
+                    ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pipeline-" + stage.name() + "-", 0).factory())
+                    : Executors.newFixedThreadPool(stage.parallelism(),
+                            Thread.ofPlatform().name("pipeline-" + stage.name() + "-", 0).factory());
+            executors.add(executor);
+
+            BlockingQueue<Sequenced<T>> input = queues.get(stageIdx);
+            BlockingQueue<Sequenced<T>> output = queues.get(stageIdx + 1);
+            AtomicInteger runningWorkers = new AtomicInteger(stage.parallelism());
+            for (int w = 0; w < stage.parallelism(); w++) {
+                executor.execute(() -> {
+                    try {
+                        while (true) {
+                            Sequenced<T> next = take(input);
+                            if (next == END) {
+                                // Leave the marker for the stage's other workers
+                                put(input, next);
+                                break;
+                            }
+                            put(output, new Sequenced<>(next.sequence(), stage.task().apply(next.item())));
+                        }
+                        if (runningWorkers.decrementAndGet() == 0) {
+                            put(output, end());
+                        }
+                    } catch (CancellationException e) {
+                        // Run already failed
+                    } catch (Throwable t) {
+                        fail(new ExecutionException("Pipeline stage " + stage.name() + " failed", t));
+                    }
+                });
+            }
+        }
+
+        /**
+         * Hands items to the sink in emission order, holding back the ones that overtook an earlier item.
+         */
+        void drainInto(Consumer<T> sink) throws InterruptedException, ExecutionException {
+            Map<Long, T> heldBack = new HashMap<>();
+            long nextSequence = 0;
+            BlockingQueue<Sequenced<T>> input = queues.get(queues.size() - 1);
+            try {
+                while (true) {
+                    Sequenced<T> next = input.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (failure.get() != null) {
+                        break;
+                    }
+                    if (next == null) {
+                        continue;
+                    }
+                    if (next == END) {
+                        if (!heldBack.isEmpty()) {
+                            throw new IllegalStateException(heldBack.size() + " pipeline items missing their predecessors");
+                        }
+                        return;
+                    }
+                    heldBack.put(next.sequence(), next.item());
+                    T ready;
+                    while ((ready = heldBack.remove(nextSequence)) != null) {
+                        sink.accept(ready);
+                        nextSequence++;
+                        permits.release();
+                    }
+                }
+            } catch (Throwable t) {
+                fail(t);
+            } finally {
+                shutdown();
+            }
+            Throwable cause = failure.get();
+            if (cause instanceof ExecutionException e) {
+                throw e;
+            }
+            if (cause instanceof InterruptedException e) {
+                throw e;
+            }
+            if (cause instanceof RuntimeException e) {
+                throw e;
+            }
+            if (cause instanceof Error e) {
+                throw e;
+            }
+            throw new ExecutionException(cause);
+        }
+
+        private void fail(Throwable t) {
+            if (failure.compareAndSet(null, t)) {
+                logger.warning("Pipeline cancelled: " + t);
+            }
+            cancelled = true;
+        }
+
+        private void shutdown() {
+            cancelled = true;
+            for (ExecutorService executor : executors) {
+                executor.shutdownNow();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Sequenced<T> end() {
+            return (Sequenced<T>) END;
+        }
+
+        private void acquirePermit() throws InterruptedException {
+            while (!permits.tryAcquire(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkCancelled();
+            }
+        }
+
+        private Sequenced<T> take(BlockingQueue<Sequenced<T>> queue) throws InterruptedException {
+            Sequenced<T> next;
+            while ((next = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                checkCancelled();
+            }
+            return next;
+        }
+
+        private void put(BlockingQueue<Sequenced<T>> queue, Sequenced<T> item) throws InterruptedException {
+            while (!queue.offer(item, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkCancelled();
+            }
+        }
+
+        private void checkCancelled() {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+        }
+    }
+}
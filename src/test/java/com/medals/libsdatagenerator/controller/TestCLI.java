@@ -119,4 +119,16 @@ public class TestCLI {
         assertEquals("4", cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_N_DECIMAL_PLACES_SHORT));
         assertEquals("42", cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_SEED_SHORT));
     }
+
+    @Test
+    void testResumeOption() {
+        CmdlineParserUtil cmdlineParserUtil = new CmdlineParserUtil();
+
+        // Input options are restored from the run journal, so -c/-s are not required
+        String[] args = {"--resume", "20261017-150512"};
+        CommandLine cmd = cmdlineParserUtil.getTerminalArgHandler(args);
+
+        assertNotNull(cmd, "Command line should be parsed successfully with only the --resume option");
+        assertEquals("20261017-150512", cmd.getOptionValue(LIBSDataGenConstants.CMD_OPT_RESUME_SHORT));
+    }
 }
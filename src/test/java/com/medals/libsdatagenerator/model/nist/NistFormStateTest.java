@@ -0,0 +1,53 @@
+package com.medals.libsdatagenerator.model.nist;
+
+import com.medals.libsdatagenerator.model.Element;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the NIST recalculation form state model.
+ */
+class NistFormStateTest {
+
+    private static List<Element> composition(double fe, double c) {
+        return List.of(new Element("Iron", "Fe", fe, null, null, null),
+                new Element("Carbon", "C", c, null, null, null));
+    }
+
+    @Test
+    void testSameElementsAllowClientSideRecalculation() {
+        NistFormState loaded = new NistFormState(composition(99.5, 0.5), 1.0, 1e17, null);
+        NistFormState variation = new NistFormState(composition(99.2, 0.8), 0.8, 1e16, "1000");
+        NistFormState otherGrade = new NistFormState(List.of(new Element("Iron", "Fe", 98.0, null, null, null),
+                new Element("Manganese", "Mn", 2.0, null, null, null)), 1.0, 1e17, "1000");
+
+        assertTrue(loaded.hasSameElements(variation));
+        assertFalse(loaded.hasSameElements(otherGrade));
+        assertFalse(loaded.hasSameElements(null));
+    }
+
+    @Test
+    void testChangedPercentages() {
+        NistFormState current = new NistFormState(composition(99.5, 0.5), 1.0, 1e17, "1000");
+        NistFormState target = new NistFormState(List.of(new Element("Iron", "Fe", 99.5, null, null, null),
+                new Element("Carbon", "C", 0.7, null, null, null)), 1.0, 1e17, "1000");
+
+        assertEquals(Map.of("C", 0.7), current.changedPercentages(target));
+        assertTrue(current.changedPercentages(current).isEmpty());
+    }
+
+    @Test
+    void testEquality() {
+        NistFormState state = new NistFormState(composition(99.5, 0.5), 1.0, 1e17, "1000");
+        assertEquals(state, new NistFormState(composition(99.5, 0.5), 1.0, 1e17, "1000"));
+        assertNotEquals(state, new NistFormState(composition(99.5, 0.5), 1.2, 1e17, "1000"));
+        assertNotEquals(state, new NistFormState(composition(99.5, 0.5), 1.0, 1e17, null));
+    }
+}
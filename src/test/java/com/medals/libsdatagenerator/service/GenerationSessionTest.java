@@ -0,0 +1,143 @@
+package com.medals.libsdatagenerator.service;
+
+import com.medals.libsdatagenerator.model.InstrumentProfile;
+import com.medals.libsdatagenerator.model.UserInputConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for generation sessions. Browsers are only started on a session's first fetch, so no browser is
+ * launched here.
+ */
+class GenerationSessionTest {
+
+    @TempDir
+    Path tempDir;
+
+    private UserInputConfig config(int nistWorkers) {
+        UserInputConfig config = new UserInputConfig();
+        config.nistWorkers = nistWorkers;
+        config.cacheDirPath = tempDir.resolve("cache").toString();
+        return config;
+    }
+
+    @Test
+    void testSessionsOwnTheirResources() {
+        UserInputConfig config = config(2);
+        try (GenerationSession first = new GenerationSession(config);
+             GenerationSession second = new GenerationSession(config(3))) {
+            // Configuration is copied, so the caller cannot change a running session
+            config.nistWorkers = 5;
+            assertEquals(2, first.getConfig().nistWorkers);
+            assertNotSame(config, first.getConfig());
+
+            assertEquals(2, first.getSessionPool().size());
+            assertEquals(3, second.getSessionPool().size());
+            assertSame(first.getSessionPool(), first.getSessionPool());
+            assertNotSame(first.getDefaultSession(), second.getDefaultSession());
+            assertNotSame(first.getDefaultSession().getSeleniumUtils(), second.getDefaultSession().getSeleniumUtils());
+            assertNotSame(first.getNistHttpClient(), second.getNistHttpClient());
+            assertNotSame(first.getSpectrumCache(), second.getSpectrumCache());
+        }
+    }
+
+    @Test
+    void testBasisSpectraScopedToSessionAndProfile() {
+        InstrumentProfile profile = new InstrumentProfile(new double[]{200.0, 200.1}, null, null);
+        try (GenerationSession first = new GenerationSession(config(1));
+             GenerationSession second = new GenerationSession(config(1))) {
+            Map<String, double[][]> basisSpectra = first.getBasisSpectra(profile);
+            basisSpectra.put("Fe", new double[][]{{1.0, 2.0}});
+
+            assertSame(basisSpectra, first.getBasisSpectra(profile));
+            assertTrue(second.getBasisSpectra(profile).isEmpty());
+            // Spectra interpolated for another profile are dropped
+            assertTrue(first.getBasisSpectra(new InstrumentProfile(new double[]{300.0}, null, null)).isEmpty());
+        }
+    }
+
+    @Test
+    void testClosedSessionRejectsUse() {
+        GenerationSession session = new GenerationSession(config(1));
+        session.getSessionPool();
+        session.close();
+        session.close();
+        assertThrows(IllegalStateException.class, session::getSessionPool);
+        assertThrows(IllegalStateException.class, session::getDefaultSession);
+    }
+
+    @Test
+    void testConcurrentSingletonAccess() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<LIBSDataService>> tasks = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                tasks.add(LIBSDataService::getInstance);
+            }
+            LIBSDataService expected = LIBSDataService.getInstance();
+            for (Future<LIBSDataService> result : executor.invokeAll(tasks)) {
+                assertSame(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testDefaultSessionsRunConcurrently() throws Exception {
+        LIBSDataService service = LIBSDataService.getInstance();
+        UserInputConfig firstConfig = config(1);
+        UserInputConfig secondConfig = config(2);
+        secondConfig.cacheDirPath = tempDir.resolve("other-cache").toString();
+        CyclicBarrier start = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Callable<GenerationSession>> runs = new ArrayList<>();
+            for (UserInputConfig config : List.of(firstConfig, secondConfig)) {
+                runs.add(() -> {
+                    start.await();
+                    GenerationSession session = service.getDefaultGenerationSession(config);
+                    for (int i = 0; i < 200; i++) {
+                        // Each round asks for the default session again while the other run does the same with
+                        // different settings; neither may be closed or swapped under the other
+                        assertSame(session, service.getDefaultGenerationSession(config));
+                        session.getRequestScheduler();
+                        session.getSpectrumCache().put("key-" + i, "Wavelength,Sum\n200.0," + i);
+                        assertEquals("Wavelength,Sum\n200.0," + i, session.getSpectrumCache().get("key-" + i));
+                    }
+                    return session;
+                });
+            }
+            List<Future<GenerationSession>> results = executor.invokeAll(runs);
+            GenerationSession first = results.get(0).get();
+            GenerationSession second = results.get(1).get();
+            assertNotSame(first, second);
+            assertEquals(1, first.getConfig().nistWorkers);
+            assertEquals(2, second.getConfig().nistWorkers);
+
+            // Default sessions are only closed at the end of the run
+            service.closeSessions();
+            assertThrows(IllegalStateException.class, first::getSessionPool);
+            assertThrows(IllegalStateException.class, second::getSessionPool);
+        } finally {
+            executor.shutdownNow();
+            service.closeSessions();
+        }
+    }
+}
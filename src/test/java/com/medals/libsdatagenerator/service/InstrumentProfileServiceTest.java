@@ -1,7 +1,10 @@
 package com.medals.libsdatagenerator.service;
 
 import com.medals.libsdatagenerator.model.InstrumentProfile;
+import com.medals.libsdatagenerator.model.PlasmaSearchParams;
 import com.medals.libsdatagenerator.model.PlasmaZone;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.ParameterSearch;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.WeightSolver;
 import com.medals.libsdatagenerator.util.SpectrumUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,9 +15,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -233,4 +240,222 @@ public class InstrumentProfileServiceTest {
         assertTrue(content.contains("import matplotlib.pyplot as plt"));
         assertTrue(content.contains("plt.plot"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testParallelGridSearchMatchesSerial() {
+        double[] teValues = { 0.5, 1.0, 1.5 };
+        double[] neExponents = { 16.0, 17.0 };
+        Random random = new Random(42);
+        double[] target = new double[60];
+        for (int i = 0; i < target.length; i++) {
+            target[i] = random.nextDouble();
+        }
+        Map<String, double[]> cache = new HashMap<>();
+        for (double te : teValues) {
+            for (double neExp : neExponents) {
+                // One grid point failed to fetch
+                if (te == 1.0 && neExp == 17.0) {
+                    continue;
+                }
+                double[] spectrum = new double[target.length];
+                for (int i = 0; i < spectrum.length; i++) {
+                    spectrum[i] = target[i] * random.nextDouble() + random.nextDouble() * 0.5;
+                }
+                cache.put(String.format("%.2f_%.2e", te, Math.pow(10, neExp)), spectrumUtils.normaliseSpectrum(spectrum));
+            }
+        }
+
+        for (int zones = 1; zones <= 3; zones++) {
+            InstrumentProfileService.OptimizationResult expected = serialGridSearch(zones, teValues, neExponents,
+                    cache, target);
+            for (int threads : new int[] { 1, 4 }) {
+                InstrumentProfileService.OptimizationResult actual = service.findBestCombination(zones, teValues,
+                        neExponents, cache, target, threads, WeightSolver.GRID);
+                assertEquals(expected.rmse, actual.rmse);
+                assertEquals(expected.rSquared, actual.rSquared);
+                assertEquals(expected.weights, actual.weights);
+                assertEquals(expected.parameters.size(), actual.parameters.size());
+                for (int i = 0; i < expected.parameters.size(); i++) {
+                    assertEquals(expected.parameters.get(i).te, actual.parameters.get(i).te);
+                    assertEquals(expected.parameters.get(i).ne, actual.parameters.get(i).ne);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testNnlsWeightsFitExactly() {
+        double[] teValues = { 0.5, 1.0 };
+        double[] neExponents = { 16.0 };
+        Random random = new Random(3);
+        Map<String, double[]> cache = new HashMap<>();
+        for (double te : teValues) {
+            double[] spectrum = new double[40];
+            for (int i = 0; i < spectrum.length; i++) {
+                spectrum[i] = random.nextDouble();
+            }
+            cache.put(String.format("%.2f_%.2e", te, 1e16), spectrumUtils.normaliseSpectrum(spectrum));
+        }
+        // Target mixes the hotter and cooler zone 0.37 : 0.63, which the 0.05 grid cannot represent
+        double[] hot = cache.get(String.format("%.2f_%.2e", 1.0, 1e16));
+        double[] cool = cache.get(String.format("%.2f_%.2e", 0.5, 1e16));
+        double[] mixed = new double[hot.length];
+        for (int i = 0; i < mixed.length; i++) {
+            mixed[i] = 0.37 * hot[i] + 0.63 * cool[i];
+        }
+        double[] target = spectrumUtils.normaliseSpectrum(mixed);
+
+        InstrumentProfileService.OptimizationResult nnls = service.findBestCombination(2, teValues, neExponents,
+                cache, target, 2, WeightSolver.NNLS);
+        InstrumentProfileService.OptimizationResult grid = service.findBestCombination(2, teValues, neExponents,
+                cache, target, 2, WeightSolver.GRID);
+
+        assertEquals(1.0, nnls.parameters.get(0).te);
+        assertEquals(0.5, nnls.parameters.get(1).te);
+        assertEquals(0.37, nnls.weights.get(0), 1e-9);
+        assertEquals(0.63, nnls.weights.get(1), 1e-9);
+        assertEquals(0.0, nnls.rmse, 1e-12);
+        assertTrue(nnls.rmse < grid.rmse);
+    }
+
+    @Test
+    void testAdaptiveSearchFindsOffGridParameters() {
+        double te = 1.13;
+        double logNe = 16.4;
+        double[] target = spectrumUtils.normaliseSpectrum(syntheticZoneSpectrum(te, logNe));
+
+        int budget = 30;
+        InstrumentProfileService.ZoneSpectra zoneSpectra = new InstrumentProfileService.ZoneSpectra(
+                (t, ne) -> syntheticZoneSpectrum(t, Math.log10(ne)), budget);
+        PlasmaSearchParams searchParams = new PlasmaSearchParams(ParameterSearch.ADAPTIVE, WeightSolver.NNLS,
+                budget, 2);
+        InstrumentProfileService.OptimizationResult result = service.searchAdaptively(1, zoneSpectra, target,
+                searchParams);
+
+        assertEquals(1, result.parameters.size());
+        assertEquals(te, result.parameters.get(0).te, 0.1);
+        assertEquals(logNe, Math.log10(result.parameters.get(0).ne), 0.1);
+        assertTrue(result.rmse < 0.05, "RMSE " + result.rmse);
+        // Fewer fetches than the 42 point fixed grid, and never more than the budget
+        assertTrue(zoneSpectra.getFetchCount() <= budget);
+        assertTrue(zoneSpectra.getFetchCount() < 42);
+    }
+
+    @Test
+    void testZoneSpectraMemoisesFetches() {
+        int[] calls = { 0 };
+        InstrumentProfileService.ZoneSpectra zoneSpectra = new InstrumentProfileService.ZoneSpectra((t, ne) -> {
+            calls[0]++;
+            return t > 1.0 ? null : new double[] { 1.0, 2.0 };
+        }, 3);
+
+        assertTrue(zoneSpectra.fetch(0.8, 1e16));
+        assertFalse(zoneSpectra.fetch(0.8, 1e16));
+        assertTrue(zoneSpectra.fetch(1.5, 1e16));
+        assertFalse(zoneSpectra.fetch(1.5, 1e16));
+        assertTrue(zoneSpectra.fetch(0.5, 1e16));
+        // Budget spent
+        assertFalse(zoneSpectra.hasBudget());
+        assertFalse(zoneSpectra.fetch(0.6, 1e16));
+
+        assertEquals(3, calls[0]);
+        assertEquals(3, zoneSpectra.getFetchCount());
+        // Failed fetch has no spectrum
+        assertEquals(2, zoneSpectra.getPoints().size());
+        assertEquals(0.5, zoneSpectra.getPoints().get(0).te);
+        assertEquals(0.5, zoneSpectra.normalised.get("0.80_1.00e+16")[0], 1e-12);
+    }
+
+    /**
+     * Smooth stand-in for a NIST zone spectrum: line positions move with Te and log Ne.
+     */
+    private double[] syntheticZoneSpectrum(double te, double logNe) {
+        double[] spectrum = new double[200];
+        for (int j = 0; j < spectrum.length; j++) {
+            double first = j - (20 + 60 * te);
+            double second = j - (100 + 30 * (logNe - 15));
+            double third = j - 180;
+            spectrum[j] = Math.exp(-first * first / 800) + 0.7 * Math.exp(-second * second / 800)
+                    + 0.3 * Math.exp(-third * third / 200);
+        }
+        return spectrum;
+    }
+
+    /**
+     * Single-threaded reference: scores every combination in grid order.
+     */
+    private InstrumentProfileService.OptimizationResult serialGridSearch(int numZones, double[] teValues,
+            double[] neExponents, Map<String, double[]> cache, double[] target) {
+        List<List<InstrumentProfileService.ZoneParams>> paramCombinations = new ArrayList<>();
+        generateParamCombinations(numZones, teValues, neExponents, new ArrayList<>(), paramCombinations);
+        List<List<Double>> weightCombinations = new ArrayList<>();
+        generateWeightCombinations(numZones, 20, new ArrayList<>(), weightCombinations);
+
+        InstrumentProfileService.OptimizationResult best = new InstrumentProfileService.OptimizationResult();
+        for (List<InstrumentProfileService.ZoneParams> params : paramCombinations) {
+            for (List<Double> weights : weightCombinations) {
+                double[] combined = new double[target.length];
+                boolean possible = true;
+                for (int i = 0; i < numZones; i++) {
+                    InstrumentProfileService.ZoneParams p = params.get(i);
+                    double[] s = cache.get(String.format("%.2f_%.2e", p.te, p.ne));
+                    if (s == null) {
+                        possible = false;
+                        break;
+                    }
+                    for (int j = 0; j < combined.length; j++) {
+                        combined[j] += s[j] * weights.get(i);
+                    }
+                }
+                if (!possible) {
+                    continue;
+                }
+                double[] finalCombined = spectrumUtils.normaliseSpectrum(combined);
+                best.offer(new InstrumentProfileService.Candidate(params, weights,
+                        spectrumUtils.calculateRMSE(target, finalCombined),
+                        spectrumUtils.calculateSpectralSimilarity(target, finalCombined)));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Every hot-to-cool sequence of grid points, depth first.
+     */
+    private void generateParamCombinations(int zonesLeft, double[] teValues, double[] neExponents,
+            List<InstrumentProfileService.ZoneParams> current, List<List<InstrumentProfileService.ZoneParams>> results) {
+        if (zonesLeft == 0) {
+            results.add(new ArrayList<>(current));
+            return;
+        }
+        double lastTe = current.isEmpty() ? Double.MAX_VALUE : current.get(current.size() - 1).te;
+        for (double te : teValues) {
+            if (te > lastTe) {
+                continue;
+            }
+            for (double neExp : neExponents) {
+                current.add(new InstrumentProfileService.ZoneParams(te, Math.pow(10, neExp)));
+                generateParamCombinations(zonesLeft - 1, teValues, neExponents, current, results);
+                current.remove(current.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Every split of the remaining 0.05 steps into positive weights, depth first.
+     */
+    private void generateWeightCombinations(int zonesLeft, int remainingSteps, List<Double> current,
+            List<List<Double>> results) {
+        if (zonesLeft == 1) {
+            List<Double> full = new ArrayList<>(current);
+            full.add(remainingSteps / 20.0);
+            results.add(full);
+            return;
+        }
+        for (int steps = 1; steps <= remainingSteps - (zonesLeft - 1); steps++) {
+            current.add(steps / 20.0);
+            generateWeightCombinations(zonesLeft - 1, remainingSteps - steps, current, results);
+            current.remove(current.size() - 1);
+        }
+    }
+}
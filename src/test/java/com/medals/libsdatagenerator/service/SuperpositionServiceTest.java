@@ -0,0 +1,112 @@
+package com.medals.libsdatagenerator.service;
+
+import com.medals.libsdatagenerator.model.Element;
+import com.medals.libsdatagenerator.model.InstrumentProfile;
+import com.medals.libsdatagenerator.model.PlasmaZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for building spectra from single-element basis spectra.
+ */
+class SuperpositionServiceTest {
+
+    private static final double DELTA = 1e-12;
+
+    private SuperpositionService superpositionService;
+    private InstrumentProfile instrumentProfile;
+    private Map<String, double[][]> basisSpectra;
+
+    @BeforeEach
+    void setUp() {
+        superpositionService = SuperpositionService.getInstance();
+
+        instrumentProfile = new InstrumentProfile(new double[]{200.0, 200.1, 200.2, 200.3}, null, null);
+        List<PlasmaZone> zones = new ArrayList<>();
+        zones.add(new PlasmaZone(1.0, 1e17, 0.6));
+        zones.add(new PlasmaZone(0.5, 1e16, 0.4));
+        instrumentProfile.setZones(zones);
+        instrumentProfile.setScaleFactor(1000.0);
+
+        // Pure element spectra (100%) for each of the two zones
+        basisSpectra = new HashMap<>();
+        basisSpectra.put("Fe", new double[][]{{10.0, 40.0, 20.0, 0.0}, {5.0, 10.0, 5.0, 0.0}});
+        basisSpectra.put("C", new double[][]{{0.0, 0.0, 30.0, 90.0}, {0.0, 2.0, 8.0, 4.0}});
+    }
+
+    private List<Element> composition(double fe, double c) {
+        List<Element> composition = new ArrayList<>();
+        composition.add(new Element("Iron", "Fe", fe, null, null, null));
+        composition.add(new Element("Carbon", "C", c, null, null, null));
+        return composition;
+    }
+
+    @Test
+    void testSuperposeMatchesConcentrationWeightedSum() {
+        double[] spectrum = superpositionService.superpose(composition(70.0, 30.0), basisSpectra, instrumentProfile);
+
+        // Zone 1 mixture: 0.7*Fe + 0.3*C = {7, 28, 23, 27} -> normalised by 28
+        // Zone 2 mixture: 0.7*Fe + 0.3*C = {3.5, 7.6, 5.9, 1.2} -> normalised by 7.6
+        double[] zone1 = {7.0 / 28.0, 28.0 / 28.0, 23.0 / 28.0, 27.0 / 28.0};
+        double[] zone2 = {3.5 / 7.6, 7.6 / 7.6, 5.9 / 7.6, 1.2 / 7.6};
+        assertEquals(4, spectrum.length);
+        for (int i = 0; i < spectrum.length; i++) {
+            double expected = 1000.0 * (0.6 * zone1[i] + 0.4 * zone2[i]);
+            assertEquals(expected, spectrum[i], 1e-9);
+        }
+    }
+
+    @Test
+    void testPureElementReproducesBasis() {
+        instrumentProfile.setZones(new ArrayList<>(List.of(new PlasmaZone(1.0, 1e17, 1.0))));
+        double[] spectrum = superpositionService.superpose(composition(100.0, 0.0), basisSpectra, instrumentProfile);
+
+        double[] expected = {250.0, 1000.0, 500.0, 0.0};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], spectrum[i], DELTA);
+        }
+    }
+
+    @Test
+    void testMissingBasisSpectrumThrows() {
+        List<Element> composition = composition(99.0, 0.5);
+        composition.add(new Element("Manganese", "Mn", 0.5, null, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> superpositionService.superpose(composition, basisSpectra, instrumentProfile));
+    }
+
+    @Test
+    void testCompareIdenticalSpectra() {
+        double[] spectrum = superpositionService.superpose(composition(70.0, 30.0), basisSpectra, instrumentProfile);
+        double[] scaled = new double[spectrum.length];
+        for (int i = 0; i < spectrum.length; i++) {
+            scaled[i] = spectrum[i] * 3.0; // Scale does not count as error
+        }
+
+        SuperpositionService.ValidationResult result = superpositionService.compare("Fe-70_C-30", spectrum, scaled);
+        assertEquals("Fe-70_C-30", result.compositionId);
+        assertEquals(0.0, result.rmse, DELTA);
+        assertEquals(1.0, result.rSquared, DELTA);
+        assertEquals(0.0, result.maxAbsError, DELTA);
+    }
+
+    @Test
+    void testCompareReportsError() {
+        double[] superposed = {0.0, 1.0, 0.5, 0.0};
+        double[] reference = {0.0, 1.0, 0.0, 0.5};
+
+        SuperpositionService.ValidationResult result = superpositionService.compare("test", superposed, reference);
+        assertEquals(Math.sqrt(0.5 / 4), result.rmse, DELTA);
+        assertEquals(0.5, result.maxAbsError, DELTA);
+        assertTrue(result.rSquared < 1.0);
+    }
+}
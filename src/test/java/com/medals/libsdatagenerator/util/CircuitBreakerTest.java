@@ -0,0 +1,122 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the circuit breaker pausing NIST fetches during outages.
+ */
+class CircuitBreakerTest {
+
+    @Test
+    void testOpensAfterConsecutiveFailures() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 10000, 10000);
+        for (int i = 0; i < 2; i++) {
+            breaker.recordFailure(breaker.acquire());
+        }
+        // A success resets the run of failures
+        breaker.recordSuccess(breaker.acquire());
+        for (int i = 0; i < 2; i++) {
+            breaker.recordFailure(breaker.acquire());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.recordFailure(breaker.acquire());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getTrips());
+    }
+
+    @Test
+    void testOpenBreakerBlocksUntilTrialSucceeds() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 100, 1000);
+        breaker.recordFailure(breaker.acquire());
+
+        long start = System.nanoTime();
+        long trial = breaker.acquire();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90, "Fetch was not paused");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // Only the trial fetch goes through; others wait for its outcome
+        AtomicBoolean admitted = new AtomicBoolean(false);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                breaker.acquire();
+                admitted.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        waiter.start();
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+        assertFalse(admitted.get());
+
+        breaker.recordSuccess(trial);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertTrue(admitted.get());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testFailedTrialDoublesOpenPeriod() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 100, 1000);
+        breaker.recordFailure(breaker.acquire());
+        breaker.recordFailure(breaker.acquire());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getTrips());
+
+        long start = System.nanoTime();
+        long trial = breaker.acquire();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 190, "Open period was not doubled");
+        breaker.recordSuccess(trial);
+    }
+
+    @Test
+    void testStaleFailureDoesNotFailTrial() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 50, 1000);
+        // Both admitted while closed; the first failure opens the breaker
+        long first = breaker.acquire();
+        long late = breaker.acquire();
+        breaker.recordFailure(first);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        long trial = breaker.acquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // The late failure belongs to the outage, not to the trial
+        breaker.recordFailure(late);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(1, breaker.getTrips());
+
+        breaker.recordFailure(trial);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getTrips());
+    }
+
+    @Test
+    void testStaleFailureIgnoredAfterClosing() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 50, 1000);
+        long first = breaker.acquire();
+        long late = breaker.acquire();
+        breaker.recordFailure(first);
+        breaker.recordSuccess(breaker.acquire());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.recordFailure(late);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getTrips());
+    }
+
+    @Test
+    void testInvalidThreshold() {
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker("test", 0, 100, 100));
+    }
+}
@@ -0,0 +1,101 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.model.Element;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for normalising compositions to sum to exactly 100% before they are submitted to NIST.
+ */
+class CompositionNormaliserTest {
+
+    private static List<Element> composition(double... percentages) {
+        String[] symbols = {"Fe", "C", "Mn", "Cr", "Ni"};
+        List<Element> composition = new ArrayList<>();
+        for (int i = 0; i < percentages.length; i++) {
+            composition.add(new Element(symbols[i], symbols[i], percentages[i], null, null, null));
+        }
+        return composition;
+    }
+
+    /**
+     * Sums the percentages exactly as decimal strings, the way they are submitted to NIST.
+     */
+    private static BigDecimal exactSum(List<Element> composition) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Element element : composition) {
+            sum = sum.add(new BigDecimal(String.valueOf(element.getPercentageComposition())));
+        }
+        return sum;
+    }
+
+    @Test
+    void testRemainderElementTakesBalance() {
+        List<Element> composition = composition(98.301, 0.4, 0.75, 0.55);
+
+        assertTrue(CompositionNormaliser.normalise(composition, 0, 3));
+
+        assertEquals(98.3, composition.get(0).getPercentageComposition());
+        assertEquals(0.4, composition.get(1).getPercentageComposition());
+        assertEquals(0.75, composition.get(2).getPercentageComposition());
+        assertEquals(0.55, composition.get(3).getPercentageComposition());
+        assertEquals(0, exactSum(composition).compareTo(BigDecimal.valueOf(100)));
+    }
+
+    @Test
+    void testAlreadyNormalisedCompositionUnchanged() {
+        List<Element> composition = composition(99.1, 0.2, 0.7);
+        assertFalse(CompositionNormaliser.normalise(composition, 0, 3));
+        assertEquals(99.1, composition.get(0).getPercentageComposition());
+    }
+
+    @Test
+    void testFloatingPointDriftRemoved() {
+        // Typical sampler output: 0.1 + 0.2 style sums that miss 100 in binary floating point
+        List<Element> composition = composition(99.4, 0.1, 0.2, 0.3);
+        double doubleSum = 0;
+        for (Element element : composition) {
+            doubleSum += element.getPercentageComposition();
+        }
+
+        CompositionNormaliser.normalise(composition, 0, 3);
+
+        assertEquals(0, exactSum(composition).compareTo(BigDecimal.valueOf(100)), "double sum was " + doubleSum);
+    }
+
+    @Test
+    void testLargestRemainderWhenOthersExceedTotal() {
+        // Remainder element (Fe) cannot absorb the excess
+        List<Element> composition = composition(10.0, 40.0, 40.0, 40.0);
+
+        CompositionNormaliser.normalise(composition, 0, 2);
+
+        assertEquals(0.0, composition.get(0).getPercentageComposition());
+        assertEquals(0, exactSum(composition).compareTo(BigDecimal.valueOf(100)));
+        // 100 / 3 at two decimal places: one element gets the left-over unit
+        assertEquals(33.34, composition.get(1).getPercentageComposition());
+        assertEquals(33.33, composition.get(2).getPercentageComposition());
+        assertEquals(33.33, composition.get(3).getPercentageComposition());
+    }
+
+    @Test
+    void testInvalidRemainderIndexUsesLargestElement() {
+        List<Element> composition = composition(0.5, 98.0, 0.5);
+        CompositionNormaliser.normalise(composition, -1, 3);
+        assertEquals(99.0, composition.get(1).getPercentageComposition());
+    }
+
+    @Test
+    void testDecimalPlacesCappedAtElementPrecision() {
+        List<Element> composition = composition(99.0, 0.5, 0.5);
+        CompositionNormaliser.normalise(composition, 0, 6);
+        assertEquals(0, exactSum(composition).compareTo(BigDecimal.valueOf(100)));
+    }
+}
@@ -0,0 +1,73 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for index-addressable compositions, checked against depth-first enumeration.
+ */
+class CompositionsTest {
+
+    private static void enumerate(int partsLeft, int remaining, List<Integer> current, List<int[]> results) {
+        if (partsLeft == 1) {
+            current.add(remaining);
+            results.add(current.stream().mapToInt(Integer::intValue).toArray());
+            current.remove(current.size() - 1);
+            return;
+        }
+        for (int part = 1; part <= remaining - (partsLeft - 1); part++) {
+            current.add(part);
+            enumerate(partsLeft - 1, remaining - part, current, results);
+            current.remove(current.size() - 1);
+        }
+    }
+
+    @Test
+    void testMatchesDepthFirstEnumeration() {
+        for (int parts = 1; parts <= 5; parts++) {
+            List<int[]> expected = new ArrayList<>();
+            enumerate(parts, 20, new ArrayList<>(), expected);
+            Compositions compositions = new Compositions(20, parts);
+            assertEquals(expected.size(), compositions.size());
+
+            int[] stepped = new int[parts];
+            int[] unranked = new int[parts];
+            compositions.unrank(0, stepped);
+            for (int i = 0; i < expected.size(); i++) {
+                compositions.unrank(i, unranked);
+                assertArrayEquals(expected.get(i), unranked);
+                assertArrayEquals(expected.get(i), stepped);
+                assertEquals(i < expected.size() - 1, compositions.next(stepped));
+            }
+        }
+    }
+
+    @Test
+    void testSizeIsBinomial() {
+        // C(19, k - 1) ways to split 20 steps into k positive parts
+        assertEquals(1, new Compositions(20, 1).size());
+        assertEquals(19, new Compositions(20, 2).size());
+        assertEquals(171, new Compositions(20, 3).size());
+        assertEquals(3876, new Compositions(20, 5).size());
+        assertEquals(1, new Compositions(20, 20).size());
+        assertEquals(0, new Compositions(20, 21).size());
+    }
+
+    @Test
+    void testSingleComposition() {
+        Compositions compositions = new Compositions(3, 3);
+        int[] composition = new int[3];
+        compositions.unrank(0, composition);
+        assertArrayEquals(new int[] { 1, 1, 1 }, composition);
+        assertFalse(compositions.next(composition));
+        assertThrows(IndexOutOfBoundsException.class, () -> compositions.unrank(1, composition));
+        assertThrows(IllegalArgumentException.class, () -> new Compositions(3, 0));
+    }
+}
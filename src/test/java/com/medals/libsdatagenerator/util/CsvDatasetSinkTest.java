@@ -0,0 +1,121 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import com.medals.libsdatagenerator.model.DatasetRow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for streaming dataset rows to the master and species CSV files.
+ */
+class CsvDatasetSinkTest {
+
+    private static final double[] WAVELENGTHS = {200.0, 200.1};
+    private static final String GRADE = LIBSDataGenConstants.CSV_HEADER_MATERIAL_GRADE_NAME;
+    private static final String TYPE = LIBSDataGenConstants.CSV_HEADER_MATERIAL_TYPE;
+    private static final List<String> LABEL_COLUMNS = List.of(GRADE, TYPE);
+
+    @TempDir
+    Path tempDir;
+
+    private static DatasetRow row(String id, double fe) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        labels.put(GRADE, "AISI 1010");
+        labels.put(TYPE, "Carbon Steel");
+        return new DatasetRow(id, new double[]{fe / 100, 1.0}, Map.of("Fe", fe, "C", 100 - fe), labels);
+    }
+
+    private Path masterCsv() {
+        return tempDir.resolve(LIBSDataGenConstants.MASTER_DATASET_FILENAME);
+    }
+
+    @Test
+    void testRowsFlushedAsWritten() throws IOException {
+        try (CsvDatasetSink sink = new CsvDatasetSink(tempDir, false, LABEL_COLUMNS, false, null)) {
+            sink.write(row("Fe-99_C-1", 99), WAVELENGTHS);
+            // Visible on disk before the sink is closed
+            List<String> lines = Files.readAllLines(masterCsv());
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(0).startsWith("composition,200.0,200.1,"));
+            assertTrue(lines.get(0).endsWith(GRADE + "," + TYPE));
+            assertTrue(lines.get(1).startsWith("Fe-99_C-1,0.99,1.0,"));
+            assertTrue(lines.get(1).endsWith("AISI 1010,Carbon Steel"));
+
+            sink.write(row("Fe-98_C-2", 98), WAVELENGTHS);
+            assertEquals(3, Files.readAllLines(masterCsv()).size());
+            assertEquals(2, sink.getRowsWritten());
+        }
+    }
+
+    @Test
+    void testElementColumnsInCanonicalOrder() throws IOException {
+        try (CsvDatasetSink sink = new CsvDatasetSink(tempDir, false, List.of(), false, WAVELENGTHS)) {
+            sink.write(row("Fe-99_C-1", 99), WAVELENGTHS);
+        }
+        List<String> lines = Files.readAllLines(masterCsv());
+        String[] header = lines.get(0).split(",");
+        String[] values = lines.get(1).split(",");
+        int elementCount = LIBSDataGenConstants.STD_ELEMENT_LIST.length;
+        assertEquals(1 + WAVELENGTHS.length + elementCount, header.length);
+        for (int i = 1 + WAVELENGTHS.length; i < header.length; i++) {
+            String expected = header[i].equals("Fe") ? "99.0" : header[i].equals("C") ? "1.0" : "0.0";
+            assertEquals(expected, values[i], header[i]);
+        }
+    }
+
+    @Test
+    void testEmptyRowSkipped() throws IOException {
+        try (CsvDatasetSink sink = new CsvDatasetSink(tempDir, false, LABEL_COLUMNS, false, null)) {
+            sink.write(new DatasetRow("Fe-100", new double[0], Map.of("Fe", 100.0), Map.of()), WAVELENGTHS);
+            assertFalse(Files.exists(masterCsv()));
+            sink.write(row("Fe-99_C-1", 99), WAVELENGTHS);
+        }
+        assertEquals(2, Files.readAllLines(masterCsv()).size());
+    }
+
+    @Test
+    void testHeaderWrittenWhenNoRows() throws IOException {
+        new CsvDatasetSink(tempDir, false, LABEL_COLUMNS, false, WAVELENGTHS).close();
+        assertEquals(1, Files.readAllLines(masterCsv()).size());
+    }
+
+    @Test
+    void testAppendModeKeepsExistingRows() throws IOException {
+        try (CsvDatasetSink sink = new CsvDatasetSink(tempDir, false, LABEL_COLUMNS, false, null)) {
+            sink.write(row("Fe-99_C-1", 99), WAVELENGTHS);
+        }
+        try (CsvDatasetSink sink = new CsvDatasetSink(tempDir, true, LABEL_COLUMNS, false, null)) {
+            sink.write(row("Fe-98_C-2", 98), WAVELENGTHS);
+        }
+        List<String> lines = Files.readAllLines(masterCsv());
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(2).startsWith("Fe-98_C-2,"));
+    }
+
+    @Test
+    void testSpeciesRowsInLongFormat() throws IOException {
+        DatasetRow row = row("Fe-99_C-1", 99);
+        Map<String, double[]> species = new LinkedHashMap<>();
+        species.put("Fe I", new double[]{0.5, 0.25});
+        species.put("C II", new double[]{0.1, 0.0});
+        row.setSpecies(species);
+
+        try (CsvDatasetSink sink = new CsvDatasetSink(tempDir, false, LABEL_COLUMNS, true, null)) {
+            sink.write(row, WAVELENGTHS);
+        }
+        List<String> lines = Files.readAllLines(tempDir.resolve(LIBSDataGenConstants.SPECIES_DATASET_FILENAME));
+        assertEquals(List.of("composition,species,200.0,200.1", "Fe-99_C-1,Fe I,0.5,0.25", "Fe-99_C-1,C II,0.1,0.0"),
+                lines);
+    }
+}
@@ -3,11 +3,11 @@ package com.medals.libsdatagenerator.util;
 import com.medals.libsdatagenerator.model.Element;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -17,18 +17,16 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class ElementPropertiesTest {
 
-    private static final String TEST_PROPERTIES_PATH = "src/test/resources/test_elements.properties";
+    @TempDir
+    Path tempDir;
+
+    private String testPropertiesPath;
     private CommonUtils commonUtils;
 
     @BeforeEach
     void setUp() throws IOException {
         commonUtils = new CommonUtils();
-
-        // Create a test resources directory if it doesn't exist
-        Path testResources = Paths.get("src/test/resources");
-        if (!Files.exists(testResources)) {
-            Files.createDirectories(testResources);
-        }
+        testPropertiesPath = tempDir.resolve("test_elements.properties").toString();
 
         // Create a test properties file with sample element data
         Properties props = new Properties();
@@ -36,14 +34,14 @@ class ElementPropertiesTest {
         props.setProperty("C", "Carbon");
         props.setProperty("Si", "Silicon");
 
-        try (java.io.OutputStream out = Files.newOutputStream(Paths.get(TEST_PROPERTIES_PATH))) {
+        try (java.io.OutputStream out = Files.newOutputStream(Path.of(testPropertiesPath))) {
             props.store(out, "Test Element Properties");
         }
     }
 
     @Test
     void testReadProperties() {
-        Properties props = commonUtils.readProperties(TEST_PROPERTIES_PATH);
+        Properties props = commonUtils.readProperties(testPropertiesPath);
 
         assertNotNull(props);
         assertEquals(3, props.size());
@@ -0,0 +1,100 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the Gram matrix scorer, checked against scoring the combined spectrum directly.
+ */
+class GramScorerTest {
+
+    private final SpectrumUtils spectrumUtils = new SpectrumUtils();
+
+    private double[] combine(double[][] spectra, int[] zones, double[] weights) {
+        double[] combined = new double[spectra[0].length];
+        for (int i = 0; i < zones.length; i++) {
+            for (int j = 0; j < combined.length; j++) {
+                combined[j] += spectra[zones[i]][j] * weights[i];
+            }
+        }
+        return spectrumUtils.normaliseSpectrum(combined);
+    }
+
+    private static double[][] randomSpectra(Random random, int count, int length) {
+        double[][] spectra = new double[count][length];
+        for (double[] spectrum : spectra) {
+            for (int j = 0; j < length; j++) {
+                spectrum[j] = random.nextDouble() * random.nextDouble();
+            }
+        }
+        return spectra;
+    }
+
+    @Test
+    void testBoundsHoldForRandomCombinations() {
+        Random random = new Random(11);
+        double[][] spectra = randomSpectra(random, 6, 300);
+        double[] target = spectrumUtils.normaliseSpectrum(randomSpectra(random, 1, 300)[0]);
+        GramScorer scorer = new GramScorer(spectra, target);
+
+        for (int trial = 0; trial < 500; trial++) {
+            int[] zones = { random.nextInt(6), random.nextInt(6), random.nextInt(6) };
+            double[] weights = { random.nextDouble(), random.nextDouble(), random.nextDouble() };
+            double[] combined = combine(spectra, zones, weights);
+
+            double rmse = spectrumUtils.calculateRMSE(target, combined);
+            double rSquared = spectrumUtils.calculateSpectralSimilarity(target, combined);
+            assertTrue(scorer.rmseLowerBound(zones, weights) <= rmse);
+            assertTrue(scorer.rSquaredUpperBound(zones, weights) >= rSquared);
+            assertEquals(rSquared, scorer.rSquared(zones, weights), 1e-10);
+        }
+    }
+
+    @Test
+    void testRmseBoundIsExactForSingleSpectrum() {
+        Random random = new Random(5);
+        double[][] spectra = randomSpectra(random, 3, 100);
+        double[] target = spectrumUtils.normaliseSpectrum(spectra[1]);
+        GramScorer scorer = new GramScorer(spectra, target);
+
+        int[] zones = { 2 };
+        double[] weights = { 0.7 };
+        double rmse = spectrumUtils.calculateRMSE(target, combine(spectra, zones, weights));
+        assertEquals(rmse, scorer.rmseLowerBound(zones, weights), 1e-6);
+        assertEquals(0.0, scorer.rmseLowerBound(new int[] { 1 }, new double[] { 3.0 }), 1e-6);
+    }
+
+    @Test
+    void testGramMatchesInnerProducts() {
+        double[][] spectra = { { 1, 2, 0 }, { 0, 1, 3 } };
+        double[] target = { 1, 0, 1 };
+        GramScorer scorer = new GramScorer(spectra, target);
+
+        double[][] gram = scorer.gram(new int[] { 1, 0 });
+        assertEquals(10.0, gram[0][0]);
+        assertEquals(2.0, gram[0][1]);
+        assertEquals(2.0, gram[1][0]);
+        assertEquals(5.0, gram[1][1]);
+        double[] products = scorer.targetProducts(new int[] { 1, 0 });
+        assertEquals(3.0, products[0]);
+        assertEquals(1.0, products[1]);
+    }
+
+    @Test
+    void testConstantCombinationHasNoRSquared() {
+        double[][] spectra = { { 1, 1, 1 }, { 0, 1, 0 } };
+        GramScorer scorer = new GramScorer(spectra, new double[] { 0, 1, 0.5 });
+        assertTrue(Double.isNaN(scorer.rSquared(new int[] { 0 }, new double[] { 1.0 })));
+    }
+
+    @Test
+    void testRejectsMismatchedLengths() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new GramScorer(new double[][] { { 1, 2 } }, new double[] { 1, 2, 3 }));
+    }
+}
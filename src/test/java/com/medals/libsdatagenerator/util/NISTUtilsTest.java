@@ -0,0 +1,92 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.model.Spectrum;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for parsing species-resolved NIST LIBS CSV downloads.
+ */
+class NISTUtilsTest {
+
+    private static final double DELTA = 1e-12;
+
+    private static final String CSV_DATA = "Wavelength (nm),Sum,Fe I,Fe II,C I\n"
+            + "200.1,3.5,2.0,0.5,1.0\n"
+            + "200.0,1.5,1.0,0.5,\n"
+            + "200.2,0.25,0.0,0.25,0.0";
+
+    @Test
+    void testSpeciesColumnsRetained() throws IOException {
+        Spectrum spectrum = NISTUtils.parseNistSpectrum(CSV_DATA, "nm");
+
+        assertTrue(spectrum.hasSpecies());
+        assertEquals(List.of("Fe I", "Fe II", "C I"), List.copyOf(spectrum.getSpecies()));
+        // Rows are sorted by wavelength and empty cells read as zero
+        assertArrayEquals(new double[]{200.0, 200.1, 200.2}, spectrum.getWavelengths(), DELTA);
+        assertArrayEquals(new double[]{1.5, 3.5, 0.25}, spectrum.getIntensities(), DELTA);
+        assertArrayEquals(new double[]{1.0, 2.0, 0.0}, spectrum.getSpeciesIntensities("Fe I"), DELTA);
+        assertArrayEquals(new double[]{0.5, 0.5, 0.25}, spectrum.getSpeciesIntensities("Fe II"), DELTA);
+        assertArrayEquals(new double[]{0.0, 1.0, 0.0}, spectrum.getSpeciesIntensities("C I"), DELTA);
+    }
+
+    @Test
+    void testSpeciesAddUpToSum() throws IOException {
+        Spectrum spectrum = NISTUtils.parseNistSpectrum(CSV_DATA, "nm");
+        for (int i = 0; i < spectrum.getWavelengths().length; i++) {
+            double total = 0;
+            for (double[] intensities : spectrum.getSpeciesIntensities().values()) {
+                total += intensities[i];
+            }
+            assertEquals(spectrum.getIntensities()[i], total, DELTA);
+        }
+    }
+
+    @Test
+    void testCalculatedSumColumnWithoutSpecies() throws IOException {
+        Spectrum spectrum = NISTUtils.parseNistSpectrum("Wavelength (nm),Sum(calc)\n200.0,1.0\n200.1,2.0", "nm");
+
+        assertFalse(spectrum.hasSpecies());
+        assertArrayEquals(new double[]{1.0, 2.0}, spectrum.getIntensities(), DELTA);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation") // Compares against the deprecated commons-csv parser
+    void testMatchesTotalOnlyParser() throws IOException {
+        Spectrum spectrum = NISTUtils.parseNistSpectrum(CSV_DATA, "nm");
+        Map<Double, Double> waveMap = NISTUtils.parseNistCsv(CSV_DATA, "nm");
+
+        assertArrayEquals(waveMap.keySet().stream().mapToDouble(Double::doubleValue).toArray(),
+                spectrum.getWavelengths(), DELTA);
+        assertArrayEquals(waveMap.values().stream().mapToDouble(Double::doubleValue).toArray(),
+                spectrum.getIntensities(), DELTA);
+    }
+
+    @Test
+    void testFormStateMismatches() {
+        Map<String, String> requested = new LinkedHashMap<>();
+        requested.put("Fe", "99.5");
+        requested.put("C", "0.5");
+        requested.put("temp", "1.0");
+        requested.put("Mn", "0.0");
+
+        Map<String, String> formState = new LinkedHashMap<>();
+        formState.put("Fe", "99.5");
+        formState.put("C", "0.4");
+        formState.put("temp", "1"); // Same value, different formatting
+        formState.put("Cr", "0.0");
+
+        assertEquals(List.of("C=0.4 (expected 0.5)", "Mn not found"),
+                NISTUtils.findFormStateMismatches(requested, formState));
+        assertTrue(NISTUtils.findFormStateMismatches(formState, formState).isEmpty());
+    }
+}
@@ -0,0 +1,66 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Benchmark of the single pass NIST CSV parser against the commons-csv based {@link NISTUtils#parseNistCsv} parser on
+ * a 200-800 nm, resolution 1000 payload. Only runs with the benchmark profile ({@code mvn test -Pbenchmark}), as the
+ * numbers depend on the JVM and JIT.
+ */
+@Tag("benchmark")
+class NistCsvParserBenchmarkTest {
+
+    /**
+     * Parses the payload repeatedly with both parsers and compares time and allocated bytes per parse.
+     */
+    @Test
+    @SuppressWarnings("deprecation") // Measures against the deprecated commons-csv parser
+    void benchmarkAgainstCommonsCsvParser() throws IOException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "Per-thread allocation counters not available");
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported(), "Per-thread allocation counters not available");
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        String csv = NistCsvParserTest.nistPayload();
+        int iterations = 10;
+        for (int i = 0; i < 3; i++) {
+            NISTUtils.parseNistCsv(csv, "nm");
+            NistCsvParser.parse(csv, "nm", false);
+        }
+
+        long threadId = Thread.currentThread().threadId();
+        long bytes = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        double checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            checksum += NISTUtils.parseNistCsv(csv, "nm").size();
+        }
+        long commonsNanos = (System.nanoTime() - start) / iterations;
+        long commonsBytes = (threadBean.getThreadAllocatedBytes(threadId) - bytes) / iterations;
+
+        bytes = threadBean.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += NistCsvParser.parse(csv, "nm", false).getWavelengths().length;
+        }
+        long parserNanos = (System.nanoTime() - start) / iterations;
+        long parserBytes = (threadBean.getThreadAllocatedBytes(threadId) - bytes) / iterations;
+
+        int rows = NistCsvParser.parse(csv, "nm", false).getWavelengths().length;
+        System.out.printf("Parsing %d rows (%,d chars): commons-csv %.2f ms, %,d bytes; NistCsvParser %.2f ms, %,d bytes%n",
+                rows, csv.length(), commonsNanos / 1e6, commonsBytes, parserNanos / 1e6, parserBytes);
+        assertEquals(2.0 * iterations * rows, checksum);
+        // Two output arrays plus the header, against a record, Strings and boxed map entries per row
+        assertTrue(parserBytes * 10 < commonsBytes, "NistCsvParser allocated " + parserBytes
+                + " bytes against " + commonsBytes + " for commons-csv");
+    }
+}
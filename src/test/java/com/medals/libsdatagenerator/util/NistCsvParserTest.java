@@ -0,0 +1,135 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.model.Spectrum;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the single pass NIST CSV parser, checked against the commons-csv based
+ * {@link NISTUtils#parseNistCsv} parser. The two are benchmarked in {@link NistCsvParserBenchmarkTest}.
+ */
+class NistCsvParserTest {
+
+    private static final List<String> SPECIES = List.of("Fe I", "Fe II", "C I", "Mn I", "Cr I");
+
+    /**
+     * Builds a CSV the way NIST LIBS returns it for 200-800 nm at resolution 1000: about 30000 rows of a wavelength,
+     * the Sum and one column per species, with small intensities in exponent notation and empty species cells.
+     */
+    static String nistPayload() {
+        Random random = new Random(7);
+        StringBuilder csv = new StringBuilder("Wavelength (nm),Sum");
+        for (String species : SPECIES) {
+            csv.append(',').append(species);
+        }
+        csv.append('\n');
+        for (double wavelength = 200.0; wavelength <= 800.0; wavelength += 0.02) {
+            double[] values = new double[SPECIES.size()];
+            double sum = 0;
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextInt(10) == 0 ? 0.0 : random.nextDouble() * Math.pow(10, random.nextInt(12) - 6);
+                sum += values[i];
+            }
+            csv.append(String.format(Locale.ROOT, "%.4f,%.6e", wavelength, sum));
+            for (double value : values) {
+                csv.append(',');
+                if (value != 0.0) {
+                    csv.append(String.format(Locale.ROOT, "%.6e", value));
+                }
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation") // Compares against the deprecated commons-csv parser
+    void testMatchesCommonsCsvParser() throws IOException {
+        String csv = nistPayload();
+        Spectrum spectrum = NistCsvParser.parse(csv, "nm", true);
+        Map<Double, Double> waveMap = NISTUtils.parseNistCsv(csv, "nm");
+
+        // Bit for bit, as both parse to the nearest double
+        assertArrayEquals(waveMap.keySet().stream().mapToDouble(Double::doubleValue).toArray(), spectrum.getWavelengths());
+        assertArrayEquals(waveMap.values().stream().mapToDouble(Double::doubleValue).toArray(), spectrum.getIntensities());
+        assertEquals(SPECIES, List.copyOf(spectrum.getSpecies()));
+        assertEquals(0.0, spectrum.getSpeciesIntensities("Fe I")[findZero(csv)]);
+    }
+
+    /**
+     * @return Row index of the first empty Fe I cell
+     */
+    private static int findZero(String csv) {
+        String[] lines = csv.split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            if (lines[i].split(",", -1)[2].isEmpty()) {
+                return i - 1;
+            }
+        }
+        throw new IllegalStateException("No empty cell");
+    }
+
+    @Test
+    void testParseDoubleMatchesJdk() {
+        Random random = new Random(3);
+        for (int i = 0; i < 20_000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+            String[] texts = {Double.toString(value), String.format(Locale.ROOT, "%.6e", value),
+                    String.format(Locale.ROOT, "%.4f", random.nextDouble() * 1000), Long.toString(random.nextLong())};
+            for (String text : texts) {
+                assertEquals(Double.parseDouble(text), NistCsvParser.parseDouble(text, 0, text.length()), text);
+            }
+        }
+        for (String text : new String[]{"0", "-0.0", "+1.5", ".5", "5.", "1e22", "1E-22", "123456789012345678", "1e400"}) {
+            assertEquals(Double.parseDouble(text), NistCsvParser.parseDouble(text, 0, text.length()), text);
+        }
+        for (String text : new String[]{"", "-", "1.2.3", "1e", "abc", "1,5"}) {
+            assertThrows(NumberFormatException.class, () -> NistCsvParser.parseDouble(text, 0, text.length()), text);
+        }
+    }
+
+    @Test
+    void testLayoutVariants() throws IOException {
+        // Quoted header, CRLF line breaks, padded and blank lines, an unreadable row, a short row and unsorted rows
+        String csv = "\"Wavelength (nm)\",Sum(calc),\"Fe I\"\r\n"
+                + "200.2 , 4.0,4.0\r\n"
+                + "\r\n"
+                + "200.0,n/a,1.0\r\n"
+                + "200.1,2.0\r\n"
+                + "200.0,1.0,1.0\r\n"
+                + "200.2,3.0,3.0\r\n";
+        Logger.getLogger(NistCsvParser.class.getName()).setLevel(Level.SEVERE);
+        try {
+            Spectrum spectrum = NistCsvParser.parse(csv, "nm", true);
+            assertArrayEquals(new double[]{200.0, 200.1, 200.2}, spectrum.getWavelengths());
+            // Later duplicate wavelength wins
+            assertArrayEquals(new double[]{1.0, 2.0, 3.0}, spectrum.getIntensities());
+            assertArrayEquals(new double[]{1.0, 0.0, 3.0}, spectrum.getSpeciesIntensities("Fe I"));
+
+            assertTrue(NistCsvParser.parse(csv, "nm", false).getSpecies().isEmpty());
+        } finally {
+            Logger.getLogger(NistCsvParser.class.getName()).setLevel(null);
+        }
+    }
+
+    @Test
+    void testMissingColumns() {
+        assertThrows(IOException.class, () -> NistCsvParser.parse("Wavelength (nm),Fe I\n200.0,1.0", "nm", true));
+        assertThrows(IOException.class, () -> NistCsvParser.parse("Wavelength (nm),Sum\n200.0,1.0", "Å", true));
+    }
+}
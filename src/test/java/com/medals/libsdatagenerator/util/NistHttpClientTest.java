@@ -0,0 +1,139 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the browserless NIST fetch engine against a local stand-in for the NIST LIBS query script.
+ */
+class NistHttpClientTest {
+
+    private static final String CSV_DATA = "Wavelength (nm),Sum,Fe I,Fe II\n200.0,1.5,1.0,0.5\n200.1,2.5,2.0,0.5";
+
+    private HttpServer server;
+    private NistHttpClient client;
+    private final AtomicReference<String> responseBody = new AtomicReference<>();
+    private final AtomicInteger responseStatus = new AtomicInteger(HttpURLConnection.HTTP_OK);
+    private final AtomicReference<String> lastQuery = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/cgi-bin/ASD/lines1.pl", exchange -> {
+            lastQuery.set(URLDecoder.decode(exchange.getRequestURI().getRawQuery(), StandardCharsets.UTF_8));
+            byte[] body = responseBody.get().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(responseStatus.get(), body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        String baseUrl = "http://localhost:" + server.getAddress().getPort() + "/cgi-bin/ASD/lines1.pl";
+        client = new NistHttpClient(baseUrl, 2, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    private Map<String, String> queryParams() {
+        Map<String, String> queryParams = new LinkedHashMap<>();
+        queryParams.put(LIBSDataGenConstants.NIST_LIBS_QUERY_PARAM_COMPOSITION, "Fe:99.5;C:0.5");
+        queryParams.put(LIBSDataGenConstants.NIST_LIBS_QUERY_PARAM_TEMP, "1.0");
+        queryParams.put(LIBSDataGenConstants.NIST_LIBS_QUERY_PARAM_EDEN, "1.0E17");
+        return queryParams;
+    }
+
+    @Test
+    void testFetchExtractsCsvFromPreBlock() {
+        responseBody.set("<html><body><h2>NIST LIBS</h2><pre>\n" + CSV_DATA + "\n</pre></body></html>");
+
+        String csvData = client.fetchCsvData(queryParams());
+
+        assertEquals(CSV_DATA, csvData);
+        // Full query plus the CSV view flag is sent in a single request
+        String query = lastQuery.get();
+        assertTrue(query.contains(LIBSDataGenConstants.NIST_LIBS_GET_CSV_BUTTON_HTML_TEXT + "="
+                + LIBSDataGenConstants.NIST_LIBS_GET_CSV_BUTTON_VALUE));
+        assertTrue(query.contains("temp=1.0"));
+        assertTrue(query.contains("eden=1.0E17"));
+        assertTrue(query.contains("mytext[]=Fe"));
+        assertTrue(query.contains("myperc[]=0.5"));
+    }
+
+    @Test
+    void testFetchAcceptsPlainCsvBody() {
+        responseBody.set(CSV_DATA + "\n");
+        assertEquals(CSV_DATA, client.fetchCsvData(queryParams()));
+    }
+
+    @Test
+    void testHtmlEntitiesUnescaped() {
+        responseBody.set("<pre>Wavelength (nm),Sum,&quot;Fe I&quot;\n200.0,1.5,1.5</pre>");
+        assertEquals("Wavelength (nm),Sum,\"Fe I\"\n200.0,1.5,1.5", client.fetchCsvData(queryParams()));
+    }
+
+    @Test
+    void testServerErrorReturnsNotFound() {
+        responseStatus.set(HttpURLConnection.HTTP_INTERNAL_ERROR);
+        responseBody.set("Internal error");
+        assertEquals(String.valueOf(HttpURLConnection.HTTP_NOT_FOUND), client.fetchCsvData(queryParams()));
+    }
+
+    @Test
+    void testRequestsReportedToScheduler() {
+        NistRequestScheduler scheduler = new NistRequestScheduler(100, 2);
+        String baseUrl = "http://localhost:" + server.getAddress().getPort() + "/cgi-bin/ASD/lines1.pl";
+        try (NistHttpClient scheduledClient = new NistHttpClient(baseUrl, 2, 5, scheduler)) {
+            responseBody.set(CSV_DATA);
+            assertEquals(CSV_DATA, scheduledClient.fetchCsvData(queryParams()));
+            responseBody.set("<html><body><p>Error</p></body></html>");
+            scheduledClient.fetchCsvData(queryParams());
+            responseStatus.set(HttpURLConnection.HTTP_UNAVAILABLE);
+            scheduledClient.fetchCsvData(queryParams());
+        }
+
+        NistRequestScheduler.EndpointStats stats = scheduler.getStats(LIBSDataGenConstants.NIST_ENDPOINT_HTTP);
+        assertEquals(3, stats.requests());
+        assertEquals(1, stats.failures());
+        assertEquals(1, stats.throttled());
+        assertTrue(NistHttpClient.isThrottlingStatus(429));
+        assertFalse(NistHttpClient.isThrottlingStatus(HttpURLConnection.HTTP_INTERNAL_ERROR));
+    }
+
+    @Test
+    void testNonCsvResponseReturnsNotFound() {
+        // e.g. NIST error page for an invalid composition
+        responseBody.set("<html><body><p>Error: Sum of percentages must be 100</p></body></html>");
+        assertEquals(String.valueOf(HttpURLConnection.HTTP_NOT_FOUND), client.fetchCsvData(queryParams()));
+    }
+
+    @Test
+    void testIsSpectrumCsv() {
+        assertTrue(NistHttpClient.isSpectrumCsv(CSV_DATA));
+        assertTrue(NistHttpClient.isSpectrumCsv("Wavelength (nm),Sum(calc)\n200.0,1.0"));
+        assertFalse(NistHttpClient.isSpectrumCsv("Wavelength (nm),Sum"));
+        assertFalse(NistHttpClient.isSpectrumCsv("<html></html>"));
+        assertFalse(NistHttpClient.isSpectrumCsv(""));
+    }
+}
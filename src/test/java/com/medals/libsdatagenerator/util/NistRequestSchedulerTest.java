@@ -0,0 +1,127 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the rate-limited, adaptive NIST request scheduler.
+ */
+class NistRequestSchedulerTest {
+
+    private static final String ENDPOINT = "http";
+    private static final String NOT_FOUND = String.valueOf(HttpURLConnection.HTTP_NOT_FOUND);
+
+    private static String sleepAndReturn(long millis, String result) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    @Test
+    void testRateLimit() {
+        NistRequestScheduler scheduler = new NistRequestScheduler(20, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            scheduler.execute(ENDPOINT, () -> "csv");
+        }
+        // One token up front, then one every 50 ms
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 450, "11 requests at 20/s took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void testAdditiveIncreaseUpToCeiling() {
+        NistRequestScheduler scheduler = new NistRequestScheduler(1000, 4);
+        assertEquals(1.0, scheduler.getStats(ENDPOINT).concurrencyLimit());
+        for (int i = 0; i < 50; i++) {
+            scheduler.execute(ENDPOINT, () -> "csv");
+        }
+        NistRequestScheduler.EndpointStats stats = scheduler.getStats(ENDPOINT);
+        assertEquals(4.0, stats.concurrencyLimit());
+        assertEquals(50, stats.requests());
+        assertEquals(0, stats.failures());
+    }
+
+    @Test
+    void testMultiplicativeDecreaseOncePerWindow() throws InterruptedException {
+        NistRequestScheduler scheduler = new NistRequestScheduler(1000, 4);
+        for (int i = 0; i < 20; i++) {
+            scheduler.execute(ENDPOINT, () -> sleepAndReturn(20, "csv"));
+        }
+        assertEquals(4.0, scheduler.getStats(ENDPOINT).concurrencyLimit());
+
+        // Two requests in flight fail together: the limit is only halved once
+        NistRequestScheduler.Permit first = scheduler.acquire(ENDPOINT);
+        NistRequestScheduler.Permit second = scheduler.acquire(ENDPOINT);
+        first.complete(NistRequestScheduler.Outcome.FAILURE);
+        second.complete(NistRequestScheduler.Outcome.FAILURE);
+        NistRequestScheduler.EndpointStats stats = scheduler.getStats(ENDPOINT);
+        assertEquals(2.0, stats.concurrencyLimit());
+        assertEquals(2, stats.failures());
+
+        // Failures of the 404 convention count too, once the window has passed
+        Thread.sleep(60);
+        scheduler.execute(ENDPOINT, () -> NOT_FOUND);
+        assertEquals(1.0, scheduler.getStats(ENDPOINT).concurrencyLimit());
+    }
+
+    @Test
+    void testLatencyIncreaseReducesConcurrency() {
+        NistRequestScheduler scheduler = new NistRequestScheduler(1000, 4);
+        for (int i = 0; i < 30; i++) {
+            scheduler.execute(ENDPOINT, () -> sleepAndReturn(5, "csv"));
+        }
+        assertEquals(4.0, scheduler.getStats(ENDPOINT).concurrencyLimit());
+        // NIST starts queueing requests
+        for (int i = 0; i < 4; i++) {
+            scheduler.execute(ENDPOINT, () -> sleepAndReturn(100, "csv"));
+        }
+        assertTrue(scheduler.getStats(ENDPOINT).concurrencyLimit() < 4.0);
+    }
+
+    @Test
+    void testConcurrencyLimitBlocksAndThrottlingPauses() throws InterruptedException {
+        NistRequestScheduler scheduler = new NistRequestScheduler(1000, 2);
+        NistRequestScheduler.Permit permit = scheduler.acquire(ENDPOINT);
+
+        // The limit starts at one request in flight
+        CountDownLatch admitted = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread waiting = Thread.ofVirtual().start(() -> {
+            try {
+                scheduler.acquire(ENDPOINT).complete(NistRequestScheduler.Outcome.SUCCESS);
+                admitted.countDown();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        assertFalse(admitted.await(100, TimeUnit.MILLISECONDS));
+
+        // Throttling frees the slot but pauses every request for the back-off period
+        permit.complete(NistRequestScheduler.Outcome.THROTTLED);
+        assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+        waiting.interrupt();
+        waiting.join();
+        assertTrue(interrupted.get());
+        assertEquals(1, scheduler.getStats(ENDPOINT).throttled());
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new NistRequestScheduler(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new NistRequestScheduler(Double.NaN, 1));
+        assertThrows(IllegalArgumentException.class, () -> new NistRequestScheduler(1, 0));
+    }
+}
@@ -0,0 +1,117 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the non-negative least squares solver.
+ */
+class NnlsSolverTest {
+
+    private static double[][] gram(double[][] columns) {
+        double[][] gram = new double[columns.length][columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            for (int j = 0; j < columns.length; j++) {
+                gram[i][j] = dot(columns[i], columns[j]);
+            }
+        }
+        return gram;
+    }
+
+    private static double[] rhs(double[][] columns, double[] target) {
+        double[] rhs = new double[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            rhs[i] = dot(columns[i], target);
+        }
+        return rhs;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Test
+    void testRecoversNonNegativeSolution() {
+        double[][] columns = { { 1, 0, 1, 2 }, { 0, 1, 1, 0 }, { 1, 1, 0, 1 } };
+        double[] expected = { 0.5, 2.0, 1.5 };
+        double[] target = new double[4];
+        for (int i = 0; i < columns.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                target[j] += expected[i] * columns[i][j];
+            }
+        }
+        assertArrayEquals(expected, NnlsSolver.solve(gram(columns), rhs(columns, target)), 1e-9);
+    }
+
+    @Test
+    void testClampsNegativeWeights() {
+        // Unconstrained least squares would give the second column a negative weight
+        double[][] columns = { { 1, 1, 0 }, { 1, 0, 0 } };
+        double[] target = { 1, 2, 0 };
+        double[] w = NnlsSolver.solve(gram(columns), rhs(columns, target));
+        assertEquals(0.0, w[1]);
+        assertEquals(1.5, w[0], 1e-9);
+    }
+
+    @Test
+    void testIdenticalColumns() {
+        double[][] columns = { { 1, 2, 3 }, { 1, 2, 3 } };
+        double[] target = { 2, 4, 6 };
+        double[] w = NnlsSolver.solve(gram(columns), rhs(columns, target));
+        assertEquals(2.0, w[0] + w[1], 1e-9);
+        assertTrue(w[0] >= 0 && w[1] >= 0);
+    }
+
+    @Test
+    void testNoPositiveFit() {
+        double[][] columns = { { 1, 0 }, { 0, 1 } };
+        assertArrayEquals(new double[] { 0.0, 0.0 }, NnlsSolver.solve(gram(columns), rhs(columns, new double[] { -1, -2 })));
+    }
+
+    @Test
+    void testOptimalityConditions() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 50; trial++) {
+            int k = 1 + random.nextInt(5);
+            double[][] columns = new double[k][30];
+            double[] target = new double[30];
+            for (int j = 0; j < target.length; j++) {
+                target[j] = random.nextGaussian();
+                for (int i = 0; i < k; i++) {
+                    columns[i][j] = random.nextGaussian();
+                }
+            }
+            double[][] gram = gram(columns);
+            double[] rhs = rhs(columns, target);
+            double[] w = NnlsSolver.solve(gram, rhs);
+            // KKT: w >= 0, gradient zero on positive weights and pointing outwards on zero weights
+            for (int i = 0; i < k; i++) {
+                double gradient = rhs[i];
+                for (int j = 0; j < k; j++) {
+                    gradient -= gram[i][j] * w[j];
+                }
+                assertTrue(w[i] >= 0);
+                if (w[i] > 0) {
+                    assertEquals(0.0, gradient, 1e-8);
+                } else {
+                    assertTrue(gradient <= 1e-8);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDimensionMismatch() {
+        assertThrows(IllegalArgumentException.class, () -> NnlsSolver.solve(new double[2][2], new double[3]));
+    }
+}
@@ -0,0 +1,81 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for index-addressable non-increasing sequences, checked against depth-first enumeration.
+ */
+class NonIncreasingSequencesTest {
+
+    // Keys of the Te/Ne grid points: 3 Te values with 2 Ne values each, plus an unordered key
+    private static final double[] KEYS = { 0.5, 0.5, 1.0, 1.0, 1.5, 1.5, 0.8 };
+
+    private static void enumerate(double[] keys, int zonesLeft, List<Integer> current, List<int[]> results) {
+        if (zonesLeft == 0) {
+            results.add(current.stream().mapToInt(Integer::intValue).toArray());
+            return;
+        }
+        double limit = current.isEmpty() ? Double.MAX_VALUE : keys[current.get(current.size() - 1)];
+        for (int q = 0; q < keys.length; q++) {
+            if (keys[q] <= limit) {
+                current.add(q);
+                enumerate(keys, zonesLeft - 1, current, results);
+                current.remove(current.size() - 1);
+            }
+        }
+    }
+
+    @Test
+    void testMatchesDepthFirstEnumeration() {
+        for (int length = 1; length <= 4; length++) {
+            List<int[]> expected = new ArrayList<>();
+            enumerate(KEYS, length, new ArrayList<>(), expected);
+            NonIncreasingSequences sequences = new NonIncreasingSequences(KEYS, length);
+            assertEquals(expected.size(), sequences.size());
+
+            int[] stepped = new int[length];
+            int[] unranked = new int[length];
+            sequences.unrank(0, stepped);
+            for (int i = 0; i < expected.size(); i++) {
+                sequences.unrank(i, unranked);
+                assertArrayEquals(expected.get(i), unranked);
+                assertArrayEquals(expected.get(i), stepped);
+                assertEquals(i < expected.size() - 1, sequences.next(stepped));
+            }
+            // Last sequence is left as it was
+            assertArrayEquals(expected.get(expected.size() - 1), stepped);
+        }
+    }
+
+    @Test
+    void testManyZonesNeedNoEnumeration() {
+        double[] keys = new double[42];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i / 6;
+        }
+        NonIncreasingSequences sequences = new NonIncreasingSequences(keys, 5);
+        // 7 Te values with 6 points each: C(7 + 5 - 1, 5) non-increasing Te sequences, 6^5 point choices for each
+        assertEquals(462L * 7776L, sequences.size());
+
+        int[] last = new int[5];
+        sequences.unrank(sequences.size() - 1, last);
+        assertArrayEquals(new int[] { 41, 41, 41, 41, 41 }, last);
+        assertFalse(sequences.next(last));
+        assertThrows(IndexOutOfBoundsException.class, () -> sequences.unrank(sequences.size(), last));
+    }
+
+    @Test
+    void testEmptyKeys() {
+        NonIncreasingSequences sequences = new NonIncreasingSequences(new double[0], 2);
+        assertEquals(0, sequences.size());
+        assertThrows(IllegalArgumentException.class, () -> new NonIncreasingSequences(KEYS, 0));
+    }
+}
@@ -0,0 +1,121 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for writing NumPy .npy arrays row by row.
+ */
+class NpyArrayWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Returns the header dictionary of a .npy file, checking the preamble against the format spec.
+     */
+    static String readHeader(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        assertEquals((byte) 0x93, bytes[0]);
+        assertEquals("NUMPY", new String(bytes, 1, 5, StandardCharsets.US_ASCII));
+        assertEquals(1, bytes[6]);
+        int headerLength = ByteBuffer.wrap(bytes, 8, 2).order(ByteOrder.LITTLE_ENDIAN).getShort();
+        assertEquals(0, (10 + headerLength) % 64, "Data must start on a 64 byte boundary");
+        assertEquals('\n', bytes[10 + headerLength - 1]);
+        return new String(bytes, 10, headerLength, StandardCharsets.US_ASCII).trim();
+    }
+
+    static ByteBuffer readData(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        return ByteBuffer.wrap(bytes, 128, bytes.length - 128).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    void testFloat64RowsAndHeader() throws IOException {
+        Path path = tempDir.resolve("spectra.npy");
+        try (NpyArrayWriter writer = new NpyArrayWriter(path, NpyArrayWriter.DTYPE_FLOAT64, new long[]{3}, false)) {
+            writer.writeRow(new double[]{1.0, 2.0, 3.0});
+            writer.writeRow(new double[]{4.0, 5.0, 6.5});
+        }
+        assertEquals("{'descr': '<f8', 'fortran_order': False, 'shape': (2, 3), }", readHeader(path));
+        double[] data = new double[6];
+        readData(path).asDoubleBuffer().get(data);
+        assertArrayEquals(new double[]{1.0, 2.0, 3.0, 4.0, 5.0, 6.5}, data);
+    }
+
+    @Test
+    void testHeaderUpToDateAfterFlush() throws IOException {
+        Path path = tempDir.resolve("spectra.npy");
+        try (NpyArrayWriter writer = new NpyArrayWriter(path, NpyArrayWriter.DTYPE_FLOAT32, new long[]{2}, false)) {
+            writer.writeRow(new double[]{0.5, 0.25});
+            writer.flush();
+            // Loadable before the writer is closed
+            assertEquals("{'descr': '<f4', 'fortran_order': False, 'shape': (1, 2), }", readHeader(path));
+            assertEquals(128 + 8, Files.size(path));
+        }
+    }
+
+    @Test
+    void testUnicodeStrings() throws IOException {
+        Path path = tempDir.resolve("ids.npy");
+        try (NpyArrayWriter writer = new NpyArrayWriter(path, NpyArrayWriter.unicodeDtype(4), new long[0], false)) {
+            writer.writeString("Fe");
+            writer.writeString("Fe-99.5");
+        }
+        assertEquals("{'descr': '<U4', 'fortran_order': False, 'shape': (2,), }", readHeader(path));
+        byte[] data = new byte[32];
+        readData(path).get(data);
+        assertEquals("Fe\0\0Fe-9", new String(data, "UTF-32LE"));
+    }
+
+    @Test
+    void testAppendDropsPartialRow() throws IOException {
+        Path path = tempDir.resolve("spectra.npy");
+        try (NpyArrayWriter writer = new NpyArrayWriter(path, NpyArrayWriter.DTYPE_FLOAT64, new long[]{2}, false)) {
+            writer.writeRow(new double[]{1.0, 2.0});
+        }
+        // Interrupted half way through the next row
+        Files.write(path, new byte[5], StandardOpenOption.APPEND);
+
+        try (NpyArrayWriter writer = new NpyArrayWriter(path, NpyArrayWriter.DTYPE_FLOAT64, new long[]{2}, true)) {
+            assertEquals(1, writer.getRows());
+            writer.writeRow(new double[]{3.0, 4.0});
+        }
+        assertTrue(readHeader(path).contains("'shape': (2, 2)"));
+        assertEquals(128 + 32, Files.size(path));
+    }
+
+    @Test
+    void testAppendRejectsDifferentRowShape() throws IOException {
+        Path path = tempDir.resolve("spectra.npy");
+        new NpyArrayWriter(path, NpyArrayWriter.DTYPE_FLOAT64, new long[]{2}, false).close();
+        assertThrows(IOException.class, () -> new NpyArrayWriter(path, NpyArrayWriter.DTYPE_FLOAT64, new long[]{3}, true));
+        assertThrows(IOException.class, () -> new NpyArrayWriter(path, NpyArrayWriter.DTYPE_FLOAT32, new long[]{2}, true));
+    }
+
+    @Test
+    void testWholeArrays() throws IOException {
+        Path wavelengths = tempDir.resolve("wavelengths.npy");
+        NpyArrayWriter.write(wavelengths, new double[]{200.0, 200.1, 200.2});
+        assertEquals("{'descr': '<f8', 'fortran_order': False, 'shape': (3,), }", readHeader(wavelengths));
+        assertArrayEquals(new double[]{200.0, 200.1, 200.2}, NpyArrayWriter.readDoubles(wavelengths));
+
+        Path elements = tempDir.resolve("elements.npy");
+        NpyArrayWriter.write(elements, List.of("C", "Fe", "Mn"));
+        assertEquals("{'descr': '<U2', 'fortran_order': False, 'shape': (3,), }", readHeader(elements));
+    }
+}
@@ -0,0 +1,176 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import com.medals.libsdatagenerator.model.DatasetRow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for streaming dataset rows to NumPy arrays and .npz archives.
+ */
+class NpyDatasetSinkTest {
+
+    private static final double[] WAVELENGTHS = {200.0, 200.1, 200.2};
+    private static final String GRADE = LIBSDataGenConstants.CSV_HEADER_MATERIAL_GRADE_NAME;
+
+    @TempDir
+    Path tempDir;
+
+    private static DatasetRow row(String id, double fe) {
+        return new DatasetRow(id, new double[]{0.1, 0.2, fe / 100}, Map.of("Fe", fe, "C", 100 - fe),
+                Map.of(GRADE, "AISI 1010"));
+    }
+
+    private Path arrayDir() {
+        return tempDir.resolve(LIBSDataGenConstants.NPY_DATASET_DIR);
+    }
+
+    @Test
+    void testArraysGrowWithEachRow() throws IOException {
+        try (NpyDatasetSink sink = new NpyDatasetSink(tempDir, false, List.of(GRADE), NpyArrayWriter.DTYPE_FLOAT32, false)) {
+            sink.write(row("Fe-99_C-1", 99), WAVELENGTHS);
+            // Loadable mid-run
+            assertTrue(NpyArrayWriterTest.readHeader(arrayDir().resolve(LIBSDataGenConstants.NPY_SPECTRA_FILENAME))
+                    .contains("'descr': '<f4', 'fortran_order': False, 'shape': (1, 3)"));
+            sink.write(row("Fe-98_C-2", 98), WAVELENGTHS);
+        }
+        int elementCount = LIBSDataGenConstants.STD_ELEMENT_LIST.length;
+        assertTrue(NpyArrayWriterTest.readHeader(arrayDir().resolve(LIBSDataGenConstants.NPY_SPECTRA_FILENAME))
+                .contains("'shape': (2, 3)"));
+        assertTrue(NpyArrayWriterTest.readHeader(arrayDir().resolve(LIBSDataGenConstants.NPY_COMPOSITIONS_FILENAME))
+                .contains("'shape': (2, " + elementCount + ")"));
+        assertTrue(NpyArrayWriterTest.readHeader(arrayDir().resolve(LIBSDataGenConstants.NPY_COMPOSITION_IDS_FILENAME))
+                .contains("'shape': (2,)"));
+        assertTrue(NpyArrayWriterTest.readHeader(arrayDir().resolve(GRADE + LIBSDataGenConstants.NPY_EXTENSION))
+                .contains("'shape': (2,)"));
+        assertTrue(NpyArrayWriterTest.readHeader(arrayDir().resolve(LIBSDataGenConstants.NPY_ELEMENTS_FILENAME))
+                .contains("'shape': (" + elementCount + ",)"));
+        assertEquals(Arrays.toString(WAVELENGTHS), Arrays.toString(
+                NpyArrayWriter.readDoubles(arrayDir().resolve(LIBSDataGenConstants.NPY_WAVELENGTHS_FILENAME))));
+    }
+
+    @Test
+    void testCompositionColumnsInStdElementOrder() throws IOException {
+        try (NpyDatasetSink sink = new NpyDatasetSink(tempDir, false, List.of(), NpyArrayWriter.DTYPE_FLOAT64, false)) {
+            sink.write(row("Fe-99_C-1", 99), WAVELENGTHS);
+        }
+        double[] composition = new double[LIBSDataGenConstants.STD_ELEMENT_LIST.length];
+        NpyArrayWriterTest.readData(arrayDir().resolve(LIBSDataGenConstants.NPY_COMPOSITIONS_FILENAME))
+                .asDoubleBuffer().get(composition);
+        List<String> elements = Arrays.asList(LIBSDataGenConstants.STD_ELEMENT_LIST);
+        assertEquals(99.0, composition[elements.indexOf("Fe")]);
+        assertEquals(1.0, composition[elements.indexOf("C")]);
+        assertEquals(100.0, Arrays.stream(composition).sum());
+    }
+
+    @Test
+    void testResumeFromCheckpoint() throws IOException {
+        Map<Path, Long> committed;
+        try (NpyDatasetSink sink = new NpyDatasetSink(tempDir, true, List.of(GRADE), NpyArrayWriter.DTYPE_FLOAT64, false)) {
+            sink.write(row("Fe-99_C-1", 99), WAVELENGTHS);
+            committed = sink.checkpoint();
+            sink.write(row("Fe-98_C-2", 98), WAVELENGTHS);
+        }
+        assertEquals(4, committed.size());
+
+        // Roll back to the checkpoint as a resumed run would, then continue
+        for (Map.Entry<Path, Long> entry : committed.entrySet()) {
+            try (FileChannel channel = FileChannel.open(entry.getKey(), StandardOpenOption.WRITE)) {
+                channel.truncate(entry.getValue());
+            }
+        }
+        try (NpyDatasetSink sink = new NpyDatasetSink(tempDir, true, List.of(GRADE), NpyArrayWriter.DTYPE_FLOAT64, false)) {
+            sink.write(row("Fe-97_C-3", 97), WAVELENGTHS);
+        }
+        double[] spectra = new double[6];
+        NpyArrayWriterTest.readData(arrayDir().resolve(LIBSDataGenConstants.NPY_SPECTRA_FILENAME)).asDoubleBuffer().get(spectra);
+        assertEquals(0.99, spectra[2]);
+        assertEquals(0.97, spectra[5]);
+    }
+
+    @Test
+    void testUnequalArraysLinedUpOnAppend() throws IOException {
+        try (NpyDatasetSink sink = new NpyDatasetSink(tempDir, false, List.of(), NpyArrayWriter.DTYPE_FLOAT64, false)) {
+            sink.write(row("Fe-99_C-1", 99), WAVELENGTHS);
+        }
+        // Interrupted after the spectrum of the next row was written
+        try (NpyArrayWriter spectra = new NpyArrayWriter(arrayDir().resolve(LIBSDataGenConstants.NPY_SPECTRA_FILENAME),
+                NpyArrayWriter.DTYPE_FLOAT64, new long[]{WAVELENGTHS.length}, true)) {
+            spectra.writeRow(new double[]{1, 1, 1});
+        }
+        try (NpyDatasetSink sink = new NpyDatasetSink(tempDir, true, List.of(), NpyArrayWriter.DTYPE_FLOAT64, false)) {
+            sink.write(row("Fe-98_C-2", 98), WAVELENGTHS);
+        }
+        assertTrue(NpyArrayWriterTest.readHeader(arrayDir().resolve(LIBSDataGenConstants.NPY_SPECTRA_FILENAME))
+                .contains("'shape': (2, 3)"));
+    }
+
+    @Test
+    void testArchiveBundlesStoredArrays() throws IOException {
+        try (NpyDatasetSink sink = new NpyDatasetSink(tempDir, false, List.of(GRADE), NpyArrayWriter.DTYPE_FLOAT64, true)) {
+            sink.write(row("Fe-99_C-1", 99), WAVELENGTHS);
+        }
+        assertFalse(Files.exists(tempDir.resolve(LIBSDataGenConstants.NPZ_STAGING_DIR)));
+
+        List<String> names = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(tempDir.resolve(LIBSDataGenConstants.NPZ_DATASET_FILENAME).toFile())) {
+            for (ZipEntry entry : zip.stream().toList()) {
+                names.add(entry.getName());
+                assertEquals(ZipEntry.STORED, entry.getMethod());
+            }
+        }
+        assertTrue(names.containsAll(List.of(LIBSDataGenConstants.NPY_SPECTRA_FILENAME,
+                LIBSDataGenConstants.NPY_WAVELENGTHS_FILENAME, LIBSDataGenConstants.NPY_COMPOSITIONS_FILENAME,
+                LIBSDataGenConstants.NPY_ELEMENTS_FILENAME, LIBSDataGenConstants.NPY_COMPOSITION_IDS_FILENAME,
+                GRADE + LIBSDataGenConstants.NPY_EXTENSION)), names.toString());
+    }
+
+    @Test
+    void testArchiveAppendKeepsEarlierRows() throws IOException {
+        try (NpyDatasetSink sink = new NpyDatasetSink(tempDir, true, List.of(GRADE), NpyArrayWriter.DTYPE_FLOAT64, true)) {
+            sink.write(row("Fe-99_C-1", 99), WAVELENGTHS);
+        }
+        try (NpyDatasetSink sink = new NpyDatasetSink(tempDir, true, List.of(GRADE), NpyArrayWriter.DTYPE_FLOAT64, true)) {
+            sink.write(row("Fe-98_C-2", 98), WAVELENGTHS);
+        }
+        assertFalse(Files.exists(tempDir.resolve(LIBSDataGenConstants.NPZ_STAGING_DIR)));
+
+        // Unpack the archive to read the arrays back
+        Path unpacked = Files.createDirectories(tempDir.resolve("unpacked"));
+        try (ZipFile zip = new ZipFile(tempDir.resolve(LIBSDataGenConstants.NPZ_DATASET_FILENAME).toFile())) {
+            for (ZipEntry entry : zip.stream().toList()) {
+                Files.copy(zip.getInputStream(entry), unpacked.resolve(entry.getName()));
+            }
+        }
+        assertTrue(NpyArrayWriterTest.readHeader(unpacked.resolve(LIBSDataGenConstants.NPY_SPECTRA_FILENAME))
+                .contains("'shape': (2, 3)"));
+        assertTrue(NpyArrayWriterTest.readHeader(unpacked.resolve(GRADE + LIBSDataGenConstants.NPY_EXTENSION))
+                .contains("'shape': (2,)"));
+        double[] spectra = new double[6];
+        NpyArrayWriterTest.readData(unpacked.resolve(LIBSDataGenConstants.NPY_SPECTRA_FILENAME)).asDoubleBuffer().get(spectra);
+        assertEquals(0.99, spectra[2]);
+        assertEquals(0.98, spectra[5]);
+
+        // A run on another wavelength grid cannot append to the archive
+        try (NpyDatasetSink sink = new NpyDatasetSink(tempDir, true, List.of(GRADE), NpyArrayWriter.DTYPE_FLOAT64, true)) {
+            assertThrows(IOException.class, () -> sink.write(row("Fe-97_C-3", 97), new double[]{300.0, 300.1, 300.2}));
+        }
+    }
+}
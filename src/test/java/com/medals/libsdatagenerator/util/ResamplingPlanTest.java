@@ -0,0 +1,78 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NonMonotonicSequenceException;
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for precomputed, cached linear resampling plans.
+ */
+class ResamplingPlanTest {
+
+    private static final double[] SOURCE = {1.0, 2.0, 4.0};
+
+    @BeforeEach
+    void setUp() {
+        ResamplingPlan.clearCache();
+    }
+
+    @Test
+    void testLinearInterpolationAndEdgeFill() {
+        ResamplingPlan plan = ResamplingPlan.of(SOURCE, new double[]{0.0, 1.0, 1.5, 3.0, 4.0, 5.0});
+        assertArrayEquals(new double[]{10.0, 10.0, 15.0, 30.0, 40.0, 40.0},
+                plan.apply(new double[]{10.0, 20.0, 40.0}), 1e-12);
+        // Endpoints are exact, not the result of rounding along the outer segments
+        double[] resampled = plan.apply(new double[]{0.1, 0.7, 0.3});
+        assertEquals(0.1, resampled[1]);
+        assertEquals(0.3, resampled[4]);
+        assertEquals(0.3, resampled[5]);
+    }
+
+    @Test
+    void testOutOfOrderTargetPoints() {
+        ResamplingPlan plan = ResamplingPlan.of(SOURCE, new double[]{3.0, 1.5, 2.0, 1.0});
+        assertArrayEquals(new double[]{30.0, 15.0, 20.0, 10.0}, plan.apply(new double[]{10.0, 20.0, 40.0}), 1e-12);
+    }
+
+    @Test
+    void testPlanReusedForEqualGrids() {
+        double[] target = {1.5, 3.0};
+        ResamplingPlan plan = ResamplingPlan.of(SOURCE, target);
+        // Equal contents in different arrays, as when NIST returns the same grid for the next zone
+        assertSame(plan, ResamplingPlan.of(SOURCE.clone(), target.clone()));
+        assertNotSame(plan, ResamplingPlan.of(new double[]{1.0, 2.0, 4.5}, target));
+
+        // Changing the caller's grid afterwards does not corrupt the cached key
+        double[] source = {1.0, 2.0, 3.0};
+        ResamplingPlan first = ResamplingPlan.of(source, target);
+        source[2] = 5.0;
+        assertNotSame(first, ResamplingPlan.of(source, target));
+        assertSame(first, ResamplingPlan.of(new double[]{1.0, 2.0, 3.0}, target));
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        for (int i = 0; i < LIBSDataGenConstants.RESAMPLING_PLAN_CACHE_SIZE + 5; i++) {
+            ResamplingPlan.of(new double[]{i, i + 1.0}, SOURCE);
+        }
+        assertEquals(LIBSDataGenConstants.RESAMPLING_PLAN_CACHE_SIZE, ResamplingPlan.getCacheSize());
+    }
+
+    @Test
+    void testInvalidInput() {
+        assertThrows(NonMonotonicSequenceException.class, () -> ResamplingPlan.of(new double[]{1.0, 1.0, 2.0}, SOURCE));
+        assertThrows(NumberIsTooSmallException.class, () -> ResamplingPlan.of(new double[]{1.0}, SOURCE));
+        ResamplingPlan plan = ResamplingPlan.of(SOURCE, SOURCE);
+        assertEquals(3, plan.getTargetLength());
+        assertThrows(DimensionMismatchException.class, () -> plan.apply(new double[]{1.0, 2.0}));
+    }
+}
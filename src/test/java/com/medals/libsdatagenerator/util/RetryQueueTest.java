@@ -0,0 +1,65 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the deferred retry queue.
+ */
+class RetryQueueTest {
+
+    @Test
+    void testRetriesUntilItemsSucceed() throws InterruptedException {
+        RetryQueue<String> queue = new RetryQueue<>(3, 10);
+        queue.add("a");
+        queue.add("b");
+        queue.add("c");
+
+        List<List<String>> rounds = new ArrayList<>();
+        List<String> permanentFailures = queue.drain(items -> {
+            rounds.add(items);
+            // "b" recovers on the second round, "c" never does
+            return rounds.size() == 1 ? List.of("b", "c") : List.of("c");
+        });
+
+        assertEquals(List.of(List.of("a", "b", "c"), List.of("b", "c"), List.of("c")), rounds);
+        assertEquals(List.of("c"), permanentFailures);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testStopsOnceNothingFails() throws InterruptedException {
+        RetryQueue<String> queue = new RetryQueue<>(5, 10);
+        queue.add("a");
+        List<String> calls = new ArrayList<>();
+        List<String> permanentFailures = queue.drain(items -> {
+            calls.addAll(items);
+            return List.of();
+        });
+        assertEquals(List.of("a"), calls);
+        assertTrue(permanentFailures.isEmpty());
+        // Empty queue: no rounds, no waiting
+        assertTrue(queue.drain(items -> {
+            throw new AssertionError("No round expected");
+        }).isEmpty());
+    }
+
+    @Test
+    void testExponentialBackoff() throws InterruptedException {
+        RetryQueue<String> queue = new RetryQueue<>(3, 20);
+        assertEquals(20, queue.getBackoffMillis(0));
+        assertEquals(40, queue.getBackoffMillis(1));
+        assertEquals(80, queue.getBackoffMillis(2));
+
+        queue.add("a");
+        long start = System.nanoTime();
+        queue.drain(items -> items);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 140, "Rounds did not back off");
+    }
+}
@@ -0,0 +1,231 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.controller.LIBSDataGenConstants;
+import com.medals.libsdatagenerator.model.DatasetRow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for journalling dataset generation runs and resuming them after an interruption.
+ */
+class RunJournalTest {
+
+    private static final List<String> ARGS = List.of("-s", "AISI 10XX Series", "-v", "-n", "100", "-sd", "42");
+    private static final double[] WAVELENGTHS = {200.0, 200.1};
+
+    @TempDir
+    Path tempDir;
+
+    private static DatasetRow row(String id) {
+        return new DatasetRow(id, new double[]{0.5, 1.0}, Map.of("Fe", 99.0, "C", 1.0), Map.of());
+    }
+
+    private static RunJournal.Entry entry(int variationIdx, String compositionId) {
+        return new RunJournal.Entry(0, "AISI 1010", variationIdx, 42L, compositionId);
+    }
+
+    @Test
+    void testCommittedEntriesSurviveResume() throws IOException {
+        Path journalDir = tempDir.resolve("runs");
+        try (RunJournal journal = RunJournal.create(journalDir, "run-1", ARGS)) {
+            journal.commit(entry(0, "Fe-99_C-1"), Map.of());
+            journal.commit(entry(2, "Fe-98_C-2"), Map.of());
+        }
+
+        try (RunJournal resumed = RunJournal.resume(journalDir, "run-1")) {
+            assertEquals(ARGS, resumed.getArgs());
+            assertEquals(2, resumed.getCompletedCount());
+            assertEquals("Fe-98_C-2", resumed.getCompleted(0, 2).compositionId);
+            assertEquals(42L, resumed.getCompleted(0, 2).seed);
+            assertNull(resumed.getCompleted(0, 1));
+            assertFalse(resumed.hasCommittedOutput());
+        }
+    }
+
+    @Test
+    void testTornRecordIgnored() throws IOException {
+        Path journalDir = tempDir.resolve("runs");
+        try (RunJournal journal = RunJournal.create(journalDir, "run-1", ARGS)) {
+            journal.commit(entry(0, "Fe-99_C-1"), Map.of());
+        }
+        // Interrupted half way through appending the next record
+        Path journalPath = RunJournal.getJournalPath(journalDir, "run-1");
+        Files.writeString(journalPath, "done,0,AISI 1010,1,42,Fe-9", StandardOpenOption.APPEND);
+
+        try (RunJournal resumed = RunJournal.resume(journalDir, "run-1")) {
+            assertEquals(1, resumed.getCompletedCount());
+            resumed.commit(entry(1, "Fe-98_C-2"), Map.of());
+        }
+        try (RunJournal resumed = RunJournal.resume(journalDir, "run-1")) {
+            assertEquals(2, resumed.getCompletedCount());
+            assertNotNull(resumed.getCompleted(0, 1));
+        }
+    }
+
+    @Test
+    void testUncommittedRowRolledBack() throws IOException {
+        Path journalDir = tempDir.resolve("runs");
+        Path masterCsv = tempDir.resolve(LIBSDataGenConstants.MASTER_DATASET_FILENAME);
+        try (RunJournal journal = RunJournal.create(journalDir, "run-1", ARGS);
+             CsvDatasetSink sink = new CsvDatasetSink(tempDir, true, List.of(), false, null)) {
+            journal.recordOutputStart(sink.checkpoint());
+            sink.write(row("Fe-99_C-1"), WAVELENGTHS);
+            journal.commit(entry(0, "Fe-99_C-1"), sink.checkpoint());
+            // Written but the run dies before it is committed
+            sink.write(row("Fe-98_C-2"), WAVELENGTHS);
+        }
+        Files.writeString(masterCsv, "Fe-97_C-3,0.", StandardOpenOption.APPEND);
+        assertEquals(4, Files.readAllLines(masterCsv).size());
+
+        try (RunJournal resumed = RunJournal.resume(journalDir, "run-1")) {
+            assertTrue(resumed.hasCommittedOutput());
+            resumed.rollBackOutput();
+        }
+        List<String> lines = Files.readAllLines(masterCsv);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).startsWith("Fe-99_C-1,"));
+    }
+
+    @Test
+    void testRollBackBeforeFirstCommitKeepsEarlierRuns() throws IOException {
+        Path journalDir = tempDir.resolve("runs");
+        Path masterCsv = tempDir.resolve(LIBSDataGenConstants.MASTER_DATASET_FILENAME);
+        try (CsvDatasetSink sink = new CsvDatasetSink(tempDir, false, List.of(), false, null)) {
+            sink.write(row("Fe-100"), WAVELENGTHS);
+        }
+        long earlierRunLength = Files.size(masterCsv);
+
+        try (RunJournal journal = RunJournal.create(journalDir, "run-2", ARGS);
+             CsvDatasetSink sink = new CsvDatasetSink(tempDir, true, List.of(), false, null)) {
+            journal.recordOutputStart(sink.checkpoint());
+            sink.write(row("Fe-99_C-1"), WAVELENGTHS);
+        }
+        try (RunJournal resumed = RunJournal.resume(journalDir, "run-2")) {
+            resumed.rollBackOutput();
+        }
+        assertEquals(earlierRunLength, Files.size(masterCsv));
+    }
+
+    @Test
+    void testRollBackRefusedAfterInterleavedRun() throws IOException {
+        Path journalDir = tempDir.resolve("runs");
+        Path masterCsv = tempDir.resolve(LIBSDataGenConstants.MASTER_DATASET_FILENAME);
+        // Run A commits a row and is interrupted
+        try (RunJournal journal = RunJournal.create(journalDir, "run-a", ARGS);
+             CsvDatasetSink sink = new CsvDatasetSink(tempDir, true, List.of(), false, null)) {
+            journal.recordOutputStart(sink.checkpoint());
+            sink.write(row("Fe-99_C-1"), WAVELENGTHS);
+            journal.commit(entry(0, "Fe-99_C-1"), sink.checkpoint());
+        }
+        // Run B appends its rows to the same dataset and finishes
+        try (RunJournal journal = RunJournal.create(journalDir, "run-b", ARGS);
+             CsvDatasetSink sink = new CsvDatasetSink(tempDir, true, List.of(), false, null)) {
+            journal.recordOutputStart(sink.checkpoint());
+            sink.write(row("Fe-98_C-2"), WAVELENGTHS);
+            journal.commit(entry(0, "Fe-98_C-2"), sink.checkpoint());
+            journal.finish();
+        }
+        // Run B's journal is written after run A stopped, even on file systems with coarse timestamps
+        Path journalA = RunJournal.getJournalPath(journalDir, "run-a");
+        Files.setLastModifiedTime(journalA, FileTime.fromMillis(Files.getLastModifiedTime(journalA).toMillis() - 10_000));
+        long length = Files.size(masterCsv);
+
+        try (RunJournal resumed = RunJournal.resume(journalDir, "run-a")) {
+            IOException e = assertThrows(IOException.class, resumed::rollBackOutput);
+            assertTrue(e.getMessage().contains("run-b"));
+        }
+        assertEquals(length, Files.size(masterCsv));
+        assertEquals(3, Files.readAllLines(masterCsv).size());
+    }
+
+    @Test
+    void testFinishedRunCannotBeResumed() throws IOException {
+        try (RunJournal journal = RunJournal.create(tempDir, "run-1", ARGS)) {
+            journal.commit(entry(0, "Fe-99_C-1"), Map.of());
+            journal.finish();
+            assertTrue(journal.isFinished());
+        }
+        IOException e = assertThrows(IOException.class, () -> RunJournal.resume(tempDir, "run-1"));
+        assertTrue(e.getMessage().contains("finished"));
+    }
+
+    @Test
+    void testRunWithSkippedRowsStaysResumable() throws IOException {
+        try (RunJournal journal = RunJournal.create(tempDir, "run-1", ARGS)) {
+            journal.commit(entry(0, "Fe-99_C-1"), Map.of());
+            journal.skip();
+            journal.finish();
+            assertFalse(journal.isFinished());
+        }
+        try (RunJournal resumed = RunJournal.resume(tempDir, "run-1")) {
+            assertEquals(1, resumed.getCompletedCount());
+        }
+    }
+
+    @Test
+    void testOutputStartUnknownWhenReplacingDataset() throws IOException {
+        try (RunJournal journal = RunJournal.create(tempDir, "run-1", ARGS);
+             CsvDatasetSink sink = new CsvDatasetSink(tempDir, false, List.of(), false, null)) {
+            journal.recordOutputStart(sink.checkpoint());
+            assertFalse(journal.hasCommittedOutput());
+        }
+    }
+
+    @Test
+    void testArgsWithSeparatorsRoundTrip() throws IOException {
+        List<String> args = List.of("-c", "Fe-#,C-0.5", "-o", "/tmp/my \"dataset\"");
+        RunJournal.create(tempDir, "run-1", args).close();
+        try (RunJournal resumed = RunJournal.resume(tempDir, "run-1")) {
+            assertEquals(args, resumed.getArgs());
+        }
+    }
+
+    @Test
+    void testMissingOrExistingJournal() throws IOException {
+        assertThrows(NoSuchFileException.class, () -> RunJournal.resume(tempDir, "missing"));
+        RunJournal.create(tempDir, "run-1", ARGS).close();
+        assertThrows(IOException.class, () -> RunJournal.create(tempDir, "run-1", ARGS));
+    }
+
+    @Test
+    void testRunIdsDoNotCollide() throws IOException {
+        Set<String> runIds = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String runId = RunJournal.newRunId();
+            assertTrue(runId.matches("\\d{8}-\\d{6}-\\d{3}-\\d+"), runId);
+            assertTrue(runIds.add(runId), "Repeated run ID " + runId);
+        }
+        // Runs started back to back each get their own journal
+        RunJournal.create(tempDir, RunJournal.newRunId(), ARGS).close();
+        RunJournal.create(tempDir, RunJournal.newRunId(), ARGS).close();
+    }
+
+    @Test
+    void testCommitAfterCloseIgnored() throws IOException {
+        RunJournal journal = RunJournal.create(tempDir, "run-1", ARGS);
+        journal.close();
+        journal.close();
+        journal.commit(entry(0, "Fe-99_C-1"), Map.of());
+        String content = Files.readString(RunJournal.getJournalPath(tempDir, "run-1"), StandardCharsets.UTF_8);
+        assertFalse(content.contains(RunJournal.RECORD_DONE));
+    }
+}
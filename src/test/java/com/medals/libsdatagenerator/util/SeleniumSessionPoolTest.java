@@ -0,0 +1,136 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the NIST browser session pool. Drivers are only started on a session's first fetch,
+ * so no browser is launched here.
+ */
+class SeleniumSessionPoolTest {
+
+    @Test
+    void testSessionsHaveIndependentDrivers() throws InterruptedException {
+        try (SeleniumSessionPool pool = new SeleniumSessionPool(2)) {
+            NistSession first = pool.acquire();
+            NistSession second = pool.acquire();
+
+            assertNotSame(first, second);
+            assertNotSame(first.getSeleniumUtils(), second.getSeleniumUtils());
+            assertNotSame(first.getNistUtils(), second.getNistUtils());
+
+            pool.release(first);
+            assertEquals(first, pool.acquire());
+        }
+    }
+
+    @Test
+    void testResultsReassembledInInputOrder() throws Exception {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            items.add(i);
+        }
+
+        try (SeleniumSessionPool pool = new SeleniumSessionPool(4)) {
+            // Earlier items take longer so they complete out of order
+            List<String> results = pool.processInOrder(items, (session, item) -> {
+                try {
+                    Thread.sleep((20 - item) * 2L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "row-" + item;
+            });
+
+            assertEquals(items.size(), results.size());
+            for (int i = 0; i < items.size(); i++) {
+                assertEquals("row-" + i, results.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testTasksRunConcurrentlyOnDistinctSessions() throws Exception {
+        int poolSize = 3;
+        CountDownLatch allRunning = new CountDownLatch(poolSize);
+        Set<NistSession> sessionsInUse = ConcurrentHashMap.newKeySet();
+
+        try (SeleniumSessionPool pool = new SeleniumSessionPool(poolSize)) {
+            List<Boolean> results = pool.processInOrder(List.of(1, 2, 3), (session, item) -> {
+                sessionsInUse.add(session);
+                allRunning.countDown();
+                try {
+                    // Only completes if every task holds a session at the same time
+                    return allRunning.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            });
+
+            assertEquals(List.of(true, true, true), results);
+            assertEquals(new HashSet<>(pool.getSessions()), sessionsInUse);
+        }
+    }
+
+    @Test
+    void testStreamedResultsInOrderWithBoundedWindow() throws Exception {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            items.add(i);
+        }
+        AtomicInteger started = new AtomicInteger();
+        List<Integer> consumed = new ArrayList<>();
+
+        try (SeleniumSessionPool pool = new SeleniumSessionPool(3)) {
+            pool.processInOrder(items, (session, item) -> {
+                started.incrementAndGet();
+                try {
+                    Thread.sleep((30 - item) % 5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return item;
+            }, item -> {
+                consumed.add(item);
+                // Tasks started so far never run ahead of the consumer by more than the window
+                assertTrue(started.get() - consumed.size() <= pool.getWindowSize(),
+                        "started " + started.get() + ", consumed " + consumed.size());
+            });
+        }
+        assertEquals(items, consumed);
+    }
+
+    @Test
+    void testTaskFailurePropagates() {
+        try (SeleniumSessionPool pool = new SeleniumSessionPool(2)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () ->
+                    pool.processInOrder(List.of(1, 2), (session, item) -> {
+                        if (item == 2) {
+                            throw new IllegalStateException("fetch failed");
+                        }
+                        return item;
+                    }));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    void testInvalidPoolSize() {
+        assertThrows(IllegalArgumentException.class, () -> new SeleniumSessionPool(0));
+    }
+}
@@ -0,0 +1,64 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.UnhandledAlertException;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.LongSummaryStatistics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the browser-side wait helpers. No browser is launched here.
+ */
+class SeleniumUtilsTest {
+
+    @Test
+    void testCssSelectorConversion() {
+        assertEquals("[name=\"ViewDataCSV\"]", SeleniumUtils.toCssSelector(By.name("ViewDataCSV")));
+        assertEquals("[id=\"perc25\"]", SeleniumUtils.toCssSelector(By.id("perc25")));
+        assertEquals("pre", SeleniumUtils.toCssSelector(By.tagName("pre")));
+        assertEquals("table.results td", SeleniumUtils.toCssSelector(By.cssSelector("table.results td")));
+        assertEquals("[name=\"a\\\"b\"]", SeleniumUtils.toCssSelector(By.name("a\"b")));
+    }
+
+    @Test
+    void testXPathHasNoCssEquivalent() {
+        assertNull(SeleniumUtils.toCssSelector(By.xpath("//button[@name='recalc']")));
+        assertNull(SeleniumUtils.toCssSelector(By.linkText("Download")));
+    }
+
+    @Test
+    void testOnlyNavigationErrorsAreRetried() {
+        assertTrue(SeleniumUtils.isNavigationError(new JavascriptException("javascript error: document unloaded while waiting for result")));
+        assertTrue(SeleniumUtils.isNavigationError(new StaleElementReferenceException("stale element reference")));
+        assertTrue(SeleniumUtils.isNavigationError(new WebDriverException("unknown error: Cannot find context with specified id")));
+
+        assertFalse(SeleniumUtils.isNavigationError(new NoSuchSessionException("invalid session id")));
+        assertFalse(SeleniumUtils.isNavigationError(new NoSuchWindowException("target window already closed")));
+        assertFalse(SeleniumUtils.isNavigationError(new UnhandledAlertException("unexpected alert open")));
+        assertFalse(SeleniumUtils.isNavigationError(new WebDriverException("unknown error: session deleted because of page crash")));
+    }
+
+    @Test
+    void testWaitLatenciesRecordedPerLocator() {
+        SeleniumUtils seleniumUtils = new SeleniumUtils();
+        seleniumUtils.recordWaitLatency("By.name: recalc", 40);
+        seleniumUtils.recordWaitLatency("By.name: recalc", 120);
+        seleniumUtils.recordWaitLatency("By.name: ViewDataCSV", 10);
+
+        LongSummaryStatistics recalc = seleniumUtils.getWaitLatencies().get("By.name: recalc");
+        assertEquals(2, recalc.getCount());
+        assertEquals(80.0, recalc.getAverage());
+        assertEquals(120, recalc.getMax());
+        assertEquals(1, seleniumUtils.getWaitLatencies().get("By.name: ViewDataCSV").getCount());
+    }
+}
@@ -0,0 +1,138 @@
+package com.medals.libsdatagenerator.util;
+
+import com.medals.libsdatagenerator.model.Element;
+import com.medals.libsdatagenerator.model.UserInputConfig;
+import com.medals.libsdatagenerator.model.nist.NistUrlOptions.MaxIonCharge;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the persistent NIST spectrum cache.
+ */
+class SpectrumCacheTest {
+
+    private static final String CSV_DATA = "Wavelength (nm),Sum\n200.0,1.5\n200.1,2.5\n";
+
+    @TempDir
+    Path tempDir;
+
+    private UserInputConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new UserInputConfig();
+    }
+
+    private List<Element> composition(double fe, double c) {
+        List<Element> composition = new ArrayList<>();
+        composition.add(new Element("Iron", "Fe", fe, null, null, null));
+        composition.add(new Element("Carbon", "C", c, null, null, null));
+        return composition;
+    }
+
+    @Test
+    void testCacheKeyIgnoresElementOrderAndNumberFormatting() {
+        List<Element> reversed = new ArrayList<>(composition(99.5, 0.5));
+        java.util.Collections.reverse(reversed);
+        String key = SpectrumCache.buildCacheKey(composition(99.5, 0.5), config, 1.0, 1e17);
+        assertEquals(key, SpectrumCache.buildCacheKey(reversed, config, 1.0, 1e17));
+
+        UserInputConfig reformatted = new UserInputConfig();
+        reformatted.minWavelength = "200.0";
+        reformatted.resolution = "1000.00";
+        assertEquals(key, SpectrumCache.buildCacheKey(composition(99.5, 0.5), reformatted, 1.0, 1e17));
+    }
+
+    @Test
+    void testCacheKeyCoversQueryParameters() {
+        String key = SpectrumCache.buildCacheKey(composition(99.5, 0.5), config, 1.0, 1e17);
+
+        assertNotEquals(key, SpectrumCache.buildCacheKey(composition(99.4, 0.6), config, 1.0, 1e17));
+        assertNotEquals(key, SpectrumCache.buildCacheKey(composition(99.5, 0.5), config, 1.2, 1e17));
+        assertNotEquals(key, SpectrumCache.buildCacheKey(composition(99.5, 0.5), config, 1.0, 1e16));
+
+        UserInputConfig otherConfig = new UserInputConfig();
+        otherConfig.maxIonCharge = MaxIonCharge.THREE_PLUS;
+        assertNotEquals(key, SpectrumCache.buildCacheKey(composition(99.5, 0.5), otherConfig, 1.0, 1e17));
+    }
+
+    @Test
+    void testPutAndGet() {
+        SpectrumCache cache = new SpectrumCache(tempDir.resolve("cache"), 1024 * 1024);
+        String key = SpectrumCache.buildCacheKey(composition(99.5, 0.5), config, 1.0, 1e17);
+
+        assertNull(cache.get(key));
+        cache.put(key, CSV_DATA);
+        assertEquals(CSV_DATA, cache.get(key));
+
+        // A second cache instance on the same directory (e.g. another process) sees the entry
+        SpectrumCache sharedCache = new SpectrumCache(tempDir.resolve("cache"), 1024 * 1024);
+        assertEquals(CSV_DATA, sharedCache.get(key));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesEvicted() throws IOException {
+        Path cacheDir = tempDir.resolve("lru");
+        // Budget only fits two entries
+        SpectrumCache cache = new SpectrumCache(cacheDir, (long) (CSV_DATA.length() * 2.5));
+
+        String oldest = SpectrumCache.buildCacheKey(composition(99.0, 1.0), config, 1.0, 1e17);
+        String recent = SpectrumCache.buildCacheKey(composition(98.0, 2.0), config, 1.0, 1e17);
+        String newest = SpectrumCache.buildCacheKey(composition(97.0, 3.0), config, 1.0, 1e17);
+
+        cache.put(oldest, CSV_DATA);
+        cache.put(recent, CSV_DATA);
+        Files.setLastModifiedTime(cacheDir.resolve(oldest + ".csv"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(cacheDir.resolve(recent + ".csv"), FileTime.fromMillis(2000));
+
+        cache.put(newest, CSV_DATA);
+
+        assertNull(cache.get(oldest));
+        assertEquals(CSV_DATA, cache.get(recent));
+        assertEquals(CSV_DATA, cache.get(newest));
+        assertFalse(Files.exists(cacheDir.resolve(oldest + ".csv")));
+        assertTrue(Files.exists(cacheDir.resolve(newest + ".csv")));
+    }
+
+    @Test
+    void testOverwriteDoesNotGrowTrackedSize() throws IOException {
+        Path cacheDir = tempDir.resolve("overwrite");
+        SpectrumCache cache = new SpectrumCache(cacheDir, 1024 * 1024);
+        String first = SpectrumCache.buildCacheKey(composition(99.0, 1.0), config, 1.0, 1e17);
+        String second = SpectrumCache.buildCacheKey(composition(98.0, 2.0), config, 1.0, 1e17);
+
+        cache.put(first, CSV_DATA);
+        cache.put(second, CSV_DATA);
+        // Forced re-fetches replace the entry in place
+        for (int i = 0; i < 10; i++) {
+            cache.put(second, CSV_DATA);
+        }
+        cache.put(first, CSV_DATA + "\n300.0,1.0");
+
+        long onDisk = Files.size(cacheDir.resolve(first + ".csv")) + Files.size(cacheDir.resolve(second + ".csv"));
+        assertEquals(onDisk, cache.getApproxSizeBytes());
+    }
+
+    @Test
+    void testBlankPayloadNotCached() {
+        SpectrumCache cache = new SpectrumCache(tempDir.resolve("blank"), 1024);
+        String key = SpectrumCache.buildCacheKey(composition(99.5, 0.5), config, 1.0, 1e17);
+
+        cache.put(key, "  ");
+        assertNull(cache.get(key));
+    }
+}
@@ -0,0 +1,98 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation benchmark of the primitive spectrum kernels against the former boxed List&lt;Double&gt; path. Only runs
+ * with the benchmark profile ({@code mvn test -Pbenchmark}), as the numbers depend on the JVM and JIT.
+ */
+@Tag("benchmark")
+class SpectrumUtilsBenchmarkTest {
+
+    private static final int GRID_POINTS = 20_000;
+
+    private final SpectrumUtils spectrumUtils = new SpectrumUtils();
+
+    private static double[] grid(double start, double step, int points) {
+        double[] grid = new double[points];
+        for (int i = 0; i < points; i++) {
+            grid[i] = start + i * step;
+        }
+        return grid;
+    }
+
+    private static double[] randomSpectrum(int points, long seed) {
+        Random random = new Random(seed);
+        double[] spectrum = new double[points];
+        for (int i = 0; i < points; i++) {
+            spectrum[i] = random.nextDouble() * 1e4;
+        }
+        return spectrum;
+    }
+
+    /**
+     * Interpolates, normalises, scales and combines three plasma zones on a 20k point grid, once through the former
+     * boxed path and once through the primitive kernels, and compares the bytes each allocates.
+     */
+    @Test
+    void benchmarkZoneCombinationAllocations() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "Per-thread allocation counters not available");
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported(), "Per-thread allocation counters not available");
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        Logger spectrumLogger = Logger.getLogger(SpectrumUtils.class.getName());
+        Level level = spectrumLogger.getLevel();
+        spectrumLogger.setLevel(Level.WARNING);
+        try {
+            double[] originalGrid = grid(200.0, 0.03, GRID_POINTS);
+            double[] targetGrid = grid(200.01, 0.03, GRID_POINTS);
+            double[][] zones = {randomSpectrum(GRID_POINTS, 1), randomSpectrum(GRID_POINTS, 2),
+                    randomSpectrum(GRID_POINTS, 3)};
+            double[] weights = {0.5, 0.3, 0.2};
+            double[] combined = new double[GRID_POINTS];
+            double[] interpolated = new double[GRID_POINTS];
+            int compositions = 20;
+
+            // Warm up both paths so the measurement is not dominated by class loading and compilation
+            double boxedSum = 0;
+            for (int i = 0; i < 5; i++) {
+                boxedSum += SpectrumUtilsTest.boxedPath(originalGrid, zones, weights, targetGrid).get(0);
+                SpectrumUtilsTest.primitivePath(spectrumUtils, originalGrid, zones, weights, targetGrid, combined,
+                        interpolated);
+            }
+
+            long threadId = Thread.currentThread().threadId();
+            long start = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < compositions; i++) {
+                boxedSum += SpectrumUtilsTest.boxedPath(originalGrid, zones, weights, targetGrid).get(0);
+            }
+            long boxedBytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+            start = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < compositions; i++) {
+                SpectrumUtilsTest.primitivePath(spectrumUtils, originalGrid, zones, weights, targetGrid, combined,
+                        interpolated);
+            }
+            long primitiveBytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+            System.out.printf("Allocated per composition (%d zones, %d points): boxed %,d bytes, primitive %,d bytes%n",
+                    zones.length, GRID_POINTS, boxedBytes / compositions, primitiveBytes / compositions);
+            assertTrue(boxedSum > 0);
+            assertTrue(primitiveBytes * 100 < boxedBytes, "Primitive path allocated " + primitiveBytes
+                    + " bytes against " + boxedBytes + " for the boxed path");
+        } finally {
+            spectrumLogger.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.medals.libsdatagenerator.util;
+
+import org.apache.commons.math3.analysis.interpolation.LinearInterpolator;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+import org.apache.commons.math3.exception.NonMonotonicSequenceException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for the primitive spectrum kernels: interpolation into a reused buffer and the fused
+ * normalise-scale-combine step, checked against the former boxed List&lt;Double&gt; path. Allocations of the two
+ * paths are compared in {@link SpectrumUtilsBenchmarkTest}.
+ */
+class SpectrumUtilsTest {
+
+    private final SpectrumUtils spectrumUtils = new SpectrumUtils();
+
+    private static double[] grid(double start, double step, int points) {
+        double[] grid = new double[points];
+        for (int i = 0; i < points; i++) {
+            grid[i] = start + i * step;
+        }
+        return grid;
+    }
+
+    private static double[] randomSpectrum(int points, long seed) {
+        Random random = new Random(seed);
+        double[] spectrum = new double[points];
+        for (int i = 0; i < points; i++) {
+            spectrum[i] = random.nextDouble() * 1e4;
+        }
+        return spectrum;
+    }
+
+    @Test
+    void testInterpolationMatchesSplineReference() {
+        double[] originalGrid = grid(200.0, 0.013, 5000);
+        double[] intensities = randomSpectrum(originalGrid.length, 1);
+        // Overhangs the original grid on both ends
+        double[] targetGrid = grid(199.5, 0.007, 10_000);
+
+        PolynomialSplineFunction reference = new LinearInterpolator().interpolate(originalGrid, intensities);
+        double[] aligned = spectrumUtils.interpolateSpectrum(originalGrid, intensities, targetGrid);
+        for (int i = 0; i < targetGrid.length; i++) {
+            double expected = targetGrid[i] < originalGrid[0] ? intensities[0]
+                    : targetGrid[i] > originalGrid[originalGrid.length - 1] ? intensities[intensities.length - 1]
+                    : reference.value(targetGrid[i]);
+            assertEquals(expected, aligned[i], 1e-9 * Math.max(1.0, Math.abs(expected)));
+        }
+    }
+
+    @Test
+    void testInterpolationIntoReusedBuffer() {
+        double[] originalGrid = {1.0, 2.0, 4.0};
+        double[] buffer = new double[4];
+        // Unsorted target points fall back to a binary search
+        double[] result = spectrumUtils.interpolateSpectrum(originalGrid, new double[]{10.0, 20.0, 40.0},
+                new double[]{3.0, 1.5, 4.0, 0.0}, buffer);
+        assertSame(buffer, result);
+        assertArrayEquals(new double[]{30.0, 15.0, 40.0, 10.0}, buffer, 1e-12);
+
+        spectrumUtils.interpolateSpectrum(originalGrid, new double[]{0.0, 2.0, 2.0}, new double[]{1.0, 2.0, 3.0, 5.0}, buffer);
+        assertArrayEquals(new double[]{0.0, 2.0, 2.0, 2.0}, buffer, 1e-12);
+    }
+
+    @Test
+    void testInterpolationRejectsUnsortedGrid() {
+        assertThrows(NonMonotonicSequenceException.class, () -> spectrumUtils.interpolateSpectrum(
+                new double[]{1.0, 3.0, 2.0}, new double[]{1.0, 1.0, 1.0}, new double[]{1.5}));
+    }
+
+    @Test
+    void testAddNormalisedAndScaled() {
+        double[] combined = {1.0, 1.0, 1.0};
+        spectrumUtils.addNormalisedAndScaled(combined, new double[]{10.0, 40.0, 20.0}, 1000.0, 0.5);
+        assertArrayEquals(new double[]{126.0, 501.0, 251.0}, combined, 1e-12);
+
+        // No positive values normalise to zeros
+        spectrumUtils.addNormalisedAndScaled(combined, new double[]{0.0, -1.0, 0.0}, 1000.0, 0.5);
+        assertArrayEquals(new double[]{126.0, 501.0, 251.0}, combined, 1e-12);
+
+        assertArrayEquals(new double[]{250.0, 1000.0, 500.0},
+                spectrumUtils.normaliseAndScaleSpectrum(new double[]{10.0, 40.0, 20.0}, 1000.0), 1e-12);
+    }
+
+    @Test
+    void testPrimitivePathMatchesBoxedPath() {
+        double[] originalGrid = grid(200.0, 0.03, 2000);
+        double[] targetGrid = grid(200.01, 0.03, 2000);
+        double[][] zones = {randomSpectrum(2000, 1), randomSpectrum(2000, 2), randomSpectrum(2000, 3)};
+        double[] weights = {0.5, 0.3, 0.2};
+        double[] combined = new double[targetGrid.length];
+        primitivePath(spectrumUtils, originalGrid, zones, weights, targetGrid, combined, new double[targetGrid.length]);
+
+        List<Double> boxed = boxedPath(originalGrid, zones, weights, targetGrid);
+        for (int i = 0; i < combined.length; i++) {
+            assertEquals(boxed.get(i), combined[i], 1e-9 * Math.abs(boxed.get(i)));
+        }
+    }
+
+    /**
+     * Zone combination through the primitive kernels, into reused buffers.
+     */
+    static void primitivePath(SpectrumUtils spectrumUtils, double[] originalGrid, double[][] zones, double[] weights,
+                              double[] targetGrid, double[] combined, double[] interpolated) {
+        Arrays.fill(combined, 0.0);
+        for (int z = 0; z < zones.length; z++) {
+            spectrumUtils.interpolateSpectrum(originalGrid, zones[z], targetGrid, interpolated);
+            spectrumUtils.addNormalisedAndScaled(combined, interpolated, 1000.0, weights[z]);
+        }
+    }
+
+    /**
+     * The zone combination as it was before the primitive kernels: a fresh interpolated and normalised array and a
+     * boxed scaled list per zone, accumulated into a boxed combined list with get/set.
+     */
+    static List<Double> boxedPath(double[] originalGrid, double[][] zones, double[] weights, double[] targetGrid) {
+        List<Double> combined = new ArrayList<>();
+        for (int z = 0; z < zones.length; z++) {
+            PolynomialSplineFunction function = new LinearInterpolator().interpolate(originalGrid, zones[z]);
+            double[] interpolated = new double[targetGrid.length];
+            for (int i = 0; i < targetGrid.length; i++) {
+                double x = Math.min(Math.max(targetGrid[i], originalGrid[0]), originalGrid[originalGrid.length - 1]);
+                interpolated[i] = function.value(x);
+            }
+            double max = Arrays.stream(interpolated).max().orElse(0.0);
+            double[] normalised = new double[interpolated.length];
+            for (int i = 0; i < interpolated.length; i++) {
+                normalised[i] = interpolated[i] / max;
+            }
+            List<Double> scaled = new ArrayList<>();
+            for (double value : normalised) {
+                scaled.add(value * 1000.0);
+            }
+            if (combined.isEmpty()) {
+                for (Double intensity : scaled) {
+                    combined.add(intensity * weights[z]);
+                }
+            } else {
+                for (int j = 0; j < combined.size(); j++) {
+                    combined.set(j, combined.get(j) + scaled.get(j) * weights[z]);
+                }
+            }
+        }
+        return combined;
+    }
+}
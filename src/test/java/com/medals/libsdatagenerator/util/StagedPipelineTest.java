@@ -0,0 +1,128 @@
+package com.medals.libsdatagenerator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the staged producer-consumer pipeline.
+ */
+class StagedPipelineTest {
+
+    private static void sleepRandomly(Random random) {
+        try {
+            Thread.sleep(random.nextInt(3));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void testItemsReachSinkInEmissionOrder() throws InterruptedException, ExecutionException {
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer>(8)
+                .stage("io", StagedPipeline.StageType.IO, 4, item -> {
+                    // Random delays so that items overtake each other
+                    sleepRandomly(new Random(item));
+                    return item * 2;
+                })
+                .stage("cpu", StagedPipeline.StageType.CPU, 3, item -> item + 1);
+
+        List<Integer> received = new ArrayList<>();
+        pipeline.run(emit -> {
+            for (int i = 0; i < 200; i++) {
+                emit.accept(i);
+            }
+        }, received::add);
+
+        assertEquals(200, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(2 * i + 1, received.get(i));
+        }
+    }
+
+    @Test
+    void testInFlightItemsBoundedByWindow() throws InterruptedException, ExecutionException {
+        int window = 5;
+        AtomicInteger emitted = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer>(window)
+                .stage("work", StagedPipeline.StageType.IO, 4, item -> item);
+
+        AtomicInteger consumed = new AtomicInteger();
+        pipeline.run(emit -> {
+            for (int i = 0; i < 100; i++) {
+                emit.accept(i);
+                emitted.incrementAndGet();
+            }
+        }, item -> {
+            // Slow sink: the source has to wait for it once the window is full
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            consumed.incrementAndGet();
+            maxInFlight.accumulateAndGet(emitted.get() - consumed.get() + 1, Math::max);
+        });
+
+        assertEquals(100, consumed.get());
+        assertTrue(maxInFlight.get() <= window + 1, "In flight: " + maxInFlight.get());
+    }
+
+    @Test
+    void testStageFailureCancelsRun() {
+        AtomicInteger emitted = new AtomicInteger();
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer>(4)
+                .stage("parse", StagedPipeline.StageType.CPU, 2, item -> {
+                    if (item == 10) {
+                        throw new IllegalStateException("Bad item");
+                    }
+                    return item;
+                });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> pipeline.run(emit -> {
+            for (int i = 0; i < 1_000_000; i++) {
+                emit.accept(i);
+                emitted.incrementAndGet();
+            }
+        }, item -> { }));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertTrue(e.getMessage().contains("parse"));
+        // The source stopped once the run failed
+        assertTrue(emitted.get() < 1_000_000);
+    }
+
+    @Test
+    void testSourceFailure() {
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer>(4)
+                .stage("work", StagedPipeline.StageType.IO, 2, item -> item);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> pipeline.run(emit -> {
+            emit.accept(1);
+            throw new IllegalArgumentException("No compositions");
+        }, item -> { }));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+    }
+
+    @Test
+    void testEmptySourceAndInvalidArguments() throws InterruptedException, ExecutionException {
+        List<Integer> received = new ArrayList<>();
+        new StagedPipeline<Integer>(1)
+                .stage("work", StagedPipeline.StageType.CPU, 1, item -> item)
+                .run(emit -> { }, received::add);
+        assertTrue(received.isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> new StagedPipeline<Integer>(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new StagedPipeline<Integer>(1).stage("work", StagedPipeline.StageType.IO, 0, item -> item));
+    }
+}